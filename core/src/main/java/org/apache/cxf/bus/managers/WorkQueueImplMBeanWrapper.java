@@ -27,7 +27,7 @@ import org.apache.cxf.management.ManagedComponent;
 import org.apache.cxf.management.ManagementConstants;
 import org.apache.cxf.management.annotation.ManagedAttribute;
 import org.apache.cxf.management.annotation.ManagedResource;
-import org.apache.cxf.workqueue.AutomaticWorkQueueImpl;
+import org.apache.cxf.workqueue.AbstractAutomaticWorkQueue;
 import org.apache.cxf.workqueue.WorkQueueManager;
 
 @ManagedResource(componentName = "WorkQueue", 
@@ -37,10 +37,10 @@ import org.apache.cxf.workqueue.WorkQueueManager;
 public class WorkQueueImplMBeanWrapper implements ManagedComponent {    
     private static final String TYPE_VALUE = "WorkQueues";
     
-    private AutomaticWorkQueueImpl aWorkQueue;
+    private AbstractAutomaticWorkQueue aWorkQueue;
     private WorkQueueManager manager;
     
-    public WorkQueueImplMBeanWrapper(AutomaticWorkQueueImpl wq,
+    public WorkQueueImplMBeanWrapper(AbstractAutomaticWorkQueue wq,
                                      WorkQueueManager mgr) {
         aWorkQueue = wq;
         manager = mgr;
@@ -73,6 +73,21 @@ public class WorkQueueImplMBeanWrapper implements ManagedComponent {
         return aWorkQueue.getActiveCount(); 
     }
     
+    @ManagedAttribute(description = "The number of work items rejected")
+    public long getRejectedCount() { 
+        return aWorkQueue.getRejectedCount(); 
+    }
+
+    @ManagedAttribute(description = "The average time in milliseconds work waited to run")
+    public double getAverageWaitTime() { 
+        return aWorkQueue.getAverageWaitTime(); 
+    }
+
+    @ManagedAttribute(description = "The longest time in milliseconds work waited to run")
+    public long getMaxWaitTime() { 
+        return aWorkQueue.getMaxWaitTime(); 
+    }
+    
     @ManagedAttribute(description = "The WorkQueue has nothing to do",
                       persistPolicy = "OnUpdate")
     public boolean isEmpty() {
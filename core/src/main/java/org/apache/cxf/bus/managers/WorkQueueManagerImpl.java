@@ -33,14 +33,22 @@ import org.apache.cxf.buslifecycle.BusLifeCycleListener;
 import org.apache.cxf.buslifecycle.BusLifeCycleManager;
 import org.apache.cxf.common.injection.NoJSR250Annotations;
 import org.apache.cxf.common.logging.LogUtils;
+import org.apache.cxf.common.util.PropertyUtils;
 import org.apache.cxf.configuration.ConfiguredBeanLocator;
 import org.apache.cxf.management.InstrumentationManager;
+import org.apache.cxf.workqueue.AbstractAutomaticWorkQueue;
 import org.apache.cxf.workqueue.AutomaticWorkQueue;
 import org.apache.cxf.workqueue.AutomaticWorkQueueImpl;
+import org.apache.cxf.workqueue.ElasticWorkQueueImpl;
 import org.apache.cxf.workqueue.WorkQueueManager;
 
 @NoJSR250Annotations(unlessNull = "bus")
 public class WorkQueueManagerImpl implements WorkQueueManager {
+    /**
+     * Bus property that, when true, makes the default work queue an 
+     * {@link ElasticWorkQueueImpl} rather than a ThreadPoolExecutor based one.
+     */
+    public static final String ELASTIC_QUEUE_PROPERTY = "org.apache.cxf.workqueue.elastic";
 
     private static final Logger LOG =
         LogUtils.getL7dLogger(WorkQueueManagerImpl.class);
@@ -51,6 +59,7 @@ public class WorkQueueManagerImpl implements WorkQueueManager {
     boolean inShutdown;
     InstrumentationManager imanager;
     Bus bus;  
+    Boolean elasticQueue;
     
     public WorkQueueManagerImpl() {
         
@@ -98,6 +107,16 @@ public class WorkQueueManagerImpl implements WorkQueueManager {
         }
     }
 
+    public void setElasticQueue(boolean b) {
+        elasticQueue = b;
+    }
+    public boolean isElasticQueue() {
+        if (elasticQueue == null) {
+            return bus != null && PropertyUtils.isTrue(bus.getProperty(ELASTIC_QUEUE_PROPERTY));
+        }
+        return elasticQueue;
+    }
+
     public synchronized AutomaticWorkQueue getAutomaticWorkQueue() {
         AutomaticWorkQueue defaultQueue = getNamedWorkQueue("default");
         if (defaultQueue == null) {
@@ -109,8 +128,8 @@ public class WorkQueueManagerImpl implements WorkQueueManager {
     public synchronized void shutdown(boolean processRemainingTasks) {
         inShutdown = true;
         for (AutomaticWorkQueue q : namedQueues.values()) {
-            if (q instanceof AutomaticWorkQueueImpl) {
-                AutomaticWorkQueueImpl impl = (AutomaticWorkQueueImpl)q;
+            if (q instanceof AbstractAutomaticWorkQueue) {
+                AbstractAutomaticWorkQueue impl = (AbstractAutomaticWorkQueue)q;
                 if (impl.isShared()) {
                     synchronized (impl) {
                         impl.removeSharedUser();
@@ -168,15 +187,15 @@ public class WorkQueueManagerImpl implements WorkQueueManager {
     }
     public final void addNamedWorkQueue(String name, AutomaticWorkQueue q) {
         namedQueues.put(name, q);
-        if (q instanceof AutomaticWorkQueueImpl) {
-            AutomaticWorkQueueImpl impl = (AutomaticWorkQueueImpl)q;
+        if (q instanceof AbstractAutomaticWorkQueue) {
+            AbstractAutomaticWorkQueue impl = (AbstractAutomaticWorkQueue)q;
             if (impl.isShared()) {
                 synchronized (impl) {
                     if (impl.getShareCount() == 0 
                         && imanager != null 
                         && imanager.getMBeanServer() != null) {
                         try {
-                            imanager.register(new WorkQueueImplMBeanWrapper((AutomaticWorkQueueImpl)q, this));
+                            imanager.register(new WorkQueueImplMBeanWrapper(impl, this));
                         } catch (JMException jmex) {
                             LOG.log(Level.WARNING , jmex.getMessage(), jmex);
                         }
@@ -185,7 +204,7 @@ public class WorkQueueManagerImpl implements WorkQueueManager {
                 }
             } else if (imanager != null) {
                 try {
-                    imanager.register(new WorkQueueImplMBeanWrapper((AutomaticWorkQueueImpl)q, this));
+                    imanager.register(new WorkQueueImplMBeanWrapper(impl, this));
                 } catch (JMException jmex) {
                     LOG.log(Level.WARNING , jmex.getMessage(), jmex);
                 }
@@ -194,7 +213,8 @@ public class WorkQueueManagerImpl implements WorkQueueManager {
     }
     
     private AutomaticWorkQueue createAutomaticWorkQueue() {        
-        AutomaticWorkQueue q = new AutomaticWorkQueueImpl("default");
+        AutomaticWorkQueue q = isElasticQueue() 
+            ? new ElasticWorkQueueImpl("default") : new AutomaticWorkQueueImpl("default");
         addNamedWorkQueue("default", q);
         return q;
     }
@@ -23,12 +23,13 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.AbstractMap;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
@@ -95,11 +96,10 @@ public class ClientImpl
     protected PhaseChainCache inboundChainCache = new PhaseChainCache();
 
     protected Map<String, Object> currentRequestContext = new ConcurrentHashMap<String, Object>(8, 0.75f, 4);
-    protected Map<Thread, EchoContext> requestContext 
-        = Collections.synchronizedMap(new WeakHashMap<Thread, EchoContext>());
+    protected Map<Thread, EchoContext> requestContext = new ThreadContextMap<EchoContext>();
 
     protected Map<Thread, Map<String, Object>> responseContext 
-        = Collections.synchronizedMap(new WeakHashMap<Thread, Map<String, Object>>());
+        = new ThreadContextMap<Map<String, Object>>();
 
     protected Executor executor;
 
@@ -1046,6 +1046,101 @@ public class ClientImpl
     }
 
 
+    /**
+     * Holds the contexts of the threads using a client. The calling thread reaches its own entry
+     * through a thread local without taking a lock, the weak registry of all the entries is only
+     * locked when a thread first uses the client and for the bulk operations. Clearing the map
+     * releases the contexts of every thread.
+     */
+    static final class ThreadContextMap<V> extends AbstractMap<Thread, V> {
+        private final ThreadLocal<Holder<V>> local = new ThreadLocal<Holder<V>>();
+        private final Map<Thread, Holder<V>> holders = new WeakHashMap<Thread, Holder<V>>();
+
+        public V get(Object key) {
+            Holder<V> h = getHolder(key, false);
+            return h == null ? null : h.value;
+        }
+
+        public boolean containsKey(Object key) {
+            Holder<V> h = getHolder(key, false);
+            return h != null && h.present;
+        }
+
+        public V put(Thread key, V value) {
+            Holder<V> h = getHolder(key, true);
+            V old = h.value;
+            h.value = value;
+            h.present = true;
+            return old;
+        }
+
+        public V remove(Object key) {
+            Holder<V> h = getHolder(key, false);
+            if (h == null) {
+                return null;
+            }
+            V old = h.value;
+            h.present = false;
+            h.value = null;
+            return old;
+        }
+
+        public void clear() {
+            synchronized (holders) {
+                for (Holder<V> h : holders.values()) {
+                    h.present = false;
+                    h.value = null;
+                }
+            }
+        }
+
+        /**
+         * Returns a snapshot of the entries, changing it does not change the map.
+         */
+        public Set<Map.Entry<Thread, V>> entrySet() {
+            Map<Thread, V> copy = new HashMap<Thread, V>();
+            synchronized (holders) {
+                for (Map.Entry<Thread, Holder<V>> e : holders.entrySet()) {
+                    Holder<V> h = e.getValue();
+                    if (h.present) {
+                        copy.put(e.getKey(), h.value);
+                    }
+                }
+            }
+            return copy.entrySet();
+        }
+
+        private Holder<V> getHolder(Object key, boolean create) {
+            if (key == Thread.currentThread()) {
+                Holder<V> h = local.get();
+                if (h == null) {
+                    h = getRegisteredHolder((Thread)key, create);
+                    if (h != null) {
+                        local.set(h);
+                    }
+                }
+                return h;
+            }
+            return key instanceof Thread ? getRegisteredHolder((Thread)key, create) : null;
+        }
+
+        private Holder<V> getRegisteredHolder(Thread thread, boolean create) {
+            synchronized (holders) {
+                Holder<V> h = holders.get(thread);
+                if (h == null && create) {
+                    h = new Holder<V>();
+                    holders.put(thread, h);
+                }
+                return h;
+            }
+        }
+
+        private static final class Holder<V> {
+            volatile V value;
+            volatile boolean present;
+        }
+    }
+
     public void setExecutor(Executor executor) {
         if (!SynchronousExecutor.isA(executor)) {
             this.executor = executor;
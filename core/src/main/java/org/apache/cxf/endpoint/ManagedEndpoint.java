@@ -29,6 +29,9 @@ import org.apache.cxf.management.ManagementConstants;
 import org.apache.cxf.management.annotation.ManagedAttribute;
 import org.apache.cxf.management.annotation.ManagedOperation;
 import org.apache.cxf.management.annotation.ManagedResource;
+import org.apache.cxf.phase.PhaseChainCache;
+import org.apache.cxf.transport.ChainInitiationObserver;
+import org.apache.cxf.transport.Destination;
 
 @ManagedResource(componentName = "Endpoint", 
                  description = "Responsible for managing server instances.")
@@ -87,6 +90,32 @@ public class ManagedEndpoint implements ManagedComponent, ServerLifeCycleListene
     public String getState() {
         return state.toString();
     }
+    
+    @ManagedAttribute(description = "Number of inbound interceptor chains served from the chain cache")
+    public long getInboundChainCacheHits() {
+        PhaseChainCache cache = getInboundChainCache();
+        return cache == null ? 0 : cache.getHits();
+    }
+    
+    @ManagedAttribute(description = "Number of inbound interceptor chains built on a chain cache miss")
+    public long getInboundChainCacheMisses() {
+        PhaseChainCache cache = getInboundChainCache();
+        return cache == null ? 0 : cache.getMisses();
+    }
+    
+    @ManagedAttribute(description = "Number of interceptor chains held in the inbound chain cache")
+    public int getInboundChainCacheSize() {
+        PhaseChainCache cache = getInboundChainCache();
+        return cache == null ? 0 : cache.getSize();
+    }
+    
+    private PhaseChainCache getInboundChainCache() {
+        Destination d = server.getDestination();
+        if (d != null && d.getMessageObserver() instanceof ChainInitiationObserver) {
+            return ((ChainInitiationObserver)d.getMessageObserver()).getChainCache();
+        }
+        return null;
+    }
         
     public ObjectName getObjectName() throws JMException {
         String busId = bus.getId();
@@ -0,0 +1,117 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.feature;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import org.apache.cxf.Bus;
+import org.apache.cxf.common.injection.NoJSR250Annotations;
+import org.apache.cxf.endpoint.Endpoint;
+import org.apache.cxf.endpoint.Server;
+import org.apache.cxf.workqueue.BulkheadManager;
+import org.apache.cxf.workqueue.BulkheadWorkQueue;
+
+/**
+ * Runs the service invocations of an endpoint on its own bounded slice of the
+ * work queue capacity of the bus, so that a slow service cannot starve the other
+ * endpoints.  Endpoints configured with the same group share one slice.  The slices
+ * are managed by the {@link BulkheadManager} of the bus and exposed as Bulkhead MBeans.
+ * <pre>
+ * <![CDATA[
+    <jaxws:endpoint ...>
+      <jaxws:features>
+       <bean class="org.apache.cxf.feature.BulkheadFeature">
+         <property name="group" value="reporting"/>
+         <property name="weight" value="2"/>
+       </bean>
+      </jaxws:features>
+    </jaxws:endpoint>
+  ]]>
+  </pre>
+ */
+@NoJSR250Annotations
+public class BulkheadFeature extends AbstractFeature {
+    private String group;
+    private int weight = 1;
+    private int maxConcurrency = -1;
+    private int queueSize = 64;
+    
+    public String getGroup() {
+        return group;
+    }
+
+    /**
+     * Sets the name of the slice the endpoint runs on, defaults to the name of the endpoint.
+     */
+    public void setGroup(String group) {
+        this.group = group;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    /**
+     * Sets the share of the bus capacity guaranteed to the slice relative to the 
+     * other slices.  Default is 1.
+     */
+    public void setWeight(int weight) {
+        this.weight = weight;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Sets the most invocations the slice may run at once when borrowing idle
+     * capacity of the other slices.  Default is -1, only limited by the bus capacity.
+     */
+    public void setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    /**
+     * Sets how many invocations may wait for capacity before new ones are rejected.
+     * Default is 64.
+     */
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    @Override
+    public void initialize(Server server, Bus bus) {
+        Endpoint endpoint = server.getEndpoint();
+        String name = group == null ? endpoint.getEndpointInfo().getName().toString() : group;
+        final BulkheadManager manager = BulkheadManager.getInstance(bus);
+        final BulkheadWorkQueue queue = manager.getWorkQueue(name, weight, maxConcurrency, queueSize);
+        endpoint.setExecutor(queue);
+        endpoint.addCleanupHook(new Closeable() {
+            public void close() throws IOException {
+                manager.release(queue);
+            }
+        });
+    }
+}
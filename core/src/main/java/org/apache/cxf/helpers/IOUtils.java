@@ -31,9 +31,12 @@ import java.io.PushbackInputStream;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 
 import org.apache.cxf.io.CopyingOutputStream;
+import org.apache.cxf.io.FileChannelSource;
 import org.apache.cxf.io.Transferable;
 
 public final class IOUtils {
@@ -133,13 +136,54 @@ public final class IOUtils {
         return newStringFromBytes(bytes, UTF8_CHARSET.name(), start, length);
     }
 
+    /**
+     * Copies the input to the output.  File backed input is transferred through
+     * its channel, see {@link #transferTo(FileChannel, WritableByteChannel)}.
+     * @return the number of bytes copied, Integer.MAX_VALUE if a channel transfer
+     *         copied more than that
+     */
     public static int copy(final InputStream input, final OutputStream output)
         throws IOException {
         if (output instanceof CopyingOutputStream) {
             return ((CopyingOutputStream)output).copyFrom(input);
         }
+        if (input instanceof FileChannelSource) {
+            if (output instanceof FileOutputStream) {
+                return toInt(transferTo(((FileChannelSource)input).getChannel(), 
+                                        ((FileOutputStream)output).getChannel()));
+            } else if (output instanceof WritableByteChannel) {
+                return toInt(transferTo(((FileChannelSource)input).getChannel(), 
+                                        (WritableByteChannel)output));
+            }
+        }
         return copy(input, output, DEFAULT_BUFFER_SIZE);
     }
+    
+    private static int toInt(long count) {
+        return count > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int)count;
+    }
+    
+    /**
+     * Transfers the content of the file channel from its current position to 
+     * the end, leaving the channel positioned at its end.  Depending on the target,
+     * the transfer happens in the kernel or through a memory mapped view of the file.
+     * @return the number of bytes transferred
+     */
+    public static long transferTo(FileChannel input, WritableByteChannel output) throws IOException {
+        long position = input.position();
+        long size = input.size();
+        long total = 0;
+        while (position < size) {
+            long n = input.transferTo(position, size - position, output);
+            if (n <= 0) {
+                break;
+            }
+            position += n;
+            total += n;
+        }
+        input.position(position);
+        return total;
+    }
 
     public static int copyAndCloseInput(final InputStream input,
             final OutputStream output) throws IOException {
@@ -156,11 +156,12 @@ public class ServiceInvokerInterceptor extends AbstractPhaseInterceptor<Message>
     }
 
     /**
-     * Get the Executor for this invocation.
+     * Get the Executor for this invocation, the one of the endpoint if set,
+     * otherwise the one of the service.
      * @param endpoint
      */
     private Executor getExecutor(final Endpoint endpoint) {
-        return endpoint.getService().getExecutor();
+        return endpoint.getExecutor();
     }
     
     private void copyJaxwsProperties(Message inMsg, Message outMsg) {       
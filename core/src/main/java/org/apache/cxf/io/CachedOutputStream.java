@@ -31,8 +31,11 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.security.GeneralSecurityException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -45,11 +48,13 @@ import org.apache.cxf.common.util.SystemPropertyAction;
 import org.apache.cxf.helpers.FileUtils;
 import org.apache.cxf.helpers.IOUtils;
 import org.apache.cxf.helpers.LoadingByteArrayOutputStream;
+import org.apache.cxf.io.CachedStreamMemoryBudget.Tier;
 
 public class CachedOutputStream extends OutputStream {
     private static final File DEFAULT_TEMP_DIR;
     private static int defaultThreshold;
     private static long defaultMaxSize;
+    private static long defaultOffHeapThreshold;
     private static String defaultCipherTransformation;
     static {
         
@@ -67,6 +72,7 @@ public class CachedOutputStream extends OutputStream {
 
         setDefaultThreshold(-1);
         setDefaultMaxSize(-1);
+        setDefaultOffHeapThreshold(-1);
         setDefaultCipherTransformation(null);
     }
 
@@ -75,6 +81,7 @@ public class CachedOutputStream extends OutputStream {
 
     private long threshold = defaultThreshold;
     private long maxSize = defaultMaxSize;
+    private long offHeapThreshold = defaultOffHeapThreshold;
 
     private long totalLength;
 
@@ -86,6 +93,11 @@ public class CachedOutputStream extends OutputStream {
     private boolean allowDeleteOfFile = true;
     private String cipherTransformation = defaultCipherTransformation;
     private CipherPair ciphers;
+    
+    private Bus bus;
+    private CachedStreamMemoryBudget.Reservation reservation;
+    // bytes of the current heap or disk content accounted for in the memory budget
+    private long accounted;
 
     private List<CachedOutputStreamCallback> callbacks;
     
@@ -104,6 +116,7 @@ public class CachedOutputStream extends OutputStream {
 
     private void readBusProperties() {
         Bus b = BusFactory.getThreadDefaultBus(false);
+        bus = b;
         if (b != null) {
             String v = getBusProperty(b, "bus.io.CachedOutputStream.Threshold", null);
             if (v != null && threshold == defaultThreshold) {
@@ -113,6 +126,10 @@ public class CachedOutputStream extends OutputStream {
             if (v != null) {
                 maxSize = Integer.parseInt(v);
             }
+            v = getBusProperty(b, "bus.io.CachedOutputStream.OffHeapThreshold", null);
+            if (v != null) {
+                offHeapThreshold = Integer.parseInt(v);
+            }
             v = getBusProperty(b, "bus.io.CachedOutputStream.CipherTransformation", null);
             if (v != null) {
                 cipherTransformation = v;
@@ -211,6 +228,9 @@ public class CachedOutputStream extends OutputStream {
         }
         doClose();
         currentStream.close();
+        if (inmem && !(currentStream instanceof OffHeapOutputStream)) {
+            releaseAccounted(Tier.HEAP);
+        }
         maybeDeleteTempFile(currentStream);
         postClose();
     }
@@ -252,6 +272,12 @@ public class CachedOutputStream extends OutputStream {
                     if (copyOldContent && byteOut.size() > 0) {
                         byteOut.writeTo(out);
                     }
+                    if (byteOut instanceof OffHeapOutputStream) {
+                        streamList.remove(byteOut);
+                        ((OffHeapOutputStream)byteOut).release();
+                    } else {
+                        releaseAccounted(Tier.HEAP);
+                    }
                 } else {
                     throw new IOException("Unknown format of currentStream");
                 }
@@ -263,6 +289,7 @@ public class CachedOutputStream extends OutputStream {
                     IOUtils.copyAndCloseInput(fin, out);
                 }
                 streamList.remove(currentStream);
+                releaseAccounted(Tier.DISK);
                 deleteTempFile();
                 inmem = true;
             }
@@ -287,6 +314,8 @@ public class CachedOutputStream extends OutputStream {
             } else {
                 throw new IOException("Unknown format of currentStream");
             }
+        } else if (cipherTransformation == null) {
+            return readTempFile();
         } else {
             // read the file
             InputStream fin = createInputStream(tempFile);
@@ -413,20 +442,57 @@ public class CachedOutputStream extends OutputStream {
 
     }
 
-    private  void enforceLimits() throws IOException {
+    private  void enforceLimits(int len) throws IOException {
         if (maxSize > 0 && totalLength > maxSize) {
             throw new CacheSizeExceededException();
         }
-        if (inmem && totalLength > threshold && currentStream instanceof ByteArrayOutputStream) {
-            createFileOutputStream();
-        }       
+        if (inmem && currentStream instanceof ByteArrayOutputStream) {
+            if (totalLength > threshold) {
+                createFileOutputStream();
+            } else if (currentStream instanceof OffHeapOutputStream) {
+                if (!((OffHeapOutputStream)currentStream).ensureCapacity(len)) {
+                    createFileOutputStream();
+                }
+            } else if (offHeapThreshold > 0 && totalLength > offHeapThreshold) {
+                createOffHeapOutputStream(len);
+            } else if (!reserve(Tier.HEAP)) {
+                createFileOutputStream();
+            }
+        } else if (!inmem) {
+            reserve(Tier.DISK);
+        }
+    }
+    
+    private CachedStreamMemoryBudget.Reservation getReservation() {
+        // created lazily, streams that never outgrow the first buffer do not need it
+        if (reservation == null) {
+            reservation = CachedStreamMemoryBudget.getInstance(bus).newReservation(this);
+        }
+        return reservation;
+    }
+    
+    private boolean reserve(Tier tier) {
+        while (totalLength - accounted > CachedStreamMemoryBudget.BUFFER_SIZE) {
+            if (!getReservation().reserve(tier, CachedStreamMemoryBudget.BUFFER_SIZE, tempFileFailed)) {
+                return false;
+            }
+            accounted += CachedStreamMemoryBudget.BUFFER_SIZE;
+        }
+        return true;
+    }
+    
+    private void releaseAccounted(Tier tier) {
+        if (accounted > 0) {
+            reservation.release(tier, accounted);
+            accounted = 0;
+        }
     }
 
     public void write(byte[] b, int off, int len) throws IOException {
         if (!outputLocked) {
             onWrite();
             this.totalLength += len;
-            enforceLimits();
+            enforceLimits(len);
             currentStream.write(b, off, len);
         }
     }
@@ -435,7 +501,7 @@ public class CachedOutputStream extends OutputStream {
         if (!outputLocked) {
             onWrite();
             this.totalLength += b.length;
-            enforceLimits();
+            enforceLimits(b.length);
             currentStream.write(b);
         }
     }
@@ -444,11 +510,25 @@ public class CachedOutputStream extends OutputStream {
         if (!outputLocked) {
             onWrite();
             this.totalLength++;
-            enforceLimits();
+            enforceLimits(1);
             currentStream.write(b);
         }
     }
 
+    private void createOffHeapOutputStream(int len) throws IOException {
+        ByteArrayOutputStream bout = (ByteArrayOutputStream)currentStream;
+        OffHeapOutputStream out = new OffHeapOutputStream(getReservation());
+        if (!out.ensureCapacity(bout.size() + len)) {
+            out.release();
+            createFileOutputStream();
+            return;
+        }
+        bout.writeTo(out);
+        releaseAccounted(Tier.HEAP);
+        currentStream = out;
+        streamList.add(out);
+    }
+
     private void createFileOutputStream() throws IOException {
         if (tempFileFailed) {
             return;
@@ -463,6 +543,12 @@ public class CachedOutputStream extends OutputStream {
             
             currentStream = createOutputStream(tempFile);
             bout.writeTo(currentStream);
+            if (bout instanceof OffHeapOutputStream) {
+                streamList.remove(bout);
+                ((OffHeapOutputStream)bout).release();
+            } else {
+                releaseAccounted(Tier.HEAP);
+            }
             inmem = false;
             streamList.add(currentStream);
         } catch (Exception ex) {
@@ -487,6 +573,19 @@ public class CachedOutputStream extends OutputStream {
         if (inmem) {
             if (currentStream instanceof LoadingByteArrayOutputStream) {
                 return ((LoadingByteArrayOutputStream) currentStream).createInputStream();
+            } else if (currentStream instanceof OffHeapOutputStream) {
+                InputStream in = new OffHeapOutputStream.BufferInputStream(
+                        ((OffHeapOutputStream)currentStream).getContent()) {
+                    private boolean closed;
+                    public void close() throws IOException {
+                        if (!closed) {
+                            closed = true;
+                            maybeDeleteTempFile(this);
+                        }
+                    }
+                };
+                streamList.add(in);
+                return in;
             } else if (currentStream instanceof ByteArrayOutputStream) {
                 return new ByteArrayInputStream(((ByteArrayOutputStream) currentStream).toByteArray());
             } else {
@@ -533,6 +632,7 @@ public class CachedOutputStream extends OutputStream {
                     //ignore
                 }
             }
+            releaseAccounted(Tier.DISK);
             deleteTempFile();
             currentStream = new LoadingByteArrayOutputStream(1024);
             inmem = true;
@@ -554,6 +654,20 @@ public class CachedOutputStream extends OutputStream {
         this.maxSize = maxSize;
     }
 
+    public long getOffHeapThreshold() {
+        return offHeapThreshold;
+    }
+    /**
+     * Sets the size beyond which the content is moved from the heap into pooled
+     * direct buffers until it exceeds the threshold and spills to disk.  Like
+     * the heap content, the off-heap content can still be read after the stream
+     * is closed; the buffers are only released when the stream is reset or
+     * garbage collected.  Not positive values disable the off-heap tier.
+     */
+    public void setOffHeapThreshold(long offHeapThreshold) {
+        this.offHeapThreshold = offHeapThreshold;
+    }
+
     public void setCipherTransformation(String cipherTransformation) {
         this.cipherTransformation = cipherTransformation;
     }
@@ -566,6 +680,14 @@ public class CachedOutputStream extends OutputStream {
         }
         defaultMaxSize = l;
     }
+    public static void setDefaultOffHeapThreshold(long l) {
+        if (l == -1) {
+            String s = SystemPropertyAction.getProperty("org.apache.cxf.io.CachedOutputStream.OffHeapThreshold",
+                "-1");
+            l = Long.parseLong(s);
+        }
+        defaultOffHeapThreshold = l;
+    }
     public static void setDefaultThreshold(int i) {
         if (i == -1) {
             String s = SystemPropertyAction.getProperty("org.apache.cxf.io.CachedOutputStream.Threshold",
@@ -608,8 +730,25 @@ public class CachedOutputStream extends OutputStream {
         return out;
     }
 
+    private byte[] readTempFile() throws IOException {
+        try (FileInputStream fin = new FileInputStream(tempFile)) {
+            FileChannel channel = fin.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Cached file is too large to be read into a byte array");
+            }
+            // the size is known, so read straight into the final array
+            ByteBuffer buffer = ByteBuffer.allocate((int)size);
+            int n = 0;
+            while (buffer.hasRemaining() && n != -1) {
+                n = channel.read(buffer);
+            }
+            return buffer.hasRemaining() ? Arrays.copyOf(buffer.array(), buffer.position()) : buffer.array();
+        }
+    }
+
     private InputStream createInputStream(File file) throws IOException {
-        InputStream in = new FileInputStream(file);
+        InputStream in = new ChannelFileInputStream(file);
         if (cipherTransformation != null) {
             in = new CipherInputStream(in, ciphers.getDecryptor()) {
                 boolean closed;
@@ -624,7 +763,17 @@ public class CachedOutputStream extends OutputStream {
         return in;
     }
 
-    private class TransferableFileInputStream extends FileInputStream implements Transferable {
+    /**
+     * Lets channel aware output streams transfer the cached file without 
+     * copying it through byte arrays.
+     */
+    private static class ChannelFileInputStream extends FileInputStream implements FileChannelSource {
+        ChannelFileInputStream(File file) throws FileNotFoundException {
+            super(file);
+        }
+    }
+
+    private class TransferableFileInputStream extends ChannelFileInputStream implements Transferable {
         private boolean closed;
         private File sourceFile;
         
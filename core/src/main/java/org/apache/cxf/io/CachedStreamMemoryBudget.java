@@ -0,0 +1,328 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.cxf.io;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.apache.cxf.Bus;
+import org.apache.cxf.common.logging.LogUtils;
+import org.apache.cxf.common.util.SystemPropertyAction;
+import org.apache.cxf.management.InstrumentationManager;
+import org.apache.cxf.management.ManagedComponent;
+import org.apache.cxf.management.ManagementConstants;
+import org.apache.cxf.management.annotation.ManagedAttribute;
+import org.apache.cxf.management.annotation.ManagedResource;
+
+/**
+ * Tracks the memory held by all the {@link CachedOutputStream}s of a bus and
+ * pools the direct buffers used for their off-heap tier.  When a memory
+ * budget is configured, streams that would take the held memory beyond it
+ * spill to disk early instead of growing further in memory.
+ * <p>
+ * The first buffer of every stream is not accounted for so that small
+ * messages never touch the shared counters.
+ * <p>
+ * A stream holds its memory through a {@link Reservation}.  When a stream is
+ * garbage collected while it still holds memory, for example because it was
+ * never closed, the reservation is given back the next time the budget is used.
+ */
+@ManagedResource(componentName = "CachedStreamMemory", 
+                 description = "Memory held by the cached output streams of the bus")
+public class CachedStreamMemoryBudget implements ManagedComponent {
+    public static final String MEMORY_BUDGET_PROPERTY = "bus.io.CachedOutputStream.MemoryBudget";
+    public static final String MEMORY_BUDGET_SYSTEM_PROPERTY 
+        = "org.apache.cxf.io.CachedOutputStream.MemoryBudget";
+    
+    static final int BUFFER_SIZE = 64 * 1024;
+    
+    enum Tier {
+        HEAP, OFF_HEAP, DISK
+    }
+    
+    private static final Logger LOG = LogUtils.getLogger(CachedStreamMemoryBudget.class);
+    private static final String TYPE_VALUE = "CachedStreamMemory";
+    private static final int MAX_POOLED_BUFFERS = 64;
+    private static final CachedStreamMemoryBudget DEFAULT_BUDGET 
+        = new CachedStreamMemoryBudget(null, getDefaultLimit());
+    
+    private final Bus bus;
+    private final long limit;
+    private final AtomicLong memoryBytes = new AtomicLong();
+    private final AtomicLong heapBytes = new AtomicLong();
+    private final AtomicLong offHeapBytes = new AtomicLong();
+    private final AtomicLong diskBytes = new AtomicLong();
+    private final AtomicLong earlySpills = new AtomicLong();
+    private final Queue<ByteBuffer> pool = new ConcurrentLinkedQueue<ByteBuffer>();
+    private final AtomicInteger pooled = new AtomicInteger();
+    private final ReferenceQueue<Object> collected = new ReferenceQueue<Object>();
+    // keeps the reservations that hold memory reachable until their stream is collected
+    private final Set<Reservation> holding 
+        = Collections.newSetFromMap(new ConcurrentHashMap<Reservation, Boolean>());
+    
+    public CachedStreamMemoryBudget(Bus bus, long limit) {
+        this.bus = bus;
+        this.limit = limit;
+    }
+    
+    /**
+     * Returns the budget registered on the bus, creating and registering it
+     * on first use.  Streams created without a bus share a process wide budget.
+     */
+    public static CachedStreamMemoryBudget getInstance(Bus bus) {
+        if (bus == null) {
+            return DEFAULT_BUDGET;
+        }
+        CachedStreamMemoryBudget budget = bus.getExtension(CachedStreamMemoryBudget.class);
+        if (budget == null) {
+            synchronized (CachedStreamMemoryBudget.class) {
+                budget = bus.getExtension(CachedStreamMemoryBudget.class);
+                if (budget == null) {
+                    Object v = bus.getProperty(MEMORY_BUDGET_PROPERTY);
+                    long l = v == null ? getDefaultLimit() : Long.parseLong(v.toString());
+                    budget = new CachedStreamMemoryBudget(bus, l);
+                    bus.setExtension(budget, CachedStreamMemoryBudget.class);
+                    InstrumentationManager imanager = bus.getExtension(InstrumentationManager.class);
+                    if (imanager != null) {
+                        try {
+                            imanager.register(budget);
+                        } catch (JMException jmex) {
+                            LOG.log(Level.WARNING, jmex.getMessage(), jmex);
+                        }
+                    }
+                }
+            }
+        }
+        return budget;
+    }
+    
+    private static long getDefaultLimit() {
+        return Long.parseLong(SystemPropertyAction.getProperty(MEMORY_BUDGET_SYSTEM_PROPERTY, "-1"));
+    }
+    
+    /**
+     * Creates the reservation through which the given stream holds memory.
+     */
+    Reservation newReservation(Object stream) {
+        return new Reservation(this, stream, collected);
+    }
+    
+    /**
+     * Gives back the memory still held by streams that have been garbage collected.
+     */
+    void expunge() {
+        for (Reference<?> ref = collected.poll(); ref != null; ref = collected.poll()) {
+            ((Reservation)ref).releaseAll();
+        }
+    }
+    
+    /**
+     * Accounts for bytes held in the given tier.  Unless forced, memory
+     * reservations that would exceed the budget are refused.
+     */
+    boolean reserve(Tier tier, long bytes, boolean force) {
+        expunge();
+        if (tier != Tier.DISK) {
+            if (limit > 0 && !force) {
+                long held;
+                do {
+                    held = memoryBytes.get();
+                    if (held + bytes > limit) {
+                        earlySpills.incrementAndGet();
+                        return false;
+                    }
+                } while (!memoryBytes.compareAndSet(held, held + bytes));
+            } else {
+                memoryBytes.addAndGet(bytes);
+            }
+        }
+        getCounter(tier).addAndGet(bytes);
+        return true;
+    }
+    
+    void release(Tier tier, long bytes) {
+        if (bytes == 0) {
+            return;
+        }
+        if (tier != Tier.DISK) {
+            memoryBytes.addAndGet(-bytes);
+        }
+        getCounter(tier).addAndGet(-bytes);
+    }
+    
+    /**
+     * Borrows a cleared direct buffer of {@link #BUFFER_SIZE} bytes, or returns 
+     * null when the budget does not allow for it and the request is not forced.
+     */
+    ByteBuffer acquireBuffer(boolean force) {
+        if (!reserve(Tier.OFF_HEAP, BUFFER_SIZE, force)) {
+            return null;
+        }
+        ByteBuffer buffer = pool.poll();
+        if (buffer != null) {
+            pooled.decrementAndGet();
+            return buffer;
+        }
+        return ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+    
+    void releaseBuffer(ByteBuffer buffer) {
+        release(Tier.OFF_HEAP, BUFFER_SIZE);
+        buffer.clear();
+        if (pooled.incrementAndGet() <= MAX_POOLED_BUFFERS) {
+            pool.offer(buffer);
+        } else {
+            pooled.decrementAndGet();
+        }
+    }
+    
+    private AtomicLong getCounter(Tier tier) {
+        switch (tier) {
+        case HEAP:
+            return heapBytes;
+        case OFF_HEAP:
+            return offHeapBytes;
+        default:
+            return diskBytes;
+        }
+    }
+    
+    @ManagedAttribute(description = "The memory budget in bytes, not limited when not positive")
+    public long getMemoryBudget() {
+        return limit;
+    }
+
+    @ManagedAttribute(description = "The bytes held on the heap by cached streams")
+    public long getHeapBytes() {
+        expunge();
+        return heapBytes.get();
+    }
+
+    @ManagedAttribute(description = "The bytes held in direct buffers by cached streams")
+    public long getOffHeapBytes() {
+        expunge();
+        return offHeapBytes.get();
+    }
+
+    @ManagedAttribute(description = "The bytes held in temporary files by cached streams")
+    public long getDiskBytes() {
+        expunge();
+        return diskBytes.get();
+    }
+
+    @ManagedAttribute(description = "The number of direct buffers kept for reuse")
+    public int getPooledBuffers() {
+        return pooled.get();
+    }
+
+    @ManagedAttribute(description = "The number of times a stream spilled to disk because "
+                      + "the memory budget was exhausted")
+    public long getEarlySpills() {
+        return earlySpills.get();
+    }
+    
+    public ObjectName getObjectName() throws JMException {
+        StringBuilder buffer = new StringBuilder(ManagementConstants.DEFAULT_DOMAIN_NAME).append(':');
+        buffer.append(ManagementConstants.BUS_ID_PROP).append('=').append(bus.getId()).append(',');
+        buffer.append(ManagementConstants.TYPE_PROP).append('=').append(TYPE_VALUE).append(',');
+        buffer.append(ManagementConstants.INSTANCE_ID_PROP).append('=').append(hashCode());
+        return new ObjectName(buffer.toString());
+    }
+    
+    /**
+     * The memory held by one stream.  Only the stream uses it, the budget only
+     * takes over what is left once the stream has been garbage collected.
+     */
+    static final class Reservation extends PhantomReference<Object> {
+        private final CachedStreamMemoryBudget budget;
+        private final long[] held = new long[Tier.values().length];
+        private boolean registered;
+        
+        Reservation(CachedStreamMemoryBudget budget, Object stream, ReferenceQueue<Object> queue) {
+            super(stream, queue);
+            this.budget = budget;
+        }
+        
+        synchronized boolean reserve(Tier tier, long bytes, boolean force) {
+            if (!budget.reserve(tier, bytes, force)) {
+                return false;
+            }
+            held(tier, bytes);
+            return true;
+        }
+        
+        synchronized void release(Tier tier, long bytes) {
+            budget.release(tier, bytes);
+            held(tier, -bytes);
+        }
+        
+        synchronized ByteBuffer acquireBuffer(boolean force) {
+            ByteBuffer buffer = budget.acquireBuffer(force);
+            if (buffer != null) {
+                held(Tier.OFF_HEAP, BUFFER_SIZE);
+            }
+            return buffer;
+        }
+        
+        synchronized void releaseBuffer(ByteBuffer buffer) {
+            budget.releaseBuffer(buffer);
+            held(Tier.OFF_HEAP, -BUFFER_SIZE);
+        }
+        
+        synchronized void releaseAll() {
+            for (Tier tier : Tier.values()) {
+                // the buffers of a collected stream are freed with it, only the accounting is left
+                budget.release(tier, held[tier.ordinal()]);
+                held[tier.ordinal()] = 0;
+            }
+            budget.holding.remove(this);
+            registered = false;
+        }
+        
+        private void held(Tier tier, long bytes) {
+            held[tier.ordinal()] += bytes;
+            boolean holds = false;
+            for (long h : held) {
+                holds |= h != 0;
+            }
+            if (holds != registered) {
+                registered = holds;
+                if (holds) {
+                    budget.holding.add(this);
+                } else {
+                    budget.holding.remove(this);
+                }
+            }
+        }
+    }
+}
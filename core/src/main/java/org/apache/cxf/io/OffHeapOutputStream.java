@@ -0,0 +1,230 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.cxf.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The off-heap tier of {@link CachedOutputStream}: the content is kept in
+ * direct buffers borrowed from a {@link CachedStreamMemoryBudget} through the
+ * reservation of the cached stream.  It extends
+ * ByteArrayOutputStream so the in-memory code paths of the cached stream keep
+ * working, but never uses the inherited byte array.
+ */
+class OffHeapOutputStream extends ByteArrayOutputStream {
+    private static final int BUFFER_SIZE = CachedStreamMemoryBudget.BUFFER_SIZE;
+    
+    private final CachedStreamMemoryBudget.Reservation reservation;
+    private final List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+    private int size;
+    
+    OffHeapOutputStream(CachedStreamMemoryBudget.Reservation reservation) {
+        super(0);
+        this.reservation = reservation;
+    }
+    
+    /**
+     * Borrows enough buffers to hold the given number of additional bytes.
+     * @return false if the memory budget does not allow for them
+     */
+    boolean ensureCapacity(long len) {
+        while ((long)buffers.size() * BUFFER_SIZE < size + len) {
+            ByteBuffer buffer = reservation.acquireBuffer(false);
+            if (buffer == null) {
+                return false;
+            }
+            buffers.add(buffer);
+        }
+        return true;
+    }
+    
+    /**
+     * Returns all the buffers to the pool, the content is lost.
+     */
+    void release() {
+        for (ByteBuffer buffer : buffers) {
+            reservation.releaseBuffer(buffer);
+        }
+        buffers.clear();
+        size = 0;
+    }
+    
+    private ByteBuffer current() {
+        int idx = size / BUFFER_SIZE;
+        if (idx == buffers.size()) {
+            buffers.add(reservation.acquireBuffer(true));
+        }
+        return buffers.get(idx);
+    }
+    
+    /**
+     * Returns a read-only view of the content, the views share the buffers
+     * so they must not be used after {@link #release()}.
+     */
+    ByteBuffer[] getContent() {
+        int count = (size + BUFFER_SIZE - 1) / BUFFER_SIZE;
+        ByteBuffer[] content = new ByteBuffer[count];
+        for (int x = 0; x < count; x++) {
+            ByteBuffer view = buffers.get(x).asReadOnlyBuffer();
+            view.position(0);
+            view.limit(Math.min(BUFFER_SIZE, size - x * BUFFER_SIZE));
+            content[x] = view;
+        }
+        return content;
+    }
+    
+    public void write(int b) {
+        current().put((byte)b);
+        size++;
+    }
+    
+    public void write(byte[] b, int off, int len) {
+        while (len > 0) {
+            ByteBuffer buffer = current();
+            int n = Math.min(len, buffer.remaining());
+            buffer.put(b, off, n);
+            off += n;
+            len -= n;
+            size += n;
+        }
+    }
+    
+    public void writeTo(OutputStream out) throws IOException {
+        byte[] bytes = new byte[Math.min(size, 8192)];
+        for (ByteBuffer view : getContent()) {
+            while (view.hasRemaining()) {
+                int n = Math.min(bytes.length, view.remaining());
+                view.get(bytes, 0, n);
+                out.write(bytes, 0, n);
+            }
+        }
+    }
+    
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[size];
+        int off = 0;
+        for (ByteBuffer view : getContent()) {
+            int n = view.remaining();
+            view.get(bytes, off, n);
+            off += n;
+        }
+        return bytes;
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public void reset() {
+        for (ByteBuffer buffer : buffers) {
+            buffer.clear();
+        }
+        size = 0;
+    }
+    
+    public String toString() {
+        return new String(toByteArray());
+    }
+    
+    public String toString(String charsetName) throws UnsupportedEncodingException {
+        return new String(toByteArray(), charsetName);
+    }
+    
+    static class BufferInputStream extends InputStream {
+        private final ByteBuffer[] content;
+        private int index;
+        private int mark;
+        private int markPosition;
+        
+        BufferInputStream(ByteBuffer[] content) {
+            this.content = content;
+        }
+        
+        private ByteBuffer current() {
+            while (index < content.length && !content[index].hasRemaining()) {
+                index++;
+            }
+            return index < content.length ? content[index] : null;
+        }
+        
+        public int read() {
+            ByteBuffer buffer = current();
+            return buffer == null ? -1 : buffer.get() & 0xFF;
+        }
+        
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            ByteBuffer buffer = current();
+            if (buffer == null) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+        
+        public long skip(long n) {
+            long skipped = 0;
+            ByteBuffer buffer = current();
+            while (buffer != null && skipped < n) {
+                int s = (int)Math.min(n - skipped, buffer.remaining());
+                buffer.position(buffer.position() + s);
+                skipped += s;
+                buffer = current();
+            }
+            return skipped;
+        }
+        
+        public int available() {
+            long available = 0;
+            for (int x = index; x < content.length; x++) {
+                available += content[x].remaining();
+            }
+            return (int)Math.min(available, Integer.MAX_VALUE);
+        }
+        
+        public boolean markSupported() {
+            return true;
+        }
+        
+        public synchronized void mark(int readlimit) {
+            mark = index;
+            markPosition = index < content.length ? content[index].position() : 0;
+        }
+        
+        public synchronized void reset() {
+            for (int x = mark + 1; x <= index && x < content.length; x++) {
+                content[x].position(0);
+            }
+            if (mark < content.length) {
+                content[mark].position(markPosition);
+            }
+            index = mark;
+        }
+    }
+}
@@ -92,30 +92,39 @@ public class ExchangeImpl extends ConcurrentHashMap<String, Object>  implements
     }
     
     public <T> T get(Class<T> key) {
-        T t = key.cast(get(key.getName()));
-        
+        // the typed slots are checked first so the lookups done by nearly
+        // every interceptor do not have to go through the hash table
+        Object t = getTypedSlot(key);
         if (t == null) {
-            if (key == Bus.class) {
-                t = key.cast(bus);
-            } else if (key == OperationInfo.class && bindingOp != null) {
-                t = key.cast(bindingOp.getOperationInfo());
-            } else if (key == BindingOperationInfo.class) {
-                t = key.cast(bindingOp);
-            } else if (key == Endpoint.class) {
-                t = key.cast(endpoint);
-            } else if (key == Service.class) {
-                t = key.cast(service);
-            } else if (key == Binding.class) {
-                t = key.cast(binding);
+            t = get(key.getName());
+        }
+        if (t == null) {
+            if (key == OperationInfo.class && bindingOp != null) {
+                t = bindingOp.getOperationInfo();
             } else if (key == BindingInfo.class && binding != null) {
-                t = key.cast(binding.getBindingInfo());
+                t = binding.getBindingInfo();
             } else if (key == InterfaceInfo.class && endpoint != null) {
-                t = key.cast(endpoint.getEndpointInfo().getService().getInterface());
+                t = endpoint.getEndpointInfo().getService().getInterface();
             } else if (key == ServiceInfo.class && endpoint != null) {
-                t = key.cast(endpoint.getEndpointInfo().getService());
+                t = endpoint.getEndpointInfo().getService();
             }
         }
-        return t;
+        return key.cast(t);
+    }
+
+    private Object getTypedSlot(Class<?> key) {
+        if (key == BindingOperationInfo.class) {
+            return bindingOp;
+        } else if (key == Endpoint.class) {
+            return endpoint;
+        } else if (key == Bus.class) {
+            return bus;
+        } else if (key == Service.class) {
+            return service;
+        } else if (key == Binding.class) {
+            return binding;
+        }
+        return null;
     }
 
     public void putAll(Map<? extends String, ?> m) {
@@ -128,9 +137,7 @@ public class ExchangeImpl extends ConcurrentHashMap<String, Object>  implements
     }
 
     public <T> void put(Class<T> key, T value) {
-        if (value == null) {
-            super.remove(key);
-        } else if (key == Bus.class) {
+        if (key == Bus.class) {
             resetContextCaches();
             bus = (Bus)value;
         } else if (key == Endpoint.class) {
@@ -143,6 +150,8 @@ public class ExchangeImpl extends ConcurrentHashMap<String, Object>  implements
             bindingOp = (BindingOperationInfo)value;
         } else if (key == Binding.class) {
             binding = (Binding)value;
+        } else if (value == null) {
+            super.remove(key);
         } else {
             super.put(key.getName(), value);
         }
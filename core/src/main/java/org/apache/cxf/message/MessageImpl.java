@@ -19,9 +19,13 @@
 
 package org.apache.cxf.message;
 
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 
@@ -45,6 +49,10 @@ public class MessageImpl extends StringMapImpl implements Message {
     private Object[] contents = new Object[20];
     private int index;
     
+    // values of the PropertySlots keys, a slot is in use when its bit is set in slotMask
+    private Object[] slots;
+    private int slotMask;
+    
     private Map<String, Object> contextCache;
     
     
@@ -52,9 +60,15 @@ public class MessageImpl extends StringMapImpl implements Message {
         //nothing
     }
     public MessageImpl(Message m) {
-        super(m);
         if (m instanceof MessageImpl) {
             MessageImpl impl = (MessageImpl)m;
+            for (Map.Entry<String, Object> e : impl.hashedEntrySet()) {
+                super.put(e.getKey(), e.getValue());
+            }
+            if (impl.slots != null) {
+                slots = impl.slots.clone();
+                slotMask = impl.slotMask;
+            }
             exchange = impl.getExchange();
             id = impl.id;
             interceptorChain = impl.interceptorChain;
@@ -167,7 +181,78 @@ public class MessageImpl extends StringMapImpl implements Message {
         if (contextCache != null) {
             contextCache.put(key, value);
         }
-        return super.put(key, value);
+        int slot = PropertySlots.indexOf(key);
+        if (slot == PropertySlots.NONE) {
+            return super.put(key, value);
+        }
+        return setSlot(slot, value);
+    }
+    public Object get(Object key) {
+        int slot = PropertySlots.indexOf(key);
+        if (slot == PropertySlots.NONE) {
+            return super.get(key);
+        }
+        return slots == null ? null : slots[slot];
+    }
+    public boolean containsKey(Object key) {
+        int slot = PropertySlots.indexOf(key);
+        if (slot == PropertySlots.NONE) {
+            return super.containsKey(key);
+        }
+        return (slotMask & (1 << slot)) != 0;
+    }
+    public Object remove(Object key) {
+        int slot = PropertySlots.indexOf(key);
+        if (slot == PropertySlots.NONE) {
+            return super.remove(key);
+        }
+        return clearSlot(slot);
+    }
+    public void putAll(Map<? extends String, ? extends Object> m) {
+        for (Map.Entry<? extends String, ? extends Object> e : m.entrySet()) {
+            put(e.getKey(), e.getValue());
+        }
+    }
+    public int size() {
+        return super.size() + Integer.bitCount(slotMask);
+    }
+    public boolean isEmpty() {
+        return slotMask == 0 && super.isEmpty();
+    }
+    public boolean containsValue(Object value) {
+        for (int slot = nextSlot(0); slot != PropertySlots.NONE; slot = nextSlot(slot + 1)) {
+            if (value == null ? slots[slot] == null : value.equals(slots[slot])) {
+                return true;
+            }
+        }
+        return super.containsValue(value);
+    }
+    public void clear() {
+        super.clear();
+        if (slots != null) {
+            Arrays.fill(slots, null);
+        }
+        slotMask = 0;
+    }
+    public Set<Map.Entry<String, Object>> entrySet() {
+        return new EntrySet();
+    }
+    public Set<String> keySet() {
+        return new KeySet();
+    }
+    public Collection<Object> values() {
+        return new Values();
+    }
+    public Object clone() {
+        MessageImpl m = (MessageImpl)super.clone();
+        if (slots != null) {
+            // HashMap.clone copies the slotted entries into the table as well
+            for (int slot = nextSlot(0); slot != PropertySlots.NONE; slot = nextSlot(slot + 1)) {
+                m.removeHashed(PropertySlots.keyAt(slot));
+            }
+            m.slots = slots.clone();
+        }
+        return m;
     }
     public Object getContextualProperty(String key) {
         if (contextCache == null) {
@@ -230,4 +315,152 @@ public class MessageImpl extends StringMapImpl implements Message {
             contextCache.put(key, v);
         }
     }
+
+    private Object setSlot(int slot, Object value) {
+        if (slots == null) {
+            slots = new Object[PropertySlots.size()];
+        }
+        Object old = slots[slot];
+        slots[slot] = value;
+        slotMask |= 1 << slot;
+        return old;
+    }
+    private Object clearSlot(int slot) {
+        if ((slotMask & (1 << slot)) == 0) {
+            return null;
+        }
+        Object old = slots[slot];
+        slots[slot] = null;
+        slotMask &= ~(1 << slot);
+        return old;
+    }
+    private int nextSlot(int from) {
+        int rest = slotMask & (-1 << from);
+        return rest == 0 ? PropertySlots.NONE : Integer.numberOfTrailingZeros(rest);
+    }
+    private Set<Map.Entry<String, Object>> hashedEntrySet() {
+        return super.entrySet();
+    }
+    private void removeHashed(String key) {
+        super.remove(key);
+    }
+
+    private final class SlotEntry implements Map.Entry<String, Object> {
+        private final int slot;
+        
+        SlotEntry(int slot) {
+            this.slot = slot;
+        }
+        public String getKey() {
+            return PropertySlots.keyAt(slot);
+        }
+        public Object getValue() {
+            return slots[slot];
+        }
+        public Object setValue(Object value) {
+            return setSlot(slot, value);
+        }
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>)o;
+            Object v = getValue();
+            return getKey().equals(e.getKey())
+                && (v == null ? e.getValue() == null : v.equals(e.getValue()));
+        }
+        public int hashCode() {
+            Object v = getValue();
+            return getKey().hashCode() ^ (v == null ? 0 : v.hashCode());
+        }
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+    }
+    
+    private abstract class SlotIterator<E> implements Iterator<E> {
+        private int nextSlot = nextSlot(0);
+        private int lastSlot = PropertySlots.NONE;
+        private Iterator<Map.Entry<String, Object>> hashed;
+        
+        public boolean hasNext() {
+            return nextSlot != PropertySlots.NONE || hashed().hasNext();
+        }
+        Map.Entry<String, Object> nextEntry() {
+            if (nextSlot != PropertySlots.NONE) {
+                lastSlot = nextSlot;
+                nextSlot = nextSlot(nextSlot + 1);
+                return new SlotEntry(lastSlot);
+            }
+            lastSlot = PropertySlots.NONE;
+            return hashed().next();
+        }
+        public void remove() {
+            if (lastSlot != PropertySlots.NONE) {
+                clearSlot(lastSlot);
+                lastSlot = PropertySlots.NONE;
+            } else if (hashed == null) {
+                throw new IllegalStateException();
+            } else {
+                hashed.remove();
+            }
+        }
+        private Iterator<Map.Entry<String, Object>> hashed() {
+            if (hashed == null) {
+                hashed = hashedEntrySet().iterator();
+            }
+            return hashed;
+        }
+    }
+    
+    private final class EntrySet extends AbstractSet<Map.Entry<String, Object>> {
+        public Iterator<Map.Entry<String, Object>> iterator() {
+            return new SlotIterator<Map.Entry<String, Object>>() {
+                public Map.Entry<String, Object> next() {
+                    return nextEntry();
+                }
+            };
+        }
+        public int size() {
+            return MessageImpl.this.size();
+        }
+        public void clear() {
+            MessageImpl.this.clear();
+        }
+    }
+    
+    private final class KeySet extends AbstractSet<String> {
+        public Iterator<String> iterator() {
+            return new SlotIterator<String>() {
+                public String next() {
+                    return nextEntry().getKey();
+                }
+            };
+        }
+        public int size() {
+            return MessageImpl.this.size();
+        }
+        public boolean contains(Object o) {
+            return containsKey(o);
+        }
+        public void clear() {
+            MessageImpl.this.clear();
+        }
+    }
+    
+    private final class Values extends AbstractCollection<Object> {
+        public Iterator<Object> iterator() {
+            return new SlotIterator<Object>() {
+                public Object next() {
+                    return nextEntry().getValue();
+                }
+            };
+        }
+        public int size() {
+            return MessageImpl.this.size();
+        }
+        public void clear() {
+            MessageImpl.this.clear();
+        }
+    }
 }
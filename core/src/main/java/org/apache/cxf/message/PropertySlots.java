@@ -0,0 +1,106 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.cxf.message;
+
+import org.apache.cxf.configuration.security.AuthorizationPolicy;
+import org.apache.cxf.headers.Header;
+import org.apache.cxf.security.SecurityContext;
+import org.apache.cxf.security.transport.TLSSessionInfo;
+import org.apache.cxf.service.model.MessageInfo;
+import org.apache.cxf.transport.Destination;
+
+/**
+ * Registry of the message property keys that nearly every invocation reads
+ * or writes.  {@link MessageImpl} keeps the values of these keys in a fixed
+ * array indexed by slot number instead of in its hash table, so storing them
+ * does not allocate a map entry and looking them up with the usual interned
+ * constants is a single identity comparison.
+ */
+final class PropertySlots {
+    static final int NONE = -1;
+
+    private static final String[] KEYS = {
+        Message.PROTOCOL_HEADERS,
+        Message.CONTENT_TYPE,
+        Message.ACCEPT_CONTENT_TYPE,
+        Message.ENCODING,
+        Message.HTTP_REQUEST_METHOD,
+        Message.REQUESTOR_ROLE,
+        Message.INBOUND_MESSAGE,
+        Message.REQUEST_URI,
+        Message.REQUEST_URL,
+        Message.QUERY_STRING,
+        Message.PATH_INFO,
+        Message.BASE_PATH,
+        Message.ENDPOINT_ADDRESS,
+        Message.RESPONSE_CODE,
+        Message.PARTIAL_RESPONSE_MESSAGE,
+        Message.WSDL_OPERATION,
+        Message.ATTACHMENTS,
+        Header.HEADER_LIST,
+        Destination.class.getName(),
+        MessageInfo.class.getName(),
+        FaultMode.class.getName(),
+        SecurityContext.class.getName(),
+        AuthorizationPolicy.class.getName(),
+        TLSSessionInfo.class.getName()
+    };
+
+    // open addressed table of slot + 1, zero marks an empty bucket
+    private static final int[] TABLE = new int[64];
+    private static final int MASK = TABLE.length - 1;
+
+    static {
+        for (int x = 0; x < KEYS.length; x++) {
+            int i = KEYS[x].hashCode() & MASK;
+            while (TABLE[i] != 0) {
+                i = (i + 1) & MASK;
+            }
+            TABLE[i] = x + 1;
+        }
+    }
+
+    private PropertySlots() {
+        //utility class
+    }
+
+    static int size() {
+        return KEYS.length;
+    }
+
+    static String keyAt(int slot) {
+        return KEYS[slot];
+    }
+
+    static int indexOf(Object key) {
+        if (!(key instanceof String)) {
+            return NONE;
+        }
+        for (int i = key.hashCode() & MASK;; i = (i + 1) & MASK) {
+            int s = TABLE[i];
+            if (s == 0) {
+                return NONE;
+            }
+            String k = KEYS[s - 1];
+            if (k == key || k.equals(key)) {
+                return s - 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.phase;
+
+import org.apache.cxf.message.Message;
+
+/**
+ * Receives the time spent, and optionally the bytes allocated, by every interceptor
+ * a {@link PhaseInterceptorChain} invokes.  A profiler is enabled for an endpoint by
+ * storing it in the endpoint's properties under {@link #PROFILER_KEY}; chains running 
+ * messages of other endpoints are not affected.
+ * <p>
+ * The figures are inclusive: an interceptor that runs a nested chain (the
+ * OutgoingChainInterceptor, for example) is charged for the nested interceptors too.
+ */
+public interface InterceptorProfiler {
+    String PROFILER_KEY = InterceptorProfiler.class.getName();
+    
+    /**
+     * Returns the number of bytes allocated so far by the current thread, or -1 if
+     * allocations are not being sampled.
+     */
+    long getAllocatedBytes();
+    
+    /**
+     * Called once an interceptor has returned from handleMessage, normally or not.
+     * @param message the message being intercepted
+     * @param interceptor the interceptor
+     * @param nanos the time spent in handleMessage, in nanoseconds
+     * @param allocatedBytes the bytes allocated by the thread during handleMessage or -1 
+     *        if allocations are not being sampled
+     */
+    void interceptorInvoked(Message message, 
+                            PhaseInterceptor<? extends Message> interceptor,
+                            long nanos,
+                            long allocatedBytes);
+}
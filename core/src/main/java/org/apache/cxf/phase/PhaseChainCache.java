@@ -19,11 +19,11 @@
 
 package org.apache.cxf.phase;
 
-import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.Map;
 import java.util.SortedSet;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.cxf.common.util.ModCountCopyOnWriteArrayList;
 import org.apache.cxf.interceptor.Interceptor;
@@ -35,32 +35,59 @@ import org.apache.cxf.message.Message;
  * phases supplied in the get() methods of this class are defined by default
  * within org.apache.cxf.phase.PhaseManagerImpl.  For an example of this class 
  * in use, check the sourcecode of org.apache.cxf.endpoint.ClientImpl.
+ * <p>
+ * The cache holds up to {@link #getMaxSize()} chains, keyed by the phase list and
+ * by the identity and modification count of each of the provider lists, so callers
+ * that alternate between several provider combinations (a bus level interceptor
+ * shared by many endpoints, for example) do not rebuild the chain on every message.
+ * When the cache is full the least recently used entry is evicted.
  */
 public final class PhaseChainCache {
-    AtomicReference<ChainHolder> lastData = new AtomicReference<ChainHolder>();
+    public static final int DEFAULT_MAX_SIZE = 16;
+    
+    private final Map<ChainKey, ChainHolder> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final int maxSize;
+    
+    public PhaseChainCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+    
+    public PhaseChainCache(int maxSize) {
+        this.maxSize = maxSize < 1 ? 1 : maxSize;
+        this.entries = new LinkedHashMap<ChainKey, ChainHolder>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ChainKey, ChainHolder> eldest) {
+                return size() > PhaseChainCache.this.maxSize;
+            }
+        };
+    }
     
     public PhaseInterceptorChain get(SortedSet<Phase> phaseList,
                                      List<Interceptor<? extends Message>> p1) {
-        return getChain(lastData, phaseList, p1);
+        return getChain(this, phaseList, p1);
     }
 
     public PhaseInterceptorChain get(SortedSet<Phase> phaseList,
                                      List<Interceptor<? extends Message>> p1,
                                      List<Interceptor<? extends Message>> p2) {
-        return getChain(lastData, phaseList, p1, p2);
+        return getChain(this, phaseList, p1, p2);
     }
     public PhaseInterceptorChain get(SortedSet<Phase> phaseList,
                                      List<Interceptor<? extends Message>> p1,
                                      List<Interceptor<? extends Message>> p2,
                                      List<Interceptor<? extends Message>> p3) {
-        return getChain(lastData, phaseList, p1, p2, p3);
+        return getChain(this, phaseList, p1, p2, p3);
     }
     public PhaseInterceptorChain get(SortedSet<Phase> phaseList,
                                      List<Interceptor<? extends Message>> p1,
                                      List<Interceptor<? extends Message>> p2,
                                      List<Interceptor<? extends Message>> p3,
                                      List<Interceptor<? extends Message>> p4) {
-        return getChain(lastData, phaseList, p1, p2, p3, p4);
+        return getChain(this, phaseList, p1, p2, p3, p4);
     }
     public PhaseInterceptorChain get(SortedSet<Phase> phaseList,
                                      List<Interceptor<? extends Message>> p1,
@@ -68,71 +95,160 @@ public final class PhaseChainCache {
                                      List<Interceptor<? extends Message>> p3,
                                      List<Interceptor<? extends Message>> p4,
                                      List<Interceptor<? extends Message>> p5) {
-        return getChain(lastData, phaseList, p1, p2, p3, p4, p5);
+        return getChain(this, phaseList, p1, p2, p3, p4, p5);
+    }
+    
+    public long getHits() {
+        return hits.get();
+    }
+    
+    public long getMisses() {
+        return misses.get();
+    }
+    
+    public int getSize() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+    
+    public int getMaxSize() {
+        return maxSize;
+    }
+    
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
     }
     
     @SafeVarargs
-    static PhaseInterceptorChain getChain(AtomicReference<ChainHolder> lastData,
+    static PhaseInterceptorChain getChain(PhaseChainCache cache,
                                           SortedSet<Phase> phaseList,
-                                         List<Interceptor<? extends Message>> ... providers) {
-        ChainHolder last = lastData.get();
+                                          List<Interceptor<? extends Message>> ... providers) {
+        ChainKey key = new ChainKey(phaseList, providers);
+        ChainHolder holder;
+        synchronized (cache.entries) {
+            //an access ordered get moves the entry to the tail
+            holder = cache.entries.get(key);
+        }
+        if (holder != null && holder.isCurrent(providers)) {
+            cache.hits.incrementAndGet();
+            return holder.chain.cloneChain();
+        }
+        cache.misses.incrementAndGet();
         
-        if (last == null 
-            || !last.matches(providers)) {
-            
-            PhaseInterceptorChain chain = new PhaseInterceptorChain(phaseList);
-            List<ModCountCopyOnWriteArrayList<Interceptor<? extends Message>>> copy 
-                = new ArrayList<ModCountCopyOnWriteArrayList<
-                    Interceptor<? extends Message>>>(providers.length);
-            for (List<Interceptor<? extends Message>> p : providers) {
-                copy.add(new ModCountCopyOnWriteArrayList<Interceptor<? extends Message>>(p));
-                chain.add(p);
+        PhaseInterceptorChain chain = new PhaseInterceptorChain(phaseList);
+        @SuppressWarnings("unchecked")
+        ModCountCopyOnWriteArrayList<Interceptor<? extends Message>>[] copy 
+            = new ModCountCopyOnWriteArrayList[providers.length];
+        List<?>[] origins = new List<?>[providers.length];
+        for (int x = 0; x < providers.length; x++) {
+            copy[x] = new ModCountCopyOnWriteArrayList<Interceptor<? extends Message>>(providers[x]);
+            if (providers[x].getClass() == ModCountCopyOnWriteArrayList.class) {
+                //only the mod counted lists are matched by identity
+                origins[x] = providers[x];
             }
-            last = new ChainHolder(chain, copy);
-            lastData.set(last);
+            chain.add(providers[x]);
         }
-        
-        
-        return last.chain.cloneChain();
+        holder = new ChainHolder(chain, origins, copy);
+        synchronized (cache.entries) {
+            //replaces a chain built from an older version of the providers
+            cache.entries.put(key, holder);
+        }
+        return chain.cloneChain();
     }
     
-    private static class ChainHolder {
-        List<ModCountCopyOnWriteArrayList<Interceptor<? extends Message>>> lists;
-        PhaseInterceptorChain chain;
+    /**
+     * Identifies a chain by its phase list and providers.  Mod counted provider
+     * lists are compared by identity, any other list by the identity of its
+     * interceptors.
+     */
+    private static final class ChainKey {
+        final SortedSet<Phase> phases;
+        final Object[] parts;
+        final int hash;
         
-        ChainHolder(PhaseInterceptorChain c, 
-                    List<ModCountCopyOnWriteArrayList<Interceptor<? extends Message>>> l) {
-            lists = l;
-            chain = c;
+        ChainKey(SortedSet<Phase> phaseList, List<?>[] providers) {
+            phases = phaseList;
+            parts = new Object[providers.length];
+            int h = System.identityHashCode(phaseList);
+            for (int x = 0; x < providers.length; x++) {
+                if (providers[x].getClass() == ModCountCopyOnWriteArrayList.class) {
+                    parts[x] = providers[x];
+                    h = 31 * h + System.identityHashCode(providers[x]);
+                } else {
+                    Object[] content = providers[x].toArray();
+                    parts[x] = content;
+                    for (Object o : content) {
+                        h = 31 * h + System.identityHashCode(o);
+                    }
+                }
+            }
+            hash = h;
         }
         
-        @SafeVarargs
-        final boolean matches(List<Interceptor<? extends Message>> ... providers) {
-            if (lists.size() == providers.length) {
-                for (int x = 0; x < providers.length; x++) {
-                    if (lists.get(x).size() != providers[x].size()) {
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ChainKey)) {
+                return false;
+            }
+            ChainKey other = (ChainKey)o;
+            if (hash != other.hash || phases != other.phases || parts.length != other.parts.length) {
+                return false;
+            }
+            for (int x = 0; x < parts.length; x++) {
+                if (parts[x] instanceof Object[] && other.parts[x] instanceof Object[]) {
+                    Object[] c1 = (Object[])parts[x];
+                    Object[] c2 = (Object[])other.parts[x];
+                    if (c1.length != c2.length) {
                         return false;
                     }
-                    
-                    if (providers[x].getClass() == ModCountCopyOnWriteArrayList.class) {
-                        if (((ModCountCopyOnWriteArrayList<?>)providers[x]).getModCount()
-                            != lists.get(x).getModCount()) {
+                    for (int i = 0; i < c1.length; i++) {
+                        if (c1[i] != c2[i]) {
                             return false;
                         }
-                    } else {
-                        ListIterator<Interceptor<? extends Message>> i1 = lists.get(x).listIterator();
-                        ListIterator<Interceptor<? extends Message>> i2 = providers[x].listIterator();
-                        
-                        while (i1.hasNext()) {
-                            if (i1.next() != i2.next()) {
-                                return false;
-                            }
-                        }
                     }
+                } else if (parts[x] != other.parts[x]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+    
+    private static class ChainHolder {
+        final List<?>[] origins;
+        final ModCountCopyOnWriteArrayList<Interceptor<? extends Message>>[] lists;
+        final PhaseInterceptorChain chain;
+        
+        ChainHolder(PhaseInterceptorChain c,
+                    List<?>[] o,
+                    ModCountCopyOnWriteArrayList<Interceptor<? extends Message>>[] l) {
+            chain = c;
+            origins = o;
+            lists = l;
+        }
+        
+        /**
+         * The key already matched the providers, a mod counted list may still 
+         * have been modified since the chain was built.
+         */
+        @SafeVarargs
+        final boolean isCurrent(List<Interceptor<? extends Message>> ... providers) {
+            for (int x = 0; x < providers.length; x++) {
+                if (origins[x] != null
+                    && ((ModCountCopyOnWriteArrayList<?>)providers[x]).getModCount()
+                        != lists[x].getModCount()) {
+                    return false;
                 }
-                return true;
             }
-            return false;
+            return true;
         }
     }
 }
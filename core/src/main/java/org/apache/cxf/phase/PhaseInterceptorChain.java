@@ -33,7 +33,9 @@ import java.util.logging.Logger;
 
 import org.apache.cxf.common.logging.LogUtils;
 import org.apache.cxf.common.util.StringUtils;
+import org.apache.cxf.common.util.SystemPropertyAction;
 import org.apache.cxf.continuations.SuspendedInvocationException;
+import org.apache.cxf.endpoint.Endpoint;
 import org.apache.cxf.interceptor.Fault;
 import org.apache.cxf.interceptor.Interceptor;
 import org.apache.cxf.interceptor.InterceptorChain;
@@ -60,6 +62,14 @@ import org.apache.cxf.transport.MessageObserver;
  * has an ID. PhaseInterceptors can supply a Collection of IDs which they 
  * should run before or after, supplying fine grained ordering.
  * <p>
+ * Chains created through {@link #cloneChain()} run in a compiled mode: the
+ * interceptors of the source chain are snapshotted once into a shared array 
+ * with precomputed phase boundaries, and the clone simply walks that array by 
+ * index, so running a message through it does not allocate.  The linked 
+ * representation is only rebuilt when the clone is modified (an interceptor is 
+ * added or removed) or iterated.  Setting the 
+ * org.apache.cxf.phase.PhaseInterceptorChain.disableCompiledChains system property
+ * turns the compiled mode off.
  *  
  */
 public class PhaseInterceptorChain implements InterceptorChain {
@@ -69,6 +79,9 @@ public class PhaseInterceptorChain implements InterceptorChain {
 
     private static final ThreadLocal<Message> CURRENT_MESSAGE = new ThreadLocal<Message>();
     
+    private static final boolean COMPILE_CHAINS = SystemPropertyAction.getPropertyOrNull(
+        PhaseInterceptorChain.class.getName() + ".disableCompiledChains") == null;
+    
     private final Map<String, Integer> nameMap;
     private final Phase phases[];
 
@@ -84,6 +97,15 @@ public class PhaseInterceptorChain implements InterceptorChain {
     // interceptors to the end of the list by default.
     private boolean hasAfters[];
 
+    // In compiled mode heads, tails and hasAfters are null and the interceptors
+    // are taken from this shared, immutable snapshot.  In linked mode this caches 
+    // the snapshot of the current linked list for cloning and is reset whenever
+    // the list is modified.
+    private volatile CompiledChain compiled;
+    // compiled mode only: the number of interceptors already invoked
+    private int position;
+    // compiled mode only: set once the chain has started iterating
+    private boolean started;
     
     private State state;
     private Message pausedMessage;
@@ -135,6 +157,18 @@ public class PhaseInterceptorChain implements InterceptorChain {
         }
     }
     
+    private PhaseInterceptorChain(PhaseInterceptorChain src, CompiledChain c) {
+        isFineLogging = LOG.isLoggable(Level.FINE);
+        
+        //only used for clone
+        state = State.EXECUTING;
+        
+        //immutable, just repoint
+        nameMap = src.nameMap;
+        phases = src.phases;
+        compiled = c;
+    }
+    
     public PhaseInterceptorChain(SortedSet<Phase> ps) {
         state = State.EXECUTING;
         isFineLogging = LOG.isLoggable(Level.FINE);
@@ -163,9 +197,9 @@ public class PhaseInterceptorChain implements InterceptorChain {
         if (getCurrentMessage() == m) { 
             return false;
         }
-        if (chain.iterator.hasPrevious()) {
-            chain.iterator.previous();
-            if (chain.iterator.next() instanceof ServiceInvokerInterceptor) {
+        if (chain.hasPreviousInterceptor()) {
+            chain.previousInterceptor();
+            if (chain.nextInterceptor() instanceof ServiceInvokerInterceptor) {
                 CURRENT_MESSAGE.set(m);
                 return true;
             } else {
@@ -199,10 +233,107 @@ public class PhaseInterceptorChain implements InterceptorChain {
     }
     
     public PhaseInterceptorChain cloneChain() {
+        if (COMPILE_CHAINS) {
+            return new PhaseInterceptorChain(this, getCompiledChain());
+        }
         return new PhaseInterceptorChain(this);
     }
     
+    private CompiledChain getCompiledChain() {
+        CompiledChain c = compiled;
+        if (c == null) {
+            c = new CompiledChain(phases.length, heads, hasAfters);
+            compiled = c;
+        }
+        return c;
+    }
+    
+    /**
+     * Switches a chain running in compiled mode back to the linked representation,
+     * keeping the current position if the chain has already started iterating.
+     */
+    private void materialize() {
+        if (heads != null) {
+            return;
+        }
+        CompiledChain c = compiled;
+        int length = phases.length;
+        InterceptorHolder h[] = new InterceptorHolder[length];
+        InterceptorHolder t[] = new InterceptorHolder[length];
+        
+        InterceptorHolder last = null;
+        InterceptorHolder current = null;
+        for (int x = 0; x < length; x++) {
+            for (int i = c.phaseStart[x]; i < c.phaseStart[x + 1]; i++) {
+                InterceptorHolder ih = new InterceptorHolder(c.interceptors[i], x);
+                ih.prev = last;
+                if (last != null) {
+                    last.next = ih;
+                }
+                if (h[x] == null) {
+                    h[x] = ih;
+                }
+                t[x] = ih;
+                last = ih;
+                if (i == position - 1) {
+                    current = ih;
+                }
+            }
+        }
+        hasAfters = new boolean[length];
+        System.arraycopy(c.hasAfters, 0, hasAfters, 0, length);
+        tails = t;
+        heads = h;
+        compiled = null;
+        if (started) {
+            iterator = new PhaseInterceptorIterator(heads);
+            iterator.prev = current;
+        }
+    }
+    
+    private boolean hasNextInterceptor() {
+        if (heads == null) {
+            return position < compiled.interceptors.length;
+        }
+        return iterator.hasNext();
+    }
+    
+    private Interceptor<? extends Message> nextInterceptor() {
+        if (heads == null) {
+            CompiledChain c = compiled;
+            if (position >= c.interceptors.length) {
+                throw new NoSuchElementException();
+            }
+            return c.interceptors[position++];
+        }
+        return iterator.next();
+    }
+    
+    private boolean hasPreviousInterceptor() {
+        if (heads == null) {
+            return position > 0;
+        }
+        return iterator.hasPrevious();
+    }
+    
+    private Interceptor<? extends Message> previousInterceptor() {
+        if (heads == null) {
+            if (position == 0) {
+                throw new NoSuchElementException();
+            }
+            return compiled.interceptors[--position];
+        }
+        return iterator.previous();
+    }
+    
     private void updateIterator() {
+        if (heads == null) {
+            if (!started) {
+                started = true;
+                outputChainToLog(false);
+            }
+            return;
+        }
         if (iterator == null) {
             iterator = new PhaseInterceptorIterator(heads);
             outputChainToLog(false);
@@ -298,14 +429,19 @@ public class PhaseInterceptorChain implements InterceptorChain {
                 && message.getExchange() != oldMessage.getExchange()) {
                 message.put(PREVIOUS_MESSAGE, new WeakReference<Message>(oldMessage));
             }
-            while (state == State.EXECUTING && iterator.hasNext()) {
+            InterceptorProfiler profiler = getProfiler(message);
+            while (state == State.EXECUTING && hasNextInterceptor()) {
                 try {
-                    Interceptor<Message> currentInterceptor = (Interceptor<Message>)iterator.next();
+                    Interceptor<Message> currentInterceptor = (Interceptor<Message>)nextInterceptor();
                     if (isFineLogging) {
                         LOG.fine("Invoking handleMessage on interceptor " + currentInterceptor);
                     }
                     //System.out.println("-----------" + currentInterceptor);
-                    currentInterceptor.handleMessage(message);
+                    if (profiler == null) {
+                        currentInterceptor.handleMessage(message);
+                    } else {
+                        invokeProfiled(profiler, currentInterceptor, message);
+                    }
                     if (state == State.SUSPENDED) {
                          // throw the exception to make sure thread exit without interrupt
                         throw new SuspendedInvocationException();
@@ -313,8 +449,8 @@ public class PhaseInterceptorChain implements InterceptorChain {
                     
                 } catch (SuspendedInvocationException ex) {
                     // we need to resume from the same interceptor the exception got originated from
-                    if (iterator.hasPrevious()) {
-                        iterator.previous();
+                    if (hasPreviousInterceptor()) {
+                        previousInterceptor();
                     }
                     pause();
                     throw ex;
@@ -335,6 +471,28 @@ public class PhaseInterceptorChain implements InterceptorChain {
         }
     }
 
+    private static InterceptorProfiler getProfiler(Message message) {
+        Exchange exchange = message == null ? null : message.getExchange();
+        Endpoint endpoint = exchange == null ? null : exchange.getEndpoint();
+        return endpoint == null ? null : (InterceptorProfiler)endpoint.get(InterceptorProfiler.PROFILER_KEY);
+    }
+    
+    private static void invokeProfiled(InterceptorProfiler profiler, 
+                                       Interceptor<Message> interceptor,
+                                       Message message) {
+        long allocated = profiler.getAllocatedBytes();
+        long start = System.nanoTime();
+        try {
+            interceptor.handleMessage(message);
+        } finally {
+            long nanos = System.nanoTime() - start;
+            if (allocated != -1) {
+                allocated = profiler.getAllocatedBytes() - allocated;
+            }
+            profiler.interceptorInvoked(message, (PhaseInterceptor<Message>)interceptor, nanos, allocated);
+        }
+    }
+
     private void wrapExceptionAsFault(Message message, RuntimeException ex) {
         String description = getServiceInfo(message);
         
@@ -438,9 +596,9 @@ public class PhaseInterceptorChain implements InterceptorChain {
     public synchronized boolean doInterceptStartingAfter(Message message,
                                                          String startingAfterInterceptorID) {
         updateIterator();
-        while (state == State.EXECUTING && iterator.hasNext()) {
+        while (state == State.EXECUTING && hasNextInterceptor()) {
             PhaseInterceptor<? extends Message> currentInterceptor 
-                = (PhaseInterceptor<? extends Message>)iterator.next();
+                = (PhaseInterceptor<? extends Message>)nextInterceptor();
             if (currentInterceptor.getId().equals(startingAfterInterceptorID)) {
                 break;
             }
@@ -459,11 +617,11 @@ public class PhaseInterceptorChain implements InterceptorChain {
     public synchronized boolean doInterceptStartingAt(Message message,
                                                          String startingAtInterceptorID) {
         updateIterator();
-        while (state == State.EXECUTING && iterator.hasNext()) {
+        while (state == State.EXECUTING && hasNextInterceptor()) {
             PhaseInterceptor<? extends Message> currentInterceptor 
-                = (PhaseInterceptor<? extends Message>)iterator.next();
+                = (PhaseInterceptor<? extends Message>)nextInterceptor();
             if (currentInterceptor.getId().equals(startingAtInterceptorID)) {
-                iterator.previous();
+                previousInterceptor();
                 break;
             }
         }
@@ -474,7 +632,9 @@ public class PhaseInterceptorChain implements InterceptorChain {
         updateIterator();
         if (state == State.COMPLETE) {
             state = State.EXECUTING;
-            iterator.reset();
+        }
+        if (heads == null) {
+            position = 0;
         } else {
             iterator.reset();
         }
@@ -482,8 +642,8 @@ public class PhaseInterceptorChain implements InterceptorChain {
     
     @SuppressWarnings("unchecked")
     public void unwind(Message message) {
-        while (iterator.hasPrevious()) {
-            Interceptor<Message> currentInterceptor = (Interceptor<Message>)iterator.previous();
+        while (hasPreviousInterceptor()) {
+            Interceptor<Message> currentInterceptor = (Interceptor<Message>)previousInterceptor();
             if (isFineLogging) {
                 LOG.fine("Invoking handleFault on interceptor " + currentInterceptor);
             }
@@ -500,6 +660,7 @@ public class PhaseInterceptorChain implements InterceptorChain {
     }
 
     public void remove(Interceptor<? extends Message> i) {
+        materialize();
         PhaseInterceptorIterator it = new PhaseInterceptorIterator(heads);
         while (it.hasNext()) {
             InterceptorHolder holder = it.nextInterceptorHolder();
@@ -518,10 +679,12 @@ public class PhaseInterceptorChain implements InterceptorChain {
         return getIterator();
     }
     public ListIterator<Interceptor<? extends Message>> getIterator() {
+        materialize();
         return new PhaseInterceptorIterator(heads);
     }
 
     private void remove(InterceptorHolder i) {
+        compiled = null;
         if (i.prev != null) {
             i.prev.next = i.next;
         }
@@ -550,6 +713,8 @@ public class PhaseInterceptorChain implements InterceptorChain {
     }
     
     private void insertInterceptor(int phase, PhaseInterceptor<? extends Message> interc, boolean force) {
+        materialize();
+        compiled = null;
         InterceptorHolder ih = new InterceptorHolder(interc, phase);
         if (heads[phase] == null) {
             // no interceptors yet in this phase
@@ -695,8 +860,10 @@ public class PhaseInterceptorChain implements InterceptorChain {
             .append(message)
             .append(". Current flow:\n");
         
+        InterceptorHolder h[] = heads;
+        CompiledChain c = compiled;
         for (int x = 0; x < phases.length; x++) {
-            if (heads[x] != null) {
+            if (h != null ? h[x] != null : c.phaseStart[x] < c.phaseStart[x + 1]) {
                 chain.append("  ");
                 printPhase(x, chain);
             }            
@@ -707,23 +874,36 @@ public class PhaseInterceptorChain implements InterceptorChain {
         
         chain.append(phases[ph].getName())
             .append(" [");
-        InterceptorHolder i = heads[ph];
-        boolean first = true;
-        while (i != tails[ph].next) {
-            if (first) {
-                first = false;
-            } else {
-                chain.append(", ");
+        if (heads == null) {
+            CompiledChain c = compiled;
+            for (int x = c.phaseStart[ph]; x < c.phaseStart[ph + 1]; x++) {
+                if (x != c.phaseStart[ph]) {
+                    chain.append(", ");
+                }
+                printInterceptor(c.interceptors[x], chain);
             }
-            String nm = i.interceptor.getClass().getSimpleName();
-            if (StringUtils.isEmpty(nm)) {
-                nm = i.interceptor.getId();
+        } else {
+            InterceptorHolder i = heads[ph];
+            boolean first = true;
+            while (i != tails[ph].next) {
+                if (first) {
+                    first = false;
+                } else {
+                    chain.append(", ");
+                }
+                printInterceptor(i.interceptor, chain);
+                i = i.next;
             }
-            chain.append(nm);
-            i = i.next;
         }
         chain.append("]\n");
     }
+    private void printInterceptor(PhaseInterceptor<? extends Message> interceptor, StringBuilder chain) {
+        String nm = interceptor.getClass().getSimpleName();
+        if (StringUtils.isEmpty(nm)) {
+            nm = interceptor.getId();
+        }
+        chain.append(nm);
+    }
     
     private void outputChainToLog(boolean modified) {
         if (isFineLogging) {
@@ -834,6 +1014,43 @@ public class PhaseInterceptorChain implements InterceptorChain {
     }
 
     
+    /**
+     * Immutable, flattened snapshot of a chain.  The interceptors of phase x
+     * are found at indexes phaseStart[x] (inclusive) to phaseStart[x + 1] (exclusive).
+     */
+    static final class CompiledChain {
+        final PhaseInterceptor<? extends Message> interceptors[];
+        final int phaseStart[];
+        final boolean hasAfters[];
+        
+        @SuppressWarnings("unchecked")
+        CompiledChain(int length, InterceptorHolder heads[], boolean afters[]) {
+            phaseStart = new int[length + 1];
+            int count = 0;
+            for (int x = 0; x < length; x++) {
+                phaseStart[x] = count;
+                InterceptorHolder ih = heads[x];
+                while (ih != null && ih.phaseIdx == x) {
+                    count++;
+                    ih = ih.next;
+                }
+            }
+            phaseStart[length] = count;
+            
+            interceptors = (PhaseInterceptor<? extends Message>[])new PhaseInterceptor<?>[count];
+            for (int x = 0; x < length; x++) {
+                int idx = phaseStart[x];
+                InterceptorHolder ih = heads[x];
+                while (ih != null && ih.phaseIdx == x) {
+                    interceptors[idx++] = ih.interceptor;
+                    ih = ih.next;
+                }
+            }
+            hasAfters = new boolean[length];
+            System.arraycopy(afters, 0, hasAfters, 0, length);
+        }
+    }
+    
     static final class InterceptorHolder {
         PhaseInterceptor<? extends Message> interceptor;
         InterceptorHolder next;
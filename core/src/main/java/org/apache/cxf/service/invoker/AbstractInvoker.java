@@ -24,6 +24,8 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -35,6 +37,7 @@ import org.apache.cxf.interceptor.Fault;
 import org.apache.cxf.message.Exchange;
 import org.apache.cxf.message.FaultMode;
 import org.apache.cxf.message.MessageContentsList;
+import org.apache.cxf.message.MessageUtils;
 import org.apache.cxf.service.model.BindingOperationInfo;
 
 /**
@@ -42,8 +45,17 @@ import org.apache.cxf.service.model.BindingOperationInfo;
  * <p>
  */
 public abstract class AbstractInvoker implements Invoker {
+    /**
+     * Contextual property, if set to true the service methods are called through classes
+     * generated with ASM instead of through reflection. 
+     */
+    public static final String USE_METHOD_ACCESSORS = "org.apache.cxf.invoker.useMethodAccessors";
+    
     private static final Logger LOG = LogUtils.getL7dLogger(AbstractInvoker.class);
     
+    private final ConcurrentMap<Method, MethodAccessor> accessors = 
+        new ConcurrentHashMap<Method, MethodAccessor>();
+    
     public Object invoke(Exchange exchange, Object o) {
 
         final Object serviceObject = getServiceObject(exchange);
@@ -177,8 +189,24 @@ public abstract class AbstractInvoker implements Invoker {
                                                                   m,
                                                                   Arrays.asList(paramArray)});
         }
+        if (exchange != null && exchange.getInMessage() != null 
+            && MessageUtils.getContextualBoolean(exchange.getInMessage(), USE_METHOD_ACCESSORS, false)) {
+            return getMethodAccessor(m).invoke(serviceObject, paramArray);
+        }
         return m.invoke(serviceObject, paramArray);
     }
+    
+    protected MethodAccessor getMethodAccessor(Method m) {
+        MethodAccessor accessor = accessors.get(m);
+        if (accessor == null) {
+            accessor = MethodAccessor.create(m);
+            MethodAccessor old = accessors.putIfAbsent(m, accessor);
+            if (old != null) {
+                accessor = old;
+            }
+        }
+        return accessor;
+    }
 
     public Object[] insertExchange(Method method, Object[] params, Exchange context) {
         Object[] newParams = params;
@@ -0,0 +1,125 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.service.invoker;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Invokes a service method, either through a class generated with ASM which calls
+ * the method directly or, if such a class can not be generated, through reflection.
+ * <p>
+ * {@link #invoke(Object, Object[])} follows the contract of {@link Method#invoke(Object, Object...)}:
+ * the exceptions thrown by the method are wrapped in an {@link InvocationTargetException}. Calls 
+ * with a target or arguments which do not fit the method signature are passed to the
+ * reflection API so that they fail the same way.
+ */
+public abstract class MethodAccessor {
+    private final Method method;
+    private final boolean isStatic;
+    private final Class<?>[] argTypes;
+    private final boolean[] primitives;
+
+    protected MethodAccessor(Method method) {
+        this.method = method;
+        this.isStatic = Modifier.isStatic(method.getModifiers());
+        Class<?>[] types = method.getParameterTypes();
+        this.argTypes = new Class<?>[types.length];
+        this.primitives = new boolean[types.length];
+        for (int i = 0; i < types.length; i++) {
+            primitives[i] = types[i].isPrimitive();
+            argTypes[i] = primitives[i] ? MethodAccessorCompiler.getWrapperType(types[i]) : types[i];
+        }
+    }
+
+    /**
+     * Returns an accessor calling the method directly, or one using reflection if ASM is not
+     * available or the method can not be called from a generated class. 
+     */
+    public static MethodAccessor create(Method method) {
+        MethodAccessor accessor = MethodAccessorCompiler.compileAccessor(method);
+        return accessor != null ? accessor : new ReflectionAccessor(method);
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * Returns true if the method is called without reflection.
+     */
+    public boolean isDirect() {
+        return true;
+    }
+
+    public Object invoke(Object target, Object[] args) 
+        throws IllegalAccessException, InvocationTargetException {
+        if (!isDirectCall(target, args)) {
+            return method.invoke(target, args);
+        }
+        try {
+            return doInvoke(target, args);
+        } catch (Throwable t) {
+            throw new InvocationTargetException(t);
+        }
+    }
+
+    /**
+     * Calls the method, the target and the arguments have been checked already.
+     */
+    protected abstract Object doInvoke(Object target, Object[] args) throws Throwable;
+
+    private boolean isDirectCall(Object target, Object[] args) {
+        int length = args == null ? 0 : args.length;
+        if (length != argTypes.length || !isStatic && !method.getDeclaringClass().isInstance(target)) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            Object arg = args[i];
+            if (arg == null ? primitives[i] : !argTypes[i].isInstance(arg)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static class ReflectionAccessor extends MethodAccessor {
+        ReflectionAccessor(Method method) {
+            super(method);
+        }
+
+        @Override
+        public boolean isDirect() {
+            return false;
+        }
+
+        @Override
+        public Object invoke(Object target, Object[] args) 
+            throws IllegalAccessException, InvocationTargetException {
+            return getMethod().invoke(target, args);
+        }
+
+        @Override
+        protected Object doInvoke(Object target, Object[] args) throws Throwable {
+            return getMethod().invoke(target, args);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.service.invoker;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.cxf.common.util.ASMHelper;
+
+/**
+ * Generates a {@link MethodAccessor} subclass whose doInvoke unpacks the arguments 
+ * and calls the method with an invokevirtual, invokeinterface or invokestatic instruction.
+ */
+final class MethodAccessorCompiler extends ASMHelper {
+    private static final Map<Class<?>, Class<?>> WRAPPER_TYPES = new HashMap<Class<?>, Class<?>>();
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+    
+    static {
+        WRAPPER_TYPES.put(Byte.TYPE, Byte.class);
+        WRAPPER_TYPES.put(Boolean.TYPE, Boolean.class);
+        WRAPPER_TYPES.put(Long.TYPE, Long.class);
+        WRAPPER_TYPES.put(Integer.TYPE, Integer.class);
+        WRAPPER_TYPES.put(Short.TYPE, Short.class);
+        WRAPPER_TYPES.put(Character.TYPE, Character.class);
+        WRAPPER_TYPES.put(Float.TYPE, Float.class);
+        WRAPPER_TYPES.put(Double.TYPE, Double.class);
+        WRAPPER_TYPES.put(Void.TYPE, Void.class);
+    }
+    
+    final Method method;
+    final ClassWriter cw;
+    
+    private MethodAccessorCompiler(Method method) {
+        this.method = method;
+        cw = createClassWriter();
+    }
+    
+    static MethodAccessor compileAccessor(Method method) {
+        if (!isAccessible(method)) {
+            return null;
+        }
+        try {
+            return new MethodAccessorCompiler(method).compile();
+        } catch (Throwable t) {
+            // Some error - probably a bad version of ASM or similar
+        }
+        return null;
+    }
+    
+    static Class<?> getWrapperType(Class<?> cls) {
+        return WRAPPER_TYPES.get(cls);
+    }
+    
+    public MethodAccessor compile() throws Exception {
+        if (cw == null) {
+            return null;
+        }
+        Class<?> cls = method.getDeclaringClass();
+        String newClassName = periodToSlashes(cls.getName() + "_" + method.getName() 
+                                              + "_MethodAccessor" + COUNTER.incrementAndGet());
+        String superClassName = periodToSlashes(MethodAccessor.class.getName());
+        
+        cw.visit(Opcodes.V1_5,
+                 Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER,
+                 newClassName,
+                 null,
+                 superClassName,
+                 null);
+        addConstructor(superClassName);
+        addDoInvoke();
+        cw.visitEnd();
+        
+        Class<?> cl = loadClass(newClassName.replace('/', '.'), cls, cw.toByteArray());
+        return (MethodAccessor)cl.getConstructor(Method.class).newInstance(method);
+    }
+    
+    private void addConstructor(String superClassName) {
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "(Ljava/lang/reflect/Method;)V", 
+                                          null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, superClassName, "<init>", 
+                           "(Ljava/lang/reflect/Method;)V", false);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+    
+    private void addDoInvoke() {
+        Class<?> cls = method.getDeclaringClass();
+        String owner = periodToSlashes(cls.getName());
+        boolean isStatic = Modifier.isStatic(method.getModifiers());
+        
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "doInvoke", 
+                                          "(Ljava/lang/Object;[Ljava/lang/Object;)Ljava/lang/Object;",
+                                          null, new String[] {"java/lang/Throwable"});
+        mv.visitCode();
+        if (!isStatic) {
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitTypeInsn(Opcodes.CHECKCAST, owner);
+        }
+        Class<?>[] types = method.getParameterTypes();
+        for (int i = 0; i < types.length; i++) {
+            mv.visitVarInsn(Opcodes.ALOAD, 2);
+            mv.visitIntInsn(Opcodes.SIPUSH, i);
+            mv.visitInsn(Opcodes.AALOAD);
+            if (types[i].isPrimitive()) {
+                String wrapper = NONPRIMITIVE_MAP.get(types[i]);
+                mv.visitTypeInsn(Opcodes.CHECKCAST, wrapper);
+                mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, wrapper, types[i].getName() + "Value", 
+                                   "()" + PRIMITIVE_MAP.get(types[i]), false);
+            } else if (types[i] != Object.class) {
+                mv.visitTypeInsn(Opcodes.CHECKCAST, types[i].isArray() 
+                                 ? getClassCode(types[i]) : periodToSlashes(types[i].getName()));
+            }
+        }
+        if (isStatic) {
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC, owner, method.getName(), 
+                               getMethodSignature(method), false);
+        } else if (cls.isInterface()) {
+            mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, owner, method.getName(), 
+                               getMethodSignature(method), true);
+        } else {
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, owner, method.getName(), 
+                               getMethodSignature(method), false);
+        }
+        Class<?> returnType = method.getReturnType();
+        if (returnType == Void.TYPE) {
+            mv.visitInsn(Opcodes.ACONST_NULL);
+        } else if (returnType.isPrimitive()) {
+            String wrapper = NONPRIMITIVE_MAP.get(returnType);
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC, wrapper, "valueOf", 
+                               "(" + PRIMITIVE_MAP.get(returnType) + ")L" + wrapper + ";", false);
+        }
+        mv.visitInsn(Opcodes.ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+    
+    /**
+     * The generated class lives in its own class loader, so it can only call public methods
+     * of public classes and needs to see the MethodAccessor class through the parent loader.
+     */
+    private static boolean isAccessible(Method method) {
+        Class<?> cls = method.getDeclaringClass();
+        ClassLoader loader = cls.getClassLoader();
+        if (loader == null || !Modifier.isPublic(method.getModifiers()) || !isPublic(cls)
+            || cls.isInterface() && Modifier.isStatic(method.getModifiers())) {
+            return false;
+        }
+        for (Class<?> type : method.getParameterTypes()) {
+            if (!isPublic(type)) {
+                return false;
+            }
+        }
+        try {
+            return loader.loadClass(MethodAccessor.class.getName()) == MethodAccessor.class;
+        } catch (Throwable t) {
+            return false;
+        }
+    }
+    
+    private static boolean isPublic(Class<?> type) {
+        Class<?> cls = type;
+        while (cls.isArray()) {
+            cls = cls.getComponentType();
+        }
+        for (; cls != null && !cls.isPrimitive(); cls = cls.getDeclaringClass()) {
+            if (!Modifier.isPublic(cls.getModifiers())) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -194,4 +194,8 @@ public class ChainInitiationObserver implements MessageObserver {
         return endpoint;
     }
     
+    public PhaseChainCache getChainCache() {
+        return chainCache;
+    }
+    
 }
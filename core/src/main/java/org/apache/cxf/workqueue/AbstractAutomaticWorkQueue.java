@@ -0,0 +1,469 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.workqueue;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.cxf.common.classloader.ClassLoaderUtils;
+import org.apache.cxf.common.classloader.ClassLoaderUtils.ClassLoaderHolder;
+import org.apache.cxf.common.logging.LogUtils;
+
+/**
+ * The configuration, thread creation, delayed scheduling and statistics shared by the
+ * {@link AutomaticWorkQueue} implementations; how work is handed to the threads is left
+ * to the subclasses.
+ */
+public abstract class AbstractAutomaticWorkQueue implements AutomaticWorkQueue {
+    public static final String PROPERTY_NAME = "name";
+    static final int DEFAULT_MAX_QUEUE_SIZE = 256;
+    private static final Logger LOG =
+        LogUtils.getL7dLogger(AbstractAutomaticWorkQueue.class);
+    
+
+    String name = "default";
+    int maxQueueSize;
+    int initialThreads;
+    int lowWaterMark;
+    int highWaterMark; 
+    long dequeueTimeout;
+    volatile int approxThreadCount;
+
+    AWQThreadFactory threadFactory;
+    
+    DelayQueue<DelayedTaskWrapper> delayQueue;
+    WatchDog watchDog;
+    
+    boolean shared;
+    int sharedCount;
+    
+    final AtomicLong rejectedCount = new AtomicLong();
+    final AtomicLong waitCount = new AtomicLong();
+    final AtomicLong totalWaitTime = new AtomicLong();
+    final AtomicLong maxWaitTime = new AtomicLong();
+    
+    private List<PropertyChangeListener> changeListenerList;
+    
+    protected AbstractAutomaticWorkQueue(int mqs, 
+                                         int initialThreads, 
+                                         int highWaterMark, 
+                                         int lowWaterMark,
+                                         long dequeueTimeout,
+                                         String name) {
+        this.maxQueueSize = mqs == -1 ? DEFAULT_MAX_QUEUE_SIZE : mqs;
+        this.initialThreads = initialThreads;
+        this.highWaterMark = -1 == highWaterMark ? Integer.MAX_VALUE : highWaterMark;
+        this.lowWaterMark = -1 == lowWaterMark ? Integer.MAX_VALUE : lowWaterMark;
+        this.dequeueTimeout = dequeueTimeout;
+        this.name = name;
+        this.changeListenerList = new ArrayList<PropertyChangeListener>();
+    }
+    
+    public void addChangeListener(PropertyChangeListener listener) {
+        this.changeListenerList.add(listener);
+    }
+    
+    public void removeChangeListener(PropertyChangeListener listener) {
+        this.changeListenerList.remove(listener);
+    }
+    
+    public void notifyChangeListeners(PropertyChangeEvent event) {
+        for (PropertyChangeListener listener : changeListenerList) {
+            listener.propertyChange(event);
+        }
+    }
+    
+    public void setShared(boolean shared) {
+        this.shared = shared;
+    }
+    public boolean isShared() {
+        return shared;
+    }
+    public void addSharedUser() {
+        sharedCount++;
+    }
+    public void removeSharedUser() {
+        sharedCount--;
+    }
+    public int getShareCount() {
+        return sharedCount;
+    }
+    
+    AWQThreadFactory createThreadFactory(final String nm) {
+        ThreadGroup group;
+        try { 
+            //Try and find the highest level ThreadGroup that we're allowed to use.
+            //That SHOULD allow the default classloader and thread locals and such 
+            //to be the least likely to cause issues down the road.
+            group = AccessController.doPrivileged(
+                new PrivilegedAction<ThreadGroup>() { 
+                    public ThreadGroup run() { 
+                        ThreadGroup group = Thread.currentThread().getThreadGroup(); 
+                        ThreadGroup parent = group;
+                        try { 
+                            while (parent != null) { 
+                                group = parent;  
+                                parent = parent.getParent(); 
+                            } 
+                        } catch (SecurityException se) {
+                            //ignore - if we get here, the "group" is as high as 
+                            //the security manager will allow us to go.   Use that one.
+                        }
+                        return new ThreadGroup(group, nm + "-workqueue");
+                    } 
+                }
+            );
+        } catch (SecurityException e) { 
+            group = new ThreadGroup(nm + "-workqueue");
+        }
+        return new AWQThreadFactory(group, nm);
+    }
+    
+    static class DelayedTaskWrapper implements Delayed, Runnable {
+        long trigger;
+        Runnable work;
+        
+        DelayedTaskWrapper(Runnable work, long delay) {
+            this.work = work;
+            trigger = System.currentTimeMillis() + delay;
+        }
+        
+        public long getDelay(TimeUnit unit) {
+            long n = trigger - System.currentTimeMillis();
+            return unit.convert(n, TimeUnit.MILLISECONDS);
+        }
+
+        public int compareTo(Delayed delayed) {
+            long other = ((DelayedTaskWrapper)delayed).trigger;
+            int returnValue;
+            if (this.trigger < other) {
+                returnValue = -1;
+            } else if (this.trigger > other) {
+                returnValue = 1;
+            } else {
+                returnValue = 0;
+            }
+            return returnValue;
+        }
+
+        public void run() {
+            work.run();
+        }
+        
+    }
+    
+    class WatchDog extends Thread {
+        DelayQueue<DelayedTaskWrapper> delayQueue;
+        AtomicBoolean shutdown = new AtomicBoolean(false);
+        
+        WatchDog(DelayQueue<DelayedTaskWrapper> queue) {
+            delayQueue = queue;
+        }
+        
+        public void shutdown() {
+            shutdown.set(true);
+            // to exit the waiting thread
+            interrupt();
+        }
+        
+        public void run() {
+            DelayedTaskWrapper task;
+            try {
+                while (!shutdown.get()) {
+                    task = delayQueue.take();
+                    if (task != null) {
+                        try {
+                            execute(task);
+                        } catch (Exception ex) {
+                            LOG.warning("Executing the task from DelayQueue with exception: " + ex);
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                if (LOG.isLoggable(Level.FINE)) {
+                    LOG.finer("The DelayQueue watchdog Task is stopping");
+                }
+            }
+
+        }
+        
+    }
+    class AWQThreadFactory implements ThreadFactory {
+        final AtomicInteger threadNumber = new AtomicInteger(1);
+        ThreadGroup group;
+        String name;
+        ClassLoader loader;
+        
+        AWQThreadFactory(ThreadGroup gp, String nm) {
+            group = gp;
+            name = nm;
+            //force the loader to be the loader of CXF, not the application loader
+            loader = AbstractAutomaticWorkQueue.class.getClassLoader();
+        }
+        
+        public Thread newThread(final Runnable r) {
+            if (group.isDestroyed()) {
+                group = new ThreadGroup(group.getParent(), name + "-workqueue");
+            }
+            Runnable wrapped = new Runnable() {
+                public void run() {
+                    ++approxThreadCount;
+                    try {
+                        r.run();
+                    } finally {
+                        --approxThreadCount;
+                    }
+                }
+            };
+            final Thread t = new Thread(group, 
+                                  wrapped, 
+                                  name + "-workqueue-" + threadNumber.getAndIncrement(),
+                                  0);
+            AccessController.doPrivileged(new PrivilegedAction<Boolean>() {
+                public Boolean run() {
+                    t.setContextClassLoader(loader);
+                    return true;
+                }
+            });
+            t.setDaemon(true);
+            if (t.getPriority() != Thread.NORM_PRIORITY) {
+                t.setPriority(Thread.NORM_PRIORITY);
+            }
+            return t;
+        }
+        public void setName(String s) {
+            name = s;
+        }
+        public void shutdown() {
+            if (!group.isDestroyed()) {
+                try {
+                    group.destroy();
+                    group.setDaemon(true);
+                } catch (Throwable t) {
+                    //ignore
+                }
+            }            
+        }
+    }
+    
+    public void setName(String s) {
+        name = s;
+        if (threadFactory != null) {
+            threadFactory.setName(s);
+        }
+    }
+    public String getName() {
+        return name;
+    }
+
+    public String toString() {
+        StringBuilder buf = new StringBuilder();
+        buf.append(super.toString());
+        buf.append(" [queue size: ");
+        buf.append(getSize());
+        buf.append(", max size: ");
+        buf.append(maxQueueSize);
+        buf.append(", threads: ");
+        buf.append(getPoolSize());
+        buf.append(", active threads: ");
+        buf.append(getActiveCount());
+        buf.append(", low water mark: ");
+        buf.append(getLowWaterMark());
+        buf.append(", high water mark: ");
+        buf.append(getHighWaterMark());
+        buf.append("]");
+        return buf.toString();
+    }
+    
+    /**
+     * Wraps the work so that it runs with the context classloader of the 
+     * submitting thread and records how long it waited before a worker 
+     * picked it up.
+     */
+    Runnable wrap(final Runnable command) {
+        //Grab the context classloader of this thread.   We'll make sure we use that 
+        //on the thread the runnable actually runs on.
+        
+        final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        final long submitted = System.nanoTime();
+        return new Runnable() {
+            public void run() {
+                recordWaitTime(System.nanoTime() - submitted);
+                ClassLoaderHolder orig = ClassLoaderUtils.setThreadContextClassloader(loader);
+                try {
+                    command.run();
+                } finally {
+                    if (orig != null) {
+                        orig.reset();
+                    }
+                }
+            }
+        };
+    }
+    
+    void recordWaitTime(long nanos) {
+        waitCount.incrementAndGet();
+        totalWaitTime.addAndGet(nanos);
+        long max = maxWaitTime.get();
+        while (nanos > max && !maxWaitTime.compareAndSet(max, nanos)) {
+            max = maxWaitTime.get();
+        }
+    }
+    
+    public synchronized void schedule(final Runnable work, final long delay) {
+        if (delayQueue == null) {
+            delayQueue = new DelayQueue<DelayedTaskWrapper>();
+            watchDog = new WatchDog(delayQueue);
+            watchDog.setDaemon(true);
+            watchDog.start();
+        }
+        delayQueue.put(new DelayedTaskWrapper(work, delay));
+    }
+    
+    // AutomaticWorkQueue interface
+    
+    /**
+     * Gets the current size of the backing queue.
+     * @return the current size of the backing queue.
+     */
+    public abstract long getSize();
+    
+    public abstract boolean isEmpty();
+    
+    public abstract boolean isFull();
+    
+    public abstract int getHighWaterMark();
+    
+    public abstract int getLowWaterMark();
+    
+    public abstract void setHighWaterMark(int hwm);
+    
+    public abstract void setLowWaterMark(int lwm);
+    
+    public abstract int getLargestPoolSize();
+    
+    public abstract int getPoolSize();
+    
+    public abstract int getActiveCount();
+    
+    /**
+     * Gets the maximum size (capacity) of the backing queue.
+     * @return the maximum size (capacity) of the backing queue.
+     */
+    public long getMaxSize() {
+        return maxQueueSize;
+    }
+
+    public int getInitialSize() {
+        return this.initialThreads;
+    }
+
+    public void setInitialSize(int initialSize) {
+        notifyChangeListeners(new PropertyChangeEvent(this, "initialSize", this.initialThreads, initialSize));
+        this.initialThreads = initialSize;
+    }
+    
+    public void setQueueSize(int size) {
+        notifyChangeListeners(new PropertyChangeEvent(this, "queueSize", this.maxQueueSize, size));
+        this.maxQueueSize = size;
+    }
+    
+    public void setDequeueTimeout(long l) {
+        notifyChangeListeners(new PropertyChangeEvent(this, "dequeueTimeout", this.dequeueTimeout, l));
+        this.dequeueTimeout = l;
+    }
+    
+    /**
+     * Gets the number of work items that were rejected because the queue was full
+     * or shut down.
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+    
+    /**
+     * Gets the average time, in milliseconds, work items waited between being 
+     * submitted and starting to run.
+     */
+    public double getAverageWaitTime() {
+        long count = waitCount.get();
+        return count == 0 ? 0 : totalWaitTime.get() / (count * 1000000d);
+    }
+    
+    /**
+     * Gets the longest time, in milliseconds, a work item waited between being
+     * submitted and starting to run.
+     */
+    public long getMaxWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitTime.get());
+    }
+    
+    public void update(Dictionary<String, String> config) {
+        String s = config.get("highWaterMark");
+        if (s != null) {
+            int hwm = Integer.parseInt(s);
+            this.highWaterMark = -1 == hwm ? Integer.MAX_VALUE : hwm;
+        }
+        s = config.get("lowWaterMark");
+        if (s != null) {
+            int lwm = Integer.parseInt(s);
+            this.lowWaterMark = -1 == lwm ? Integer.MAX_VALUE : lwm;
+        }
+        s = config.get("initialSize");
+        if (s != null) {
+            this.initialThreads = Integer.parseInt(s);
+        }
+        s = config.get("dequeueTimeout");
+        if (s != null) {
+            this.dequeueTimeout = Long.parseLong(s);
+        }
+        s = config.get("queueSize");
+        if (s != null) {
+            this.maxQueueSize = Integer.parseInt(s);
+        } 
+    }
+    public Dictionary<String, String> getProperties() {
+        Dictionary<String, String> properties = new Hashtable<String, String>();
+        NumberFormat nf = NumberFormat.getIntegerInstance();
+        properties.put("name", nf.format(getName()));
+        properties.put("highWaterMark", nf.format(getHighWaterMark()));
+        properties.put("lowWaterMark", nf.format(getLowWaterMark()));
+        properties.put("initialSize", nf.format(getLowWaterMark()));
+        properties.put("dequeueTimeout", nf.format(getLowWaterMark()));
+        properties.put("queueSize", nf.format(getLowWaterMark()));
+        return properties;
+    }
+}
@@ -20,67 +20,33 @@
 package org.apache.cxf.workqueue;
 
 import java.beans.PropertyChangeEvent;
-import java.beans.PropertyChangeListener;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-import java.security.AccessController;
-import java.security.PrivilegedAction;
-import java.text.NumberFormat;
-import java.util.ArrayList;
-import java.util.Dictionary;
-import java.util.Hashtable;
-import java.util.List;
-import java.util.concurrent.DelayQueue;
-import java.util.concurrent.Delayed;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import org.apache.cxf.common.classloader.ClassLoaderUtils;
-import org.apache.cxf.common.classloader.ClassLoaderUtils.ClassLoaderHolder;
 import org.apache.cxf.common.injection.NoJSR250Annotations;
 import org.apache.cxf.common.logging.LogUtils;
 import org.apache.cxf.common.util.ReflectionUtil;
 
 @NoJSR250Annotations
-public class AutomaticWorkQueueImpl implements AutomaticWorkQueue {
-    public static final String PROPERTY_NAME = "name";
-    static final int DEFAULT_MAX_QUEUE_SIZE = 256;
+public class AutomaticWorkQueueImpl extends AbstractAutomaticWorkQueue {
     private static final Logger LOG =
         LogUtils.getL7dLogger(AutomaticWorkQueueImpl.class);
     
-
-    String name = "default";
-    int maxQueueSize;
-    int initialThreads;
-    int lowWaterMark;
-    int highWaterMark; 
-    long dequeueTimeout;
-    volatile int approxThreadCount;
-
     ThreadPoolExecutor executor;
     Method addWorkerMethod;
     Object addWorkerArgs[];
     
-    AWQThreadFactory threadFactory;
     ReentrantLock mainLock;
     final ReentrantLock addThreadLock = new ReentrantLock();
     
-    DelayQueue<DelayedTaskWrapper> delayQueue;
-    WatchDog watchDog;
-    
-    boolean shared;
-    int sharedCount;
-    
-    private List<PropertyChangeListener> changeListenerList;
-    
     public AutomaticWorkQueueImpl() {
         this(DEFAULT_MAX_QUEUE_SIZE);
     }    
@@ -111,43 +77,7 @@ public class AutomaticWorkQueueImpl implements AutomaticWorkQueue {
                                   int lowWaterMark,
                                   long dequeueTimeout,
                                   String name) {
-        this.maxQueueSize = mqs == -1 ? DEFAULT_MAX_QUEUE_SIZE : mqs;
-        this.initialThreads = initialThreads;
-        this.highWaterMark = -1 == highWaterMark ? Integer.MAX_VALUE : highWaterMark;
-        this.lowWaterMark = -1 == lowWaterMark ? Integer.MAX_VALUE : lowWaterMark;
-        this.dequeueTimeout = dequeueTimeout;
-        this.name = name;
-        this.changeListenerList = new ArrayList<PropertyChangeListener>();
-    }
-    
-    public void addChangeListener(PropertyChangeListener listener) {
-        this.changeListenerList.add(listener);
-    }
-    
-    public void removeChangeListener(PropertyChangeListener listener) {
-        this.changeListenerList.remove(listener);
-    }
-    
-    public void notifyChangeListeners(PropertyChangeEvent event) {
-        for (PropertyChangeListener listener : changeListenerList) {
-            listener.propertyChange(event);
-        }
-    }
-    
-    public void setShared(boolean shared) {
-        this.shared = shared;
-    }
-    public boolean isShared() {
-        return shared;
-    }
-    public void addSharedUser() {
-        sharedCount++;
-    }
-    public void removeSharedUser() {
-        sharedCount--;
-    }
-    public int getShareCount() {
-        return sharedCount;
+        super(mqs, initialThreads, highWaterMark, lowWaterMark, dequeueTimeout, name);
     }
     
     protected synchronized ThreadPoolExecutor getExecutor() {
@@ -230,209 +160,17 @@ public class AutomaticWorkQueueImpl implements AutomaticWorkQueue {
         }
         return executor;
     }
-    private AWQThreadFactory createThreadFactory(final String nm) {
-        ThreadGroup group;
-        try { 
-            //Try and find the highest level ThreadGroup that we're allowed to use.
-            //That SHOULD allow the default classloader and thread locals and such 
-            //to be the least likely to cause issues down the road.
-            group = AccessController.doPrivileged(
-                new PrivilegedAction<ThreadGroup>() { 
-                    public ThreadGroup run() { 
-                        ThreadGroup group = Thread.currentThread().getThreadGroup(); 
-                        ThreadGroup parent = group;
-                        try { 
-                            while (parent != null) { 
-                                group = parent;  
-                                parent = parent.getParent(); 
-                            } 
-                        } catch (SecurityException se) {
-                            //ignore - if we get here, the "group" is as high as 
-                            //the security manager will allow us to go.   Use that one.
-                        }
-                        return new ThreadGroup(group, nm + "-workqueue");
-                    } 
-                }
-            );
-        } catch (SecurityException e) { 
-            group = new ThreadGroup(nm + "-workqueue");
-        }
-        return new AWQThreadFactory(group, nm);
-    }
-    
-    static class DelayedTaskWrapper implements Delayed, Runnable {
-        long trigger;
-        Runnable work;
-        
-        DelayedTaskWrapper(Runnable work, long delay) {
-            this.work = work;
-            trigger = System.currentTimeMillis() + delay;
-        }
-        
-        public long getDelay(TimeUnit unit) {
-            long n = trigger - System.currentTimeMillis();
-            return unit.convert(n, TimeUnit.MILLISECONDS);
-        }
-
-        public int compareTo(Delayed delayed) {
-            long other = ((DelayedTaskWrapper)delayed).trigger;
-            int returnValue;
-            if (this.trigger < other) {
-                returnValue = -1;
-            } else if (this.trigger > other) {
-                returnValue = 1;
-            } else {
-                returnValue = 0;
-            }
-            return returnValue;
-        }
-
-        public void run() {
-            work.run();
-        }
-        
-    }
-    
-    class WatchDog extends Thread {
-        DelayQueue<DelayedTaskWrapper> delayQueue;
-        AtomicBoolean shutdown = new AtomicBoolean(false);
-        
-        WatchDog(DelayQueue<DelayedTaskWrapper> queue) {
-            delayQueue = queue;
-        }
-        
-        public void shutdown() {
-            shutdown.set(true);
-            // to exit the waiting thread
-            interrupt();
-        }
-        
-        public void run() {
-            DelayedTaskWrapper task;
-            try {
-                while (!shutdown.get()) {
-                    task = delayQueue.take();
-                    if (task != null) {
-                        try {
-                            execute(task);
-                        } catch (Exception ex) {
-                            LOG.warning("Executing the task from DelayQueue with exception: " + ex);
-                        }
-                    }
-                }
-            } catch (InterruptedException e) {
-                if (LOG.isLoggable(Level.FINE)) {
-                    LOG.finer("The DelayQueue watchdog Task is stopping");
-                }
-            }
-
-        }
-        
-    }
-    class AWQThreadFactory implements ThreadFactory {
-        final AtomicInteger threadNumber = new AtomicInteger(1);
-        ThreadGroup group;
-        String name;
-        ClassLoader loader;
-        
-        AWQThreadFactory(ThreadGroup gp, String nm) {
-            group = gp;
-            name = nm;
-            //force the loader to be the loader of CXF, not the application loader
-            loader = AutomaticWorkQueueImpl.class.getClassLoader();
-        }
-        
-        public Thread newThread(final Runnable r) {
-            if (group.isDestroyed()) {
-                group = new ThreadGroup(group.getParent(), name + "-workqueue");
-            }
-            Runnable wrapped = new Runnable() {
-                public void run() {
-                    ++approxThreadCount;
-                    try {
-                        r.run();
-                    } finally {
-                        --approxThreadCount;
-                    }
-                }
-            };
-            final Thread t = new Thread(group, 
-                                  wrapped, 
-                                  name + "-workqueue-" + threadNumber.getAndIncrement(),
-                                  0);
-            AccessController.doPrivileged(new PrivilegedAction<Boolean>() {
-                public Boolean run() {
-                    t.setContextClassLoader(loader);
-                    return true;
-                }
-            });
-            t.setDaemon(true);
-            if (t.getPriority() != Thread.NORM_PRIORITY) {
-                t.setPriority(Thread.NORM_PRIORITY);
-            }
-            return t;
-        }
-        public void setName(String s) {
-            name = s;
-        }
-        public void shutdown() {
-            if (!group.isDestroyed()) {
-                try {
-                    group.destroy();
-                    group.setDaemon(true);
-                } catch (Throwable t) {
-                    //ignore
-                }
-            }            
-        }
-    }
     
-    public void setName(String s) {
-        name = s;
-        if (threadFactory != null) {
-            threadFactory.setName(s);
+    public void execute(final Runnable command) {
+        try {
+            doExecute(wrap(command));
+        } catch (RejectedExecutionException ree) {
+            rejectedCount.incrementAndGet();
+            throw ree;
         }
     }
-    public String getName() {
-        return name;
-    }
-
-    public String toString() {
-        StringBuilder buf = new StringBuilder();
-        buf.append(super.toString());
-        buf.append(" [queue size: ");
-        buf.append(getSize());
-        buf.append(", max size: ");
-        buf.append(maxQueueSize);
-        buf.append(", threads: ");
-        buf.append(getPoolSize());
-        buf.append(", active threads: ");
-        buf.append(getActiveCount());
-        buf.append(", low water mark: ");
-        buf.append(getLowWaterMark());
-        buf.append(", high water mark: ");
-        buf.append(getHighWaterMark());
-        buf.append("]");
-        return buf.toString();
-    }
     
-    public void execute(final Runnable command) {
-        //Grab the context classloader of this thread.   We'll make sure we use that 
-        //on the thread the runnable actually runs on.
-        
-        final ClassLoader loader = Thread.currentThread().getContextClassLoader();
-        Runnable r = new Runnable() {
-            public void run() {
-                ClassLoaderHolder orig = ClassLoaderUtils.setThreadContextClassloader(loader);
-                try {
-                    command.run();
-                } finally {
-                    if (orig != null) {
-                        orig.reset();
-                    }
-                }
-            }
-        };
+    private void doExecute(Runnable r) {
         //The ThreadPoolExecutor in the JDK doesn't expand the number
         //of threads until the queue is full.   However, we would 
         //prefer the number of threads to expand immediately and 
@@ -467,29 +205,22 @@ public class AutomaticWorkQueueImpl implements AutomaticWorkQueue {
     
     // WorkQueue interface
     public void execute(Runnable work, long timeout) {
+        Runnable r = wrap(work);
         try {
-            execute(work);
+            doExecute(r);
         } catch (RejectedExecutionException ree) {
             try {
-                if (!getExecutor().getQueue().offer(work, timeout, TimeUnit.MILLISECONDS)) {
+                if (!getExecutor().getQueue().offer(r, timeout, TimeUnit.MILLISECONDS)) {
+                    rejectedCount.incrementAndGet();
                     throw ree;
                 }
             } catch (InterruptedException ie) {
+                rejectedCount.incrementAndGet();
                 throw ree;
             }
         }    
     }
 
-    public synchronized void schedule(final Runnable work, final long delay) {
-        if (delayQueue == null) {
-            delayQueue = new DelayQueue<DelayedTaskWrapper>();
-            watchDog = new WatchDog(delayQueue);
-            watchDog.setDaemon(true);
-            watchDog.start();
-        }
-        delayQueue.put(new DelayedTaskWrapper(work, delay));
-    }
-    
     // AutomaticWorkQueue interface
     
     public void shutdown(boolean processRemainingWorkItems) {
@@ -502,14 +233,6 @@ public class AutomaticWorkQueueImpl implements AutomaticWorkQueue {
     }
 
 
-    /**
-     * Gets the maximum size (capacity) of the backing queue.
-     * @return the maximum size (capacity) of the backing queue.
-     */
-    public long getMaxSize() {
-        return maxQueueSize;
-    }
-
     /**
      * Gets the current size of the backing queue.
      * @return the current size of the backing queue.
@@ -537,10 +260,6 @@ public class AutomaticWorkQueueImpl implements AutomaticWorkQueue {
         return lwm == Integer.MAX_VALUE ? -1 : lwm;
     }
     
-    public int getInitialSize() {
-        return this.initialThreads;
-    }
-
     public void setHighWaterMark(int hwm) {
         highWaterMark = hwm < 0 ? Integer.MAX_VALUE : hwm;
         if (executor != null) {
@@ -559,21 +278,6 @@ public class AutomaticWorkQueueImpl implements AutomaticWorkQueue {
         }
     }
 
-    public void setInitialSize(int initialSize) {
-        notifyChangeListeners(new PropertyChangeEvent(this, "initialSize", this.initialThreads, initialSize));
-        this.initialThreads = initialSize;
-    }
-    
-    public void setQueueSize(int size) {
-        notifyChangeListeners(new PropertyChangeEvent(this, "queueSize", this.maxQueueSize, size));
-        this.maxQueueSize = size;
-    }
-    
-    public void setDequeueTimeout(long l) {
-        notifyChangeListeners(new PropertyChangeEvent(this, "dequeueTimeout", this.dequeueTimeout, l));
-        this.dequeueTimeout = l;
-    }
-    
     public boolean isShutdown() {
         if (executor == null) {
             return false;
@@ -598,37 +302,4 @@ public class AutomaticWorkQueueImpl implements AutomaticWorkQueue {
         }
         return executor.getActiveCount();
     }
-    public void update(Dictionary<String, String> config) {
-        String s = config.get("highWaterMark");
-        if (s != null) {
-            this.highWaterMark = Integer.parseInt(s);
-        }
-        s = config.get("lowWaterMark");
-        if (s != null) {
-            this.lowWaterMark = Integer.parseInt(s);
-        }
-        s = config.get("initialSize");
-        if (s != null) {
-            this.initialThreads = Integer.parseInt(s);
-        }
-        s = config.get("dequeueTimeout");
-        if (s != null) {
-            this.dequeueTimeout = Long.parseLong(s);
-        }
-        s = config.get("queueSize");
-        if (s != null) {
-            this.maxQueueSize = Integer.parseInt(s);
-        } 
-    }
-    public Dictionary<String, String> getProperties() {
-        Dictionary<String, String> properties = new Hashtable<String, String>();
-        NumberFormat nf = NumberFormat.getIntegerInstance();
-        properties.put("name", nf.format(getName()));
-        properties.put("highWaterMark", nf.format(getHighWaterMark()));
-        properties.put("lowWaterMark", nf.format(getLowWaterMark()));
-        properties.put("initialSize", nf.format(getLowWaterMark()));
-        properties.put("dequeueTimeout", nf.format(getLowWaterMark()));
-        properties.put("queueSize", nf.format(getLowWaterMark()));
-        return properties;
-    }
 }
@@ -0,0 +1,382 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.workqueue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+
+import org.apache.cxf.Bus;
+import org.apache.cxf.common.logging.LogUtils;
+import org.apache.cxf.management.InstrumentationManager;
+
+/**
+ * Divides the work queue capacity of a bus between named {@link BulkheadWorkQueue}s
+ * so that a slow group of endpoints cannot starve the others.
+ * <p>
+ * At most {@link #getCapacity() capacity} work items run at the same time.  Every
+ * queue is guaranteed a share of the capacity in proportion to its weight, and work
+ * within that share always starts immediately.  Capacity left idle by some queues is
+ * lent to the others, and whenever a running item completes the freed capacity goes
+ * to the waiting queue that runs the fewest items for its weight.
+ * <p>
+ * The work itself runs on the "bulkhead" queue of the {@link WorkQueueManager}, which
+ * is created when it has not been configured.
+ * <p>
+ * The bookkeeping of all the queues is guarded by the monitor of the manager, so
+ * every execute and every completion takes that one lock.  The locked sections only
+ * update a few counters; the work is handed to the executor outside the lock unless
+ * it had to wait, and waiting submitters are only woken when there are any.  With
+ * a very high rate of very short work items the lock does become the limit, such
+ * endpoints are better served by an unbounded work queue of their own.
+ */
+public class BulkheadManager {
+    public static final String CAPACITY_PROPERTY = "org.apache.cxf.workqueue.bulkhead.capacity";
+    public static final String WORK_QUEUE_NAME = "bulkhead";
+    
+    static final int DEFAULT_CAPACITY = 25;
+    
+    private static final Logger LOG = LogUtils.getL7dLogger(BulkheadManager.class);
+    
+    private final Bus bus;
+    private final int capacity;
+    private final Map<String, BulkheadWorkQueue> queues = new LinkedHashMap<String, BulkheadWorkQueue>();
+    // shut down queues that still run or hold work, replaced by new queues of the same name
+    private final List<BulkheadWorkQueue> draining = new ArrayList<BulkheadWorkQueue>();
+    private volatile AutomaticWorkQueue executor;
+    private int running;
+    private int waiters;
+    
+    public BulkheadManager(Bus bus, int capacity) {
+        this.bus = bus;
+        this.capacity = capacity;
+    }
+    
+    /**
+     * Returns the manager registered on the bus, creating it on first use.
+     */
+    public static BulkheadManager getInstance(Bus bus) {
+        BulkheadManager manager = bus.getExtension(BulkheadManager.class);
+        if (manager == null) {
+            synchronized (BulkheadManager.class) {
+                manager = bus.getExtension(BulkheadManager.class);
+                if (manager == null) {
+                    Object v = bus.getProperty(CAPACITY_PROPERTY);
+                    int c = v == null ? DEFAULT_CAPACITY : Integer.parseInt(v.toString());
+                    manager = new BulkheadManager(bus, c);
+                    bus.setExtension(manager, BulkheadManager.class);
+                }
+            }
+        }
+        return manager;
+    }
+    
+    public Bus getBus() {
+        return bus;
+    }
+    
+    public int getCapacity() {
+        return capacity;
+    }
+    
+    /**
+     * Gets the number of work items currently running in all the queues.
+     */
+    public synchronized int getRunningCount() {
+        return running;
+    }
+    
+    /**
+     * Returns the named queue, creating it with the given weight and limits if it 
+     * does not exist yet, and adds a user to it.  Every user must eventually 
+     * {@link #release(BulkheadWorkQueue) release} the queue.
+     * 
+     * @param name the name of the queue
+     * @param weight the relative share of the capacity guaranteed to the queue
+     * @param maxConcurrency the most items the queue may run, including borrowed capacity,
+     *        or -1 for no limit other than the capacity
+     * @param maxQueueSize the most items that may wait for capacity
+     */
+    public BulkheadWorkQueue getWorkQueue(String name, int weight, int maxConcurrency, int maxQueueSize) {
+        BulkheadWorkQueue queue;
+        boolean created = false;
+        synchronized (this) {
+            queue = queues.get(name);
+            if (queue != null && queue.shutdown) {
+                // a restarted endpoint gets a new queue, the old one finishes its work on its own
+                queues.remove(name);
+                draining.add(queue);
+                queue = null;
+            }
+            if (queue == null) {
+                queue = new BulkheadWorkQueue(this, name, weight, maxConcurrency, maxQueueSize);
+                queues.put(name, queue);
+                updateShares();
+                created = true;
+            }
+            queue.users++;
+        }
+        if (created) {
+            InstrumentationManager imanager = bus.getExtension(InstrumentationManager.class);
+            if (imanager != null) {
+                try {
+                    imanager.register(queue);
+                } catch (JMException jmex) {
+                    LOG.log(Level.WARNING, jmex.getMessage(), jmex);
+                }
+            }
+        }
+        return queue;
+    }
+    
+    /**
+     * Removes a user from the queue, shutting the queue down once it has no users left.
+     */
+    public void release(BulkheadWorkQueue queue) {
+        synchronized (this) {
+            if (--queue.users > 0) {
+                return;
+            }
+        }
+        queue.shutdown(true);
+    }
+    
+    public synchronized List<BulkheadWorkQueue> getWorkQueues() {
+        return new ArrayList<BulkheadWorkQueue>(queues.values());
+    }
+    
+    void remove(BulkheadWorkQueue queue) {
+        synchronized (this) {
+            if (queues.get(queue.getName()) == queue) {
+                queues.remove(queue.getName());
+                updateShares();
+                dispatchWaiting();
+            } else if (!draining.remove(queue)) {
+                return;
+            }
+        }
+        InstrumentationManager imanager = bus.getExtension(InstrumentationManager.class);
+        if (imanager != null && imanager.getMBeanServer() != null) {
+            try {
+                imanager.unregister(queue);
+            } catch (JMException jmex) {
+                LOG.log(Level.WARNING, jmex.getMessage(), jmex);
+            }
+        }
+    }
+    
+    /**
+     * Splits the capacity between the queues by weight, every queue getting at least one.
+     * Must be called with the lock held.
+     */
+    void updateShares() {
+        long totalWeight = 0;
+        for (BulkheadWorkQueue q : queues.values()) {
+            totalWeight += q.weight;
+        }
+        for (BulkheadWorkQueue q : queues.values()) {
+            q.share = (int)Math.max(1, capacity * q.weight / Math.max(1, totalWeight));
+        }
+    }
+    
+    AutomaticWorkQueue getExecutor() {
+        AutomaticWorkQueue q = executor;
+        if (q == null) {
+            synchronized (this) {
+                q = executor;
+                if (q == null) {
+                    q = createExecutor();
+                    executor = q;
+                }
+            }
+        }
+        return q;
+    }
+    
+    private AutomaticWorkQueue createExecutor() {
+        WorkQueueManager mgr = bus.getExtension(WorkQueueManager.class);
+        AutomaticWorkQueue q = mgr == null ? null : mgr.getNamedWorkQueue(WORK_QUEUE_NAME);
+        if (q == null) {
+            // guaranteed shares may run on top of the lent out capacity
+            q = new ElasticWorkQueueImpl(AutomaticWorkQueueImpl.DEFAULT_MAX_QUEUE_SIZE, 0,
+                                         2 * capacity, 0, 60 * 1000L, WORK_QUEUE_NAME);
+            if (mgr != null) {
+                mgr.addNamedWorkQueue(WORK_QUEUE_NAME, q);
+            }
+        }
+        return q;
+    }
+    
+    /**
+     * Starts the work or queues it until capacity becomes available, waiting up to 
+     * the timeout for room in a full queue.
+     */
+    void execute(BulkheadWorkQueue queue, Runnable work, long timeout) {
+        if (reserve(queue, work, timeout)) {
+            submit(queue, work);
+        }
+    }
+    
+    /**
+     * Takes the capacity for the work and returns true, or queues the work and returns false.
+     */
+    private synchronized boolean reserve(BulkheadWorkQueue queue, Runnable work, long timeout) {
+        if (queue.shutdown) {
+            queue.rejected++;
+            throw new RejectedExecutionException("Bulkhead " + queue.getName() + " is shut down");
+        }
+        if (canStart(queue, false)) {
+            queue.active++;
+            running++;
+            return true;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        long remaining = timeout;
+        while (queue.waiting.size() >= queue.maxQueueSize) {
+            if (remaining <= 0 || queue.shutdown) {
+                queue.rejected++;
+                throw new RejectedExecutionException("Bulkhead " + queue.getName() + " is full");
+            }
+            waiters++;
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                queue.rejected++;
+                throw new RejectedExecutionException(e);
+            } finally {
+                waiters--;
+            }
+            if (canStart(queue, false)) {
+                queue.active++;
+                running++;
+                return true;
+            }
+            remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        }
+        queue.waiting.add(work);
+        return false;
+    }
+    
+    private boolean canStart(BulkheadWorkQueue queue, boolean waiting) {
+        if (!waiting && !queue.waiting.isEmpty()) {
+            // keep the order of the work of a queue
+            return false;
+        }
+        return queue.active < queue.share
+            || running < capacity && queue.active < queue.maxConcurrency;
+    }
+    
+    private void start(BulkheadWorkQueue queue, Runnable work) {
+        queue.active++;
+        running++;
+        submit(queue, work);
+    }
+    
+    private void submit(final BulkheadWorkQueue queue, final Runnable work) {
+        try {
+            getExecutor().execute(new Runnable() {
+                public void run() {
+                    try {
+                        work.run();
+                    } finally {
+                        completed(queue);
+                    }
+                }
+            });
+        } catch (RuntimeException ex) {
+            synchronized (this) {
+                queue.active--;
+                running--;
+                queue.rejected++;
+            }
+            throw ex;
+        }
+    }
+    
+    synchronized void completed(BulkheadWorkQueue queue) {
+        queue.active--;
+        queue.completed++;
+        running--;
+        dispatchWaiting();
+        if (queue.shutdown && queue.active == 0 && queue.waiting.isEmpty()) {
+            queue.terminated();
+        }
+        if (waiters > 0) {
+            notifyAll();
+        }
+    }
+    
+    /**
+     * Hands freed capacity to waiting work, queues within their guaranteed share 
+     * first, then the queue running the fewest items for its weight.
+     * Must be called with the lock held.
+     */
+    void dispatchWaiting() {
+        while (true) {
+            BulkheadWorkQueue next = selectNext(selectNext(null, queues.values()), draining);
+            if (next == null) {
+                return;
+            }
+            Runnable work = next.waiting.poll();
+            try {
+                start(next, work);
+            } catch (RejectedExecutionException ex) {
+                LOG.log(Level.WARNING, ex.getMessage(), ex);
+                cancel(work);
+                return;
+            }
+        }
+    }
+    
+    private BulkheadWorkQueue selectNext(BulkheadWorkQueue next, Collection<BulkheadWorkQueue> candidates) {
+        boolean nextGuaranteed = next != null && next.active < next.share;
+        for (BulkheadWorkQueue q : candidates) {
+            if (q.waiting.isEmpty() || !canStart(q, true)) {
+                continue;
+            }
+            boolean guaranteed = q.active < q.share;
+            if (next == null
+                || guaranteed && !nextGuaranteed
+                || guaranteed == nextGuaranteed 
+                    && (long)q.active * next.weight < (long)next.active * q.weight) {
+                next = q;
+                nextGuaranteed = guaranteed;
+            }
+        }
+        return next;
+    }
+    
+    static void cancel(Runnable work) {
+        // callers blocked on the result must not wait for work that will never run
+        if (work instanceof Future) {
+            ((Future<?>)work).cancel(false);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.workqueue;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.apache.cxf.management.ManagedComponent;
+import org.apache.cxf.management.ManagementConstants;
+import org.apache.cxf.management.annotation.ManagedAttribute;
+import org.apache.cxf.management.annotation.ManagedResource;
+
+/**
+ * A bounded slice of the work queue capacity of a bus, handed out by the 
+ * {@link BulkheadManager}.  All the state of the slice is guarded by the manager.
+ */
+@ManagedResource(componentName = "Bulkhead", 
+                 description = "A bulkhead work queue",
+                 currencyTimeLimit = 15, persistPolicy = "OnUpdate", persistPeriod = 200)
+public class BulkheadWorkQueue implements AutomaticWorkQueue, ManagedComponent {
+    private static final String TYPE_VALUE = "Bulkheads";
+    
+    final Queue<Runnable> waiting = new ArrayDeque<Runnable>();
+    int weight;
+    int maxConcurrency;
+    int maxQueueSize;
+    int share;
+    int active;
+    int users;
+    long rejected;
+    long completed;
+    boolean shutdown;
+    boolean terminated;
+    
+    private final BulkheadManager manager;
+    private final String name;
+    
+    BulkheadWorkQueue(BulkheadManager manager, String name, int weight, int maxConcurrency, int maxQueueSize) {
+        this.manager = manager;
+        this.name = name;
+        this.weight = Math.max(1, weight);
+        this.maxConcurrency = maxConcurrency < 0 ? Integer.MAX_VALUE : maxConcurrency;
+        this.maxQueueSize = maxQueueSize;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public void execute(Runnable work) {
+        manager.execute(this, work, 0);
+    }
+    
+    public void execute(Runnable work, long timeout) {
+        manager.execute(this, work, timeout);
+    }
+    
+    public void schedule(final Runnable work, long delay) {
+        manager.getExecutor().schedule(new Runnable() {
+            public void run() {
+                execute(work);
+            }
+        }, delay);
+    }
+    
+    public void shutdown(boolean processRemainingWorkItems) {
+        boolean done;
+        synchronized (manager) {
+            shutdown = true;
+            if (!processRemainingWorkItems) {
+                for (Runnable work = waiting.poll(); work != null; work = waiting.poll()) {
+                    BulkheadManager.cancel(work);
+                }
+            }
+            done = active == 0 && waiting.isEmpty();
+            manager.notifyAll();
+        }
+        if (done) {
+            terminated();
+        }
+    }
+    
+    void terminated() {
+        synchronized (manager) {
+            if (terminated) {
+                return;
+            }
+            terminated = true;
+        }
+        manager.remove(this);
+    }
+    
+    public boolean isShutdown() {
+        synchronized (manager) {
+            return shutdown;
+        }
+    }
+    
+    @ManagedAttribute(description = "The relative share of the capacity guaranteed to the queue",
+                      persistPolicy = "OnUpdate")
+    public int getWeight() {
+        synchronized (manager) {
+            return weight;
+        }
+    }
+    
+    public void setWeight(int w) {
+        synchronized (manager) {
+            weight = Math.max(1, w);
+            manager.updateShares();
+            manager.dispatchWaiting();
+        }
+    }
+    
+    @ManagedAttribute(description = "The number of items the queue can always run at once")
+    public int getGuaranteedConcurrency() {
+        synchronized (manager) {
+            return share;
+        }
+    }
+    
+    @ManagedAttribute(description = "The most items the queue may run at once, including "
+                      + "borrowed capacity", persistPolicy = "OnUpdate")
+    public int getMaxConcurrency() {
+        synchronized (manager) {
+            return maxConcurrency == Integer.MAX_VALUE ? -1 : maxConcurrency;
+        }
+    }
+    
+    public void setMaxConcurrency(int max) {
+        synchronized (manager) {
+            maxConcurrency = max < 0 ? Integer.MAX_VALUE : max;
+            manager.dispatchWaiting();
+        }
+    }
+    
+    @ManagedAttribute(description = "The number of items currently running")
+    public int getActiveCount() {
+        synchronized (manager) {
+            return active;
+        }
+    }
+    
+    @ManagedAttribute(description = "The number of running items beyond the guaranteed share")
+    public int getBorrowedCount() {
+        synchronized (manager) {
+            return Math.max(0, active - share);
+        }
+    }
+    
+    @ManagedAttribute(description = "The number of items waiting for capacity")
+    public int getSize() {
+        synchronized (manager) {
+            return waiting.size();
+        }
+    }
+    
+    @ManagedAttribute(description = "The most items that may wait for capacity")
+    public int getMaxSize() {
+        synchronized (manager) {
+            return maxQueueSize;
+        }
+    }
+    
+    @ManagedAttribute(description = "The number of items rejected")
+    public long getRejectedCount() {
+        synchronized (manager) {
+            return rejected;
+        }
+    }
+    
+    @ManagedAttribute(description = "The number of items completed")
+    public long getCompletedCount() {
+        synchronized (manager) {
+            return completed;
+        }
+    }
+    
+    public ObjectName getObjectName() throws JMException {
+        StringBuilder buffer = new StringBuilder(ManagementConstants.DEFAULT_DOMAIN_NAME).append(':');
+        buffer.append(ManagementConstants.BUS_ID_PROP).append('=')
+            .append(manager.getBus().getId()).append(',');
+        buffer.append(ManagementConstants.TYPE_PROP).append('=').append(TYPE_VALUE).append(',');
+        buffer.append(ManagementConstants.NAME_PROP).append('=').append(ObjectName.quote(name)).append(',');
+        buffer.append(ManagementConstants.INSTANCE_ID_PROP).append('=').append(hashCode());
+        return new ObjectName(buffer.toString());
+    }
+    
+    public String toString() {
+        StringBuilder buf = new StringBuilder();
+        buf.append(super.toString());
+        buf.append(" [name: ").append(name);
+        buf.append(", weight: ").append(getWeight());
+        buf.append(", active: ").append(getActiveCount());
+        buf.append(", waiting: ").append(getSize());
+        buf.append("]");
+        return buf.toString();
+    }
+}
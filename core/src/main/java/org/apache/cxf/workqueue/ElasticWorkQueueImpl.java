@@ -0,0 +1,457 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.workqueue;
+
+import java.beans.PropertyChangeEvent;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.cxf.common.injection.NoJSR250Annotations;
+import org.apache.cxf.common.logging.LogUtils;
+
+/**
+ * An {@link AutomaticWorkQueue} that runs work on its own pool of worker threads
+ * rather than on the ThreadPoolExecutor of {@link AutomaticWorkQueueImpl}.
+ * <p>
+ * Submission never takes a lock: work is handed directly to an idle worker if
+ * there is one, otherwise a new worker is started as long as the high water mark
+ * has not been reached, and only then is the work queued.  Workers above the low
+ * water mark exit once they have been idle for the dequeue timeout.
+ */
+@NoJSR250Annotations
+public class ElasticWorkQueueImpl extends AbstractAutomaticWorkQueue {
+    private static final Logger LOG = LogUtils.getL7dLogger(ElasticWorkQueueImpl.class);
+    
+    /** Handed to an idle worker to make it look at the queue again. */
+    private static final Runnable WAKE_UP = new Marker();
+    /** Set by an idle worker that has stopped accepting work. */
+    private static final Runnable CLAIMED = new Marker();
+    
+    private static final long RETRY_INTERVAL = TimeUnit.MILLISECONDS.toNanos(1);
+    
+    private final ConcurrentLinkedQueue<Runnable> queue = new ConcurrentLinkedQueue<Runnable>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final ConcurrentLinkedDeque<Worker> idleWorkers = new ConcurrentLinkedDeque<Worker>();
+    private final AtomicInteger workerCount = new AtomicInteger();
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+    private final AtomicInteger largestPoolSize = new AtomicInteger();
+    private volatile boolean started;
+    private volatile boolean stopped;
+    private volatile boolean terminated;
+    
+    public ElasticWorkQueueImpl() {
+        this(DEFAULT_MAX_QUEUE_SIZE);
+    }
+    public ElasticWorkQueueImpl(String name) {
+        this(DEFAULT_MAX_QUEUE_SIZE, name);
+    }
+    public ElasticWorkQueueImpl(int max) {
+        this(max, "default");
+    }
+    public ElasticWorkQueueImpl(int max, String name) {
+        this(max, 0, 25, 5, 2 * 60 * 1000L, name);
+    }
+    public ElasticWorkQueueImpl(int mqs, 
+                                int initialThreads, 
+                                int highWaterMark, 
+                                int lowWaterMark,
+                                long dequeueTimeout) {
+        this(mqs, initialThreads, highWaterMark, lowWaterMark, dequeueTimeout, "default");
+    }
+    public ElasticWorkQueueImpl(int mqs, 
+                                int initialThreads, 
+                                int highWaterMark, 
+                                int lowWaterMark,
+                                long dequeueTimeout,
+                                String name) {
+        super(mqs, initialThreads, highWaterMark, lowWaterMark, dequeueTimeout, name);
+    }
+    
+    private void start() {
+        if (started) {
+            return;
+        }
+        synchronized (this) {
+            if (started) {
+                return;
+            }
+            threadFactory = createThreadFactory(name);
+            if (LOG.isLoggable(Level.FINE)) {
+                LOG.fine("Constructing elastic work queue with max queue size: " + maxQueueSize
+                         + ", initialThreads: " + initialThreads
+                         + ", lowWaterMark: " + lowWaterMark
+                         + ", highWaterMark: " + highWaterMark);
+            }
+            int initial = Math.min(initialThreads, highWaterMark);
+            int count = 0;
+            while (count < initial && addWorker(null)) {
+                count++;
+            }
+            if (count < initial) {
+                LOG.log(Level.WARNING, "THREAD_START_FAILURE_MSG", new Object[] {count, initial});
+            }
+            started = true;
+        }
+    }
+    
+    @Override
+    public void execute(Runnable command) {
+        if (!submit(wrap(command))) {
+            rejectedCount.incrementAndGet();
+            throw new RejectedExecutionException("Work queue " + name + " is full or shut down");
+        }
+    }
+    
+    @Override
+    public void execute(Runnable work, long timeout) {
+        Runnable r = wrap(work);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        while (!submit(r)) {
+            if (stopped || System.nanoTime() - deadline >= 0 || Thread.interrupted()) {
+                rejectedCount.incrementAndGet();
+                throw new RejectedExecutionException("Work queue " + name + " is full or shut down");
+            }
+            LockSupport.parkNanos(this, RETRY_INTERVAL);
+        }
+    }
+    
+    private boolean submit(Runnable r) {
+        if (stopped) {
+            return false;
+        }
+        start();
+        Worker w = idleWorkers.pollFirst();
+        while (w != null) {
+            if (w.handOff(r)) {
+                return true;
+            }
+            w = idleWorkers.pollFirst();
+        }
+        if (addWorker(r)) {
+            return true;
+        }
+        if (!enqueue(r)) {
+            return false;
+        }
+        // a worker may have gone idle after we looked, make sure one of them
+        // notices the queued work
+        w = idleWorkers.pollFirst();
+        while (w != null && !w.handOff(WAKE_UP)) {
+            w = idleWorkers.pollFirst();
+        }
+        return true;
+    }
+    
+    private boolean enqueue(Runnable r) {
+        int size = queued.get();
+        while (size < maxQueueSize) {
+            if (queued.compareAndSet(size, size + 1)) {
+                queue.offer(r);
+                return true;
+            }
+            size = queued.get();
+        }
+        return false;
+    }
+    
+    private Runnable dequeue() {
+        Runnable r = queue.poll();
+        if (r != null) {
+            queued.decrementAndGet();
+        }
+        return r;
+    }
+    
+    private boolean addWorker(Runnable first) {
+        int count;
+        do {
+            count = workerCount.get();
+            if (count >= highWaterMark) {
+                return false;
+            }
+        } while (!workerCount.compareAndSet(count, count + 1));
+        Worker w = new Worker(first);
+        Thread t;
+        try {
+            t = threadFactory.newThread(w);
+            t.start();
+        } catch (Throwable ex) {
+            LOG.log(Level.WARNING, ex.getMessage(), ex);
+            workerExited(false);
+            return false;
+        }
+        int largest = largestPoolSize.get();
+        while (count + 1 > largest && !largestPoolSize.compareAndSet(largest, count + 1)) {
+            largest = largestPoolSize.get();
+        }
+        return true;
+    }
+    
+    private boolean retire(boolean timedOut) {
+        int count = workerCount.get();
+        while (count > highWaterMark || timedOut && count > lowWaterMark) {
+            if (workerCount.compareAndSet(count, count - 1)) {
+                return true;
+            }
+            count = workerCount.get();
+        }
+        return false;
+    }
+    
+    private void workerExited(boolean retired) {
+        int count = retired ? workerCount.get() : workerCount.decrementAndGet();
+        if (count == 0) {
+            if (stopped) {
+                terminate();
+            } else if (!queue.isEmpty()) {
+                // the last worker died abnormally with work still queued
+                addWorker(null);
+            }
+        }
+    }
+    
+    private void terminate() {
+        synchronized (this) {
+            if (terminated) {
+                return;
+            }
+            terminated = true;
+        }
+        if (threadFactory != null) {
+            threadFactory.shutdown();
+        }
+        if (watchDog != null) {
+            watchDog.shutdown();
+        }
+    }
+    
+    @Override
+    public void shutdown(boolean processRemainingWorkItems) {
+        stopped = true;
+        if (!processRemainingWorkItems) {
+            while (dequeue() != null) {
+                // discard
+            }
+        }
+        Worker w = idleWorkers.pollFirst();
+        while (w != null) {
+            w.handOff(WAKE_UP);
+            w = idleWorkers.pollFirst();
+        }
+        if (workerCount.get() == 0) {
+            terminate();
+        }
+    }
+    
+    @Override
+    public long getSize() {
+        return queued.get();
+    }
+    
+    @Override
+    public boolean isEmpty() {
+        return queued.get() == 0;
+    }
+    
+    @Override
+    public boolean isFull() {
+        return queued.get() >= maxQueueSize;
+    }
+    
+    @Override
+    public int getHighWaterMark() {
+        return highWaterMark == Integer.MAX_VALUE ? -1 : highWaterMark;
+    }
+    
+    @Override
+    public int getLowWaterMark() {
+        return lowWaterMark == Integer.MAX_VALUE ? -1 : lowWaterMark;
+    }
+    
+    @Override
+    public void setHighWaterMark(int hwm) {
+        int old = getHighWaterMark();
+        highWaterMark = hwm < 0 ? Integer.MAX_VALUE : hwm;
+        if (started) {
+            notifyChangeListeners(new PropertyChangeEvent(this, "highWaterMark", old, hwm));
+        }
+    }
+    
+    @Override
+    public void setLowWaterMark(int lwm) {
+        int old = getLowWaterMark();
+        lowWaterMark = lwm < 0 ? 0 : lwm;
+        if (started) {
+            notifyChangeListeners(new PropertyChangeEvent(this, "lowWaterMark", old, lwm));
+            // let idle workers re-evaluate whether they may time out
+            Worker w = idleWorkers.pollFirst();
+            while (w != null) {
+                w.handOff(WAKE_UP);
+                w = idleWorkers.pollFirst();
+            }
+        }
+    }
+    
+    @Override
+    public boolean isShutdown() {
+        return stopped;
+    }
+    
+    @Override
+    public int getLargestPoolSize() {
+        return largestPoolSize.get();
+    }
+    
+    @Override
+    public int getPoolSize() {
+        return workerCount.get();
+    }
+    
+    @Override
+    public int getActiveCount() {
+        return activeWorkers.get();
+    }
+    
+    private static final class Marker implements Runnable {
+        public void run() {
+        }
+    }
+    
+    final class Worker implements Runnable {
+        final AtomicReference<Runnable> handOff = new AtomicReference<Runnable>();
+        volatile Thread thread;
+        Runnable next;
+        boolean retired;
+        
+        Worker(Runnable first) {
+            this.next = first;
+        }
+        
+        boolean handOff(Runnable r) {
+            if (handOff.compareAndSet(null, r)) {
+                LockSupport.unpark(thread);
+                return true;
+            }
+            return false;
+        }
+        
+        public void run() {
+            thread = Thread.currentThread();
+            try {
+                Runnable r = nextTask();
+                while (r != null) {
+                    runTask(r);
+                    r = nextTask();
+                }
+            } finally {
+                workerExited(retired);
+            }
+        }
+        
+        private void runTask(Runnable r) {
+            activeWorkers.incrementAndGet();
+            try {
+                r.run();
+            } catch (RuntimeException ex) {
+                LOG.log(Level.WARNING, ex.getMessage(), ex);
+            } finally {
+                activeWorkers.decrementAndGet();
+            }
+        }
+        
+        /**
+         * Returns the next task to run or null if this worker should exit.
+         */
+        private Runnable nextTask() {
+            Runnable r = next;
+            if (r != null) {
+                next = null;
+                return r;
+            }
+            boolean timedOut = false;
+            while (true) {
+                r = dequeue();
+                if (r != null || stopped) {
+                    return r;
+                }
+                if (retire(timedOut)) {
+                    retired = true;
+                    return null;
+                }
+                handOff.set(null);
+                idleWorkers.addFirst(this);
+                // recheck now that submitters can see us
+                r = dequeue();
+                if (r != null || stopped) {
+                    if (handOff.compareAndSet(null, CLAIMED)) {
+                        idleWorkers.removeFirstOccurrence(this);
+                        return r;
+                    }
+                    if (r != null) {
+                        // something was handed to us concurrently, run it next
+                        Runnable h = handOff.get();
+                        if (h != WAKE_UP) {
+                            next = h;
+                        }
+                        return r;
+                    }
+                }
+                r = awaitHandOff(workerCount.get() > lowWaterMark);
+                if (r == null) {
+                    timedOut = true;
+                } else if (r != WAKE_UP) {
+                    return r;
+                }
+            }
+        }
+        
+        private Runnable awaitHandOff(boolean timed) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(dequeueTimeout);
+            while (true) {
+                Runnable r = handOff.get();
+                if (r != null) {
+                    return r;
+                }
+                if (!timed) {
+                    LockSupport.park(this);
+                } else {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        if (handOff.compareAndSet(null, CLAIMED)) {
+                            idleWorkers.removeFirstOccurrence(this);
+                            return null;
+                        }
+                        return handOff.get();
+                    }
+                    LockSupport.parkNanos(this, remaining);
+                }
+                // idle workers are not interruptible
+                Thread.interrupted();
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.endpoint;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ClientImplTest extends Assert {
+
+    @Test
+    public void testThreadContextMap() throws Exception {
+        final Map<Thread, String> map = new ClientImpl.ThreadContextMap<String>();
+        final Thread current = Thread.currentThread();
+        assertFalse(map.containsKey(current));
+        assertNull(map.put(current, "main"));
+        assertEquals("main", map.get(current));
+
+        final CountDownLatch stored = new CountDownLatch(1);
+        final CountDownLatch cleared = new CountDownLatch(1);
+        final String[] seen = new String[2];
+        Thread other = new Thread() {
+            public void run() {
+                map.put(this, "other");
+                seen[0] = map.get(current);
+                stored.countDown();
+                try {
+                    cleared.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    // ignore
+                }
+                seen[1] = map.get(this);
+            }
+        };
+        other.start();
+        assertTrue(stored.await(10, TimeUnit.SECONDS));
+        assertEquals("main", seen[0]);
+        assertEquals("other", map.get(other));
+        assertEquals(2, map.size());
+
+        // clearing releases the contexts of all the threads, not just the calling one
+        map.clear();
+        cleared.countDown();
+        other.join(10000);
+        assertNull(seen[1]);
+        assertTrue(map.isEmpty());
+        assertFalse(map.containsKey(current));
+
+        map.put(current, "again");
+        assertEquals("again", map.get(current));
+        assertEquals("again", map.remove(current));
+        assertTrue(map.isEmpty());
+    }
+}
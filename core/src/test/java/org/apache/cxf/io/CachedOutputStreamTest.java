@@ -20,11 +20,157 @@ package org.apache.cxf.io;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
+
+import org.apache.cxf.Bus;
+import org.apache.cxf.BusFactory;
+import org.apache.cxf.bus.extension.ExtensionManagerBus;
+import org.apache.cxf.helpers.IOUtils;
+import org.junit.Test;
 
 public class CachedOutputStreamTest extends CachedStreamTestBase {
     
+    @Test
+    public void testOffHeapTier() throws IOException {
+        CachedStreamMemoryBudget budget 
+            = CachedStreamMemoryBudget.getInstance(BusFactory.getThreadDefaultBus(false));
+        long offHeap = budget.getOffHeapBytes();
+        CachedOutputStream cos = new CachedOutputStream();
+        cos.setThreshold(256 * 1024);
+        cos.setOffHeapThreshold(1024);
+        byte[] data = new byte[100 * 1024];
+        Arrays.fill(data, (byte)'x');
+        cos.write(data, 0, 512);
+        assertFalse(cos.getOut() instanceof OffHeapOutputStream);
+        cos.write(data, 512, data.length - 512);
+        assertTrue(cos.getOut() instanceof OffHeapOutputStream);
+        assertNull(cos.getTempFile());
+        assertEquals(offHeap + 2 * CachedStreamMemoryBudget.BUFFER_SIZE, budget.getOffHeapBytes());
+        assertTrue(Arrays.equals(data, cos.getBytes()));
+
+        InputStream in = cos.getInputStream();
+        cos.close();
+        assertTrue(Arrays.equals(data, IOUtils.readBytesFromStream(in)));
+        in.close();
+        // like the heap content, the off-heap content outlives the close
+        assertTrue(Arrays.equals(data, IOUtils.readBytesFromStream(cos.getInputStream())));
+        assertEquals(offHeap + 2 * CachedStreamMemoryBudget.BUFFER_SIZE, budget.getOffHeapBytes());
+        
+        cos.resetOut(null, false);
+        assertEquals(offHeap, budget.getOffHeapBytes());
+    }
+    
+    @Test
+    public void testUnclosedStreamsAreReleased() throws Exception {
+        Bus bus = new ExtensionManagerBus();
+        Bus oldBus = BusFactory.getThreadDefaultBus(false);
+        BusFactory.setThreadDefaultBus(bus);
+        try {
+            CachedStreamMemoryBudget budget = CachedStreamMemoryBudget.getInstance(bus);
+            byte[] data = new byte[100 * 1024];
+            CachedOutputStream cos = new CachedOutputStream(1024 * 1024);
+            cos.write(data);
+            assertEquals(CachedStreamMemoryBudget.BUFFER_SIZE, budget.getHeapBytes());
+            cos = new CachedOutputStream(1024 * 1024);
+            cos.setOffHeapThreshold(1024);
+            cos.write(data);
+            assertEquals(2 * CachedStreamMemoryBudget.BUFFER_SIZE, budget.getOffHeapBytes());
+            cos.close();
+            cos = null;
+            
+            // neither stream is reachable any more, the memory they held is given back
+            for (int x = 0; x < 100 && budget.getHeapBytes() + budget.getOffHeapBytes() > 0; x++) {
+                System.gc();
+                Thread.sleep(20);
+            }
+            assertEquals(0, budget.getHeapBytes());
+            assertEquals(0, budget.getOffHeapBytes());
+        } finally {
+            BusFactory.setThreadDefaultBus(oldBus);
+            bus.shutdown(true);
+        }
+    }
+    
+    @Test
+    public void testOffHeapTierSpillsToDisk() throws IOException {
+        CachedOutputStream cos = new CachedOutputStream();
+        cos.setThreshold(100 * 1024);
+        cos.setOffHeapThreshold(1024);
+        byte[] data = new byte[150 * 1024];
+        Arrays.fill(data, (byte)'y');
+        cos.write(data);
+        assertNotNull(cos.getTempFile());
+        assertTrue(Arrays.equals(data, cos.getBytes()));
+        cos.close();
+    }
+    
+    @Test
+    public void testTransferSpilledContent() throws IOException {
+        CachedOutputStream cos = new CachedOutputStream(1024);
+        byte[] data = new byte[100 * 1024];
+        for (int x = 0; x < data.length; x++) {
+            data[x] = (byte)x;
+        }
+        cos.write(data);
+        assertNotNull(cos.getTempFile());
+        assertTrue(Arrays.equals(data, cos.getBytes()));
+        
+        File target = File.createTempFile("cos", "test");
+        try {
+            try (FileOutputStream out = new FileOutputStream(target)) {
+                cos.writeCacheTo(out);
+            }
+            assertTrue(Arrays.equals(data, IOUtils.readBytesFromStream(new FileInputStream(target))));
+            
+            InputStream in = cos.getInputStream();
+            assertTrue(in instanceof FileChannelSource);
+            assertEquals(10, in.read(new byte[10]));
+            try (FileOutputStream out = new FileOutputStream(target)) {
+                assertEquals(data.length - 10, IOUtils.copy(in, out));
+            }
+            assertEquals(-1, in.read());
+            in.close();
+            assertEquals(data.length - 10, target.length());
+        } finally {
+            cos.close();
+            target.delete();
+        }
+    }
+    
+    @Test
+    public void testMemoryBudgetSpillsEarly() throws IOException {
+        Bus bus = new ExtensionManagerBus();
+        bus.setProperty(CachedStreamMemoryBudget.MEMORY_BUDGET_PROPERTY, "65536");
+        Bus oldBus = BusFactory.getThreadDefaultBus(false);
+        BusFactory.setThreadDefaultBus(bus);
+        try {
+            CachedStreamMemoryBudget budget = CachedStreamMemoryBudget.getInstance(bus);
+            byte[] data = new byte[100 * 1024];
+            CachedOutputStream cos1 = new CachedOutputStream(1024 * 1024);
+            cos1.write(data);
+            assertNull(cos1.getTempFile());
+            assertEquals(CachedStreamMemoryBudget.BUFFER_SIZE, budget.getHeapBytes());
+            
+            CachedOutputStream cos2 = new CachedOutputStream(1024 * 1024);
+            cos2.write(data);
+            assertNotNull(cos2.getTempFile());
+            assertEquals(1, budget.getEarlySpills());
+            cos2.close();
+            assertEquals(0, budget.getDiskBytes());
+            
+            cos1.close();
+            assertEquals(0, budget.getHeapBytes());
+            assertEquals(data.length, cos1.getBytes().length);
+        } finally {
+            BusFactory.setThreadDefaultBus(oldBus);
+            bus.shutdown(true);
+        }
+    }
+    
     @Override
     protected void reloadDefaultProperties() {
         CachedOutputStream.setDefaultThreshold(-1);
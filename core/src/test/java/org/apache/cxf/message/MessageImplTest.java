@@ -0,0 +1,190 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.cxf.message;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.cxf.service.model.MessageInfo;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MessageImplTest extends Assert {
+
+    @Test
+    public void testSlottedAndHashedProperties() {
+        MessageImpl m = new MessageImpl();
+        assertTrue(m.isEmpty());
+        m.put(Message.CONTENT_TYPE, "text/xml");
+        m.put("custom", "value");
+        m.put(Message.RESPONSE_CODE, null);
+
+        assertEquals(3, m.size());
+        assertEquals("text/xml", m.get(Message.CONTENT_TYPE));
+        assertEquals("text/xml", m.get(new String("Content-Type")));
+        assertEquals("value", m.get("custom"));
+        assertTrue(m.containsKey(Message.RESPONSE_CODE));
+        assertNull(m.get(Message.RESPONSE_CODE));
+        assertFalse(m.containsKey(Message.ENCODING));
+        assertTrue(m.containsValue("text/xml"));
+        assertTrue(m.containsValue(null));
+
+        assertEquals("text/xml", m.put(Message.CONTENT_TYPE, "application/json"));
+        assertEquals("application/json", m.remove(Message.CONTENT_TYPE));
+        assertNull(m.remove(Message.CONTENT_TYPE));
+        assertEquals(2, m.size());
+
+        m.clear();
+        assertTrue(m.isEmpty());
+        assertFalse(m.containsKey(Message.RESPONSE_CODE));
+    }
+
+    @Test
+    public void testClassKeys() {
+        MessageImpl m = new MessageImpl();
+        MessageInfo mi = new MessageInfo(null, MessageInfo.Type.INPUT, null);
+        m.put(MessageInfo.class, mi);
+        assertSame(mi, m.get(MessageInfo.class));
+        assertSame(mi, m.get(MessageInfo.class.getName()));
+    }
+
+    @Test
+    public void testMapViews() {
+        MessageImpl m = new MessageImpl();
+        m.put(Message.CONTENT_TYPE, "text/xml");
+        m.put(Message.ENCODING, "UTF-8");
+        m.put("custom", "value");
+
+        Map<String, Object> copy = new HashMap<String, Object>(m);
+        assertEquals(3, copy.size());
+        assertEquals(copy, m);
+        assertEquals(m, copy);
+        assertEquals(copy.hashCode(), m.hashCode());
+        assertEquals(3, m.keySet().size());
+        assertTrue(m.keySet().contains(Message.ENCODING));
+        assertTrue(m.values().contains("value"));
+
+        for (Map.Entry<String, Object> e : m.entrySet()) {
+            if (Message.ENCODING.equals(e.getKey())) {
+                e.setValue("ISO-8859-1");
+            }
+        }
+        assertEquals("ISO-8859-1", m.get(Message.ENCODING));
+
+        Iterator<String> it = m.keySet().iterator();
+        while (it.hasNext()) {
+            String key = it.next();
+            if (!"custom".equals(key)) {
+                it.remove();
+            }
+        }
+        assertEquals(1, m.size());
+        assertFalse(m.containsKey(Message.CONTENT_TYPE));
+        assertEquals("value", m.get("custom"));
+    }
+
+    @Test
+    public void testEqualsAndHashCode() {
+        MessageImpl m1 = new MessageImpl();
+        m1.put(Message.CONTENT_TYPE, "text/xml");
+        m1.put("custom", "value");
+        MessageImpl m2 = new MessageImpl();
+        m2.put("custom", "value");
+        assertFalse(m1.equals(m2));
+        assertFalse(m2.equals(m1));
+        m2.put(Message.CONTENT_TYPE, "text/xml");
+        assertEquals(m1, m2);
+        assertEquals(m1.hashCode(), m2.hashCode());
+        m2.put(Message.CONTENT_TYPE, "application/json");
+        assertFalse(m1.equals(m2));
+        assertTrue(m1.toString().contains(Message.CONTENT_TYPE + "=text/xml"));
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        MessageImpl m = new MessageImpl();
+        m.put(Message.CONTENT_TYPE, "text/xml");
+        m.put(Message.RESPONSE_CODE, null);
+        m.put("custom", "value");
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bout);
+        out.writeObject(m);
+        out.close();
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bout.toByteArray()));
+        MessageImpl copy = (MessageImpl)in.readObject();
+        in.close();
+
+        assertEquals(3, copy.size());
+        assertEquals("text/xml", copy.get(Message.CONTENT_TYPE));
+        assertTrue(copy.containsKey(Message.RESPONSE_CODE));
+        assertEquals("value", copy.get("custom"));
+        assertEquals(m, copy);
+        // the slotted keys are not duplicated in the hash table
+        copy.remove(Message.CONTENT_TYPE);
+        assertFalse(copy.containsKey(Message.CONTENT_TYPE));
+        assertEquals(2, copy.size());
+    }
+
+    @Test
+    public void testCopies() {
+        MessageImpl m = new MessageImpl();
+        m.put(Message.CONTENT_TYPE, "text/xml");
+        m.put("custom", "value");
+
+        MessageImpl copy = new MessageImpl(m);
+        copy.put(Message.CONTENT_TYPE, "application/json");
+        assertEquals(2, copy.size());
+        assertEquals("text/xml", m.get(Message.CONTENT_TYPE));
+        assertEquals("value", copy.get("custom"));
+
+        MessageImpl clone = (MessageImpl)m.clone();
+        assertEquals(2, clone.size());
+        assertEquals(m, clone);
+        clone.put(Message.CONTENT_TYPE, "application/json");
+        assertEquals("text/xml", m.get(Message.CONTENT_TYPE));
+        clone.remove(Message.CONTENT_TYPE);
+        assertEquals(1, clone.size());
+        assertFalse(clone.containsKey(Message.CONTENT_TYPE));
+        assertEquals("text/xml", m.get(Message.CONTENT_TYPE));
+
+        MessageImpl target = new MessageImpl();
+        target.putAll(m);
+        assertEquals(m, target);
+    }
+
+    @Test
+    public void testContextualProperty() {
+        ExchangeImpl ex = new ExchangeImpl();
+        ex.put(Message.ENCODING, "UTF-8");
+        MessageImpl m = new MessageImpl();
+        m.setExchange(ex);
+        m.put(Message.CONTENT_TYPE, "text/xml");
+        assertEquals("UTF-8", m.getContextualProperty(Message.ENCODING));
+        assertEquals("text/xml", m.getContextualProperty(Message.CONTENT_TYPE));
+        m.put(Message.ENCODING, "ISO-8859-1");
+        assertEquals("ISO-8859-1", m.getContextualProperty(Message.ENCODING));
+    }
+}
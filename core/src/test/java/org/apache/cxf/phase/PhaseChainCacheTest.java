@@ -0,0 +1,155 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.phase;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.apache.cxf.common.util.ModCountCopyOnWriteArrayList;
+import org.apache.cxf.interceptor.Interceptor;
+import org.apache.cxf.message.Message;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PhaseChainCacheTest extends Assert {
+    
+    private SortedSet<Phase> phases;
+    
+    @Before
+    public void setUp() {
+        phases = new TreeSet<Phase>();
+        phases.add(new Phase("phase1", 1));
+        phases.add(new Phase("phase2", 2));
+    }
+    
+    @Test
+    public void testAlternatingProvidersAreCached() {
+        PhaseChainCache cache = new PhaseChainCache();
+        List<Interceptor<? extends Message>> l1 = createList("p1");
+        List<Interceptor<? extends Message>> l2 = createList("p2");
+        List<Interceptor<? extends Message>> l3 = createList("p3");
+        
+        for (int x = 0; x < 10; x++) {
+            cache.get(phases, l1, l2);
+            cache.get(phases, l1, l3);
+        }
+        assertEquals(2, cache.getMisses());
+        assertEquals(18, cache.getHits());
+        assertEquals(2, cache.getSize());
+    }
+    
+    @Test
+    public void testModifiedProviderRebuildsChain() {
+        PhaseChainCache cache = new PhaseChainCache();
+        List<Interceptor<? extends Message>> l1 = createList("p1");
+        
+        PhaseInterceptorChain chain = cache.get(phases, l1);
+        assertEquals(1, count(chain));
+        
+        l1.add(new NoopInterceptor("phase2", "p2"));
+        chain = cache.get(phases, l1);
+        assertEquals(2, count(chain));
+        assertEquals(2, cache.getMisses());
+        assertEquals(0, cache.getHits());
+    }
+    
+    @Test
+    public void testPlainListsMatchedByContent() {
+        PhaseChainCache cache = new PhaseChainCache();
+        Interceptor<? extends Message> i = new NoopInterceptor("phase1", "p1");
+        List<Interceptor<? extends Message>> l1 = new ArrayList<Interceptor<? extends Message>>();
+        l1.add(i);
+        List<Interceptor<? extends Message>> l2 = new ArrayList<Interceptor<? extends Message>>();
+        l2.add(i);
+        
+        cache.get(phases, l1);
+        cache.get(phases, l2);
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+    }
+    
+    @Test
+    public void testLeastRecentlyUsedEntryEvicted() {
+        PhaseChainCache cache = new PhaseChainCache(2);
+        List<Interceptor<? extends Message>> l1 = createList("p1");
+        List<Interceptor<? extends Message>> l2 = createList("p2");
+        List<Interceptor<? extends Message>> l3 = createList("p3");
+        
+        cache.get(phases, l1);
+        cache.get(phases, l2);
+        cache.get(phases, l3);
+        assertEquals(2, cache.getSize());
+        
+        cache.get(phases, l3);
+        cache.get(phases, l2);
+        assertEquals(2, cache.getHits());
+        cache.get(phases, l1);
+        assertEquals(4, cache.getMisses());
+        
+        //l2 was used after l3, so l3 was evicted for l1
+        cache.get(phases, l2);
+        assertEquals(3, cache.getHits());
+        cache.get(phases, l3);
+        assertEquals(5, cache.getMisses());
+    }
+    
+    @Test
+    public void testRecentlyUsedEntrySurvivesInsertions() {
+        PhaseChainCache cache = new PhaseChainCache(2);
+        List<Interceptor<? extends Message>> hot = createList("hot");
+        
+        cache.get(phases, hot);
+        for (int x = 0; x < 5; x++) {
+            cache.get(phases, createList("cold" + x));
+            cache.get(phases, hot);
+        }
+        assertEquals(5, cache.getHits());
+        assertEquals(6, cache.getMisses());
+        assertEquals(2, cache.getSize());
+    }
+    
+    private static int count(PhaseInterceptorChain chain) {
+        int count = 0;
+        for (Iterator<Interceptor<? extends Message>> it = chain.iterator(); it.hasNext(); it.next()) {
+            count++;
+        }
+        return count;
+    }
+    
+    private static List<Interceptor<? extends Message>> createList(String id) {
+        List<Interceptor<? extends Message>> l 
+            = new ModCountCopyOnWriteArrayList<Interceptor<? extends Message>>();
+        l.add(new NoopInterceptor("phase1", id));
+        return l;
+    }
+    
+    static class NoopInterceptor extends AbstractPhaseInterceptor<Message> {
+        NoopInterceptor(String phase, String id) {
+            super(id, phase);
+        }
+        public void handleMessage(Message m) {
+        }
+    }
+}
@@ -20,8 +20,11 @@
 package org.apache.cxf.phase;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -29,9 +32,12 @@ import java.util.TreeSet;
 import org.apache.cxf.common.util.ReflectionUtil;
 import org.apache.cxf.common.util.SortedArraySet;
 import org.apache.cxf.continuations.SuspendedInvocationException;
+import org.apache.cxf.endpoint.Endpoint;
 import org.apache.cxf.interceptor.Interceptor;
 import org.apache.cxf.interceptor.InterceptorChain;
 import org.apache.cxf.logging.FaultListener;
+import org.apache.cxf.message.Exchange;
+import org.apache.cxf.message.ExchangeImpl;
 import org.apache.cxf.message.FaultMode;
 import org.apache.cxf.message.Message;
 import org.easymock.EasyMock;
@@ -392,6 +398,124 @@ public class PhaseInterceptorChainTest extends Assert {
         assertEquals(1, p3.invoked);
     }
     
+    @Test
+    public void testClonedChainSecondFail() throws Exception {
+        AbstractPhaseInterceptor<Message> p1 = setUpPhaseInterceptor("phase1", "p1");
+        setUpPhaseInterceptorInvocations(p1, false, true);
+        AbstractPhaseInterceptor<Message> p2 = setUpPhaseInterceptor("phase2", "p2");
+        setUpPhaseInterceptorInvocations(p2, true, true);
+        AbstractPhaseInterceptor<Message> p3 = setUpPhaseInterceptor("phase3", "p3");
+        control.replay();
+        chain.add(p1);
+        chain.add(p2);
+        chain.add(p3);
+        PhaseInterceptorChain clone = chain.cloneChain();
+        assertFalse(clone.doIntercept(message));
+        assertSame(InterceptorChain.State.ABORTED, clone.getState());
+    }
+    
+    @Test
+    public void testClonedChainSuspendAndResume() throws Exception {
+        CountingPhaseInterceptor p1 = new CountingPhaseInterceptor("phase1", "p1");
+        SuspendedInvocationInterceptor p2 = new SuspendedInvocationInterceptor("phase2", "p2");
+        CountingPhaseInterceptor p3 = new CountingPhaseInterceptor("phase3", "p3");
+        chain.add(p1);
+        chain.add(p2);
+        chain.add(p3);
+        PhaseInterceptorChain clone = chain.cloneChain();
+        
+        message.getInterceptorChain();
+        EasyMock.expectLastCall().andReturn(clone).anyTimes();
+        control.replay();
+        
+        try {
+            clone.doIntercept(message);
+            fail("Suspended invocation swallowed");
+        } catch (SuspendedInvocationException ex) {
+            // ignore
+        }
+        assertSame(InterceptorChain.State.PAUSED, clone.getState());
+        assertEquals(1, p1.invoked);
+        assertEquals(0, p3.invoked);
+        
+        clone.remove(p2);
+        clone.resume();
+        assertSame(InterceptorChain.State.COMPLETE, clone.getState());
+        assertEquals(1, p1.invoked);
+        assertEquals(1, p3.invoked);
+    }
+    
+    @Test
+    public void testClonedChainInsertion() throws Exception {
+        CountingPhaseInterceptor p1 = new CountingPhaseInterceptor("phase1", "p1");
+        CountingPhaseInterceptor p3 = new CountingPhaseInterceptor("phase3", "p3");
+        chain.add(p1);
+        chain.add(p3);
+        PhaseInterceptorChain clone = chain.cloneChain();
+        CountingPhaseInterceptor p2 = new CountingPhaseInterceptor("phase2", "p2");
+        clone.add(new InsertingPhaseInterceptor(clone, p2, "phase1", "p0"));
+        control.replay();
+        
+        assertTrue(clone.doIntercept(message));
+        assertEquals(1, p1.invoked);
+        assertEquals(1, p2.invoked);
+        assertEquals(1, p3.invoked);
+        
+        // the source chain is not affected by changes to the clone
+        Iterator<Interceptor<? extends Message>> it = chain.cloneChain().iterator();
+        assertSame(p1, it.next());
+        assertSame(p3, it.next());
+        assertFalse(it.hasNext());
+    }
+    
+    @Test
+    public void testClonedChainInsertionBehindCurrentPosition() throws Exception {
+        CountingPhaseInterceptor p1 = new CountingPhaseInterceptor("phase1", "p1");
+        CountingPhaseInterceptor p3 = new CountingPhaseInterceptor("phase3", "p3");
+        chain.add(p1);
+        chain.add(p3);
+        PhaseInterceptorChain clone = chain.cloneChain();
+        CountingPhaseInterceptor p0 = new CountingPhaseInterceptor("phase1", "p0");
+        clone.add(new InsertingPhaseInterceptor(clone, p0, "phase2", "p2"));
+        control.replay();
+        
+        assertTrue(clone.doIntercept(message));
+        assertEquals(1, p1.invoked);
+        assertEquals(0, p0.invoked);
+        assertEquals(1, p3.invoked);
+    }
+    
+    @Test
+    public void testProfiledInvocation() throws Exception {
+        CountingPhaseInterceptor p1 = new CountingPhaseInterceptor("phase1", "p1");
+        CountingPhaseInterceptor p2 = new CountingPhaseInterceptor("phase2", "p2");
+        final List<String> invoked = new ArrayList<String>();
+        InterceptorProfiler profiler = new InterceptorProfiler() {
+            public long getAllocatedBytes() {
+                return -1;
+            }
+            public void interceptorInvoked(Message m, PhaseInterceptor<? extends Message> interceptor,
+                                           long nanos, long allocatedBytes) {
+                assertTrue(nanos >= 0);
+                assertEquals(-1, allocatedBytes);
+                invoked.add(interceptor.getPhase() + ":" + interceptor.getId());
+            }
+        };
+        Endpoint endpoint = control.createMock(Endpoint.class);
+        EasyMock.expect(endpoint.get(InterceptorProfiler.PROFILER_KEY)).andReturn(profiler).anyTimes();
+        Exchange exchange = new ExchangeImpl();
+        exchange.put(Endpoint.class, endpoint);
+        EasyMock.expect(message.getExchange()).andReturn(exchange).anyTimes();
+        control.replay();
+        
+        chain.add(p1);
+        chain.add(p2);
+        chain.doIntercept(message);
+        assertEquals(1, p1.invoked);
+        assertEquals(1, p2.invoked);
+        assertEquals(Arrays.asList("phase1:p1", "phase2:p2"), invoked);
+    }
+    
     AbstractPhaseInterceptor<Message> setUpPhaseInterceptor(String phase, String id) throws Exception {
         return setUpPhaseInterceptor(phase, id, null, null);
     }
@@ -0,0 +1,161 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.service.invoker;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MethodAccessorTest extends Assert {
+
+    @Test
+    public void testPrimitiveArguments() throws Exception {
+        MethodAccessor accessor = MethodAccessor.create(
+            Calculator.class.getMethod("add", int.class, long.class, double.class));
+        assertTrue(accessor.isDirect());
+        assertEquals(Double.valueOf(6.5d), 
+                     accessor.invoke(new Calculator(), new Object[] {1, 2L, 3.5d}));
+    }
+
+    @Test
+    public void testObjectAndArrayArguments() throws Exception {
+        MethodAccessor accessor = MethodAccessor.create(
+            Calculator.class.getMethod("join", String[].class, List.class));
+        assertTrue(accessor.isDirect());
+        assertEquals("a,b,c", accessor.invoke(new Calculator(), 
+            new Object[] {new String[] {"a", "b"}, Arrays.asList("c")}));
+    }
+
+    @Test
+    public void testVoidAndStaticMethods() throws Exception {
+        Calculator calculator = new Calculator();
+        MethodAccessor accessor = MethodAccessor.create(Calculator.class.getMethod("clear"));
+        assertTrue(accessor.isDirect());
+        assertNull(accessor.invoke(calculator, null));
+        assertTrue(calculator.cleared);
+        
+        accessor = MethodAccessor.create(Calculator.class.getMethod("negate", boolean.class));
+        assertTrue(accessor.isDirect());
+        assertEquals(Boolean.FALSE, accessor.invoke(null, new Object[] {true}));
+    }
+
+    @Test
+    public void testInterfaceMethod() throws Exception {
+        MethodAccessor accessor = MethodAccessor.create(Collection.class.getMethod("size"));
+        assertEquals(Integer.valueOf(2), accessor.invoke(Arrays.asList("a", "b"), new Object[0]));
+        
+        accessor = MethodAccessor.create(Named.class.getMethod("getName"));
+        assertTrue(accessor.isDirect());
+        assertEquals("calculator", accessor.invoke(new Calculator(), new Object[0]));
+    }
+
+    @Test
+    public void testExceptionIsWrapped() throws Exception {
+        MethodAccessor accessor = MethodAccessor.create(Calculator.class.getMethod("fail", String.class));
+        assertTrue(accessor.isDirect());
+        try {
+            accessor.invoke(new Calculator(), new Object[] {"failed"});
+            fail("InvocationTargetException expected");
+        } catch (InvocationTargetException ex) {
+            assertTrue(ex.getCause() instanceof IllegalStateException);
+            assertEquals("failed", ex.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void testInvalidArgumentsFailLikeReflection() throws Exception {
+        Method m = Calculator.class.getMethod("add", int.class, long.class, double.class);
+        MethodAccessor accessor = MethodAccessor.create(m);
+        Object[][] invalidArgs = {{1, 2L}, {null, 2L, 3d}, {"1", 2L, 3d}};
+        for (Object[] args : invalidArgs) {
+            try {
+                accessor.invoke(new Calculator(), args);
+                fail("IllegalArgumentException expected");
+            } catch (IllegalArgumentException ex) {
+                // expected
+            }
+        }
+        try {
+            accessor.invoke(null, new Object[] {1, 2L, 3d});
+            fail("NullPointerException expected");
+        } catch (NullPointerException ex) {
+            // expected
+        }
+        // widening is done by reflection
+        assertEquals(Double.valueOf(6d), accessor.invoke(new Calculator(), new Object[] {1, 2, 3f}));
+    }
+
+    @Test
+    public void testNonPublicClassUsesReflection() throws Exception {
+        MethodAccessor accessor = MethodAccessor.create(Hidden.class.getMethod("getValue"));
+        assertFalse(accessor.isDirect());
+        assertEquals("hidden", accessor.invoke(new Hidden(), new Object[0]));
+    }
+
+    public interface Named {
+        String getName();
+    }
+
+    public static class Calculator implements Named {
+        boolean cleared;
+        
+        public double add(int a, long b, double c) {
+            return a + b + c;
+        }
+        
+        public String join(String[] values, List<String> more) {
+            StringBuilder sb = new StringBuilder();
+            for (String value : values) {
+                sb.append(value).append(',');
+            }
+            for (String value : more) {
+                sb.append(value).append(',');
+            }
+            return sb.substring(0, sb.length() - 1);
+        }
+        
+        public void clear() {
+            cleared = true;
+        }
+        
+        public static boolean negate(boolean value) {
+            return !value;
+        }
+        
+        public String getName() {
+            return "calculator";
+        }
+        
+        public void fail(String message) {
+            throw new IllegalStateException(message);
+        }
+    }
+
+    static class Hidden {
+        public String getValue() {
+            return "hidden";
+        }
+    }
+}
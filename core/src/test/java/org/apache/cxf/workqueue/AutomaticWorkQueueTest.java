@@ -19,6 +19,8 @@
 
 package org.apache.cxf.workqueue;
 
+import java.util.Dictionary;
+import java.util.Hashtable;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
@@ -43,7 +45,12 @@ public class AutomaticWorkQueueTest extends Assert {
 
     public static final int TIMEOUT = 100;
 
-    AutomaticWorkQueueImpl workqueue;
+    AbstractAutomaticWorkQueue workqueue;
+    
+    protected AbstractAutomaticWorkQueue createWorkQueue(int mqs, int initialThreads, int highWaterMark,
+                                                     int lowWaterMark, long dequeueTimeout) {
+        return new AutomaticWorkQueueImpl(mqs, initialThreads, highWaterMark, lowWaterMark, dequeueTimeout);
+    }
     
     @After
     public void tearDown() throws Exception {
@@ -55,22 +62,37 @@ public class AutomaticWorkQueueTest extends Assert {
     
     @Test
     public void testUnboundedConstructor() {
-        workqueue = new AutomaticWorkQueueImpl(UNBOUNDED_MAX_QUEUE_SIZE, INITIAL_SIZE,
-                                               UNBOUNDED_HIGH_WATER_MARK,
-                                               UNBOUNDED_LOW_WATER_MARK,
-                                               DEFAULT_DEQUEUE_TIMEOUT);
+        workqueue = createWorkQueue(UNBOUNDED_MAX_QUEUE_SIZE, INITIAL_SIZE,
+                                    UNBOUNDED_HIGH_WATER_MARK,
+                                    UNBOUNDED_LOW_WATER_MARK,
+                                    DEFAULT_DEQUEUE_TIMEOUT);
         assertNotNull(workqueue);
         assertEquals(AutomaticWorkQueueImpl.DEFAULT_MAX_QUEUE_SIZE, workqueue.getMaxSize());
         assertEquals(UNBOUNDED_HIGH_WATER_MARK, workqueue.getHighWaterMark());
         assertEquals(UNBOUNDED_LOW_WATER_MARK, workqueue.getLowWaterMark());
     }
 
+    @Test
+    public void testUpdateToUnbounded() {
+        workqueue = createWorkQueue(DEFAULT_MAX_QUEUE_SIZE, 0,
+                                    DEFAULT_HIGH_WATER_MARK,
+                                    DEFAULT_LOW_WATER_MARK,
+                                    DEFAULT_DEQUEUE_TIMEOUT);
+        Dictionary<String, String> config = new Hashtable<String, String>();
+        config.put("highWaterMark", Integer.toString(UNBOUNDED_HIGH_WATER_MARK));
+        config.put("lowWaterMark", Integer.toString(UNBOUNDED_LOW_WATER_MARK));
+        workqueue.update(config);
+        assertEquals(Integer.MAX_VALUE, workqueue.highWaterMark);
+        assertEquals(Integer.MAX_VALUE, workqueue.lowWaterMark);
+        assertEquals(UNBOUNDED_HIGH_WATER_MARK, workqueue.getHighWaterMark());
+    }
+
     @Test
     public void testConstructor() {
-        workqueue = new AutomaticWorkQueueImpl(DEFAULT_MAX_QUEUE_SIZE, INITIAL_SIZE,
-                                               DEFAULT_HIGH_WATER_MARK,
-                                               DEFAULT_LOW_WATER_MARK,
-                                               DEFAULT_DEQUEUE_TIMEOUT);
+        workqueue = createWorkQueue(DEFAULT_MAX_QUEUE_SIZE, INITIAL_SIZE,
+                                    DEFAULT_HIGH_WATER_MARK,
+                                    DEFAULT_LOW_WATER_MARK,
+                                    DEFAULT_DEQUEUE_TIMEOUT);
         assertNotNull(workqueue);
         assertEquals(DEFAULT_MAX_QUEUE_SIZE, workqueue.getMaxSize());
         assertEquals(DEFAULT_HIGH_WATER_MARK, workqueue.getHighWaterMark());
@@ -80,10 +102,10 @@ public class AutomaticWorkQueueTest extends Assert {
     
     @Test
     public void testEnqueueWithTimeout() throws Exception {
-        workqueue = new AutomaticWorkQueueImpl(2, 2,
-                                               2,
-                                               2,
-                                               DEFAULT_DEQUEUE_TIMEOUT);
+        workqueue = createWorkQueue(2, 2,
+                                    2,
+                                    2,
+                                    DEFAULT_DEQUEUE_TIMEOUT);
         
         final Object lock = new Object();
         int x = 0;
@@ -109,10 +131,10 @@ public class AutomaticWorkQueueTest extends Assert {
     
     @Test
     public void testEnqueue() {
-        workqueue = new AutomaticWorkQueueImpl(DEFAULT_MAX_QUEUE_SIZE, INITIAL_SIZE,
-                                               DEFAULT_HIGH_WATER_MARK,
-                                               DEFAULT_LOW_WATER_MARK,
-                                               DEFAULT_DEQUEUE_TIMEOUT);
+        workqueue = createWorkQueue(DEFAULT_MAX_QUEUE_SIZE, INITIAL_SIZE,
+                                    DEFAULT_HIGH_WATER_MARK,
+                                    DEFAULT_LOW_WATER_MARK,
+                                    DEFAULT_DEQUEUE_TIMEOUT);
 
         try {
             Thread.sleep(100);
@@ -147,10 +169,10 @@ public class AutomaticWorkQueueTest extends Assert {
     @Test
     @Ignore("The test is failed on openjdk")
     public void testEnqueueImmediate() {
-        workqueue = new AutomaticWorkQueueImpl(DEFAULT_MAX_QUEUE_SIZE, INITIAL_SIZE,
-                                               DEFAULT_HIGH_WATER_MARK,
-                                               DEFAULT_LOW_WATER_MARK,
-                                               DEFAULT_DEQUEUE_TIMEOUT);
+        workqueue = createWorkQueue(DEFAULT_MAX_QUEUE_SIZE, INITIAL_SIZE,
+                                    DEFAULT_HIGH_WATER_MARK,
+                                    DEFAULT_LOW_WATER_MARK,
+                                    DEFAULT_DEQUEUE_TIMEOUT);
 
         try {
             Thread.sleep(100);
@@ -252,8 +274,8 @@ public class AutomaticWorkQueueTest extends Assert {
 
     @Test
     public void testDeadLockEnqueueLoads() {
-        workqueue = new AutomaticWorkQueueImpl(500, 1, 2, 2,
-                                               DEFAULT_DEQUEUE_TIMEOUT);
+        workqueue = createWorkQueue(500, 1, 2, 2,
+                                    DEFAULT_DEQUEUE_TIMEOUT);
         DeadLockThread dead = new DeadLockThread(workqueue, 200,
                                                  10L);
 
@@ -262,11 +284,11 @@ public class AutomaticWorkQueueTest extends Assert {
 
     @Test
     public void testNonDeadLockEnqueueLoads() {
-        workqueue = new AutomaticWorkQueueImpl(UNBOUNDED_MAX_QUEUE_SIZE,
-                                               INITIAL_SIZE,
-                                               UNBOUNDED_HIGH_WATER_MARK,
-                                               UNBOUNDED_LOW_WATER_MARK,
-                                               DEFAULT_DEQUEUE_TIMEOUT);
+        workqueue = createWorkQueue(UNBOUNDED_MAX_QUEUE_SIZE,
+                                    INITIAL_SIZE,
+                                    UNBOUNDED_HIGH_WATER_MARK,
+                                    UNBOUNDED_LOW_WATER_MARK,
+                                    DEFAULT_DEQUEUE_TIMEOUT);
         DeadLockThread dead = new DeadLockThread(workqueue, 200);
 
         checkDeadLock(dead);
@@ -274,10 +296,10 @@ public class AutomaticWorkQueueTest extends Assert {
     
     @Test
     public void testSchedule() throws Exception {
-        workqueue = new AutomaticWorkQueueImpl(UNBOUNDED_MAX_QUEUE_SIZE, INITIAL_SIZE,
-                                               UNBOUNDED_HIGH_WATER_MARK,
-                                               UNBOUNDED_LOW_WATER_MARK,
-                                               DEFAULT_DEQUEUE_TIMEOUT);
+        workqueue = createWorkQueue(UNBOUNDED_MAX_QUEUE_SIZE, INITIAL_SIZE,
+                                    UNBOUNDED_HIGH_WATER_MARK,
+                                    UNBOUNDED_LOW_WATER_MARK,
+                                    DEFAULT_DEQUEUE_TIMEOUT);
         final Lock runLock = new ReentrantLock();
         final Condition runCondition = runLock.newCondition();
         long start = System.currentTimeMillis();
@@ -307,7 +329,7 @@ public class AutomaticWorkQueueTest extends Assert {
 
     @Test
     public void testThreadPoolShrink() {
-        workqueue = new AutomaticWorkQueueImpl(UNBOUNDED_MAX_QUEUE_SIZE, 20, 20, 10, 100L);
+        workqueue = createWorkQueue(UNBOUNDED_MAX_QUEUE_SIZE, 20, 20, 10, 100L);
 
         DeadLockThread dead = new DeadLockThread(workqueue, 1000, 5L);
 
@@ -335,9 +357,9 @@ public class AutomaticWorkQueueTest extends Assert {
 
     @Test
     public void testThreadPoolShrinkUnbounded() throws Exception {
-        workqueue = new AutomaticWorkQueueImpl(UNBOUNDED_MAX_QUEUE_SIZE, INITIAL_SIZE,
-                                               UNBOUNDED_HIGH_WATER_MARK,
-                                               DEFAULT_LOW_WATER_MARK, 100L);
+        workqueue = createWorkQueue(UNBOUNDED_MAX_QUEUE_SIZE, INITIAL_SIZE,
+                                    UNBOUNDED_HIGH_WATER_MARK,
+                                    DEFAULT_LOW_WATER_MARK, 100L);
 
         DeadLockThread dead = new DeadLockThread(workqueue, 1000, 5L);
         checkDeadLock(dead);
@@ -358,8 +380,8 @@ public class AutomaticWorkQueueTest extends Assert {
 
     @Test    
     public void testShutdown() {
-        workqueue = new AutomaticWorkQueueImpl(DEFAULT_MAX_QUEUE_SIZE, INITIAL_SIZE,
-                                               INITIAL_SIZE, INITIAL_SIZE, 500);
+        workqueue = createWorkQueue(DEFAULT_MAX_QUEUE_SIZE, INITIAL_SIZE,
+                                    INITIAL_SIZE, INITIAL_SIZE, 500);
 
         assertEquals(0, workqueue.getSize());
         DeadLockThread dead = new DeadLockThread(workqueue, 10, 5L);
@@ -492,22 +514,22 @@ public class AutomaticWorkQueueTest extends Assert {
         public static final long DEFAULT_WORK_TIME = 10L;
         public static final int DEFAULT_WORK_ITEMS = 200;
 
-        AutomaticWorkQueueImpl workqueue;
+        AbstractAutomaticWorkQueue workqueue;
         int nWorkItems;
         int nWorkItemsCompleted;
         long worktime;
         long finishTime;
         long startTime;
 
-        public DeadLockThread(AutomaticWorkQueueImpl wq) {
+        public DeadLockThread(AbstractAutomaticWorkQueue wq) {
             this(wq, DEFAULT_WORK_ITEMS, DEFAULT_WORK_TIME);
         }
 
-        public DeadLockThread(AutomaticWorkQueueImpl wq, int nwi) {
+        public DeadLockThread(AbstractAutomaticWorkQueue wq, int nwi) {
             this(wq, nwi, DEFAULT_WORK_TIME);
         }
 
-        public DeadLockThread(AutomaticWorkQueueImpl wq, int nwi, long wt) {
+        public DeadLockThread(AbstractAutomaticWorkQueue wq, int nwi, long wt) {
             workqueue = wq;
             nWorkItems = nwi;
             worktime = wt;
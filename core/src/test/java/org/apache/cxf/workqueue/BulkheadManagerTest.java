@@ -0,0 +1,193 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.workqueue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.cxf.Bus;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BulkheadManagerTest extends Assert {
+    
+    private BulkheadManager manager;
+    
+    @Before
+    public void setUp() {
+        Bus bus = EasyMock.createNiceMock(Bus.class);
+        EasyMock.replay(bus);
+        manager = new BulkheadManager(bus, 4);
+    }
+    
+    @After
+    public void tearDown() {
+        manager.getExecutor().shutdown(false);
+    }
+    
+    @Test
+    public void testSharesByWeight() {
+        BulkheadWorkQueue a = manager.getWorkQueue("a", 3, -1, 10);
+        assertEquals(4, a.getGuaranteedConcurrency());
+        BulkheadWorkQueue b = manager.getWorkQueue("b", 1, -1, 10);
+        assertEquals(3, a.getGuaranteedConcurrency());
+        assertEquals(1, b.getGuaranteedConcurrency());
+        assertSame(a, manager.getWorkQueue("a", 1, -1, 10));
+        
+        manager.release(a);
+        assertEquals(2, manager.getWorkQueues().size());
+        manager.release(a);
+        assertEquals(1, manager.getWorkQueues().size());
+        assertTrue(a.isShutdown());
+        assertEquals(4, b.getGuaranteedConcurrency());
+    }
+    
+    @Test
+    public void testBorrowAndGuaranteedShare() throws Exception {
+        BulkheadWorkQueue a = manager.getWorkQueue("a", 1, -1, 10);
+        BulkheadWorkQueue b = manager.getWorkQueue("b", 1, -1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        
+        // a borrows the idle share of b
+        for (int x = 0; x < 5; x++) {
+            a.execute(new BlockingWork(release));
+        }
+        assertEquals(4, a.getActiveCount());
+        assertEquals(2, a.getBorrowedCount());
+        assertEquals(1, a.getSize());
+        
+        // b still gets its guaranteed share straight away
+        b.execute(new BlockingWork(release));
+        b.execute(new BlockingWork(release));
+        assertEquals(2, b.getActiveCount());
+        b.execute(new BlockingWork(release));
+        assertEquals(1, b.getSize());
+        try {
+            b.execute(new BlockingWork(release));
+            fail("Expected RejectedExecutionException when the bulkhead is full.");
+        } catch (RejectedExecutionException ex) {
+            assertEquals(1, b.getRejectedCount());
+        }
+        
+        release.countDown();
+        waitForCompletion(a, 5);
+        waitForCompletion(b, 3);
+        assertEquals(0, manager.getRunningCount());
+    }
+    
+    @Test
+    public void testFreedCapacityGoesToFewestRunningForWeight() throws Exception {
+        BulkheadWorkQueue a = manager.getWorkQueue("a", 1, -1, 10);
+        BulkheadWorkQueue b = manager.getWorkQueue("b", 1, -1, 10);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch releaseFirstB = new CountDownLatch(1);
+        
+        a.execute(new BlockingWork(release));
+        a.execute(new BlockingWork(release));
+        b.execute(new BlockingWork(releaseFirstB));
+        b.execute(new BlockingWork(release));
+        assertEquals(4, manager.getRunningCount());
+        
+        CountDownLatch startedA = new CountDownLatch(1);
+        CountDownLatch startedB = new CountDownLatch(1);
+        a.execute(new BlockingWork(release, startedA));
+        b.execute(new BlockingWork(release, startedB));
+        assertEquals(1, a.getSize());
+        assertEquals(1, b.getSize());
+        
+        // b now runs fewer items than a for the same weight, so it gets the freed capacity
+        // even though the work of a has been waiting longer
+        releaseFirstB.countDown();
+        assertTrue(startedB.await(5, TimeUnit.SECONDS));
+        assertEquals(1, startedA.getCount());
+        assertEquals(1, a.getSize());
+        
+        release.countDown();
+        assertTrue(startedA.await(5, TimeUnit.SECONDS));
+        waitForCompletion(a, 3);
+        waitForCompletion(b, 3);
+    }
+    
+    @Test
+    public void testRestartWhileWorkInFlight() throws Exception {
+        BulkheadWorkQueue a = manager.getWorkQueue("a", 1, 1, 10);
+        manager.getWorkQueue("b", 3, -1, 10);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch startedWaiting = new CountDownLatch(1);
+        a.execute(new BlockingWork(release));
+        a.execute(new BlockingWork(release, startedWaiting));
+        assertEquals(1, a.getActiveCount());
+        assertEquals(1, a.getSize());
+        
+        // the endpoint is stopped and started again while its work is still in flight
+        manager.release(a);
+        assertTrue(a.isShutdown());
+        BulkheadWorkQueue restarted = manager.getWorkQueue("a", 1, 1, 10);
+        assertNotSame(a, restarted);
+        assertFalse(restarted.isShutdown());
+        CountDownLatch startedNew = new CountDownLatch(1);
+        restarted.execute(new BlockingWork(release, startedNew));
+        assertTrue(startedNew.await(5, TimeUnit.SECONDS));
+        
+        // the old queue still runs the work it had accepted
+        release.countDown();
+        assertTrue(startedWaiting.await(5, TimeUnit.SECONDS));
+        waitForCompletion(a, 2);
+        waitForCompletion(restarted, 1);
+        assertEquals(2, manager.getWorkQueues().size());
+        assertTrue(manager.getWorkQueues().contains(restarted));
+        assertFalse(manager.getWorkQueues().contains(a));
+    }
+    
+    private void waitForCompletion(BulkheadWorkQueue q, int count) throws InterruptedException {
+        for (int i = 0; i < 500 && q.getCompletedCount() < count; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, q.getCompletedCount());
+    }
+    
+    static class BlockingWork implements Runnable {
+        final CountDownLatch release;
+        final CountDownLatch started;
+        
+        BlockingWork(CountDownLatch release) {
+            this(release, null);
+        }
+        BlockingWork(CountDownLatch release, CountDownLatch started) {
+            this.release = release;
+            this.started = started;
+        }
+        
+        public void run() {
+            if (started != null) {
+                started.countDown();
+            }
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                // ignore
+            }
+        }
+    }
+}
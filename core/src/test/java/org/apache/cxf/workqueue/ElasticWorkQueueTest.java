@@ -0,0 +1,89 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.workqueue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ElasticWorkQueueTest extends AutomaticWorkQueueTest {
+
+    @Override
+    protected AbstractAutomaticWorkQueue createWorkQueue(int mqs, int initialThreads, int highWaterMark,
+                                                     int lowWaterMark, long dequeueTimeout) {
+        return new ElasticWorkQueueImpl(mqs, initialThreads, highWaterMark, lowWaterMark, dequeueTimeout);
+    }
+
+    @Test
+    public void testGrowBeforeQueueing() throws Exception {
+        workqueue = createWorkQueue(2, 0, 3, 1, DEFAULT_DEQUEUE_TIMEOUT);
+        final CountDownLatch started = new CountDownLatch(3);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(5);
+        Runnable r = new Runnable() {
+            public void run() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    // ignore
+                } finally {
+                    done.countDown();
+                }
+            }
+        };
+        for (int x = 0; x < 3; x++) {
+            workqueue.execute(r);
+        }
+        // every item got its own thread, nothing was queued
+        assertEquals(0, workqueue.getSize());
+        assertEquals(3, workqueue.getPoolSize());
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(3, workqueue.getActiveCount());
+
+        workqueue.execute(r);
+        workqueue.execute(r);
+        assertEquals(2, workqueue.getSize());
+        assertTrue(workqueue.isFull());
+        assertEquals(3, workqueue.getPoolSize());
+        try {
+            workqueue.execute(r);
+            fail("Expected RejectedExecutionException when the work queue is full.");
+        } catch (RejectedExecutionException ex) {
+            // expected
+        }
+        try {
+            workqueue.execute(r, 50);
+            fail("Expected RejectedExecutionException when the work queue is full.");
+        } catch (RejectedExecutionException ex) {
+            // expected
+        }
+        assertEquals(2, workqueue.getRejectedCount());
+
+        Thread.sleep(20);
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(3, workqueue.getLargestPoolSize());
+        assertTrue(workqueue.getMaxWaitTime() >= 20);
+        assertTrue(workqueue.getAverageWaitTime() > 0);
+    }
+}
@@ -258,6 +258,8 @@ public class JAXRSServiceFactoryBean extends AbstractServiceFactoryBean {
     protected void initializeServiceModel() {
         
         JAXRSServiceImpl service = new JAXRSServiceImpl(classResourceInfos, serviceName);
+        // later changes go through the service view so that its routing tree is rebuilt
+        classResourceInfos = service.getClassResourceInfos();
 
         setService(service);
         sendEvent(Event.SERVICE_SET, service);
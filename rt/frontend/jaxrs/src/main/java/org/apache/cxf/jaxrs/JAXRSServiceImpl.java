@@ -19,7 +19,9 @@
 
 package org.apache.cxf.jaxrs;
 
+import java.io.Serializable;
 import java.lang.reflect.Method;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -40,6 +42,7 @@ import org.apache.cxf.jaxrs.model.ClassResourceInfo;
 import org.apache.cxf.jaxrs.model.OperationResourceInfo;
 import org.apache.cxf.jaxrs.model.Parameter;
 import org.apache.cxf.jaxrs.model.ParameterType;
+import org.apache.cxf.jaxrs.model.URITemplateTree;
 import org.apache.cxf.jaxrs.utils.InjectionUtils;
 import org.apache.cxf.jaxrs.utils.JAXRSUtils;
 import org.apache.cxf.service.Service;
@@ -58,6 +61,7 @@ import org.apache.cxf.service.model.ServiceInfo;
 public class JAXRSServiceImpl extends AbstractAttributedInterceptorProvider implements Service, Configurable {
     private static final long serialVersionUID = 6765400202555126993L;
     private List<ClassResourceInfo> classResourceInfos;
+    private transient volatile URITemplateTree<ClassResourceInfo> classResourceTree;
     private DataBinding dataBinding;
     private Executor executor;
     private Invoker invoker;
@@ -72,7 +76,7 @@ public class JAXRSServiceImpl extends AbstractAttributedInterceptorProvider impl
     }
 
     public JAXRSServiceImpl(List<ClassResourceInfo> cri, QName qname) {
-        this.classResourceInfos = cri;
+        this.classResourceInfos = cri == null ? null : new ClassResourceInfoList(cri);
         this.serviceName = qname;
     }
     
@@ -110,6 +114,23 @@ public class JAXRSServiceImpl extends AbstractAttributedInterceptorProvider impl
         return classResourceInfos;
     }
     
+    /**
+     * Returns the routing tree of the root resources, it is built on the first
+     * request and rebuilt after the list returned by {@link #getClassResourceInfos()}
+     * has been modified.
+     */
+    public URITemplateTree<ClassResourceInfo> getClassResourceTree() {
+        URITemplateTree<ClassResourceInfo> tree = classResourceTree;
+        if (tree == null) {
+            tree = new URITemplateTree<ClassResourceInfo>();
+            for (ClassResourceInfo cri : classResourceInfos) {
+                tree.add(cri.getURITemplate(), cri);
+            }
+            classResourceTree = tree;
+        }
+        return tree;
+    }
+
     public List<ServiceInfo> getServiceInfos() {
         if (!createServiceModel) {
             return Collections.emptyList();
@@ -214,4 +235,43 @@ public class JAXRSServiceImpl extends AbstractAttributedInterceptorProvider impl
     public void setProperties(Map<String, Object> properties) {
         this.putAll(properties);
     }
+
+    /**
+     * Drops the routing tree whenever the resource list is modified.
+     */
+    private class ClassResourceInfoList extends AbstractList<ClassResourceInfo> implements Serializable {
+        private static final long serialVersionUID = -3271628414235671442L;
+        private final List<ClassResourceInfo> list;
+
+        ClassResourceInfoList(List<ClassResourceInfo> list) {
+            this.list = list;
+        }
+
+        public ClassResourceInfo get(int index) {
+            return list.get(index);
+        }
+
+        public int size() {
+            return list.size();
+        }
+
+        public ClassResourceInfo set(int index, ClassResourceInfo cri) {
+            ClassResourceInfo old = list.set(index, cri);
+            classResourceTree = null;
+            return old;
+        }
+
+        public void add(int index, ClassResourceInfo cri) {
+            list.add(index, cri);
+            modCount++;
+            classResourceTree = null;
+        }
+
+        public ClassResourceInfo remove(int index) {
+            ClassResourceInfo old = list.remove(index);
+            modCount++;
+            classResourceTree = null;
+            return old;
+        }
+    }
 }
@@ -28,11 +28,14 @@ import java.util.List;
 
 import org.apache.cxf.Bus;
 import org.apache.cxf.jaxrs.utils.AnnotationUtils;
+import org.apache.cxf.jaxrs.utils.ResourceUtils;
 
 public abstract class BeanResourceInfo extends AbstractResourceInfo {
     protected List<Field> paramFields;
     protected List<Method> paramMethods;
     private boolean paramsAvailable;
+    private volatile List<ParameterPlan> paramMethodPlans;
+    private volatile List<ParameterPlan> paramFieldPlans;
     
     protected BeanResourceInfo(Bus bus) {
         super(bus);
@@ -110,4 +113,45 @@ public abstract class BeanResourceInfo extends AbstractResourceInfo {
         return paramFields == null ? Collections.<Field>emptyList() 
                                     : Collections.unmodifiableList(paramFields);
     }
+    
+    /**
+     * Returns the extraction plans of the parameter setters, in the order of
+     * {@link #getParameterMethods()}.
+     */
+    public List<ParameterPlan> getParameterMethodPlans() {
+        List<ParameterPlan> plans = paramMethodPlans;
+        if (plans == null) {
+            List<Method> methods = getParameterMethods();
+            plans = new ArrayList<ParameterPlan>(methods.size());
+            for (Method m : methods) {
+                Annotation[] anns = m.getAnnotations();
+                Class<?> type = m.getParameterTypes()[0];
+                plans.add(new ParameterPlan(ResourceUtils.getParameter(0, anns, type), type,
+                                            m.getGenericParameterTypes()[0], m.getParameterAnnotations()[0]));
+            }
+            plans = Collections.unmodifiableList(plans);
+            paramMethodPlans = plans;
+        }
+        return plans;
+    }
+    
+    /**
+     * Returns the extraction plans of the parameter fields, in the order of
+     * {@link #getParameterFields()}.
+     */
+    public List<ParameterPlan> getParameterFieldPlans() {
+        List<ParameterPlan> plans = paramFieldPlans;
+        if (plans == null) {
+            List<Field> fields = getParameterFields();
+            plans = new ArrayList<ParameterPlan>(fields.size());
+            for (Field f : fields) {
+                Annotation[] anns = f.getAnnotations();
+                plans.add(new ParameterPlan(ResourceUtils.getParameter(0, anns, f.getType()), f.getType(),
+                                            f.getGenericType(), anns));
+            }
+            plans = Collections.unmodifiableList(plans);
+            paramFieldPlans = plans;
+        }
+        return plans;
+    }
 }
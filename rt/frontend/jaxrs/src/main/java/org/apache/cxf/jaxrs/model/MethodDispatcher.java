@@ -20,6 +20,7 @@ package org.apache.cxf.jaxrs.model;
 
 import java.lang.reflect.Method;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -31,6 +32,7 @@ public class MethodDispatcher {
     private Map<Method, OperationResourceInfo> methodToOri = 
         new LinkedHashMap<Method, OperationResourceInfo>();
     private ConcurrentHashMap<Method, Method> proxyMethodMap = new ConcurrentHashMap<Method, Method>();
+    private volatile URITemplateTree<OperationResourceInfo> oriTree;
     
     public MethodDispatcher() {
         
@@ -52,6 +54,7 @@ public class MethodDispatcher {
         }
 
         oriToMethod.put(o, primary);
+        oriTree = null;
     }
 
     public OperationResourceInfo getOperationResourceInfo(Method method) {
@@ -62,6 +65,22 @@ public class MethodDispatcher {
         return oriToMethod.keySet();
     }
 
+    /**
+     * Returns the operations whose URI templates may match the path, in the
+     * order of {@link #getOperationResourceInfos()}.
+     */
+    public List<OperationResourceInfo> getOperationResourceInfos(String path) {
+        URITemplateTree<OperationResourceInfo> tree = oriTree;
+        if (tree == null) {
+            tree = new URITemplateTree<OperationResourceInfo>();
+            for (OperationResourceInfo ori : oriToMethod.keySet()) {
+                tree.add(ori.getURITemplate(), ori);
+            }
+            oriTree = tree;
+        }
+        return tree.select(path);
+    }
+
     public Method getMethod(OperationResourceInfo op) {
         return oriToMethod.get(op);
     }
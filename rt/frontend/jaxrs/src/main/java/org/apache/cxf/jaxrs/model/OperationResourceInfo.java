@@ -22,6 +22,8 @@ package org.apache.cxf.jaxrs.model;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
@@ -35,10 +37,13 @@ import javax.ws.rs.core.MediaType;
 
 import org.apache.cxf.jaxrs.ext.Oneway;
 import org.apache.cxf.jaxrs.utils.AnnotationUtils;
+import org.apache.cxf.jaxrs.utils.InjectionUtils;
 import org.apache.cxf.jaxrs.utils.JAXRSUtils;
 import org.apache.cxf.jaxrs.utils.ResourceUtils;
 
 public class OperationResourceInfo {
+    private static final Annotation[] EMPTY_ANNOTATIONS = new Annotation[0];
+    
     private URITemplate uriTemplate;
     private ClassResourceInfo classResourceInfo;
     private Method methodToInvoke;
@@ -56,6 +61,7 @@ public class OperationResourceInfo {
     private Type[] actualInGenericParamTypes;
     private Annotation[][] actualInParamAnnotations;
     private Annotation[] actualOutParamAnnotations;
+    private volatile List<ParameterPlan> parameterPlans;
     
     public OperationResourceInfo(Method mInvoke, ClassResourceInfo cri) {
         this(mInvoke, mInvoke, cri);
@@ -293,6 +299,31 @@ public class OperationResourceInfo {
     public Class<?>[] getInParameterTypes() {
         return actualInParamTypes;
     }
+    
+    /**
+     * Returns the extraction plans of the method parameters, with type variables 
+     * resolved against the service class. 
+     */
+    public List<ParameterPlan> getParameterPlans() {
+        List<ParameterPlan> plans = parameterPlans;
+        if (plans == null) {
+            Class<?> serviceCls = classResourceInfo.getServiceClass();
+            plans = new ArrayList<ParameterPlan>(actualInParamTypes.length);
+            for (int i = 0; i < actualInParamTypes.length; i++) {
+                Type genericType = InjectionUtils.processGenericTypeIfNeeded(
+                    serviceCls, actualInParamTypes[i], actualInGenericParamTypes[i]);
+                Class<?> rawType = InjectionUtils.updateParamClassToTypeIfNeeded(actualInParamTypes[i], 
+                                                                                 genericType);
+                Annotation[] anns = actualInParamAnnotations == null 
+                    ? EMPTY_ANNOTATIONS : actualInParamAnnotations[i];
+                plans.add(new ParameterPlan(parameters.get(i), rawType, genericType, anns));
+            }
+            plans = Collections.unmodifiableList(plans);
+            parameterPlans = plans;
+        }
+        return plans;
+    }
+    
     public Annotation[] getOutAnnotations() {
         return actualOutParamAnnotations;
     }
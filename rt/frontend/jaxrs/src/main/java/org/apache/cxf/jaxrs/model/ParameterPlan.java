@@ -0,0 +1,59 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.jaxrs.model;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/**
+ * Describes how the value of a resource method parameter or of an injected bean 
+ * property is extracted from a request: the parameter info together with the 
+ * resolved class, generic type and annotations. Plans are created once per 
+ * operation or bean so that the method signatures are not introspected per request.
+ */
+public final class ParameterPlan {
+    private final Parameter parameter;
+    private final Class<?> rawType;
+    private final Type genericType;
+    private final Annotation[] annotations;
+    
+    public ParameterPlan(Parameter parameter, Class<?> rawType, Type genericType, Annotation[] annotations) {
+        this.parameter = parameter;
+        this.rawType = rawType;
+        this.genericType = genericType;
+        this.annotations = annotations;
+    }
+    
+    public Parameter getParameter() {
+        return parameter;
+    }
+    
+    public Class<?> getRawType() {
+        return rawType;
+    }
+    
+    public Type getGenericType() {
+        return genericType;
+    }
+    
+    public Annotation[] getAnnotations() {
+        return annotations;
+    }
+}
@@ -42,6 +42,8 @@ public final class URITemplate {
     public static final String FINAL_MATCH_GROUP = "FINAL_MATCH_GROUP";
     private static final String DEFAULT_PATH_VARIABLE_REGEX = "([^/]+?)";
     private static final String CHARACTERS_TO_ESCAPE = ".*+$()";
+    private static final String REGEX_CHARACTERS = "\\^[]|?{}";
+    private static final String LINE_TERMINATORS = "\n\r\u0085\u2028\u2029";
     private static final String SLASH = "/";
     private static final String SLASH_QUOTE = "/;";
     
@@ -51,11 +53,14 @@ public final class URITemplate {
     private final Pattern templateRegexPattern;
     private final String literals;
     private final List<UriChunk> uriChunks;
+    private final String[] segmentLiterals;
 
     public URITemplate(String theTemplate) {
         template = theTemplate;
         StringBuilder literalChars = new StringBuilder();
         StringBuilder patternBuilder = new StringBuilder();
+        List<String> literalParts = new ArrayList<String>();
+        StringBuilder literalPart = new StringBuilder();
         CurlyBraceTokenizer tok = new CurlyBraceTokenizer(template);
         uriChunks = new ArrayList<UriChunk>();
         while (tok.hasNext()) {
@@ -67,9 +72,12 @@ public final class URITemplate {
                 String substr = escapeCharacters(encodedValue);
                 literalChars.append(substr);
                 patternBuilder.append(substr);
+                literalPart.append(encodedValue);
             } else if (chunk instanceof Variable) {
                 Variable var = (Variable)chunk;
                 variables.add(var.getName());
+                literalParts.add(literalPart.toString());
+                literalPart.setLength(0);
                 if (var.getPattern() != null) {
                     customVariables.add(var.getName());
                     patternBuilder.append('(');
@@ -90,6 +98,35 @@ public final class URITemplate {
         patternBuilder.append(LIMITED_REGEX_SUFFIX);
 
         templateRegexPattern = Pattern.compile(patternBuilder.toString());
+        
+        if (endsWithSlash && literalPart.length() > 0) {
+            literalPart.setLength(literalPart.length() - 1);
+        }
+        literalParts.add(literalPart.toString());
+        segmentLiterals = customVariables.isEmpty() && isSegmentTemplate(literalParts) 
+            ? literalParts.toArray(new String[literalParts.size()]) : null;
+    }
+    
+    /**
+     * Checks if the template can be matched without its regular expression, that is if each
+     * variable takes a whole path segment and the literals do not use any regular expression syntax,
+     * as in "/customers/{id}/orders". 
+     */
+    private static boolean isSegmentTemplate(List<String> literalParts) {
+        int last = literalParts.size() - 1;
+        for (int i = 0; i <= last; i++) {
+            String part = literalParts.get(i);
+            for (int j = 0; j < part.length(); j++) {
+                if (REGEX_CHARACTERS.indexOf(part.charAt(j)) != -1) {
+                    return false;
+                }
+            }
+            if (i < last && !part.endsWith(SLASH) 
+                || i > 0 && !part.startsWith(SLASH) && !(i == last && part.isEmpty())) {
+                return false;
+            }
+        }
+        return true;
     }
 
     public String getLiteralChars() {
@@ -147,8 +184,9 @@ public final class URITemplate {
             return false;
         }
 
-        Matcher m = templateRegexPattern.matcher(uri);
-        if (!m.matches() || template.equals(SLASH) && uri.startsWith(SLASH_QUOTE)) {
+        String finalGroup = template.equals(SLASH) && uri.startsWith(SLASH_QUOTE) 
+            ? null : doMatch(uri, templateVariableToValue);
+        if (finalGroup == null) {
             if (uri.contains(";")) {
                 // we might be trying to match one or few path segments
                 // containing matrix
@@ -172,15 +210,34 @@ public final class URITemplate {
                 if (uri.length() == 0) {
                     uri = SLASH;
                 }
-                m = templateRegexPattern.matcher(uri);
-                if (!m.matches()) {
+                finalGroup = doMatch(uri, templateVariableToValue);
+                if (finalGroup == null) {
                     return false;
                 }
             } else {
                 return false;
             }
         }
+        templateVariableToValue.putSingle(FINAL_MATCH_GROUP, finalGroup);
 
+        return true;
+    }
+    
+    /**
+     * Matches the whole uri and assigns the template variables.
+     * 
+     * @return the right hand side value which might be used to further resolve sub-resources,
+     *         null if the uri does not match
+     */
+    private String doMatch(String uri, MultivaluedMap<String, String> templateVariableToValue) {
+        if (segmentLiterals != null) {
+            return matchSegments(uri, templateVariableToValue);
+        }
+        Matcher m = templateRegexPattern.matcher(uri);
+        if (!m.matches()) {
+            return null;
+        }
+        
         // Assign the matched template values to template variables
         int groupCount = m.groupCount();
         
@@ -203,10 +260,54 @@ public final class URITemplate {
         if (finalGroup == null || finalGroup.startsWith(SLASH_QUOTE)) {
             finalGroup = SLASH;
         }
-        
-        templateVariableToValue.putSingle(FINAL_MATCH_GROUP, finalGroup);
-
-        return true;
+        return finalGroup;
+    }
+    
+    /**
+     * Does what the template regular expression would do for a template whose variables
+     * take whole path segments, without the regular expression.
+     */
+    private String matchSegments(String uri, MultivaluedMap<String, String> templateVariableToValue) {
+        int len = uri.length();
+        String[] values = variables.isEmpty() ? null : new String[variables.size()];
+        int pos = 0;
+        for (int i = 0; i < segmentLiterals.length; i++) {
+            String literal = segmentLiterals[i];
+            if (!uri.startsWith(literal, pos)) {
+                return null;
+            }
+            pos += literal.length();
+            if (i < segmentLiterals.length - 1) {
+                int end = uri.indexOf('/', pos);
+                if (end == -1) {
+                    end = len;
+                }
+                if (end == pos) {
+                    return null;
+                }
+                values[i] = uri.substring(pos, end);
+                pos = end;
+            }
+        }
+        String finalGroup = SLASH;
+        if (pos < len) {
+            // the remainder is matched by LIMITED_REGEX_SUFFIX
+            if (uri.charAt(pos) != '/') {
+                return null;
+            }
+            for (int i = pos; i < len; i++) {
+                if (LINE_TERMINATORS.indexOf(uri.charAt(i)) != -1) {
+                    return null;
+                }
+            }
+            if (!uri.startsWith(SLASH_QUOTE, pos)) {
+                finalGroup = uri.substring(pos);
+            }
+        }
+        for (int i = 0; i < variables.size(); i++) {
+            templateVariableToValue.add(variables.get(i), values[i]);
+        }
+        return finalGroup;
     }
 
     /**
@@ -0,0 +1,169 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.jaxrs.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Routing tree over the URI templates of root resources or resource methods.
+ * <p>
+ * Templates are kept under the node of their leading literal path segments, e.g.
+ * "/customers/{id}/orders" is kept under the "customers" node while "/{id}" is kept
+ * at the root. A request path is walked down the tree one segment at a time, so only
+ * the templates which can possibly match it are handed to
+ * {@link URITemplate#match(String, javax.ws.rs.core.MultivaluedMap)} and the regular
+ * expressions of the others are never evaluated.
+ * <p>
+ * The selected candidates are returned in the order they were added in, so that the
+ * request specific sorting done by the resource comparators afterwards is not affected.
+ */
+public final class URITemplateTree<T> {
+    private static final String SAFE_LITERAL_CHARACTERS = "-._~";
+    private static final Comparator<Entry<?>> POSITION_COMPARATOR = new Comparator<Entry<?>>() {
+        public int compare(Entry<?> e1, Entry<?> e2) {
+            return e1.position < e2.position ? -1 : e1.position > e2.position ? 1 : 0;
+        }
+    };
+
+    private final Node<T> root = new Node<T>();
+    private final List<T> values = new ArrayList<T>();
+
+    public void add(URITemplate template, T value) {
+        Node<T> node = root;
+        String path = template == null ? null : template.getValue();
+        if (path != null && path.startsWith("/")) {
+            int start = 1;
+            while (start < path.length()) {
+                int end = path.indexOf('/', start);
+                if (end == -1) {
+                    end = path.length();
+                }
+                String segment = path.substring(start, end);
+                if (!isLiteral(segment)) {
+                    break;
+                }
+                node = node.getChild(segment, true);
+                start = end + 1;
+            }
+        }
+        node.entries.add(new Entry<T>(values.size(), value));
+        values.add(value);
+    }
+
+    /**
+     * Returns the values whose templates may match the path, in the order they were added in.
+     */
+    public List<T> select(String path) {
+        if (path == null || !path.startsWith("/")) {
+            return Collections.unmodifiableList(values);
+        }
+        // URITemplate retries with the matrix parameters and the empty segments removed
+        boolean matrix = path.indexOf(';') != -1;
+        List<Entry<T>> found = new ArrayList<Entry<T>>(root.entries);
+        boolean sort = false;
+        Node<T> node = root;
+        int start = 1;
+        int len = path.length();
+        while (start < len && node.children != null) {
+            int end = path.indexOf('/', start);
+            if (end == -1) {
+                end = len;
+            }
+            String segment = path.substring(start, end);
+            start = end + 1;
+            if (matrix) {
+                int index = segment.indexOf(';');
+                if (index != -1) {
+                    segment = segment.substring(0, index);
+                }
+                if (segment.length() == 0) {
+                    continue;
+                }
+            }
+            node = node.getChild(segment, false);
+            if (node == null) {
+                break;
+            }
+            if (!node.entries.isEmpty()) {
+                sort = !found.isEmpty();
+                found.addAll(node.entries);
+            }
+        }
+        if (sort) {
+            Collections.sort(found, POSITION_COMPARATOR);
+        }
+        List<T> selected = new ArrayList<T>(found.size());
+        for (Entry<T> entry : found) {
+            selected.add(entry.value);
+        }
+        return selected;
+    }
+
+    public int size() {
+        return values.size();
+    }
+
+    private static boolean isLiteral(String segment) {
+        if (segment.length() == 0) {
+            return false;
+        }
+        // only the characters which are neither encoded nor interpreted by the template regex
+        for (int i = 0; i < segment.length(); i++) {
+            char ch = segment.charAt(i);
+            boolean alphaNumeric = ch >= 'a' && ch <= 'z' || ch >= 'A' && ch <= 'Z' || ch >= '0' && ch <= '9';
+            if (!alphaNumeric && SAFE_LITERAL_CHARACTERS.indexOf(ch) == -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Node<T> {
+        private final List<Entry<T>> entries = new ArrayList<Entry<T>>(1);
+        private Map<String, Node<T>> children;
+
+        Node<T> getChild(String segment, boolean create) {
+            Node<T> child = children == null ? null : children.get(segment);
+            if (child == null && create) {
+                if (children == null) {
+                    children = new HashMap<String, Node<T>>();
+                }
+                child = new Node<T>();
+                children.put(segment, child);
+            }
+            return child;
+        }
+    }
+
+    private static final class Entry<T> {
+        private final int position;
+        private final T value;
+
+        Entry(int position, T value) {
+            this.position = position;
+            this.value = value;
+        }
+    }
+}
@@ -32,9 +32,11 @@ import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.ext.MessageBodyWriter;
 import javax.ws.rs.ext.Provider;
 
+import org.apache.cxf.jaxrs.ext.RequestDependentSelection;
 import org.apache.cxf.jaxrs.utils.ExceptionUtils;
 
 @Provider
+@RequestDependentSelection
 public class CachingMessageBodyWriter<T> extends AbstractCachingMessageProvider<T>
     implements MessageBodyWriter<T> {
     
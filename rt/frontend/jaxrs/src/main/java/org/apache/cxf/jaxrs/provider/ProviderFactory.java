@@ -31,6 +31,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
@@ -38,6 +39,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 import javax.ws.rs.Produces;
@@ -62,6 +64,7 @@ import org.apache.cxf.common.util.PropertyUtils;
 import org.apache.cxf.endpoint.Endpoint;
 import org.apache.cxf.helpers.CastUtils;
 import org.apache.cxf.jaxrs.ext.ContextProvider;
+import org.apache.cxf.jaxrs.ext.RequestDependentSelection;
 import org.apache.cxf.jaxrs.impl.MetadataMap;
 import org.apache.cxf.jaxrs.impl.ReaderInterceptorMBR;
 import org.apache.cxf.jaxrs.impl.WriterInterceptorMBW;
@@ -82,6 +85,11 @@ public abstract class ProviderFactory {
     public static final String DEFAULT_FILTER_NAME_BINDING = "org.apache.cxf.filter.binding";
     public static final String PROVIDER_SELECTION_PROPERTY_CHANGED = "provider.selection.property.changed";
     public static final String ACTIVE_JAXRS_PROVIDER_KEY = "active.jaxrs.provider";
+    /**
+     * Bus property setting the maximum number of cached MessageBodyReader and MessageBodyWriter
+     * selections, 0 disables the cache
+     */
+    public static final String SELECTION_CACHE_SIZE = "org.apache.cxf.jaxrs.provider.selection.cache.size";
     
     protected static final String SERVER_FACTORY_NAME = "org.apache.cxf.jaxrs.provider.ServerProviderFactory";
     protected static final String CLIENT_FACTORY_NAME = "org.apache.cxf.jaxrs.client.ClientProviderFactory";
@@ -92,6 +100,7 @@ public abstract class ProviderFactory {
     private static final String JAXB_PROVIDER_NAME = "org.apache.cxf.jaxrs.provider.JAXBElementProvider";
     private static final String JSON_PROVIDER_NAME = "org.apache.cxf.jaxrs.provider.json.JSONProvider";
     private static final String BUS_PROVIDERS_ALL = "org.apache.cxf.jaxrs.bus.providers";
+    private static final int DEFAULT_SELECTION_CACHE_SIZE = 1000;
     
     protected Map<NameKey, ProviderInfo<ReaderInterceptor>> readerInterceptors = 
         new NameKeyMap<ProviderInfo<ReaderInterceptor>>(true);
@@ -117,8 +126,24 @@ public abstract class ProviderFactory {
     
     private Comparator<?> providerComparator;
     
+    private final Map<SelectionKey, ProviderInfo<MessageBodyReader<?>>> readerSelections = 
+        new ConcurrentHashMap<SelectionKey, ProviderInfo<MessageBodyReader<?>>>();
+    private final Map<SelectionKey, ProviderInfo<MessageBodyWriter<?>>> writerSelections = 
+        new ConcurrentHashMap<SelectionKey, ProviderInfo<MessageBodyWriter<?>>>();
+    private final Map<Set<String>, List<ProviderInfo<ReaderInterceptor>>> boundReaderInterceptors = 
+        new ConcurrentHashMap<Set<String>, List<ProviderInfo<ReaderInterceptor>>>();
+    private final Map<Set<String>, List<ProviderInfo<WriterInterceptor>>> boundWriterInterceptors = 
+        new ConcurrentHashMap<Set<String>, List<ProviderInfo<WriterInterceptor>>>();
+    private Set<Object> requestDependentProviders = 
+        Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+    private int selectionCacheSize = DEFAULT_SELECTION_CACHE_SIZE;
+    
     protected ProviderFactory(Bus bus) {
         this.bus = bus;
+        Object size = bus == null ? null : bus.getProperty(SELECTION_CACHE_SIZE);
+        if (size != null) {
+            selectionCacheSize = Integer.parseInt(size.toString());
+        }
     }
     
     public Bus getBus() {
@@ -272,7 +297,7 @@ public abstract class ProviderFactory {
         
         Class<?> mapperClass = ClassHelper.getRealClass(bus, em.getProvider());
         Type[] types = null;
-        if (m != null && MessageUtils.isTrue(m.getContextualProperty(IGNORE_TYPE_VARIABLES))) {
+        if (ignoreTypeVariables(m)) {
             types = new Type[]{mapperClass};
         } else {
             types = getGenericInterfaces(mapperClass, expectedType);
@@ -347,7 +372,7 @@ public abstract class ProviderFactory {
             if (size > 0) {
                 interceptors = new ArrayList<ReaderInterceptor>(size + 1);
                 List<ProviderInfo<ReaderInterceptor>> readers =
-                    getBoundFilters(readerInterceptors, names);
+                    getBoundInterceptors(boundReaderInterceptors, readerInterceptors, names);
                 for (ProviderInfo<ReaderInterceptor> p : readers) {
                     InjectionUtils.injectContexts(p.getProvider(), p, m);
                     interceptors.add(p.getProvider());
@@ -386,7 +411,7 @@ public abstract class ProviderFactory {
             if (size > 0) {
                 interceptors = new ArrayList<WriterInterceptor>(size + 1);
                 List<ProviderInfo<WriterInterceptor>> writers =
-                    getBoundFilters(writerInterceptors, names);
+                    getBoundInterceptors(boundWriterInterceptors, writerInterceptors, names);
                 for (ProviderInfo<WriterInterceptor> p : writers) {
                     InjectionUtils.injectContexts(p.getProvider(), p, m);
                     interceptors.add(p.getProvider());
@@ -410,9 +435,21 @@ public abstract class ProviderFactory {
                                                             Annotation[] annotations,
                                                             MediaType mediaType,
                                                             Message m) {
+        SelectionKey key = selectionCacheSize > 0 
+            ? new SelectionKey(type, genericType, annotations, mediaType, ignoreTypeVariables(m)) : null;
+        ProviderInfo<MessageBodyReader<?>> selected = key != null ? readerSelections.get(key) : null;
+        if (selected != null) {
+            injectSelectedProvider(selected, m);
+            return (MessageBodyReader<T>)selected.getProvider();
+        }
+        boolean cacheable = key != null;
         for (ProviderInfo<MessageBodyReader<?>> ep : messageReaders) {
+            cacheable = cacheable && !isRequestDependent(ep);
             if (matchesReaderCriterias(ep, type, genericType, annotations, mediaType, m)
                 && handleMapper(ep, type, m, MessageBodyReader.class, false)) {
+                if (cacheable) {
+                    cacheSelection(readerSelections, key, ep);
+                }
                 return (MessageBodyReader<T>)ep.getProvider();
             }
         }     
@@ -425,15 +462,79 @@ public abstract class ProviderFactory {
                                                             Annotation[] annotations,
                                                             MediaType mediaType,
                                                             Message m) {
+        SelectionKey key = selectionCacheSize > 0 
+            ? new SelectionKey(type, genericType, annotations, mediaType, ignoreTypeVariables(m)) : null;
+        ProviderInfo<MessageBodyWriter<?>> selected = key != null ? writerSelections.get(key) : null;
+        if (selected != null) {
+            injectSelectedProvider(selected, m);
+            return (MessageBodyWriter<T>)selected.getProvider();
+        }
+        boolean cacheable = key != null;
         for (ProviderInfo<MessageBodyWriter<?>> ep : messageWriters) {
+            cacheable = cacheable && !isRequestDependent(ep);
             if (matchesWriterCriterias(ep, type, genericType, annotations, mediaType, m)
                 && handleMapper(ep, type, m, MessageBodyWriter.class, false)) {
+                if (cacheable) {
+                    cacheSelection(writerSelections, key, ep);
+                }
                 return (MessageBodyWriter<T>)ep.getProvider();
             }
         }
         return null;
     }
     
+    public int getSelectionCacheSize() {
+        return selectionCacheSize;
+    }
+    
+    public void setSelectionCacheSize(int size) {
+        this.selectionCacheSize = size;
+        clearSelections();
+    }
+    
+    protected void clearSelections() {
+        readerSelections.clear();
+        writerSelections.clear();
+        boundReaderInterceptors.clear();
+        boundWriterInterceptors.clear();
+    }
+    
+    private boolean isRequestDependent(ProviderInfo<?> pi) {
+        return !requestDependentProviders.isEmpty() && requestDependentProviders.contains(pi.getProvider());
+    }
+    
+    private void injectSelectedProvider(ProviderInfo<?> pi, Message m) {
+        // the contexts are injected into the provider when it is matched
+        if (m.get(ACTIVE_JAXRS_PROVIDER_KEY) != pi.getProvider()) {
+            injectContextValues(pi, m);
+        }
+    }
+    
+    private <K, V> void cacheSelection(Map<K, V> cache, K key, V value) {
+        if (cache.size() >= selectionCacheSize) {
+            cache.clear();
+        }
+        cache.put(key, value);
+    }
+    
+    private <T> List<ProviderInfo<T>> getBoundInterceptors(Map<Set<String>, List<ProviderInfo<T>>> cache,
+                                                           Map<NameKey, ProviderInfo<T>> interceptors,
+                                                           Set<String> names) {
+        Set<String> key = names == null ? Collections.<String>emptySet() : names;
+        List<ProviderInfo<T>> list = cache.get(key);
+        if (list == null) {
+            list = getBoundFilters(interceptors, names);
+            if (selectionCacheSize > 0) {
+                cacheSelection(cache, new HashSet<String>(key), list);
+            }
+        }
+        return list;
+    }
+    
+    private static boolean ignoreTypeVariables(Message m) {
+        return m != null && MessageUtils.isTrue(m.getContextualProperty(IGNORE_TYPE_VARIABLES));
+    }
+    
     protected void setBusProviders() {
         List<Object> extensions = new LinkedList<Object>(); 
         final String alreadySetProp = "bus.providers.set." + this.hashCode();
@@ -500,6 +601,10 @@ public abstract class ProviderFactory {
                 writeInts.add((ProviderInfo<WriterInterceptor>)provider);
             }
             
+            if (providerCls.isAnnotationPresent(RequestDependentSelection.class)) {
+                requestDependentProviders.add(provider.getProvider());
+            }
+            
             if (ParamConverterProvider.class.isAssignableFrom(providerCls)) {
                 //TODO: review the possibility of ParamConverterProvider needing to have Contexts injected
                 Object converter = provider.getProvider();
@@ -512,6 +617,7 @@ public abstract class ProviderFactory {
         sortReaders();
         sortWriters();
         sortContextResolvers();
+        clearSelections();
         
         mapInterceptorFilters(readerInterceptors, readInts, ReaderInterceptor.class, true);
         mapInterceptorFilters(writerInterceptors, writeInts, WriterInterceptor.class, true);
@@ -790,6 +896,8 @@ public abstract class ProviderFactory {
         contextProviders.clear();
         readerInterceptors.clear();
         writerInterceptors.clear();
+        requestDependentProviders.clear();
+        clearSelections();
     }
     
     public void setBus(Bus bus) {
@@ -1060,6 +1168,62 @@ public abstract class ProviderFactory {
         }
     }
     
+    private static final class SelectionKey {
+        private final Class<?> type;
+        private final Type genericType;
+        private final Annotation[] annotations;
+        private final MediaType mediaType;
+        private final boolean ignoreTypeVariables;
+        private final int hashCode;
+        
+        SelectionKey(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                     boolean ignoreTypeVariables) {
+            this.type = type;
+            this.genericType = genericType;
+            this.annotations = annotations == null ? new Annotation[]{} : annotations;
+            this.mediaType = mediaType;
+            this.ignoreTypeVariables = ignoreTypeVariables;
+            int hash = type == null ? 0 : type.hashCode();
+            hash = 31 * hash + (genericType == null ? 0 : genericType.hashCode());
+            hash = 31 * hash + (mediaType == null ? 0 : mediaType.hashCode());
+            for (Annotation a : this.annotations) {
+                // the annotations are compared by identity, their values do not need to be read 
+                hash = 31 * hash + System.identityHashCode(a);
+            }
+            this.hashCode = ignoreTypeVariables ? hash + 1 : hash;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof SelectionKey)) {
+                return false;
+            }
+            SelectionKey other = (SelectionKey)o;
+            if (hashCode != other.hashCode || type != other.type 
+                || ignoreTypeVariables != other.ignoreTypeVariables
+                || annotations.length != other.annotations.length
+                || !equalObjects(genericType, other.genericType) 
+                || !equalObjects(mediaType, other.mediaType)) {
+                return false;
+            }
+            for (int i = 0; i < annotations.length; i++) {
+                if (annotations[i] != other.annotations[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+        
+        private static boolean equalObjects(Object o1, Object o2) {
+            return o1 == null ? o2 == null : o1.equals(o2);
+        }
+    }
+    
     protected static class NameKey { 
         private String name;
         private Integer priority;
@@ -1223,6 +1387,7 @@ public abstract class ProviderFactory {
         this.providerComparator = providerComparator;
         sortReaders();
         sortWriters();
+        clearSelections();
     }
     
 }
@@ -109,6 +109,13 @@ public final class InjectionUtils {
     
     private static final String IGNORE_MATRIX_PARAMETERS = "ignore.matrix.parameters";
     
+    private static final ClassValue<StringFactory> STRING_FACTORIES = new ClassValue<StringFactory>() {
+        @Override
+        protected StringFactory computeValue(Class<?> cls) {
+            return new StringFactory(cls);
+        }
+    };
+    
     private InjectionUtils() {
         
     }
@@ -411,27 +418,24 @@ public final class InjectionUtils {
             return pClass.cast(value);
         }
         // check constructors accepting a single String value
-        try {
-            Constructor<?> c = cls.getConstructor(new Class<?>[]{String.class});
-            result = c.newInstance(new Object[]{value});
-        } catch (NoSuchMethodException ex) {
-            // try valueOf
-        } catch (WebApplicationException ex) {
-            throw ex;
-        } catch (Exception ex) {
-            Throwable t = getOrThrowActualException(ex);
-            LOG.severe(new org.apache.cxf.common.i18n.Message("CLASS_CONSTRUCTOR_FAILURE", 
-                                                               BUNDLE, 
-                                                               pClass.getName()).toString());
-            Response r = JAXRSUtils.toResponse(HttpUtils.getParameterFailureStatus(pType));
-            throw ExceptionUtils.toHttpException(t, r);
+        StringFactory factory = STRING_FACTORIES.get(cls);
+        if (factory.constructor != null) {
+            try {
+                result = factory.constructor.newInstance(new Object[]{value});
+            } catch (WebApplicationException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                Throwable t = getOrThrowActualException(ex);
+                LOG.severe(new org.apache.cxf.common.i18n.Message("CLASS_CONSTRUCTOR_FAILURE", 
+                                                                   BUNDLE, 
+                                                                   pClass.getName()).toString());
+                Response r = JAXRSUtils.toResponse(HttpUtils.getParameterFailureStatus(pType));
+                throw ExceptionUtils.toHttpException(t, r);
+            }
         }
         if (result == null) {
             // check for valueOf(String) static methods
-            String[] methodNames = cls.isEnum() 
-                ? new String[] {"fromString", "fromValue", "valueOf"} 
-                : new String[] {"valueOf", "fromString"};
-            result = evaluateFactoryMethods(value, pType, result, cls, methodNames);
+            result = evaluateFactoryMethods(value, pType, result, cls, factory.methods);
         }
         
         if (adapterHasToBeUsed) {
@@ -497,20 +501,22 @@ public final class InjectionUtils {
     }
 
     private static Object evaluateFactoryMethods(String value, ParameterType pType, Object result,
-                                                 Class<?> cls, String[] methodNames) {
+                                                 Class<?> cls, Method[] methods) {
         Exception factoryMethodEx = null; 
-        for (String mName : methodNames) {
+        for (Method m : methods) {
             try {
-                result = evaluateFactoryMethod(value, cls, pType, mName);
+                result = cls.cast(m.invoke(null, new Object[]{value}));
                 if (result != null) {
                     factoryMethodEx = null;
                     break;
                 }
+            } catch (IllegalAccessException ex) {
+                // factory method is not accessible: try another
             } catch (Exception ex) {
                 // If it is enum and the method name is "fromValue" then don't throw 
                 // the exception immediately but try the next factory method
                 factoryMethodEx = ex;
-                if (!cls.isEnum() || !"fromValue".equals(mName)) {
+                if (!cls.isEnum() || !"fromValue".equals(m.getName())) {
                     break;
                 }
             }            
@@ -526,25 +532,6 @@ public final class InjectionUtils {
         }
     }
 
-    private static <T> T evaluateFactoryMethod(String value,
-                                               Class<T> pClass,
-                                               ParameterType pType,
-                                               String methodName) 
-        throws InvocationTargetException {
-        try {
-            Method m = pClass.getMethod(methodName, new Class<?>[]{String.class});
-            if (Modifier.isStatic(m.getModifiers())) {
-                return pClass.cast(m.invoke(null, new Object[]{value}));
-            }
-        } catch (NoSuchMethodException ex) {
-            // no luck: try another factory methods
-        } catch (IllegalAccessException ex) {
-            // factory method is not accessible: try another
-        }
-
-        return null;
-    }
-    
     private static Throwable getOrThrowActualException(Throwable ex) {
         Throwable t = ex instanceof InvocationTargetException ? ((InvocationTargetException)ex).getCause() : ex; 
         if (t instanceof WebApplicationException) {    
@@ -1434,4 +1421,39 @@ public final class InjectionUtils {
     public static Object getEntity(Object o) {
         return o instanceof GenericEntity ? ((GenericEntity<?>)o).getEntity() : o;
     }
+    
+    /**
+     * The public constructor accepting a single String and the static String factory 
+     * methods of a parameter class, in the order they are tried. They are looked up 
+     * once per class rather than for every parameter value.
+     */
+    private static final class StringFactory {
+        private final Constructor<?> constructor;
+        private final Method[] methods;
+        
+        StringFactory(Class<?> cls) {
+            Constructor<?> c = null;
+            try {
+                c = cls.getConstructor(new Class<?>[]{String.class});
+            } catch (NoSuchMethodException ex) {
+                // try valueOf
+            }
+            constructor = c;
+            String[] methodNames = cls.isEnum() 
+                ? new String[] {"fromString", "fromValue", "valueOf"} 
+                : new String[] {"valueOf", "fromString"};
+            List<Method> list = new ArrayList<Method>(methodNames.length);
+            for (String methodName : methodNames) {
+                try {
+                    Method m = cls.getMethod(methodName, new Class<?>[]{String.class});
+                    if (Modifier.isStatic(m.getModifiers())) {
+                        list.add(m);
+                    }
+                } catch (NoSuchMethodException ex) {
+                    // no luck: try another factory methods
+                }
+            }
+            methods = list.toArray(new Method[list.size()]);
+        }
+    }
 }
@@ -29,6 +29,7 @@ import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
@@ -122,11 +123,13 @@ import org.apache.cxf.jaxrs.model.BeanParamInfo;
 import org.apache.cxf.jaxrs.model.BeanResourceInfo;
 import org.apache.cxf.jaxrs.model.ClassResourceInfo;
 import org.apache.cxf.jaxrs.model.ClassResourceInfoComparator;
+import org.apache.cxf.jaxrs.model.MethodDispatcher;
 import org.apache.cxf.jaxrs.model.MethodInvocationInfo;
 import org.apache.cxf.jaxrs.model.OperationResourceInfo;
 import org.apache.cxf.jaxrs.model.OperationResourceInfoComparator;
 import org.apache.cxf.jaxrs.model.OperationResourceInfoStack;
 import org.apache.cxf.jaxrs.model.Parameter;
+import org.apache.cxf.jaxrs.model.ParameterPlan;
 import org.apache.cxf.jaxrs.model.ParameterType;
 import org.apache.cxf.jaxrs.model.ProviderInfo;
 import org.apache.cxf.jaxrs.model.URITemplate;
@@ -253,45 +256,38 @@ public final class JAXRSUtils {
         // Param methods
         MultivaluedMap<String, String> values = 
             (MultivaluedMap<String, String>)message.get(URITemplate.TEMPLATE_PARAMETERS);
-        for (Method m : bri.getParameterMethods()) {
-            Parameter p = ResourceUtils.getParameter(0, m.getAnnotations(), 
-                                                     m.getParameterTypes()[0]);
-            Object o;
-            
-            if (p.getType() == ParameterType.BEAN && bri instanceof ClassResourceInfo) {
-                o = createBeanParamValue(message, m.getParameterTypes()[0], ori);    
-            } else {
-                o = createHttpParameterValue(p, 
-                                                m.getParameterTypes()[0],
-                                                m.getGenericParameterTypes()[0],
-                                                m.getParameterAnnotations()[0],
-                                                message,
-                                                values,
-                                                ori);
-            }
-            InjectionUtils.injectThroughMethod(requestObject, m, o, message);
+        List<Method> methods = bri.getParameterMethods();
+        List<ParameterPlan> methodPlans = bri.getParameterMethodPlans();
+        for (int i = 0; i < methods.size(); i++) {
+            Object o = createParameterValue(methodPlans.get(i), bri, values, message, ori);
+            InjectionUtils.injectThroughMethod(requestObject, methods.get(i), o, message);
         }
         // Param fields
-        for (Field f : bri.getParameterFields()) {
-            Parameter p = ResourceUtils.getParameter(0, f.getAnnotations(), 
-                                                     f.getType());
-            Object o = null;
-            
-            if (p.getType() == ParameterType.BEAN && bri instanceof ClassResourceInfo) {
-                o = createBeanParamValue(message, f.getType(), ori);    
-            } else {
-                o = createHttpParameterValue(p, 
-                                                f.getType(),
-                                                f.getGenericType(),
-                                                f.getAnnotations(),
-                                                message,
-                                                values,
-                                                ori);
-            }
-            InjectionUtils.injectFieldValue(f, requestObject, o);
+        List<Field> fields = bri.getParameterFields();
+        List<ParameterPlan> fieldPlans = bri.getParameterFieldPlans();
+        for (int i = 0; i < fields.size(); i++) {
+            Object o = createParameterValue(fieldPlans.get(i), bri, values, message, ori);
+            InjectionUtils.injectFieldValue(fields.get(i), requestObject, o);
         }
     }
     
+    private static Object createParameterValue(ParameterPlan plan, 
+                                               BeanResourceInfo bri,
+                                               MultivaluedMap<String, String> values,
+                                               Message message,
+                                               OperationResourceInfo ori) {
+        if (plan.getParameter().getType() == ParameterType.BEAN && bri instanceof ClassResourceInfo) {
+            return createBeanParamValue(message, plan.getRawType(), ori);    
+        } 
+        return createHttpParameterValue(plan.getParameter(), 
+                                        plan.getRawType(),
+                                        plan.getGenericType(),
+                                        plan.getAnnotations(),
+                                        message,
+                                        values,
+                                        ori);
+    }
+    
     public static Map<ClassResourceInfo, MultivaluedMap<String, String>> selectResourceClass(
         List<ClassResourceInfo> resources, String path, Message message) {
         
@@ -311,7 +307,10 @@ public final class JAXRSUtils {
             new TreeMap<ClassResourceInfo, MultivaluedMap<String, String>>(
                 new ClassResourceInfoComparator(message));
         
-        for (ClassResourceInfo cri : resources) {
+        // all the resources are tried when the non-matching ones have to be logged too
+        List<ClassResourceInfo> candidates = isFineLevelLoggable 
+            ? resources : getResourceCandidates(resources, path, message);
+        for (ClassResourceInfo cri : candidates) {
             MultivaluedMap<String, String> map = new MetadataMap<String, String>();
             if (cri.getURITemplate().match(path, map)) {
                 candidateList.put(cri, map);
@@ -356,6 +355,18 @@ public final class JAXRSUtils {
         
         return null;
     }
+    
+    private static List<ClassResourceInfo> getResourceCandidates(List<ClassResourceInfo> resources,
+                                                                 String path, Message message) {
+        Exchange exchange = message == null ? null : message.getExchange();
+        Service service = exchange == null ? null : exchange.getService();
+        if (service instanceof JAXRSServiceImpl
+            && ((JAXRSServiceImpl)service).getClassResourceInfos() == resources) {
+            return ((JAXRSServiceImpl)service).getClassResourceTree().select(path);
+        }
+        return resources;
+    }
+    
     public static OperationResourceInfo findTargetMethod(
         Map<ClassResourceInfo, MultivaluedMap<String, String>> matchedResources,
         Message message,
@@ -409,7 +420,10 @@ public final class JAXRSUtils {
                 
             }
             
-            for (OperationResourceInfo ori : resource.getMethodDispatcher().getOperationResourceInfos()) {
+            MethodDispatcher md = resource.getMethodDispatcher();
+            Collection<OperationResourceInfo> oris = isFineLevelLoggable 
+                ? md.getOperationResourceInfos() : md.getOperationResourceInfos(path);
+            for (OperationResourceInfo ori : oris) {
                 boolean added = false;
                 
                 URITemplate uriTemplate = ori.getURITemplate();
@@ -762,32 +776,28 @@ public final class JAXRSUtils {
         boolean preferModelParams = paramsInfo.size() > parameterTypes.length 
             && !PropertyUtils.isTrue(message.getContextualProperty("org.apache.cxf.preferMethodParameters"));
         
-        int parameterTypesLengh = preferModelParams ? paramsInfo.size() : parameterTypes.length;
-        
-        Type[] genericParameterTypes = ori.getInGenericParameterTypes();
-        Annotation[][] anns = ori.getInParameterAnnotations();
-        List<Object> params = new ArrayList<Object>(parameterTypesLengh);
-
-        for (int i = 0; i < parameterTypesLengh; i++) {
-            Class<?> param = null;
-            Type genericParam = null;
-            Annotation[] paramAnns = null;
-            if (!preferModelParams) {
-                param = parameterTypes[i]; 
-                genericParam = InjectionUtils.processGenericTypeIfNeeded(
-                    ori.getClassResourceInfo().getServiceClass(), param, genericParameterTypes[i]);
-                param = InjectionUtils.updateParamClassToTypeIfNeeded(param, genericParam);
-                paramAnns = anns == null ? EMPTY_ANNOTATIONS : anns[i];
-            } else {
-                param = paramsInfo.get(i).getJavaType();
-                genericParam = param;
-                paramAnns = EMPTY_ANNOTATIONS;
+        if (!preferModelParams) {
+            List<ParameterPlan> plans = ori.getParameterPlans();
+            List<Object> params = new ArrayList<Object>(plans.size());
+            for (ParameterPlan plan : plans) {
+                params.add(processParameter(plan.getRawType(), 
+                                            plan.getGenericType(),
+                                            plan.getAnnotations(),
+                                            plan.getParameter(), 
+                                            values, 
+                                            message,
+                                            ori));
             }
-            
+            return params;
+        }
+        
+        List<Object> params = new ArrayList<Object>(paramsInfo.size());
+        for (Parameter paramInfo : paramsInfo) {
+            Class<?> param = paramInfo.getJavaType();
             Object paramValue = processParameter(param, 
-                                                 genericParam,
-                                                 paramAnns,
-                                                 paramsInfo.get(i), 
+                                                 param,
+                                                 EMPTY_ANNOTATIONS,
+                                                 paramInfo, 
                                                  values, 
                                                  message,
                                                  ori);
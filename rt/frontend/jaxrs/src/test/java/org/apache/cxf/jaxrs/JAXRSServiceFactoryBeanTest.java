@@ -79,6 +79,24 @@ public class JAXRSServiceFactoryBeanTest extends Assert {
         assertEquals(1, resources.size());
     }
     
+    @Test
+    public void testClassResourceTreeRebuiltAfterChange() throws Exception {
+        JAXRSServiceFactoryBean sf = new JAXRSServiceFactoryBean();
+        sf.setResourceClasses(org.apache.cxf.jaxrs.resources.BookStoreNoSubResource.class);
+        sf.create();
+        
+        JAXRSServiceImpl service = (JAXRSServiceImpl)sf.getService();
+        assertEquals(1, service.getClassResourceTree().select("/bookstore/books/123").size());
+        
+        // the resource is replaced, the number of resources stays the same
+        sf.setResourceClass(org.apache.cxf.jaxrs.resources.BookStoreSubresourcesOnly.class);
+        List<ClassResourceInfo> selected = service.getClassResourceTree().select("/bookstore/1/2/3/sub1");
+        assertEquals(1, selected.size());
+        assertSame(service.getClassResourceInfos().get(0), selected.get(0));
+        assertEquals(org.apache.cxf.jaxrs.resources.BookStoreSubresourcesOnly.class, 
+                     selected.get(0).getServiceClass());
+    }
+
     @Test
     public void testSubResources() throws Exception {
         JAXRSServiceFactoryBean sf = new JAXRSServiceFactoryBean();
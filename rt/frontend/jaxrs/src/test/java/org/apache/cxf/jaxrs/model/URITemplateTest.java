@@ -22,6 +22,8 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import javax.ws.rs.core.MultivaluedMap;
 
@@ -740,4 +742,43 @@ public class URITemplateTest extends Assert {
         //System.out.println(ut.encodeLiteralCharacters());
         assertEquals("a%20{digit:[0-9]}%20b", ut.encodeLiteralCharacters(false));
     }
+
+    @Test
+    public void testSegmentTemplatesMatchLikeRegex() {
+        String[] templates = {
+            "/", "", "/books", "/books/", "/books/{id}", "/books/{id}/", "/books/{id}/chapters/{cid}",
+            "/{a}/{b}", "/books.xml", "/a b/{id}", "/books/{id}{ext}", "/books/{id: \\d+}", "/a|b/{id}"
+        };
+        String[] paths = {
+            "", "/", "/books", "/books/", "/books/1", "/books/1/", "/books/1/chapters/2", "/books/1/chapters/2/x",
+            "/booksX", "/books//1", "/books/1;a=b", "/books.xml", "/booksaxml", "/a%20b/1", "/a b/1", "/a|b/1",
+            "/books/1\n/x", "/books/1/\n", "books/1", "/books/123.json", "/x/y/z"
+        };
+        for (String template : templates) {
+            URITemplate uriTemplate = new URITemplate(template);
+            Pattern pattern = Pattern.compile(uriTemplate.getPatternValue());
+            int varCount = uriTemplate.getVariables().size();
+            for (String path : paths) {
+                String message = template + " : " + path;
+                Matcher m = pattern.matcher(path);
+                MultivaluedMap<String, String> values = new MetadataMap<String, String>();
+                boolean matched = uriTemplate.match(path, values);
+                if (path.contains(";")) {
+                    // the matrix parameters are retried without the regular expression
+                    assertTrue(message, !m.matches() || matched);
+                    continue;
+                }
+                assertEquals(message, m.matches(), matched);
+                if (matched && m.groupCount() == varCount + 1) {
+                    for (int i = 0; i < varCount; i++) {
+                        assertEquals(message, m.group(i + 1), 
+                                     values.get(uriTemplate.getVariables().get(i)).get(0));
+                    }
+                    String finalGroup = m.group(varCount + 1);
+                    assertEquals(message, finalGroup == null ? "/" : finalGroup, 
+                                 values.getFirst(URITemplate.FINAL_MATCH_GROUP));
+                }
+            }
+        }
+    }
 }
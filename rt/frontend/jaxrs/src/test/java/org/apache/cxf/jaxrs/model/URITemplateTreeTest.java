@@ -0,0 +1,86 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.jaxrs.model;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.cxf.jaxrs.impl.MetadataMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class URITemplateTreeTest extends Assert {
+
+    private static final String[] TEMPLATES = {
+        "/", "/customers", "/customers/{id}", "/customers/{id}/orders", "/customers/vip/",
+        "/orders", "/orders/{id: \\d+}", "/{collection}/count", "/orders.json", "/orders{ext}",
+        "/a b", "/catalog/items/{id}/details", "/catalog/items/all", "/x|y", "/café"
+    };
+
+    @Test
+    public void testSelectByLiteralSegments() {
+        URITemplateTree<String> tree = createTree("/customers/{id}", "/orders/{id}", "/customers", 
+                                                  "/{id}", "/customers/vip/orders");
+        assertEquals(Arrays.asList("/customers/{id}", "/customers", "/{id}"), tree.select("/customers/1"));
+        assertEquals(Arrays.asList("/customers/{id}", "/customers", "/{id}", "/customers/vip/orders"), 
+                     tree.select("/customers/vip/orders/2"));
+        assertEquals(Arrays.asList("/orders/{id}", "/{id}"), tree.select("/orders"));
+        assertEquals(Arrays.asList("/{id}"), tree.select("/products/1"));
+        assertEquals(Arrays.asList("/{id}"), tree.select("/"));
+        assertEquals(5, tree.select("customers").size());
+        assertEquals(5, tree.size());
+    }
+
+    @Test
+    public void testSelectWithMatrixParameters() {
+        URITemplateTree<String> tree = createTree("/customers/vip", "/orders");
+        assertEquals(Arrays.asList("/customers/vip"), tree.select("/customers;a=b/vip;c=d"));
+        assertEquals(Arrays.asList("/orders"), tree.select("//orders;a=b"));
+    }
+
+    @Test
+    public void testNoMatchingTemplateIsDropped() {
+        URITemplateTree<String> tree = createTree(TEMPLATES);
+        String[] paths = {
+            "/", "/customers", "/customers/", "/customers/1", "/customers/1/orders", "/customers/vip",
+            "/customers/vip/1", "/orders", "/orders/1", "/orders/a", "/orders.json", "/orders.xml",
+            "/foo/count", "/customers/count", "/catalog/items/all", "/catalog/items/1/details", 
+            "/a%20b", "/x|y", "/x", "/caf%C3%A9", "//customers", "/customers;a=b/1", "/orders;a=b",
+            "/;a=b/orders", "/unknown"
+        };
+        for (String path : paths) {
+            List<String> selected = tree.select(path);
+            for (String template : TEMPLATES) {
+                if (new URITemplate(template).match(path, new MetadataMap<String, String>())) {
+                    assertTrue(template + " should be selected for " + path, selected.contains(template));
+                }
+            }
+        }
+    }
+
+    private static URITemplateTree<String> createTree(String... templates) {
+        URITemplateTree<String> tree = new URITemplateTree<String>();
+        for (String template : templates) {
+            tree.add(new URITemplate(template), template);
+        }
+        return tree;
+    }
+}
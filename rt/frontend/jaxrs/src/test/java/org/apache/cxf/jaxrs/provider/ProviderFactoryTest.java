@@ -58,6 +58,7 @@ import org.apache.cxf.jaxrs.Customer;
 import org.apache.cxf.jaxrs.CustomerParameterHandler;
 import org.apache.cxf.jaxrs.JAXBContextProvider;
 import org.apache.cxf.jaxrs.JAXBContextProvider2;
+import org.apache.cxf.jaxrs.ext.RequestDependentSelection;
 import org.apache.cxf.jaxrs.impl.MetadataMap;
 import org.apache.cxf.jaxrs.impl.WebApplicationExceptionMapper;
 import org.apache.cxf.jaxrs.model.AbstractResourceInfo;
@@ -101,6 +102,49 @@ public class ProviderFactoryTest extends Assert {
         assertSame(reader2, readers.get(7).getProvider());
     }
     
+    @Test
+    public void testMessageBodyReaderSelectionIsCached() {
+        ProviderFactory pf = ServerProviderFactory.getInstance();
+        CountingReader reader = new CountingReader();
+        pf.registerUserProvider(reader);
+        MediaType mt = MediaType.valueOf("text/counting");
+        assertSame(reader, pf.createMessageBodyReader(Book.class, Book.class, null, mt, new MessageImpl()));
+        assertSame(reader, pf.createMessageBodyReader(Book.class, Book.class, null, mt, new MessageImpl()));
+        assertEquals(1, reader.count);
+        
+        assertNull(pf.createMessageBodyReader(Long.class, Long.class, null, mt, new MessageImpl()));
+        assertNull(pf.createMessageBodyReader(Long.class, Long.class, null, mt, new MessageImpl()));
+        assertEquals(3, reader.count);
+        
+        // registering a provider drops the cached selections
+        pf.registerUserProvider(new WildcardReader());
+        assertSame(reader, pf.createMessageBodyReader(Book.class, Book.class, null, mt, new MessageImpl()));
+        assertEquals(4, reader.count);
+    }
+    
+    @Test
+    public void testRequestDependentReaderSelectionIsNotCached() {
+        ProviderFactory pf = ServerProviderFactory.getInstance();
+        CountingReader reader = new RequestDependentReader();
+        pf.registerUserProvider(reader);
+        MediaType mt = MediaType.valueOf("text/counting");
+        assertSame(reader, pf.createMessageBodyReader(Book.class, Book.class, null, mt, new MessageImpl()));
+        assertSame(reader, pf.createMessageBodyReader(Book.class, Book.class, null, mt, new MessageImpl()));
+        assertEquals(2, reader.count);
+    }
+    
+    @Test
+    public void testMessageBodyReaderSelectionCacheDisabled() {
+        ProviderFactory pf = ServerProviderFactory.getInstance();
+        pf.setSelectionCacheSize(0);
+        CountingReader reader = new CountingReader();
+        pf.registerUserProvider(reader);
+        MediaType mt = MediaType.valueOf("text/counting");
+        assertSame(reader, pf.createMessageBodyReader(Book.class, Book.class, null, mt, new MessageImpl()));
+        assertSame(reader, pf.createMessageBodyReader(Book.class, Book.class, null, mt, new MessageImpl()));
+        assertEquals(2, reader.count);
+    }
+    
     @Test
     public void testCustomProviderSorting() {
         ProviderFactory pf = ServerProviderFactory.getInstance();
@@ -903,6 +947,27 @@ public class ProviderFactoryTest extends Assert {
         
     }
     
+    @Consumes("text/counting")
+    private static class CountingReader implements MessageBodyReader<Object> {
+        private int count;
+        
+        public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, 
+                                  MediaType mediaType) {
+            count++;
+            return type == Book.class;
+        }
+
+        public Object readFrom(Class<Object> arg0, Type arg1, Annotation[] arg2, MediaType arg3, 
+                                  MultivaluedMap<String, String> arg4, InputStream arg5) 
+            throws IOException, WebApplicationException {
+            return null;
+        }
+    }
+    
+    @RequestDependentSelection
+    private static class RequestDependentReader extends CountingReader {
+    }
+    
     @Produces("*/*")
     @Consumes("*/*")
     private static class WildcardReader implements MessageBodyReader<Object> {
@@ -92,6 +92,7 @@ import org.apache.cxf.jaxrs.model.AbstractResourceInfo;
 import org.apache.cxf.jaxrs.model.ClassResourceInfo;
 import org.apache.cxf.jaxrs.model.MethodDispatcher;
 import org.apache.cxf.jaxrs.model.OperationResourceInfo;
+import org.apache.cxf.jaxrs.model.ParameterPlan;
 import org.apache.cxf.jaxrs.model.URITemplate;
 import org.apache.cxf.jaxrs.provider.FormEncodingProvider;
 import org.apache.cxf.jaxrs.provider.ProviderFactory;
@@ -975,6 +976,28 @@ public class JAXRSUtilsTest extends Assert {
         assertSame(CustomerGender.MALE, params.get(2));
     }
     
+    @Test
+    public void testParameterPlansAreReused() throws Exception {
+        Class<?>[] argType = {UUID.class, CustomerGender.class, CustomerGender.class};
+        Method m = Customer.class.getMethod("testFromStringParam", argType);
+        OperationResourceInfo ori = new OperationResourceInfo(m, new ClassResourceInfo(Customer.class));
+        List<ParameterPlan> plans = ori.getParameterPlans();
+        assertEquals(3, plans.size());
+        assertSame(CustomerGender.class, plans.get(1).getRawType());
+        assertEquals("p2", plans.get(1).getParameter().getName());
+        
+        for (String gender : new String[] {"1", "2"}) {
+            UUID u = UUID.randomUUID();
+            Message messageImpl = createMessage();
+            messageImpl.put(Message.QUERY_STRING, "p1=" + u.toString() + "&p2=" + gender + "&p3=" + gender);
+            List<Object> params = JAXRSUtils.processParameters(ori, null, messageImpl);
+            assertEquals(u, params.get(0));
+            assertSame(CustomerGender.fromString(gender), params.get(1));
+            assertSame(CustomerGender.fromString(gender), params.get(2));
+        }
+        assertSame(plans, ori.getParameterPlans());
+    }
+    
     @Test
     public void testFromValueEnum() throws Exception {
         Class<?>[] argType = {Timezone.class};
@@ -0,0 +1,191 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.management.counters;
+
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.apache.cxf.Bus;
+import org.apache.cxf.common.logging.LogUtils;
+import org.apache.cxf.endpoint.Endpoint;
+import org.apache.cxf.management.InstrumentationManager;
+import org.apache.cxf.management.ManagementConstants;
+import org.apache.cxf.message.Message;
+import org.apache.cxf.phase.InterceptorProfiler;
+import org.apache.cxf.phase.PhaseInterceptor;
+
+/**
+ * Aggregates the interceptor timings of one endpoint into an
+ * {@link InterceptorProfileCounter} per phase and interceptor.  Counters are
+ * registered with the InstrumentationManager of the bus when they are first used.
+ * <p>
+ * Allocations are sampled with the com.sun.management.ThreadMXBean extension 
+ * when the JVM provides it and thread allocated memory measurement is enabled.
+ */
+public class EndpointInterceptorProfiler implements InterceptorProfiler, Closeable {
+    private static final Logger LOG = LogUtils.getL7dLogger(EndpointInterceptorProfiler.class);
+    private static final String PHASE_PROP = "phase";
+    private static final String INTERCEPTOR_PROP = "interceptor";
+    
+    private static final com.sun.management.ThreadMXBean ALLOCATION_BEAN = getAllocationBean();
+    
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, InterceptorProfileCounter>> counters
+        = new ConcurrentHashMap<String, ConcurrentHashMap<String, InterceptorProfileCounter>>();
+    private final Bus bus;
+    private final Endpoint endpoint;
+    private final boolean client;
+    private final boolean sampleAllocations;
+    
+    public EndpointInterceptorProfiler(Bus bus, Endpoint endpoint, boolean client, boolean sampleAllocations) {
+        this.bus = bus;
+        this.endpoint = endpoint;
+        this.client = client;
+        this.sampleAllocations = sampleAllocations && ALLOCATION_BEAN != null;
+    }
+    
+    public static boolean isAllocationSamplingSupported() {
+        return ALLOCATION_BEAN != null;
+    }
+    
+    public long getAllocatedBytes() {
+        if (!sampleAllocations) {
+            return -1;
+        }
+        return ALLOCATION_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    public void interceptorInvoked(Message message,
+                                   PhaseInterceptor<? extends Message> interceptor,
+                                   long nanos,
+                                   long allocatedBytes) {
+        InterceptorProfileCounter counter = getCounter(interceptor.getPhase(), interceptor.getId());
+        if (counter != null) {
+            counter.increase(nanos, allocatedBytes);
+        }
+    }
+    
+    public List<InterceptorProfileCounter> getCounters() {
+        List<InterceptorProfileCounter> list = new ArrayList<InterceptorProfileCounter>();
+        for (Map<String, InterceptorProfileCounter> phaseCounters : counters.values()) {
+            list.addAll(phaseCounters.values());
+        }
+        return list;
+    }
+    
+    public InterceptorProfileCounter getCounter(String phase, String id) {
+        ConcurrentHashMap<String, InterceptorProfileCounter> phaseCounters = counters.get(phase);
+        if (phaseCounters == null) {
+            phaseCounters = new ConcurrentHashMap<String, InterceptorProfileCounter>();
+            ConcurrentHashMap<String, InterceptorProfileCounter> existing 
+                = counters.putIfAbsent(phase, phaseCounters);
+            if (existing != null) {
+                phaseCounters = existing;
+            }
+        }
+        InterceptorProfileCounter counter = phaseCounters.get(id);
+        if (counter == null) {
+            counter = createCounter(phase, id);
+            if (counter == null) {
+                return null;
+            }
+            InterceptorProfileCounter existing = phaseCounters.putIfAbsent(id, counter);
+            if (existing != null) {
+                return existing;
+            }
+            registerCounter(counter);
+        }
+        return counter;
+    }
+    
+    /**
+     * Unregisters and drops all the counters, counters are created again 
+     * if the endpoint is restarted.
+     */
+    public void close() {
+        InstrumentationManager im = bus.getExtension(InstrumentationManager.class);
+        for (InterceptorProfileCounter counter : getCounters()) {
+            if (null != im) {
+                try {
+                    im.unregister(counter);
+                } catch (JMException e) {
+                    LOG.log(Level.FINE, "Unregistering " + counter.getObjectName() + " failed.", e);
+                }
+            }
+        }
+        counters.clear();
+    }
+    
+    private InterceptorProfileCounter createCounter(String phase, String id) {
+        StringBuilder buffer = new StringBuilder();
+        buffer.append(ManagementConstants.DEFAULT_DOMAIN_NAME).append(':');
+        buffer.append(ManagementConstants.BUS_ID_PROP).append('=').append(bus.getId()).append(',');
+        buffer.append(ManagementConstants.TYPE_PROP).append('=').append(InterceptorProfileCounter.INTERCEPTOR_PROFILE)
+            .append(client ? ".Client," : ".Server,");
+        buffer.append(ManagementConstants.SERVICE_NAME_PROP).append('=')
+            .append(ObjectName.quote(endpoint.getService().getName().toString())).append(',');
+        buffer.append(ManagementConstants.PORT_NAME_PROP).append('=')
+            .append(ObjectName.quote(endpoint.getEndpointInfo().getName().getLocalPart())).append(',');
+        buffer.append(PHASE_PROP).append('=').append(ObjectName.quote(phase)).append(',');
+        buffer.append(INTERCEPTOR_PROP).append('=').append(ObjectName.quote(id));
+        try {
+            return new InterceptorProfileCounter(new ObjectName(buffer.toString()), phase, id);
+        } catch (JMException e) {
+            LOG.log(Level.WARNING, "CREATE_PROFILE_COUNTER_OBJECTNAME_FAILED", new Object[]{id, e});
+            return null;
+        }
+    }
+    
+    private void registerCounter(InterceptorProfileCounter counter) {
+        InstrumentationManager im = bus.getExtension(InstrumentationManager.class);
+        if (null != im) {
+            try {
+                im.register(counter);
+            } catch (JMException e) {
+                LOG.log(Level.WARNING, "INSTRUMENTATION_REGISTER_FAULT_MSG",
+                        new Object[]{counter.getObjectName(), e});
+            }
+        }
+    }
+    
+    private static com.sun.management.ThreadMXBean getAllocationBean() {
+        try {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean)bean;
+                if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+                    return sunBean;
+                }
+            }
+        } catch (Throwable t) {
+            //not a HotSpot based JVM, allocations can't be sampled
+        }
+        return null;
+    }
+}
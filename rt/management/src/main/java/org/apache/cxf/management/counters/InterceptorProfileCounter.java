@@ -0,0 +1,161 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.management.counters;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.ObjectName;
+
+import org.apache.cxf.management.ManagedComponent;
+
+public class InterceptorProfileCounter implements InterceptorProfileCounterMBean, ManagedComponent {
+    public static final String INTERCEPTOR_PROFILE = "Performance.Interceptor";
+    
+    private static final int BUCKETS = 64;
+    
+    private final ObjectName objectName;
+    private final String phase;
+    private final String interceptor;
+    private final AtomicLong invocations = new AtomicLong();
+    private final AtomicLong totalHandlingTime = new AtomicLong();
+    private final AtomicLong maxHandlingTime = new AtomicLong();
+    private final AtomicLong totalAllocatedBytes = new AtomicLong();
+    private final AtomicLong allocationSamples = new AtomicLong();
+    private final AtomicLongArray handlingTimeHistogram = new AtomicLongArray(BUCKETS);
+    private final AtomicLongArray allocatedBytesHistogram = new AtomicLongArray(BUCKETS);
+    private volatile boolean enabled = true;
+    
+    public InterceptorProfileCounter(ObjectName on, String phase, String interceptor) {
+        objectName = on;
+        this.phase = phase;
+        this.interceptor = interceptor;
+    }
+    
+    public void increase(long nanos, long allocatedBytes) {
+        if (!enabled) {
+            return;
+        }
+        invocations.incrementAndGet();
+        totalHandlingTime.addAndGet(nanos);
+        handlingTimeHistogram.incrementAndGet(bucket(nanos));
+        updateMax(nanos);
+        if (allocatedBytes >= 0) {
+            allocationSamples.incrementAndGet();
+            totalAllocatedBytes.addAndGet(allocatedBytes);
+            allocatedBytesHistogram.incrementAndGet(bucket(allocatedBytes));
+        }
+    }
+    
+    public ObjectName getObjectName() {
+        return objectName;
+    }
+    
+    public String getPhase() {
+        return phase;
+    }
+    
+    public String getInterceptor() {
+        return interceptor;
+    }
+    
+    public Number getNumInvocations() {
+        return invocations.get();
+    }
+    
+    public Number getTotalHandlingTime() {
+        return totalHandlingTime.get();
+    }
+    
+    public Number getAvgHandlingTime() {
+        long count = invocations.get();
+        return count == 0 ? 0 : totalHandlingTime.get() / count;
+    }
+    
+    public Number getMaxHandlingTime() {
+        return maxHandlingTime.get();
+    }
+    
+    public Number getTotalAllocatedBytes() {
+        return allocationSamples.get() == 0 ? -1 : totalAllocatedBytes.get();
+    }
+    
+    public Number getAvgAllocatedBytes() {
+        long count = allocationSamples.get();
+        return count == 0 ? -1 : totalAllocatedBytes.get() / count;
+    }
+    
+    public long[] getHandlingTimeHistogram() {
+        return toArray(handlingTimeHistogram);
+    }
+    
+    public long[] getAllocatedBytesHistogram() {
+        return toArray(allocatedBytesHistogram);
+    }
+    
+    public void reset() {
+        invocations.set(0);
+        totalHandlingTime.set(0);
+        maxHandlingTime.set(0);
+        totalAllocatedBytes.set(0);
+        allocationSamples.set(0);
+        for (int x = 0; x < BUCKETS; x++) {
+            handlingTimeHistogram.set(x, 0);
+            allocatedBytesHistogram.set(x, 0);
+        }
+    }
+    
+    public void enable(boolean value) {
+        enabled = value;
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    private static int bucket(long value) {
+        return value <= 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value));
+    }
+    
+    private static long[] toArray(AtomicLongArray histogram) {
+        // trailing empty buckets are not reported
+        int length = BUCKETS;
+        while (length > 0 && histogram.get(length - 1) == 0) {
+            length--;
+        }
+        long[] values = new long[length];
+        for (int x = 0; x < length; x++) {
+            values[x] = histogram.get(x);
+        }
+        return values;
+    }
+    
+    private void updateMax(long handleTime) {
+        while (true) {
+            long current = maxHandlingTime.get();
+            if (current >= handleTime) {
+                break;
+            }
+            if (maxHandlingTime.compareAndSet(current, handleTime)) {
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.management.counters;
+
+/**
+ * Time and allocation statistics of one interceptor of one endpoint.
+ * <p>
+ * The histograms have one bucket per power of two: bucket i counts the samples
+ * that are less than 2^i but not less than 2^(i - 1), bucket 0 counts the samples
+ * of value 0.  Times are recorded in nanoseconds and allocations in bytes.
+ */
+public interface InterceptorProfileCounterMBean {
+    String getPhase();
+    String getInterceptor();
+    Number getNumInvocations();
+    Number getTotalHandlingTime();
+    Number getAvgHandlingTime();
+    Number getMaxHandlingTime();
+    
+    /**
+     * Get the total number of bytes allocated by the interceptor
+     * NOTE: if allocations are not being sampled this method
+     * will return -1
+     */
+    Number getTotalAllocatedBytes();
+    Number getAvgAllocatedBytes();
+    long[] getHandlingTimeHistogram();
+    long[] getAllocatedBytesHistogram();
+    void reset();
+    void enable(boolean value);
+    boolean isEnabled();
+}
@@ -0,0 +1,104 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.management.interceptor;
+
+import org.apache.cxf.Bus;
+import org.apache.cxf.common.injection.NoJSR250Annotations;
+import org.apache.cxf.endpoint.Client;
+import org.apache.cxf.endpoint.ClientLifeCycleListener;
+import org.apache.cxf.endpoint.ClientLifeCycleManager;
+import org.apache.cxf.endpoint.Endpoint;
+import org.apache.cxf.endpoint.Server;
+import org.apache.cxf.endpoint.ServerLifeCycleListener;
+import org.apache.cxf.endpoint.ServerLifeCycleManager;
+import org.apache.cxf.feature.AbstractFeature;
+import org.apache.cxf.management.counters.EndpointInterceptorProfiler;
+import org.apache.cxf.phase.InterceptorProfiler;
+
+/**
+ * Times every interceptor invoked for the messages of the endpoints the feature 
+ * is applied to, and optionally samples the bytes each of them allocates.  The 
+ * figures are aggregated per endpoint, phase and interceptor and exposed as 
+ * InterceptorProfileCounter MBeans through the InstrumentationManager of the bus.
+ * <p>
+ * When applied to a Bus, every server started and client created afterwards is profiled.
+ */
+@NoJSR250Annotations
+public class InterceptorProfilingFeature extends AbstractFeature {
+    private boolean sampleAllocations = true;
+    
+    public boolean isSampleAllocations() {
+        return sampleAllocations;
+    }
+
+    /**
+     * Sets whether the bytes allocated by each interceptor are sampled, which
+     * requires a JVM supporting thread allocated memory measurement.
+     * Default is true.
+     */
+    public void setSampleAllocations(boolean sampleAllocations) {
+        this.sampleAllocations = sampleAllocations;
+    }
+    
+    @Override
+    public void initialize(Server server, Bus bus) {
+        enableProfiling(server.getEndpoint(), bus, false);
+    }
+    
+    @Override
+    public void initialize(Client client, Bus bus) {
+        enableProfiling(client.getEndpoint(), bus, true);
+    }
+    
+    @Override
+    public void initialize(final Bus bus) {
+        ServerLifeCycleManager slcm = bus.getExtension(ServerLifeCycleManager.class);
+        if (slcm != null) {
+            slcm.registerListener(new ServerLifeCycleListener() {
+                public void startServer(Server server) {
+                    enableProfiling(server.getEndpoint(), bus, false);
+                }
+                public void stopServer(Server server) {
+                }
+            });
+        }
+        ClientLifeCycleManager clcm = bus.getExtension(ClientLifeCycleManager.class);
+        if (clcm != null) {
+            clcm.registerListener(new ClientLifeCycleListener() {
+                public void clientCreated(Client client) {
+                    enableProfiling(client.getEndpoint(), bus, true);
+                }
+                public void clientDestroyed(Client client) {
+                }
+            });
+        }
+    }
+    
+    protected void enableProfiling(Endpoint endpoint, Bus bus, boolean client) {
+        synchronized (endpoint) {
+            if (endpoint.get(InterceptorProfiler.PROFILER_KEY) == null) {
+                EndpointInterceptorProfiler profiler 
+                    = new EndpointInterceptorProfiler(bus, endpoint, client, sampleAllocations);
+                endpoint.put(InterceptorProfiler.PROFILER_KEY, profiler);
+                endpoint.addCleanupHook(profiler);
+            }
+        }
+    }
+}
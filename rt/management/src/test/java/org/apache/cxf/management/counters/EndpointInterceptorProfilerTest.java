@@ -0,0 +1,118 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.management.counters;
+
+import javax.management.ObjectName;
+import javax.xml.namespace.QName;
+
+import org.apache.cxf.Bus;
+import org.apache.cxf.endpoint.Endpoint;
+import org.apache.cxf.management.InstrumentationManager;
+import org.apache.cxf.message.Message;
+import org.apache.cxf.phase.AbstractPhaseInterceptor;
+import org.apache.cxf.phase.Phase;
+import org.apache.cxf.service.Service;
+import org.apache.cxf.service.model.EndpointInfo;
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EndpointInterceptorProfilerTest extends Assert {
+    private Bus bus;
+    private Endpoint endpoint;
+    private InstrumentationManager im;
+    
+    @Before
+    public void setUp() throws Exception {
+        im = EasyMock.createMock(InstrumentationManager.class);
+        bus = EasyMock.createMock(Bus.class);
+        EasyMock.expect(bus.getId()).andReturn("bus1").anyTimes();
+        EasyMock.expect(bus.getExtension(InstrumentationManager.class)).andReturn(im).anyTimes();
+        
+        Service service = EasyMock.createMock(Service.class);
+        EasyMock.expect(service.getName()).andReturn(new QName("urn:test", "Greeter")).anyTimes();
+        EndpointInfo ei = new EndpointInfo();
+        ei.setName(new QName("urn:test", "GreeterPort"));
+        endpoint = EasyMock.createMock(Endpoint.class);
+        EasyMock.expect(endpoint.getService()).andReturn(service).anyTimes();
+        EasyMock.expect(endpoint.getEndpointInfo()).andReturn(ei).anyTimes();
+        EasyMock.replay(bus, service, endpoint);
+    }
+    
+    @Test
+    public void testCountersPerPhaseAndInterceptor() throws Exception {
+        EasyMock.expect(im.register(EasyMock.isA(InterceptorProfileCounter.class))).andReturn(null).times(2);
+        EasyMock.replay(im);
+        
+        EndpointInterceptorProfiler profiler = new EndpointInterceptorProfiler(bus, endpoint, false, false);
+        assertEquals(-1, profiler.getAllocatedBytes());
+        
+        TestInterceptor i1 = new TestInterceptor("i1", Phase.RECEIVE);
+        TestInterceptor i2 = new TestInterceptor("i2", Phase.PRE_LOGICAL);
+        profiler.interceptorInvoked(null, i1, 1000, -1);
+        profiler.interceptorInvoked(null, i1, 3000, -1);
+        profiler.interceptorInvoked(null, i2, 5, 100);
+        
+        InterceptorProfileCounter c1 = profiler.getCounter(Phase.RECEIVE, "i1");
+        assertEquals(2L, c1.getNumInvocations());
+        assertEquals(4000L, c1.getTotalHandlingTime());
+        assertEquals(2000L, c1.getAvgHandlingTime());
+        assertEquals(3000L, c1.getMaxHandlingTime());
+        assertEquals(-1L, c1.getTotalAllocatedBytes());
+        assertEquals("Performance.Interceptor.Server", c1.getObjectName().getKeyProperty("type"));
+        assertEquals(Phase.RECEIVE, ObjectName.unquote(c1.getObjectName().getKeyProperty("phase")));
+        
+        long[] histogram = c1.getHandlingTimeHistogram();
+        // 1000 is in [512, 1024), 3000 in [2048, 4096)
+        assertEquals(13, histogram.length);
+        assertEquals(1, histogram[10]);
+        assertEquals(1, histogram[12]);
+        
+        InterceptorProfileCounter c2 = profiler.getCounter(Phase.PRE_LOGICAL, "i2");
+        assertEquals(1L, c2.getNumInvocations());
+        assertEquals(100L, c2.getTotalAllocatedBytes());
+        assertEquals(1, c2.getAllocatedBytesHistogram()[7]);
+        assertEquals(2, profiler.getCounters().size());
+        EasyMock.verify(im);
+    }
+    
+    @Test
+    public void testCloseUnregistersCounters() throws Exception {
+        EasyMock.expect(im.register(EasyMock.isA(InterceptorProfileCounter.class))).andReturn(null).once();
+        im.unregister(EasyMock.isA(InterceptorProfileCounter.class));
+        EasyMock.expectLastCall().once();
+        EasyMock.replay(im);
+        
+        EndpointInterceptorProfiler profiler = new EndpointInterceptorProfiler(bus, endpoint, true, true);
+        profiler.interceptorInvoked(null, new TestInterceptor("i1", Phase.RECEIVE), 10, -1);
+        profiler.close();
+        assertTrue(profiler.getCounters().isEmpty());
+        EasyMock.verify(im);
+    }
+    
+    static class TestInterceptor extends AbstractPhaseInterceptor<Message> {
+        TestInterceptor(String id, String phase) {
+            super(id, phase);
+        }
+        public void handleMessage(Message message) {
+        }
+    }
+}
@@ -0,0 +1,612 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.transport.http.asyncclient;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.HttpHost;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.config.Registry;
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.conn.SchemePortResolver;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.nio.NHttpClientConnection;
+import org.apache.http.nio.conn.ManagedNHttpClientConnection;
+import org.apache.http.nio.conn.NHttpConnectionFactory;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.reactor.ConnectingIOReactor;
+import org.apache.http.pool.PoolStats;
+
+/**
+ * Connection manager of the async conduits which keeps statistics per route (remote host) and,
+ * if adaptive sizing is enabled, sizes the pool of each route from what it observes.
+ * <p>
+ * The time a connection is leased for an exchange is taken as the latency of the route. While
+ * requests queue up for a connection and the latency stays within the tolerance of the best
+ * latency seen, the route may open more connections. Once the latency degrades, which means that
+ * the host does not cope with more concurrent requests, the limit is cut down again, and the
+ * limit of a route which does not need its connections anymore slowly shrinks. The limit stays
+ * between the minimum and the per host maximum of the factory, or the maximum configured for the
+ * host through {@link #setMaxPerHost(URI, int)}.
+ * <p>
+ * The pools are adjusted and the statistics of the routes which were not used for the route idle
+ * timeout are dropped from {@link #closeExpiredConnections()}, which runs at most once per adjust
+ * interval as connections are requested and released. The scan also gives up the leases of the
+ * connections which were shut down without being released.
+ */
+public class AdaptiveConnectionManager extends PoolingNHttpClientConnectionManager {
+    private static final double LATENCY_WEIGHT = 0.2;
+    private static final double BASELINE_DRIFT = 0.05;
+
+    private volatile ConcurrentMap<String, Integer> hostLimits = new ConcurrentHashMap<String, Integer>();
+    private final ConcurrentMap<HttpRoute, RouteState> routes = new ConcurrentHashMap<HttpRoute, RouteState>();
+    private final ConcurrentMap<NHttpClientConnection, Lease> leases =
+        new ConcurrentHashMap<NHttpClientConnection, Lease>();
+
+    private volatile boolean adaptive;
+    private volatile int minPerRoute = 2;
+    private volatile double latencyTolerance = 2.0;
+    private volatile long adjustInterval = 1000;
+    private volatile long routeIdleTimeout = 300000;
+    private final AtomicLong lastScan = new AtomicLong(System.nanoTime());
+
+    public AdaptiveConnectionManager(ConnectingIOReactor ioreactor,
+                                     NHttpConnectionFactory<ManagedNHttpClientConnection> connFactory,
+                                     Registry<SchemeIOSessionStrategy> iosessionFactoryRegistry,
+                                     SchemePortResolver schemePortResolver,
+                                     DnsResolver dnsResolver,
+                                     long timeToLive, TimeUnit tunit) {
+        super(ioreactor, connFactory, iosessionFactoryRegistry, schemePortResolver, dnsResolver,
+              timeToLive, tunit);
+    }
+
+    /**
+     * Shares the per host limits, keyed by {@link #hostKey(String, String, int)}, e.g. with the
+     * managers which replace this one after a restart of the I/O reactor.
+     */
+    void setHostLimits(ConcurrentMap<String, Integer> limits) {
+        hostLimits = limits;
+    }
+
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    public void setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+    }
+
+    public int getMinPerRoute() {
+        return minPerRoute;
+    }
+
+    public void setMinPerRoute(int minPerRoute) {
+        this.minPerRoute = Math.max(1, minPerRoute);
+    }
+
+    public double getLatencyTolerance() {
+        return latencyTolerance;
+    }
+
+    /**
+     * Sets by which factor the latency of a route may exceed the best latency seen for it
+     * before its pool is cut down.
+     */
+    public void setLatencyTolerance(double latencyTolerance) {
+        this.latencyTolerance = Math.max(1.0, latencyTolerance);
+    }
+
+    public long getAdjustInterval() {
+        return adjustInterval;
+    }
+
+    /**
+     * Sets the minimum time in milliseconds between two scans, which adjust the pool of each route.
+     */
+    public void setAdjustInterval(long adjustInterval) {
+        this.adjustInterval = adjustInterval;
+    }
+
+    public long getRouteIdleTimeout() {
+        return routeIdleTimeout;
+    }
+
+    /**
+     * Sets the time in milliseconds after which the statistics of a route without requests and
+     * connections are dropped.
+     */
+    public void setRouteIdleTimeout(long routeIdleTimeout) {
+        this.routeIdleTimeout = routeIdleTimeout;
+    }
+
+    /**
+     * Limits the connections to the host of the URI, overriding the default maximum per route.
+     * A limit of zero or less removes the override.
+     */
+    public void setMaxPerHost(URI uri, int max) {
+        String key = hostKey(uri.getScheme(), uri.getHost(), uri.getPort());
+        Integer old = max > 0 ? hostLimits.put(key, max) : hostLimits.remove(key);
+        if (old == null && max <= 0 || old != null && old.intValue() == max) {
+            return;
+        }
+        for (HttpRoute route : routes.keySet()) {
+            if (key.equals(hostKey(route.getTargetHost()))) {
+                initRoute(route, routes.get(route));
+            }
+        }
+    }
+
+    @Override
+    public void setDefaultMaxPerRoute(int max) {
+        super.setDefaultMaxPerRoute(max);
+        for (HttpRoute route : routes.keySet()) {
+            initRoute(route, routes.get(route));
+        }
+    }
+
+    /**
+     * Returns the upper bound of the pool of the route.
+     */
+    public int getRouteLimit(HttpRoute route) {
+        Integer limit = hostLimits.get(hostKey(route.getTargetHost()));
+        return limit != null ? limit : getDefaultMaxPerRoute();
+    }
+
+    @Override
+    public Future<NHttpClientConnection> requestConnection(final HttpRoute route,
+                                                           Object state,
+                                                           long connectTimeout,
+                                                           long leaseTimeout,
+                                                           TimeUnit tunit,
+                                                           final FutureCallback<NHttpClientConnection> callback) {
+        final Lease lease = new Lease(route, getRouteState(route));
+        FutureCallback<NHttpClientConnection> leaseCallback = new FutureCallback<NHttpClientConnection>() {
+            public void completed(NHttpClientConnection result) {
+                leases.put(result, lease);
+                if (!lease.leased(result) && leases.remove(result, lease)) {
+                    // the request was cancelled in the meantime
+                    lease.giveUp();
+                }
+                if (callback != null) {
+                    callback.completed(result);
+                }
+            }
+            public void failed(Exception ex) {
+                lease.giveUp();
+                if (callback != null) {
+                    callback.failed(ex);
+                }
+            }
+            public void cancelled() {
+                lease.giveUp();
+                if (callback != null) {
+                    callback.cancelled();
+                }
+            }
+        };
+        Future<NHttpClientConnection> future = super.requestConnection(route, state, connectTimeout,
+                                                                       leaseTimeout, tunit, leaseCallback);
+        scanIfDue();
+        return new LeaseFuture(future, lease);
+    }
+
+    @Override
+    public void releaseConnection(NHttpClientConnection managedConn, Object state,
+                                  long keepalive, TimeUnit tunit) {
+        Lease lease = leases.remove(managedConn);
+        super.releaseConnection(managedConn, state, keepalive, tunit);
+        if (lease != null) {
+            lease.release();
+        }
+        scanIfDue();
+    }
+
+    private void scanIfDue() {
+        long now = System.nanoTime();
+        long last = lastScan.get();
+        if (now - last >= TimeUnit.MILLISECONDS.toNanos(adjustInterval) && lastScan.compareAndSet(last, now)) {
+            closeExpiredConnections();
+        }
+    }
+
+    /**
+     * Closes the expired connections of the pool, gives up the leases of the connections which
+     * were shut down without being released, adjusts the pool of each route and drops the routes
+     * which were idle for the route idle timeout.
+     */
+    @Override
+    public void closeExpiredConnections() {
+        super.closeExpiredConnections();
+        for (Map.Entry<NHttpClientConnection, Lease> e : leases.entrySet()) {
+            if (!e.getKey().isOpen() && leases.remove(e.getKey(), e.getValue())) {
+                e.getValue().giveUp();
+            }
+        }
+        long idle = TimeUnit.MILLISECONDS.toNanos(routeIdleTimeout);
+        for (Map.Entry<HttpRoute, RouteState> e : routes.entrySet()) {
+            HttpRoute route = e.getKey();
+            RouteState rs = e.getValue();
+            PoolStats ps = getStats(route);
+            if (ps.getLeased() + ps.getAvailable() + ps.getPending() == 0 && rs.evictIfIdle(idle)) {
+                routes.remove(route, rs);
+            } else {
+                adjust(route, rs);
+            }
+        }
+    }
+
+    @Override
+    public void shutdown(long waitMs) throws IOException {
+        super.shutdown(waitMs);
+        leases.clear();
+        routes.clear();
+    }
+
+    /**
+     * Returns a snapshot of the pool of each route used so far.
+     */
+    public List<RouteStats> getRouteStats() {
+        List<RouteStats> stats = new ArrayList<RouteStats>(routes.size());
+        for (HttpRoute route : routes.keySet()) {
+            stats.add(getRouteStats(route));
+        }
+        return stats;
+    }
+
+    public RouteStats getRouteStats(HttpRoute route) {
+        RouteState rs = routes.get(route);
+        PoolStats ps = getStats(route);
+        if (rs == null) {
+            return new RouteStats(route, ps, 0, 0, 0);
+        }
+        // the pending count of the pool are the connections being opened, not the waiting requests
+        int waiting = Math.max(0, rs.getInFlight() - ps.getLeased());
+        return new RouteStats(route, ps, waiting, rs.getLatency(), rs.getCompleted());
+    }
+
+    /**
+     * Returns the state of the route with the new request counted in.
+     */
+    private RouteState getRouteState(HttpRoute route) {
+        while (true) {
+            RouteState rs = routes.get(route);
+            if (rs == null) {
+                rs = new RouteState();
+                RouteState old = routes.putIfAbsent(route, rs);
+                if (old != null) {
+                    rs = old;
+                } else {
+                    initRoute(route, rs);
+                }
+            }
+            if (rs.requested()) {
+                return rs;
+            }
+            // evicted in the meantime
+            routes.remove(route, rs);
+        }
+    }
+
+    private void initRoute(HttpRoute route, RouteState rs) {
+        int limit = getRouteLimit(route);
+        int max = limit;
+        if (adaptive) {
+            // start small, or keep the current size within a changed limit, and let the load grow the pool
+            max = rs.getMax() > 0 ? Math.min(limit, rs.getMax()) : Math.min(limit, minPerRoute);
+        }
+        setMaxPerRoute(route, max);
+        rs.setMax(max);
+    }
+
+    void adjust(HttpRoute route, RouteState rs) {
+        // runs from the scan, at most once per adjust interval
+        if (!adaptive || !rs.hasCompleted()) {
+            return;
+        }
+        int max = rs.getMax();
+        int limit = getRouteLimit(route);
+        int min = Math.min(minPerRoute, limit);
+        PoolStats ps = getStats(route);
+        int newMax = max;
+        if (rs.isDegraded(latencyTolerance)) {
+            // the host slows down under the load, back off
+            newMax = max - Math.max(1, max / 4);
+        } else if (rs.hasWaited()) {
+            // requests queue up for a connection, grow quickly as long as the latency holds
+            newMax = max * 2;
+        } else if (rs.getPeakInFlight() < max / 2) {
+            newMax = max - 1;
+        }
+        newMax = Math.max(min, Math.min(limit, newMax));
+        if (newMax != max) {
+            setMaxPerRoute(route, newMax);
+            rs.setMax(newMax);
+            if (newMax > max) {
+                // the pool only hands out the new connections to the waiting requests on its next scan
+                super.closeExpiredConnections();
+            }
+        }
+        rs.endAdjustment(ps.getLeased());
+    }
+
+    static String hostKey(HttpHost host) {
+        return hostKey(host.getSchemeName(), host.getHostName(), host.getPort());
+    }
+
+    static String hostKey(String scheme, String host, int port) {
+        String s = scheme == null ? "http" : scheme.toLowerCase(Locale.ENGLISH);
+        int p = port > 0 ? port : "https".equals(s) ? 443 : 80;
+        return s + "://" + (host == null ? "" : host.toLowerCase(Locale.ENGLISH)) + ":" + p;
+    }
+
+    /**
+     * A request for a connection of a route, it is counted in flight until the connection is
+     * released or the request or connection is given up, whichever comes first.
+     */
+    static final class Lease {
+        final HttpRoute route;
+        final RouteState state;
+        private NHttpClientConnection connection;
+        private long start;
+        private boolean cancelled;
+        private boolean done;
+
+        Lease(HttpRoute route, RouteState state) {
+            this.route = route;
+            this.state = state;
+        }
+
+        synchronized boolean leased(NHttpClientConnection conn) {
+            connection = conn;
+            start = System.nanoTime();
+            return !cancelled;
+        }
+
+        synchronized NHttpClientConnection cancel() {
+            cancelled = true;
+            return connection;
+        }
+
+        private synchronized boolean finish() {
+            boolean first = !done;
+            done = true;
+            return first;
+        }
+
+        void release() {
+            if (finish()) {
+                long held;
+                synchronized (this) {
+                    held = System.nanoTime() - start;
+                }
+                state.released(held);
+            }
+        }
+
+        void giveUp() {
+            if (finish()) {
+                state.leaseFailed();
+            }
+        }
+    }
+
+    /**
+     * Gives up the lease when the request for the connection is cancelled, even once the
+     * connection was handed out.
+     */
+    final class LeaseFuture implements Future<NHttpClientConnection> {
+        private final Future<NHttpClientConnection> future;
+        private final Lease lease;
+
+        LeaseFuture(Future<NHttpClientConnection> future, Lease lease) {
+            this.future = future;
+            this.lease = lease;
+        }
+
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = future.cancel(mayInterruptIfRunning);
+            NHttpClientConnection conn = lease.cancel();
+            if (conn != null && leases.remove(conn, lease)) {
+                lease.giveUp();
+            }
+            return cancelled;
+        }
+
+        public boolean isCancelled() {
+            return future.isCancelled();
+        }
+
+        public boolean isDone() {
+            return future.isDone();
+        }
+
+        public NHttpClientConnection get() throws InterruptedException, ExecutionException {
+            return future.get();
+        }
+
+        public NHttpClientConnection get(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+            return future.get(timeout, unit);
+        }
+    }
+
+    /**
+     * The latency and lease statistics of one route, guarded by its own lock.
+     */
+    static final class RouteState {
+        private double latency;
+        private double baseline;
+        private long completed;
+        private int max;
+        private int inFlight;
+        private int peakInFlight;
+        private boolean waited;
+        private boolean evicted;
+        private long lastRequest = System.nanoTime();
+
+        synchronized boolean requested() {
+            if (evicted) {
+                return false;
+            }
+            inFlight++;
+            peakInFlight = Math.max(peakInFlight, inFlight);
+            // more exchanges than connections, the request has to wait for one
+            waited |= inFlight > max;
+            lastRequest = System.nanoTime();
+            return true;
+        }
+
+        synchronized boolean evictIfIdle(long idleNanos) {
+            evicted = inFlight == 0 && System.nanoTime() - lastRequest >= idleNanos;
+            return evicted;
+        }
+
+        synchronized void leaseFailed() {
+            inFlight--;
+        }
+
+        synchronized void released(long heldNanos) {
+            inFlight--;
+            completed++;
+            double ms = heldNanos / 1000000.0;
+            latency = completed == 1 ? ms : latency + LATENCY_WEIGHT * (ms - latency);
+            if (completed == 1 || latency < baseline) {
+                baseline = latency;
+            }
+        }
+
+        synchronized boolean hasCompleted() {
+            return completed > 0;
+        }
+
+        synchronized void endAdjustment(int leased) {
+            waited = false;
+            peakInFlight = Math.max(leased, inFlight);
+            // let the baseline follow a lasting change of the latency, e.g. larger messages
+            baseline += (latency - baseline) * BASELINE_DRIFT;
+        }
+
+        synchronized boolean isDegraded(double tolerance) {
+            return latency > baseline * tolerance;
+        }
+
+        synchronized boolean hasWaited() {
+            return waited || inFlight > max;
+        }
+
+        synchronized int getPeakInFlight() {
+            return peakInFlight;
+        }
+
+        synchronized int getInFlight() {
+            return inFlight;
+        }
+
+        synchronized int getMax() {
+            return max;
+        }
+
+        synchronized void setMax(int max) {
+            this.max = max;
+        }
+
+        synchronized double getLatency() {
+            return latency;
+        }
+
+        synchronized long getCompleted() {
+            return completed;
+        }
+    }
+
+    /**
+     * Snapshot of the pool of a route: the leased, available (idle) and pending (waiting for a
+     * connection) counts, the current limit and the average time a connection is leased.
+     */
+    public static final class RouteStats {
+        private final HttpRoute route;
+        private final int leased;
+        private final int available;
+        private final int pending;
+        private final int max;
+        private final double latency;
+        private final long completed;
+
+        RouteStats(HttpRoute route, PoolStats stats, int pending, double latency, long completed) {
+            this.route = route;
+            this.leased = stats.getLeased();
+            this.available = stats.getAvailable();
+            this.pending = pending;
+            this.max = stats.getMax();
+            this.latency = latency;
+            this.completed = completed;
+        }
+
+        public HttpRoute getRoute() {
+            return route;
+        }
+
+        public int getLeased() {
+            return leased;
+        }
+
+        public int getAvailable() {
+            return available;
+        }
+
+        public int getPending() {
+            return pending;
+        }
+
+        public int getMax() {
+            return max;
+        }
+
+        /**
+         * Returns the moving average in milliseconds of the time a connection was leased.
+         */
+        public double getLatency() {
+            return latency;
+        }
+
+        public long getCompleted() {
+            return completed;
+        }
+
+        @Override
+        public String toString() {
+            return route + " [leased: " + leased + "; pending: " + pending + "; available: " + available
+                + "; max: " + max + "; latency: " + latency + "ms]";
+        }
+    }
+}
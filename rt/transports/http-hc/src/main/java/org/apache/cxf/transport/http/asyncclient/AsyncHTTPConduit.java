@@ -91,7 +91,6 @@ import org.apache.http.nio.conn.NoopIOSessionStrategy;
 import org.apache.http.nio.conn.SchemeIOSessionStrategy;
 import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
 import org.apache.http.nio.reactor.IOSession;
-import org.apache.http.nio.util.HeapByteBufferAllocator;
 
 /**
  * 
@@ -288,14 +287,18 @@ public class AsyncHTTPConduit extends URLConnectionHTTPConduit {
             entity = message.get(CXFHttpRequest.class);
             basicEntity = (BasicHttpEntity)entity.getEntity();
             basicEntity.setChunked(isChunking);
-            HeapByteBufferAllocator allocator = new HeapByteBufferAllocator();
-            int bufSize = csPolicy.getChunkLength() > 0 ? csPolicy.getChunkLength() : 16320;
-            inbuf = new SharedInputBuffer(bufSize, allocator);
-            outbuf = new SharedOutputBuffer(bufSize, allocator);
+            createBuffers();
             isAsync = outMessage != null && outMessage.getExchange() != null 
                 && !outMessage.getExchange().isSynchronous();
         }
         
+        private void createBuffers() {
+            ByteBufferPool pool = factory.getBufferPool();
+            int bufSize = csPolicy.getChunkLength() > 0 ? csPolicy.getChunkLength() : pool.getBufferSize();
+            inbuf = new SharedInputBuffer(bufSize, pool, factory.getMaxQueuedBuffers());
+            outbuf = new SharedOutputBuffer(bufSize, pool, factory.getMaxQueuedBuffers());
+        }
+        
         public boolean retransmitable() {
             return cachedStream != null;
         }
@@ -560,6 +563,9 @@ public class AsyncHTTPConduit extends URLConnectionHTTPConduit {
 
             connectionFuture = new BasicFuture<Boolean>(callback);
             HttpAsyncClient c = getHttpAsyncClient();
+            if (csPolicy.getMaxConnectionsPerHost() > 0) {
+                factory.setMaxPerHost(url, csPolicy.getMaxConnectionsPerHost());
+            }
             Credentials creds = (Credentials)outMessage.getContextualProperty(Credentials.class.getName());
             if (creds != null) {
                 credsProvider.setCredentials(AuthScope.ANY, creds);
@@ -829,10 +835,7 @@ public class AsyncHTTPConduit extends URLConnectionHTTPConduit {
             sslURL = null;
             
             //reset the buffers
-            HeapByteBufferAllocator allocator = new HeapByteBufferAllocator();
-            int bufSize = csPolicy.getChunkLength() > 0 ? csPolicy.getChunkLength() : 16320;
-            inbuf = new SharedInputBuffer(bufSize, allocator);
-            outbuf = new SharedOutputBuffer(bufSize, allocator);
+            createBuffers();
             try {
                 if (defaultAddress.getString().equals(newURL)) {
                     setupConnection(outMessage, defaultAddress, csPolicy);
@@ -20,7 +20,12 @@
 package org.apache.cxf.transport.http.asyncclient;
 
 import java.io.IOException;
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.cxf.Bus;
@@ -50,7 +55,6 @@ import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
 import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
 import org.apache.http.impl.nio.client.HttpAsyncClients;
 import org.apache.http.impl.nio.conn.ManagedNHttpClientConnectionFactory;
-import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
 import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
 import org.apache.http.impl.nio.reactor.IOReactorConfig;
 import org.apache.http.nio.conn.ManagedNHttpClientConnection;
@@ -79,11 +83,23 @@ public class AsyncHTTPConduitFactory implements HTTPConduitFactory {
         = "org.apache.cxf.transport.http.async.MAX_PER_HOST_CONNECTIONS";
     public static final String CONNECTION_TTL = "org.apache.cxf.transport.http.async.CONNECTION_TTL";
     
+    //Adaptive sizing of the pool of each host
+    public static final String ADAPTIVE_POOL = "org.apache.cxf.transport.http.async.adaptivePool";
+    public static final String MIN_PER_HOST_CONNECTIONS 
+        = "org.apache.cxf.transport.http.async.MIN_PER_HOST_CONNECTIONS";
+    public static final String LATENCY_TOLERANCE = "org.apache.cxf.transport.http.async.latencyTolerance";
+    public static final String ADJUST_INTERVAL = "org.apache.cxf.transport.http.async.adjustInterval";
+    
     //AsycClient specific props
     public static final String THREAD_COUNT = "org.apache.cxf.transport.http.async.ioThreadCount";
     public static final String INTEREST_OP_QUEUED = "org.apache.cxf.transport.http.async.interestOpQueued";
     public static final String SELECT_INTERVAL = "org.apache.cxf.transport.http.async.selectInterval";
     
+    //Buffers for the request and response bodies
+    public static final String BUFFER_SIZE = "org.apache.cxf.transport.http.async.bufferSize";
+    public static final String BUFFER_POOL_SIZE = "org.apache.cxf.transport.http.async.bufferPoolSize";
+    public static final String MAX_QUEUED_BUFFERS = "org.apache.cxf.transport.http.async.maxQueuedBuffers";
+    
     //CXF specific
     public static final String USE_POLICY = "org.apache.cxf.transport.http.async.usePolicy";
     
@@ -113,7 +129,7 @@ public class AsyncHTTPConduitFactory implements HTTPConduitFactory {
         }
     };
         
-    volatile PoolingNHttpClientConnectionManager connectionManager;
+    volatile AdaptiveConnectionManager connectionManager;
     volatile CloseableHttpAsyncClient client;
 
     boolean isShutdown;
@@ -121,6 +137,17 @@ public class AsyncHTTPConduitFactory implements HTTPConduitFactory {
     int maxConnections = 5000;
     int maxPerRoute = 1000;
     int connectionTTL = 60000;
+    
+    boolean adaptivePool;
+    int minPerRoute = 2;
+    double latencyTolerance = 2.0;
+    int adjustInterval = 1000;
+    final ConcurrentMap<String, Integer> hostLimits = new ConcurrentHashMap<String, Integer>();
+
+    int bufferSize = 16320;
+    int bufferPoolSize = 256;
+    int maxQueuedBuffers = SharedOutputBuffer.DEFAULT_MAX_QUEUED_BUFFERS;
+    volatile ByteBufferPool bufferPool = new ByteBufferPool(bufferSize, bufferPoolSize);
 
     int ioThreadCount = IOReactorConfig.DEFAULT.getIoThreadCount();
     long selectInterval = IOReactorConfig.DEFAULT.getSelectInterval();
@@ -181,9 +208,21 @@ public class AsyncHTTPConduitFactory implements HTTPConduitFactory {
         connectionTTL = getInt(s.get(CONNECTION_TTL), connectionTTL);
         maxPerRoute = getInt(s.get(MAX_PER_HOST_CONNECTIONS), maxPerRoute);
 
+        adaptivePool = getBoolean(s.get(ADAPTIVE_POOL), adaptivePool);
+        minPerRoute = getInt(s.get(MIN_PER_HOST_CONNECTIONS), minPerRoute);
+        latencyTolerance = getDouble(s.get(LATENCY_TOLERANCE), latencyTolerance);
+        adjustInterval = getInt(s.get(ADJUST_INTERVAL), adjustInterval);
+
         if (connectionManager != null) {
             connectionManager.setMaxTotal(maxConnections);
-            connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+            configurePool(connectionManager);
+        }
+        
+        bufferSize = getInt(s.get(BUFFER_SIZE), bufferSize);
+        bufferPoolSize = getInt(s.get(BUFFER_POOL_SIZE), bufferPoolSize);
+        maxQueuedBuffers = getInt(s.get(MAX_QUEUED_BUFFERS), maxQueuedBuffers);
+        if (bufferPool.getBufferSize() != bufferSize || bufferPool.getMaxPooled() != bufferPoolSize) {
+            bufferPool = new ByteBufferPool(bufferSize, bufferPoolSize);
         }
         
         //properties that need a restart of the reactor
@@ -232,6 +271,23 @@ public class AsyncHTTPConduitFactory implements HTTPConduitFactory {
         return i;
     }
     
+    private double getDouble(Object s, double defaultv) {
+        if (s instanceof String) {
+            return Double.parseDouble((String)s);
+        } else if (s instanceof Number) {
+            return ((Number)s).doubleValue();
+        }
+        return defaultv;
+    }
+    
+    private void configurePool(AdaptiveConnectionManager manager) {
+        manager.setAdaptive(adaptivePool);
+        manager.setMinPerRoute(minPerRoute);
+        manager.setLatencyTolerance(latencyTolerance);
+        manager.setAdjustInterval(adjustInterval);
+        manager.setDefaultMaxPerRoute(maxPerRoute);
+    }
+
     private boolean getBoolean(Object s, boolean defaultv) {
         if (s instanceof String) {
             return Boolean.parseBoolean((String)s);
@@ -241,6 +297,52 @@ public class AsyncHTTPConduitFactory implements HTTPConduitFactory {
         return defaultv;
     }
 
+    /**
+     * Returns the pool of the buffers which pass the request and response bodies to and from
+     * the I/O reactor.
+     */
+    public ByteBufferPool getBufferPool() {
+        return bufferPool;
+    }
+    
+    public int getBufferSize() {
+        return bufferSize;
+    }
+    
+    public int getMaxQueuedBuffers() {
+        return maxQueuedBuffers;
+    }
+
+    /**
+     * Limits the connections of the pool to the host of the URI, overriding the per host
+     * maximum of the factory. A limit of zero or less removes the override.
+     */
+    public void setMaxPerHost(URI uri, int max) {
+        AdaptiveConnectionManager manager = connectionManager;
+        if (manager != null) {
+            manager.setMaxPerHost(uri, max);
+        } else {
+            String key = AdaptiveConnectionManager.hostKey(uri.getScheme(), uri.getHost(), uri.getPort());
+            if (max > 0) {
+                hostLimits.put(key, max);
+            } else {
+                hostLimits.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Returns the leased, available and pending connections, the limit and the latency of the
+     * pool of each host which was used so far.
+     */
+    public List<AdaptiveConnectionManager.RouteStats> getRouteStats() {
+        AdaptiveConnectionManager manager = connectionManager;
+        if (manager == null) {
+            return Collections.emptyList();
+        }
+        return manager.getRouteStats();
+    }
+
     public boolean isShutdown() {
         return isShutdown;
     }
@@ -328,15 +430,16 @@ public class AsyncHTTPConduitFactory implements HTTPConduitFactory {
         };
 
         DefaultConnectingIOReactor ioreactor = new DefaultConnectingIOReactor(config);
-        connectionManager = new PoolingNHttpClientConnectionManager(
+        connectionManager = new AdaptiveConnectionManager(
                 ioreactor,
                 connectionFactory,
                 ioSessionFactoryRegistry,
                 DefaultSchemePortResolver.INSTANCE,
                 SystemDefaultDnsResolver.INSTANCE,
                 connectionTTL, TimeUnit.MILLISECONDS);
+        connectionManager.setHostLimits(hostLimits);
 
-        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+        configurePool(connectionManager);
         connectionManager.setMaxTotal(maxConnections);
 
         ConnectionConfig connectionConfig = ConnectionConfig.custom()
@@ -0,0 +1,102 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.transport.http.asyncclient;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.nio.util.ByteBufferAllocator;
+
+/**
+ * Pool of the fixed size buffers which the {@link SharedInputBuffer} and {@link SharedOutputBuffer}
+ * of the async conduits use to pass the message bodies to and from the I/O reactor. Buffers of
+ * other sizes are allocated on demand and not pooled.
+ */
+public class ByteBufferPool implements ByteBufferAllocator {
+    private final int bufferSize;
+    private final int maxPooled;
+    private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<ByteBuffer>();
+    private final AtomicInteger pooled = new AtomicInteger();
+    private final AtomicLong allocatedCount = new AtomicLong();
+    private final AtomicLong reusedCount = new AtomicLong();
+
+    /**
+     * @param bufferSize the size of the pooled buffers
+     * @param maxPooled the maximum number of idle buffers kept, 0 to disable the pooling
+     */
+    public ByteBufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public int getMaxPooled() {
+        return maxPooled;
+    }
+
+    public ByteBuffer allocate(int capacity) {
+        if (capacity == bufferSize) {
+            ByteBuffer buffer = buffers.poll();
+            if (buffer != null) {
+                pooled.decrementAndGet();
+                reusedCount.incrementAndGet();
+                return buffer;
+            }
+        }
+        allocatedCount.incrementAndGet();
+        return ByteBuffer.allocate(capacity);
+    }
+
+    /**
+     * Returns a buffer to the pool, the caller must not use it anymore.
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || buffer.capacity() != bufferSize || buffer.isReadOnly()) {
+            return;
+        }
+        if (pooled.incrementAndGet() > maxPooled) {
+            pooled.decrementAndGet();
+            return;
+        }
+        buffer.clear();
+        buffers.offer(buffer);
+    }
+
+    /**
+     * Returns the number of idle buffers in the pool.
+     */
+    public int getPooledCount() {
+        return pooled.get();
+    }
+
+    public long getAllocatedCount() {
+        return allocatedCount.get();
+    }
+
+    public long getReusedCount() {
+        return reusedCount.get();
+    }
+}
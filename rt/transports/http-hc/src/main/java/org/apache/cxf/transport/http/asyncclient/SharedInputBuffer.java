@@ -22,6 +22,8 @@ package org.apache.cxf.transport.http.asyncclient;
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -41,6 +43,11 @@ import org.apache.http.nio.util.ExpandableBuffer;
  * The worker thread is expected to read the data from the buffer by calling
  *   {@link #read()} or {@link #read(byte[], int, int)} methods.
  * <p/>
+ * A full buffer is queued for the worker thread as a whole and the I/O dispatch thread continues
+ * decoding into a new one from the {@link ByteBufferPool}. Input events are only suspended once
+ * the configured number of buffers is queued. A read waiting for data gets it decoded into its
+ * array directly.
+ * <p/>
  * In case of an abnormal situation or when no longer needed the buffer must be shut down
  * using {@link #shutdown()} method.
  */
@@ -50,21 +57,38 @@ public class SharedInputBuffer extends ExpandableBuffer {
     private final ReentrantLock lock;
     private final Condition condition;
     private final int requestInputSize;
+    private final ByteBufferAllocator allocator;
+    private final int buffersize;
+    private final int maxQueued;
+    private final Deque<ByteBuffer> queued = new ArrayDeque<ByteBuffer>();
 
     private volatile IOControl ioctrl;
     private volatile boolean shutdown;
     private volatile boolean endOfStream;
+    private volatile boolean completed;
     
     private volatile ByteBuffer waitingBuffer;
     
-    //private volatile int waitCnt;
-    //private volatile int nowaitCnt;
-    
     public SharedInputBuffer(int buffersize, 
                              final ByteBufferAllocator allocator) {
+        this(buffersize, allocator, SharedOutputBuffer.DEFAULT_MAX_QUEUED_BUFFERS);
+    }
+
+    /**
+     * @param buffersize the size of the buffers
+     * @param allocator the allocator of the buffers, a {@link ByteBufferPool} gets them back once
+     *        they were read
+     * @param maxQueued the number of full buffers which may wait for the worker thread
+     */
+    public SharedInputBuffer(int buffersize, 
+                             final ByteBufferAllocator allocator,
+                             int maxQueued) {
         super(buffersize, allocator);
         this.lock = new ReentrantLock();
         this.condition = this.lock.newCondition();
+        this.allocator = allocator;
+        this.buffersize = buffersize;
+        this.maxQueued = Math.max(maxQueued, 0);
         //if the buffer become 3/4 empty, we'll turn on the input
         //events again to hopefully get more data before the next 
         //the buffer fully empties and we have to wait to read
@@ -78,7 +102,9 @@ public class SharedInputBuffer extends ExpandableBuffer {
         this.lock.lock();
         try {
             clear();
+            releaseQueued();
             this.endOfStream = false;
+            this.completed = false;
         } finally {
             this.lock.unlock();
         }
@@ -94,21 +120,37 @@ public class SharedInputBuffer extends ExpandableBuffer {
         }
         this.lock.lock();
         try {
+            if (this.shutdown) {
+                ioc.shutdown();
+                return -1;
+            }
             this.ioctrl = ioc;
             setInputMode();
             int totalRead = 0;
             int bytesRead;
-            if (waitingBuffer != null && this.buffer.position() == 0) {
+            if (waitingBuffer != null && this.queued.isEmpty() && this.buffer.position() == 0) {
                 while ((bytesRead = decoder.read(this.waitingBuffer)) > 0) {
                     totalRead += bytesRead;
                 }
             }
             //read more
-            while ((bytesRead = decoder.read(this.buffer)) > 0) {
-                totalRead += bytesRead;
+            while (true) {
+                while ((bytesRead = decoder.read(this.buffer)) > 0) {
+                    totalRead += bytesRead;
+                }
+                if (this.buffer.hasRemaining() || bytesRead == -1 || decoder.isCompleted()
+                    || this.queued.size() >= this.maxQueued) {
+                    break;
+                }
+                // queue the full buffer and go on decoding into a new one
+                ByteBuffer full = this.buffer;
+                full.flip();
+                this.queued.addLast(full);
+                this.buffer = this.allocator.allocate(this.buffersize);
             }
             if (bytesRead == -1 || decoder.isCompleted()) {
                 this.endOfStream = true;
+                this.completed = true;
             }
             if (!this.buffer.hasRemaining() && this.ioctrl != null) {
                 this.ioctrl.suspendInput();
@@ -133,7 +175,7 @@ public class SharedInputBuffer extends ExpandableBuffer {
     public boolean hasData() {
         this.lock.lock();
         try {
-            return super.hasData();
+            return hasBufferedData();
         } finally {
             this.lock.unlock();
         }
@@ -143,7 +185,7 @@ public class SharedInputBuffer extends ExpandableBuffer {
     public int available() {
         this.lock.lock();
         try {
-            return super.length();
+            return queuedLength() + super.length();
         } finally {
             this.lock.unlock();
         }
@@ -163,12 +205,24 @@ public class SharedInputBuffer extends ExpandableBuffer {
     public int length() {
         this.lock.lock();
         try {
-            return super.length();
+            return queuedLength() + super.length();
         } finally {
             this.lock.unlock();
         }
     }
 
+    private int queuedLength() {
+        int length = 0;
+        for (ByteBuffer b : this.queued) {
+            length += b.remaining();
+        }
+        return length;
+    }
+
+    private boolean hasBufferedData() {
+        return !this.queued.isEmpty() || super.hasData();
+    }
+
     protected void waitForData(int waitPos) throws IOException {
         this.lock.lock();
         try {
@@ -177,7 +231,7 @@ public class SharedInputBuffer extends ExpandableBuffer {
                     if (this.waitingBuffer != null && this.waitingBuffer.position() > waitPos) {
                         return;
                     }
-                    if (super.hasData()) {
+                    if (hasBufferedData()) {
                         return;
                     }
                     if (this.endOfStream) {
@@ -219,6 +273,8 @@ public class SharedInputBuffer extends ExpandableBuffer {
         this.shutdown = true;
         this.lock.lock();
         try {
+            releaseQueued();
+            releaseBuffer();
             this.condition.signalAll();
         } finally {
             this.lock.unlock();
@@ -230,7 +286,17 @@ public class SharedInputBuffer extends ExpandableBuffer {
     }
 
     protected boolean isEndOfStream() {
-        return this.shutdown || (!hasData() && this.endOfStream);
+        if (this.shutdown) {
+            return true;
+        }
+        if (!hasData() && this.endOfStream) {
+            if (this.completed) {
+                // the decoder is done with the buffer as well
+                releaseBuffer();
+            }
+            return true;
+        }
+        return false;
     }
 
     public int read() throws IOException {
@@ -239,12 +305,18 @@ public class SharedInputBuffer extends ExpandableBuffer {
         }
         this.lock.lock();
         try {
-            if (!super.hasData()) {
+            if (!hasBufferedData()) {
                 waitForData(0);
             }
             if (isEndOfStream()) {
                 return -1;
             }
+            ByteBuffer next = this.queued.peekFirst();
+            if (next != null) {
+                int b = next.get() & 0xff;
+                releaseIfRead(next);
+                return b;
+            }
             setOutputMode();
             return this.buffer.get() & 0xff;
         } finally {
@@ -261,20 +333,25 @@ public class SharedInputBuffer extends ExpandableBuffer {
         }
         this.lock.lock();
         try {
-            if (!hasData()) {
+            if (!hasBufferedData()) {
                 this.waitingBuffer = ByteBuffer.wrap(b, off, len);
                 waitForData(off);
                 int i = waitingBuffer.position() - off;
                 waitingBuffer = null;
                 if (i > 0) {
-                    //++waitCnt;
                     return i;
                 }
             }
             if (isEndOfStream()) {
-                //System.out.println(waitCnt + " " + nowaitCnt);
                 return -1;
             }
+            ByteBuffer next = this.queued.peekFirst();
+            if (next != null) {
+                int chunk = Math.min(len, next.remaining());
+                next.get(b, off, chunk);
+                releaseIfRead(next);
+                return chunk;
+            }
             setOutputMode();
             int chunk = len;
             if (chunk > this.buffer.remaining()) {
@@ -287,7 +364,6 @@ public class SharedInputBuffer extends ExpandableBuffer {
                 //and we can then avoid waiting for input
                 this.ioctrl.requestInput();
             }
-            //++nowaitCnt;
             return chunk;
         } finally {
             this.lock.unlock();
@@ -304,4 +380,37 @@ public class SharedInputBuffer extends ExpandableBuffer {
         return read(b, 0, b.length);
     }
 
+    /**
+     * Gives a queued buffer back to the pool once it was read completely and lets the
+     * I/O dispatch thread fill the next one.
+     */
+    private void releaseIfRead(ByteBuffer next) {
+        if (next.hasRemaining()) {
+            return;
+        }
+        release(this.queued.pollFirst());
+        if (!this.endOfStream && this.ioctrl != null) {
+            this.ioctrl.requestInput();
+        }
+    }
+
+    private void release(ByteBuffer b) {
+        if (this.allocator instanceof ByteBufferPool) {
+            ((ByteBufferPool)this.allocator).release(b);
+        }
+    }
+
+    private void releaseQueued() {
+        for (ByteBuffer b : this.queued) {
+            release(b);
+        }
+        this.queued.clear();
+    }
+
+    private void releaseBuffer() {
+        if (this.buffer.capacity() > 0) {
+            release(this.buffer);
+            this.buffer = ByteBuffer.allocate(0);
+        }
+    }
 }
@@ -23,6 +23,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -42,14 +44,24 @@ import org.apache.http.nio.util.ExpandableBuffer;
  * The worker thread is expected to write data to the buffer by calling
  * {@link #write(int)}, {@link #write(byte[], int, int)} or {@link #writeCompleted()}
  * <p/>
+ * A full buffer is handed over to the I/O dispatch thread as a whole and the worker thread
+ * continues with a new one from the {@link ByteBufferPool}, it only waits for the I/O
+ * dispatch thread if the configured number of buffers is queued already. Large writes are
+ * passed to the encoder without copying them.
+ * <p/>
  * In case of an abnormal situation or when no longer needed the buffer must be
  * shut down using {@link #shutdown()} method.
  */
 @ThreadSafe
 public class SharedOutputBuffer extends ExpandableBuffer {
+    public static final int DEFAULT_MAX_QUEUED_BUFFERS = 4;
 
     private final ReentrantLock lock;
     private final Condition condition;
+    private final ByteBufferAllocator allocator;
+    private final int buffersize;
+    private final int maxQueued;
+    private final Deque<ByteBuffer> queued = new ArrayDeque<ByteBuffer>();
 
     private volatile IOControl ioctrl;
     private volatile boolean shutdown;
@@ -58,9 +70,22 @@ public class SharedOutputBuffer extends ExpandableBuffer {
     private volatile ByteBuffer largeWrapper;
 
     public SharedOutputBuffer(int buffersize, final ByteBufferAllocator allocator) {
+        this(buffersize, allocator, DEFAULT_MAX_QUEUED_BUFFERS);
+    }
+
+    /**
+     * @param buffersize the size of the buffers
+     * @param allocator the allocator of the buffers, a {@link ByteBufferPool} gets them back once
+     *        they were written
+     * @param maxQueued the number of full buffers which may wait for the I/O dispatch thread
+     */
+    public SharedOutputBuffer(int buffersize, final ByteBufferAllocator allocator, int maxQueued) {
         super(buffersize, allocator);
         this.lock = new ReentrantLock();
         this.condition = this.lock.newCondition();
+        this.allocator = allocator;
+        this.buffersize = buffersize;
+        this.maxQueued = Math.max(maxQueued, 0);
     }
 
     public void reset() {
@@ -70,6 +95,7 @@ public class SharedOutputBuffer extends ExpandableBuffer {
         this.lock.lock();
         try {
             clear();
+            releaseQueued();
             this.endOfStream = false;
         } finally {
             this.lock.unlock();
@@ -80,7 +106,7 @@ public class SharedOutputBuffer extends ExpandableBuffer {
     public boolean hasData() {
         this.lock.lock();
         try {
-            return super.hasData();
+            return !this.queued.isEmpty() || super.hasData();
         } finally {
             this.lock.unlock();
         }
@@ -110,7 +136,11 @@ public class SharedOutputBuffer extends ExpandableBuffer {
     public int length() {
         this.lock.lock();
         try {
-            return super.length();
+            int length = super.length();
+            for (ByteBuffer b : this.queued) {
+                length += b.remaining();
+            }
+            return length;
         } finally {
             this.lock.unlock();
         }
@@ -122,26 +152,43 @@ public class SharedOutputBuffer extends ExpandableBuffer {
         }
         this.lock.lock();
         try {
+            if (this.shutdown) {
+                return -1;
+            }
             this.ioctrl = ioc;
-            setOutputMode();
             int bytesWritten = 0;
-            if (largeWrapper != null || super.hasData()) {
+            // the queued buffers hold the oldest data
+            ByteBuffer next = this.queued.peekFirst();
+            while (next != null) {
+                int i = encoder.write(next);
+                bytesWritten += i;
+                if (next.hasRemaining()) {
+                    break;
+                }
+                release(this.queued.pollFirst());
+                next = this.queued.peekFirst();
+            }
+            setOutputMode();
+            if (next == null && (largeWrapper != null || super.hasData())) {
                 if (!this.buffer.hasRemaining() && largeWrapper != null) {
-                    bytesWritten = encoder.write(largeWrapper);
+                    bytesWritten += encoder.write(largeWrapper);
                 } else {
-                    bytesWritten = encoder.write(this.buffer);
+                    bytesWritten += encoder.write(this.buffer);
                 }
                 if (encoder.isCompleted()) {
                     this.endOfStream = true;
                 }
             }
-            if ((largeWrapper == null || !largeWrapper.hasRemaining()) && !super.hasData()) {
+            if (this.queued.isEmpty() && (largeWrapper == null || !largeWrapper.hasRemaining()) 
+                && !super.hasData()) {
                 // No more buffered content
                 // If at the end of the stream, terminate
                 if (this.endOfStream && !encoder.isCompleted()) {
                     encoder.complete();
                 }
-                if (!this.endOfStream && this.ioctrl != null) {
+                if (this.endOfStream) {
+                    releaseBuffer();
+                } else if (this.ioctrl != null) {
                     // suspend output events
                     this.ioctrl.suspendOutput();
                 }
@@ -167,6 +214,8 @@ public class SharedOutputBuffer extends ExpandableBuffer {
         this.shutdown = true;
         this.lock.lock();
         try {
+            releaseQueued();
+            releaseBuffer();
             this.condition.signalAll();
         } finally {
             this.lock.unlock();
@@ -184,14 +233,13 @@ public class SharedOutputBuffer extends ExpandableBuffer {
             boolean yielded = false;
             while (i != -1) {
                 if (!this.buffer.hasRemaining()) {
-                    flushContent();
-                    setInputMode();
+                    handOver();
                 }
                 i = in.available();
                 if (i == 0 && !yielded) {
                     //nothing avail right now, we'll attempt an
                     //output, but not really force a flush.
-                    if (buffer.position() != 0 && this.ioctrl != null) {
+                    if ((buffer.position() != 0 || !this.queued.isEmpty()) && this.ioctrl != null) {
                         this.ioctrl.requestOutput();
                     }
                     try {
@@ -209,10 +257,6 @@ public class SharedOutputBuffer extends ExpandableBuffer {
                         total += i;
                         buffer.position(p + i);
                     }
-                    /*
-                    System.out.println("p: " + p + "  " + i + " " + this.buffer.position() 
-                                       + " " + this.buffer.hasRemaining());
-                                       */
                 }
             }
         } finally {
@@ -234,8 +278,7 @@ public class SharedOutputBuffer extends ExpandableBuffer {
             int remaining = len;
             while (remaining > 0) {
                 if (!this.buffer.hasRemaining()) {
-                    flushContent();
-                    setInputMode();
+                    handOver();
                 }
                 if (buffer.position() == 0 && (this.buffer.remaining() * 2) < remaining) {
                     largeWrapper = ByteBuffer.wrap(b, off, remaining);
@@ -268,8 +311,7 @@ public class SharedOutputBuffer extends ExpandableBuffer {
             setInputMode();
             
             if (!this.buffer.hasRemaining()) {
-                flushContent();
-                setInputMode();
+                handOver();
             }
             int c = b.limit() - b.position();
             largeWrapper = b;
@@ -298,8 +340,7 @@ public class SharedOutputBuffer extends ExpandableBuffer {
             }
             setInputMode();
             if (!this.buffer.hasRemaining()) {
-                flushContent();
-                setInputMode();
+                handOver();
             }
             this.buffer.put((byte)b);
         } finally {
@@ -310,11 +351,49 @@ public class SharedOutputBuffer extends ExpandableBuffer {
     public void flush() throws IOException {
     }
 
+    /**
+     * Queues the full buffer for the I/O dispatch thread and continues with a new one. Waits 
+     * for the I/O dispatch thread only if the queue is full.
+     */
+    private void handOver() throws IOException {
+        try {
+            while (this.queued.size() >= this.maxQueued) {
+                if (this.shutdown) {
+                    throw new InterruptedIOException("Output operation aborted");
+                }
+                if (this.maxQueued == 0) {
+                    flushContent();
+                    setInputMode();
+                    return;
+                }
+                if (this.ioctrl != null) {
+                    this.ioctrl.requestOutput();
+                }
+                this.condition.await();
+            }
+        } catch (InterruptedException ex) {
+            throw new IOException("Interrupted while flushing the content buffer");
+        }
+        setInputMode();
+        if (this.buffer.hasRemaining()) {
+            // the I/O dispatch thread made room in the meantime
+            return;
+        }
+        ByteBuffer full = this.buffer;
+        full.flip();
+        this.queued.addLast(full);
+        this.buffer = this.allocator.allocate(this.buffersize);
+        if (this.ioctrl != null) {
+            this.ioctrl.requestOutput();
+        }
+    }
+
     private void flushContent() throws IOException {
         this.lock.lock();
         try {
             try {
-                while ((largeWrapper != null && largeWrapper.hasRemaining()) || super.hasData()) {
+                while ((largeWrapper != null && largeWrapper.hasRemaining()) 
+                    || !this.queued.isEmpty() || super.hasData()) {
                     if (this.shutdown) {
                         throw new InterruptedIOException("Output operation aborted");
                     }
@@ -346,6 +425,26 @@ public class SharedOutputBuffer extends ExpandableBuffer {
         }
     }
 
-    
+    private void release(ByteBuffer b) {
+        if (this.allocator instanceof ByteBufferPool) {
+            ((ByteBufferPool)this.allocator).release(b);
+        }
+    }
 
+    private void releaseQueued() {
+        for (ByteBuffer b : this.queued) {
+            release(b);
+        }
+        this.queued.clear();
+    }
+
+    /**
+     * Gives the current buffer back to the pool once it is not used anymore.
+     */
+    private void releaseBuffer() {
+        if (this.buffer.capacity() > 0) {
+            release(this.buffer);
+            this.buffer = ByteBuffer.allocate(0);
+        }
+    }
 }
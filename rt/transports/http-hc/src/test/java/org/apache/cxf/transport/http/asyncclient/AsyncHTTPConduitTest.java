@@ -174,6 +174,76 @@ public class AsyncHTTPConduitTest extends AbstractBusClientServerTestBase {
         c.setClient(cp);
         assertEquals("Hello " + request, g.greetMe(request));
     }
+    @Test
+    public void testLargeCall() throws Exception {
+        updateAddressPort(g, PORT);
+        HTTPConduit c = (HTTPConduit)ClientProxy.getClient(g).getConduit();
+        c.setClient(new HTTPClientPolicy());
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < 1024 * 1024) {
+            builder.append(request);
+        }
+        String large = builder.toString();
+        ByteBufferPool pool = ((AsyncHTTPConduit)c).getAsyncHTTPConduitFactory().getBufferPool();
+        assertEquals("Hello " + large, g.greetMe(large));
+        long reused = pool.getReusedCount();
+        assertEquals("Hello " + large, g.greetMe(large));
+        // the buffers of the first call were handed back to the pool
+        assertTrue(pool.getReusedCount() > reused);
+    }
+    
+    @Test
+    public void testMaxConnectionsPerHost() throws Exception {
+        updateAddressPort(g, PORT);
+        HTTPConduit c = (HTTPConduit)ClientProxy.getClient(g).getConduit();
+        HTTPClientPolicy cp = new HTTPClientPolicy();
+        cp.setMaxConnectionsPerHost(3);
+        c.setClient(cp);
+        assertEquals("Hello " + request, g.greetMe(request));
+        
+        AsyncHTTPConduitFactory factory = ((AsyncHTTPConduit)c).getAsyncHTTPConduitFactory();
+        AdaptiveConnectionManager.RouteStats stats = null;
+        for (AdaptiveConnectionManager.RouteStats s : factory.getRouteStats()) {
+            if (s.getRoute().getTargetHost().getPort() == Integer.parseInt(PORT)) {
+                stats = s;
+            }
+        }
+        assertNotNull(stats);
+        assertEquals(3, stats.getMax());
+        assertEquals(0, stats.getPending());
+        assertTrue(stats.getCompleted() > 0);
+        c.setClient(new HTTPClientPolicy());
+    }
+    
+    @Test
+    public void testIdleRouteIsEvicted() throws Exception {
+        updateAddressPort(g, PORT);
+        assertEquals("Hello " + request, g.greetMe(request));
+        HTTPConduit c = (HTTPConduit)ClientProxy.getClient(g).getConduit();
+        AdaptiveConnectionManager manager = ((AsyncHTTPConduit)c).getAsyncHTTPConduitFactory().connectionManager;
+        long timeout = manager.getRouteIdleTimeout();
+        manager.setRouteIdleTimeout(0);
+        try {
+            boolean evicted = false;
+            for (int x = 0; x < 50 && !evicted; x++) {
+                manager.closeIdleConnections(0, TimeUnit.MILLISECONDS);
+                // nothing is in flight anymore, the route goes once its connections are closed
+                manager.closeExpiredConnections();
+                evicted = true;
+                for (AdaptiveConnectionManager.RouteStats s : manager.getRouteStats()) {
+                    evicted &= s.getRoute().getTargetHost().getPort() != Integer.parseInt(PORT);
+                }
+                if (!evicted) {
+                    Thread.sleep(100);
+                }
+            }
+            assertTrue(evicted);
+        } finally {
+            manager.setRouteIdleTimeout(timeout);
+        }
+        assertEquals("Hello " + request, g.greetMe(request));
+    }
+
     @Test
     public void testCallAsync() throws Exception {
         updateAddressPort(g, PORT);
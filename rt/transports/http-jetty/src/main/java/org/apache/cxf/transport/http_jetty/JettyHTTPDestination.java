@@ -26,6 +26,8 @@ import java.io.OutputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.security.GeneralSecurityException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -44,6 +46,7 @@ import org.apache.cxf.configuration.security.CertificateConstraintsType;
 import org.apache.cxf.continuations.ContinuationProvider;
 import org.apache.cxf.helpers.IOUtils;
 import org.apache.cxf.io.CopyingOutputStream;
+import org.apache.cxf.io.FileChannelSource;
 import org.apache.cxf.message.Message;
 import org.apache.cxf.service.model.EndpointInfo;
 import org.apache.cxf.transport.http.DestinationRegistry;
@@ -280,7 +283,7 @@ public class JettyHTTPDestination extends ServletDestination {
             out = o;
         }
 
-        private boolean sendContent(Class<?> type, InputStream c) throws IOException {
+        private boolean sendContent(Class<?> type, Object c) throws IOException {
             try {
                 out.getClass().getMethod("sendContent", type).invoke(out, c);
             } catch (InvocationTargetException ioe) {
@@ -298,6 +301,14 @@ public class JettyHTTPDestination extends ServletDestination {
             if (written) {
                 return IOUtils.copy(in, out);
             }
+            if (in instanceof FileChannelSource) {
+                // Jetty reads the channel straight into its own direct buffers
+                FileChannel channel = ((FileChannelSource)in).getChannel();
+                long count = channel.size() - channel.position();
+                if (sendContent(ReadableByteChannel.class, channel)) {
+                    return count > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int)count;
+                }
+            }
             CountingInputStream c = new CountingInputStream(in);
             if (!sendContent(InputStream.class, c)
                 && !sendContent(Object.class, c)) {
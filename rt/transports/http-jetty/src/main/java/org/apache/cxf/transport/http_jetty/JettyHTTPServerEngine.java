@@ -26,6 +26,7 @@ import java.net.URL;
 import java.security.GeneralSecurityException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Level;
@@ -108,6 +109,9 @@ public class JettyHTTPServerEngine implements ServerEngine {
     private Boolean continuationsEnabled = true;
     private int maxIdleTime = 200000;
     private Boolean sendServerVersion = true;
+    private boolean http2Enabled;
+    private int http2MaxConcurrentStreams = -1;
+    private int http2InitialStreamWindow = -1;
     private int servantCount;
     private Server server;
     private Connector connector;
@@ -594,6 +598,9 @@ public class JettyHTTPServerEngine implements ServerEngine {
         if (!Server.getVersion().startsWith("8")) {
             result = createConnectorJetty9(sslcf, hosto, porto);
         } else {
+            if (isHttp2Enabled()) {
+                LOG.log(Level.WARNING, "HTTP2_NOT_AVAILABLE_MSG", new Object[] {porto, "Jetty 9.3"});
+            }
             result = createConnectorJetty8(sslcf, hosto, porto);
         }        
         
@@ -632,19 +639,43 @@ public class JettyHTTPServerEngine implements ServerEngine {
                                                                    .getConstructor(Server.class)
                                                                    .newInstance(server);
             
+            Object http2Factory = null;
+            if (isHttp2Enabled()) {
+                http2Factory = createHttp2ConnectionFactory(configClass, httpConfig, sslcf != null);
+            }
+            
             if (tlsServerParameters != null) {
                 Class<?> src = ClassLoaderUtils.loadClass("org.eclipse.jetty.server.SecureRequestCustomizer",
                                                           Server.class);
                 httpConfig.getClass().getMethod("addCustomizer", src.getInterfaces()[0])
                     .invoke(httpConfig, src.newInstance());
+                Object alpnFactory = null;
+                if (http2Factory != null) {
+                    alpnFactory = createALPNConnectionFactory(sslcf);
+                    if (alpnFactory == null) {
+                        http2Factory = null;
+                    }
+                }
                 Object scf = ClassLoaderUtils.loadClass("org.eclipse.jetty.server.SslConnectionFactory",
                                                         Server.class).getConstructor(SslContextFactory.class,
                                                                                      String.class)
-                                                        .newInstance(sslcf, "HTTP/1.1");
+                                                        .newInstance(sslcf, alpnFactory == null ? "HTTP/1.1"
+                                                            : getProtocol(alpnFactory));
                 connectionFactories.add(scf);
-                result.getClass().getMethod("setDefaultProtocol", String.class).invoke(result, "SSL-HTTP/1.1");
+                result.getClass().getMethod("setDefaultProtocol", String.class)
+                    .invoke(result, getProtocol(scf));
+                if (alpnFactory != null) {
+                    // h2 is negotiated through ALPN, HTTP/1.1 is used for clients which don't
+                    connectionFactories.add(alpnFactory);
+                    connectionFactories.add(http2Factory);
+                    http2Factory = null;
+                }
             }
             connectionFactories.add(httpFactory);
+            if (http2Factory != null) {
+                // h2c, either prior knowledge or upgraded from the HTTP/1.1 connection
+                connectionFactories.add(http2Factory);
+            }
             result.getClass().getMethod("setConnectionFactories", Collection.class)
                 .invoke(result, connectionFactories);
             
@@ -659,6 +690,63 @@ public class JettyHTTPServerEngine implements ServerEngine {
         }
         return result;
     }
+    private static String getProtocol(Object connectionFactory) throws Exception {
+        return (String)connectionFactory.getClass().getMethod("getProtocol").invoke(connectionFactory);
+    }
+    
+    /**
+     * The HTTP/2 connection factories only exist from Jetty 9.3 on and are loaded 
+     * reflectively, if they are not available the engine stays on HTTP/1.1.
+     */
+    private Object createHttp2ConnectionFactory(Class<?> configClass, Object httpConfig, boolean secure) 
+        throws Exception {
+        String factoryClass = secure ? "org.eclipse.jetty.http2.server.HTTP2ServerConnectionFactory"
+            : "org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory";
+        Object http2Factory = null;
+        try {
+            http2Factory = ClassLoaderUtils.loadClass(factoryClass, Server.class)
+                .getConstructor(configClass).newInstance(httpConfig);
+        } catch (ClassNotFoundException ex) {
+            LOG.log(Level.WARNING, "HTTP2_NOT_AVAILABLE_MSG", new Object[] {port, factoryClass});
+            return null;
+        }
+        if (getHttp2MaxConcurrentStreams() > 0) {
+            http2Factory.getClass().getMethod("setMaxConcurrentStreams", Integer.TYPE)
+                .invoke(http2Factory, getHttp2MaxConcurrentStreams());
+        }
+        if (getHttp2InitialStreamWindow() > 0) {
+            http2Factory.getClass().getMethod("setInitialStreamRecvWindow", Integer.TYPE)
+                .invoke(http2Factory, getHttp2InitialStreamWindow());
+        }
+        return http2Factory;
+    }
+    
+    private Object createALPNConnectionFactory(SslContextFactory sslcf) throws Exception {
+        String factoryClass = "org.eclipse.jetty.alpn.server.ALPNServerConnectionFactory";
+        Object alpnFactory = null;
+        try {
+            alpnFactory = ClassLoaderUtils.loadClass(factoryClass, Server.class)
+                .getConstructor(String[].class).newInstance((Object)new String[] {"h2", "http/1.1"});
+        } catch (ClassNotFoundException ex) {
+            LOG.log(Level.WARNING, "HTTP2_NOT_AVAILABLE_MSG", new Object[] {port, factoryClass});
+            return null;
+        }
+        alpnFactory.getClass().getMethod("setDefaultProtocol", String.class).invoke(alpnFactory, "http/1.1");
+        try {
+            // order the ciphers so that the ones HTTP/2 does not blacklist come first
+            Object comparator = ClassLoaderUtils.loadClass("org.eclipse.jetty.http2.HTTP2Cipher", Server.class)
+                .getField("COMPARATOR").get(null);
+            sslcf.getClass().getMethod("setCipherComparator", Comparator.class).invoke(sslcf, comparator);
+        } catch (ClassNotFoundException ex) {
+            //ignore
+        } catch (NoSuchFieldException ex) {
+            //ignore
+        } catch (NoSuchMethodException ex) {
+            //ignore
+        }
+        return alpnFactory;
+    }
+    
     AbstractConnector createConnectorJetty8(SslContextFactory sslcf, String hosto, int porto) {
         //Jetty 8
         AbstractConnector result = null;
@@ -1116,5 +1204,34 @@ public class JettyHTTPServerEngine implements ServerEngine {
     public Boolean getSendServerVersion() {
         return sendServerVersion;
     }
+
+    /**
+     * Enables HTTP/2 on the connector created by this engine: h2c for plain
+     * connectors, h2 negotiated through ALPN for TLS connectors. Requires the
+     * Jetty http2-server (and alpn-server for TLS) modules.
+     */
+    public void setHttp2Enabled(boolean enabled) {
+        http2Enabled = enabled;
+    }
+
+    public boolean isHttp2Enabled() {
+        return http2Enabled;
+    }
+
+    public void setHttp2MaxConcurrentStreams(int maxConcurrentStreams) {
+        http2MaxConcurrentStreams = maxConcurrentStreams;
+    }
+
+    public int getHttp2MaxConcurrentStreams() {
+        return http2MaxConcurrentStreams;
+    }
+
+    public void setHttp2InitialStreamWindow(int initialStreamWindow) {
+        http2InitialStreamWindow = initialStreamWindow;
+    }
+
+    public int getHttp2InitialStreamWindow() {
+        return http2InitialStreamWindow;
+    }
     
 }
@@ -141,6 +141,12 @@ public class HTTPJettyTransportActivator
                 e.setReuseAddress(Boolean.parseBoolean(properties.get(k)));
             } else if ("maxIdleTime".equals(k)) {
                 e.setMaxIdleTime(Integer.parseInt(properties.get(k)));
+            } else if ("http2Enabled".equals(k)) {
+                e.setHttp2Enabled(Boolean.parseBoolean(properties.get(k)));
+            } else if ("http2MaxConcurrentStreams".equals(k)) {
+                e.setHttp2MaxConcurrentStreams(Integer.parseInt(properties.get(k)));
+            } else if ("http2InitialStreamWindow".equals(k)) {
+                e.setHttp2InitialStreamWindow(Integer.parseInt(properties.get(k)));
             } 
         }
     }
@@ -94,6 +94,21 @@ public class JettyHTTPServerEngineBeanDefinitionParser extends AbstractBeanDefin
             bean.addPropertyValue("sendServerVersion", sendServerVersionStr);
         }
         
+        String http2EnabledStr = element.getAttribute("http2Enabled");
+        if (http2EnabledStr != null && http2EnabledStr.length() > 0) {
+            bean.addPropertyValue("http2Enabled", http2EnabledStr);
+        }
+        
+        String http2MaxStreamsStr = element.getAttribute("http2MaxConcurrentStreams");
+        if (http2MaxStreamsStr != null && !"".equals(http2MaxStreamsStr.trim())) {
+            bean.addPropertyValue("http2MaxConcurrentStreams", http2MaxStreamsStr);
+        }
+        
+        String http2WindowStr = element.getAttribute("http2InitialStreamWindow");
+        if (http2WindowStr != null && !"".equals(http2WindowStr.trim())) {
+            bean.addPropertyValue("http2InitialStreamWindow", http2WindowStr);
+        }
+        
         ValueHolder busValue = ctx.getContainingBeanDefinition()
             .getConstructorArgumentValues().getArgumentValue(0, Bus.class);
         bean.addPropertyValue("bus", busValue.getValue());
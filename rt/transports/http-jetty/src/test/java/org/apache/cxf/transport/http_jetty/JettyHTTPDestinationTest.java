@@ -19,8 +19,13 @@
 
 package org.apache.cxf.transport.http_jetty;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Socket;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -30,7 +35,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 
+import javax.servlet.DispatcherType;
 import javax.servlet.ServletInputStream;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
@@ -47,6 +55,7 @@ import org.apache.cxf.configuration.security.AuthorizationPolicy;
 import org.apache.cxf.continuations.SuspendedInvocationException;
 import org.apache.cxf.endpoint.EndpointResolverRegistry;
 import org.apache.cxf.helpers.CastUtils;
+import org.apache.cxf.helpers.IOUtils;
 import org.apache.cxf.io.AbstractWrappedOutputStream;
 import org.apache.cxf.message.ExchangeImpl;
 import org.apache.cxf.message.Message;
@@ -55,6 +64,7 @@ import org.apache.cxf.policy.PolicyDataEngine;
 import org.apache.cxf.security.transport.TLSSessionInfo;
 import org.apache.cxf.service.model.EndpointInfo;
 import org.apache.cxf.service.model.ServiceInfo;
+import org.apache.cxf.testutil.common.TestUtil;
 import org.apache.cxf.transport.Conduit;
 import org.apache.cxf.transport.ConduitInitiator;
 import org.apache.cxf.transport.ConduitInitiatorManager;
@@ -85,6 +95,7 @@ public class JettyHTTPDestinationTest extends Assert {
         "Basic " + Base64Utility.encode((USER + ":" + PASSWD).getBytes());   
 
     private static final String NOWHERE = "http://nada.nothing.nowhere.null/";
+    private static final int PORT = Integer.valueOf(TestUtil.getPortNumber(JettyHTTPDestinationTest.class));
     private static final String PAYLOAD = "message payload";
     private static final String CHALLENGE_HEADER = "WWW-Authenticate";
     private static final String BASIC_CHALLENGE = "Basic realm=terra";
@@ -231,6 +242,98 @@ public class JettyHTTPDestinationTest extends Assert {
         assertNull("Continuations must be ignored", mi);
     }
     
+    @Test
+    public void testNonBlockingIO() throws Exception {
+        bus = BusFactory.getDefaultBus(true);
+        transportFactory = new HTTPTransportFactory();
+        ServiceInfo serviceInfo = new ServiceInfo();
+        serviceInfo.setName(new QName("bla", "Service"));
+        EndpointInfo ei = new EndpointInfo(serviceInfo, "");
+        ei.setName(new QName("bla", "Port"));
+        ei.setAddress("http://localhost:" + PORT + "/nonblocking");
+        ei.setProperty(AbstractHTTPDestination.NON_BLOCKING_IO, Boolean.TRUE);
+
+        final Destination d = transportFactory.getDestination(ei, bus);
+        final BlockingQueue<DispatcherType> dispatchTypes = new LinkedBlockingQueue<DispatcherType>();
+        d.setMessageObserver(new MessageObserver() {
+            public void onMessage(Message m) {
+                try {
+                    HttpServletRequest req = (HttpServletRequest)m.get(AbstractHTTPDestination.HTTP_REQUEST);
+                    dispatchTypes.add(req.getDispatcherType());
+                    byte[] content = IOUtils.readBytesFromStream(m.getContent(InputStream.class));
+                    Message out = new MessageImpl();
+                    m.getExchange().setOutMessage(out);
+                    Conduit backChannel = d.getBackChannel(m);
+                    backChannel.prepare(out);
+                    OutputStream body = out.getContent(OutputStream.class);
+                    body.write(content);
+                    body.close();
+                    backChannel.close(out);
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        });
+
+        StringBuilder payload = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            payload.append(PAYLOAD);
+        }
+        HttpURLConnection connection = 
+            (HttpURLConnection)new URL(d.getAddress().getAddress().getValue()).openConnection();
+        connection.setDoOutput(true);
+        connection.setRequestMethod("POST");
+        connection.setChunkedStreamingMode(8192);
+        OutputStream out = connection.getOutputStream();
+        out.write(payload.toString().getBytes());
+        out.close();
+        assertEquals(200, connection.getResponseCode());
+        assertEquals(payload.length(), connection.getContentLength());
+        assertEquals(payload.toString(), IOUtils.toString(connection.getInputStream()));
+        // the request was dispatched again once the body was read
+        assertEquals(DispatcherType.ASYNC, dispatchTypes.poll());
+        d.shutdown();
+    }
+
+    @Test
+    public void testNonBlockingIOTimeout() throws Exception {
+        bus = BusFactory.getDefaultBus(true);
+        transportFactory = new HTTPTransportFactory();
+        ServiceInfo serviceInfo = new ServiceInfo();
+        serviceInfo.setName(new QName("bla", "Service"));
+        EndpointInfo ei = new EndpointInfo(serviceInfo, "");
+        ei.setName(new QName("bla", "Port"));
+        ei.setAddress("http://localhost:" + PORT + "/stalled");
+        ei.setProperty(AbstractHTTPDestination.NON_BLOCKING_IO, Boolean.TRUE);
+        ei.setProperty(AbstractHTTPDestination.NON_BLOCKING_IO_TIMEOUT, "500");
+
+        Destination d = transportFactory.getDestination(ei, bus);
+        final BlockingQueue<Message> messages = new LinkedBlockingQueue<Message>();
+        d.setMessageObserver(new MessageObserver() {
+            public void onMessage(Message m) {
+                messages.add(m);
+            }
+        });
+
+        // the client announces a body it never sends
+        Socket socket = new Socket("localhost", PORT);
+        try {
+            OutputStream out = socket.getOutputStream();
+            out.write(("POST /stalled HTTP/1.1\r\nHost: localhost\r\n"
+                + "Content-Length: 100\r\n\r\nonly a part").getBytes());
+            out.flush();
+            socket.setSoTimeout(10000);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            String status = in.readLine();
+            assertNotNull(status);
+            assertTrue(status, status.contains(" 408"));
+        } finally {
+            socket.close();
+        }
+        assertTrue(messages.isEmpty());
+        d.shutdown();
+    }
+
     @Test
     public void testGetMultiple() throws Exception {
         bus = BusFactory.getDefaultBus(true);
@@ -200,6 +200,29 @@ public class JettyHTTPServerEngineTest extends Assert {
     }
 
 
+    @Test
+    public void testHttp2EnabledKeepsHttp11() throws Exception {
+        String urlStr = "http://localhost:" + PORT1 + "/hello/test";
+        JettyHTTPServerEngine engine = new JettyHTTPServerEngine();
+        engine.setPort(PORT1);
+        engine.setHttp2Enabled(true);
+        engine.setHttp2MaxConcurrentStreams(32);
+        engine.setHttp2InitialStreamWindow(65535);
+        engine.finalizeConfig();
+
+        List<JettyHTTPServerEngine> list = new ArrayList<JettyHTTPServerEngine>();
+        list.add(engine);
+        factory.setEnginesList(list);
+        engine = factory.createJettyHTTPServerEngine(PORT1, "http");
+        assertTrue(engine.isHttp2Enabled());
+        engine.addServant(new URL(urlStr), new JettyHTTPTestHandler("string1", true));
+
+        // HTTP/1.1 clients are still served, whether or not the http2 module is available
+        assertEquals("The jetty http handler did not take effect", "string1", getResponse(urlStr));
+
+        JettyHTTPServerEngineFactory.destroyForPort(PORT1);
+    }
+
     private int getMaxIdle(Connector connector) throws Exception {
         try {
             return (int)connector.getClass().getMethod("getMaxIdleTime").invoke(connector);
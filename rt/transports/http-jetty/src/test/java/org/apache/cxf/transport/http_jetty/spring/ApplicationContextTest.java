@@ -134,6 +134,9 @@ public class ApplicationContextTest extends Assert {
         engine = (JettyHTTPServerEngine)jd2.getEngine();
         assertEquals(40000, engine.getMaxIdleTime());
         assertFalse(engine.getSendServerVersion());
+        assertTrue(engine.isHttp2Enabled());
+        assertEquals(64, engine.getHttp2MaxConcurrentStreams());
+        assertEquals(131072, engine.getHttp2InitialStreamWindow());
         assertEquals(99, engine.getThreadingParameters().getMinThreads());
         assertEquals(777, engine.getThreadingParameters().getMaxThreads());
         assertEquals("AnotherPrefix", engine.getThreadingParameters().getThreadNamePrefix());
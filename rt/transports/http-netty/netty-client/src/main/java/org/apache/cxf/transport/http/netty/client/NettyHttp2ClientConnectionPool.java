@@ -0,0 +1,503 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.transport.http.netty.client;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.cxf.common.logging.LogUtils;
+import org.apache.cxf.configuration.jsse.TLSClientParameters;
+import org.apache.cxf.transport.https.SSLUtils;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ConnectTimeoutException;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http2.Http2Exception;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2SecurityUtil;
+import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.handler.codec.http2.Http2SettingsFrame;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.codec.http2.Http2StreamChannelBootstrap;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
+import io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.ApplicationProtocolNegotiationHandler;
+import io.netty.handler.ssl.ClientAuth;
+import io.netty.handler.ssl.JdkSslContext;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.ssl.SupportedCipherSuiteFilter;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import io.netty.util.concurrent.Promise;
+
+/**
+ * Keeps a small number of HTTP/2 connections per remote host and hands out
+ * multiplexed stream channels on top of them.
+ * <p>
+ * Every stream channel carries the same HTTP object pipeline as an HTTP/1.1
+ * connection ends with, so the {@link NettyHttpClientHandler} and the
+ * {@link NettyHttpClientRequest} can be used unchanged. Plain http URIs use h2c
+ * with prior knowledge, https URIs negotiate h2 through ALPN. When the server
+ * does not speak HTTP/2 the acquired stream is <code>null</code> and the host is
+ * remembered for the HTTP/1.1 host timeout, so that later requests go straight to
+ * HTTP/1.1. A connection which fails without the server answering in another
+ * protocol, e.g. as it is refused or reset, just fails the acquire.
+ */
+public class NettyHttp2ClientConnectionPool {
+    public static final String MAX_CONNECTIONS =
+        "org.apache.cxf.transport.http.netty.http2.maxConnections";
+    public static final String INITIAL_WINDOW_SIZE =
+        "org.apache.cxf.transport.http.netty.http2.initialWindowSize";
+    public static final String MAX_CONTENT_LENGTH =
+        "org.apache.cxf.transport.http.netty.http2.maxContentLength";
+    public static final String HTTP1_HOST_TIMEOUT =
+        "org.apache.cxf.transport.http.netty.http2.http1HostTimeout";
+
+    public static final int DEFAULT_MAX_CONNECTIONS = 2;
+    public static final int DEFAULT_INITIAL_WINDOW_SIZE = 1048576;
+    public static final int DEFAULT_MAX_CONTENT_LENGTH = 1048576;
+    public static final int DEFAULT_HTTP1_HOST_TIMEOUT = 600000;
+
+    private static final Logger LOG =
+        LogUtils.getL7dLogger(NettyHttp2ClientConnectionPool.class);
+
+    private static final ChannelHandler PUSH_REJECTOR = new ChannelInitializer<Channel>() {
+        @Override
+        protected void initChannel(Channel ch) throws Exception {
+            // server push is disabled in our settings, just drop anything the server opens
+            ch.close();
+        }
+    };
+
+    private final ConcurrentMap<String, HostConnections> connections =
+        new ConcurrentHashMap<String, HostConnections>();
+    // the hosts which do not speak HTTP/2 with the System.nanoTime() until which that is assumed
+    private final ConcurrentMap<String, Long> http1Hosts = new ConcurrentHashMap<String, Long>();
+    private final int maxConnections;
+    private final int initialWindowSize;
+    private final int maxContentLength;
+    private volatile long http1HostTimeout = DEFAULT_HTTP1_HOST_TIMEOUT;
+    private final ChannelHandler streamInitializer = new ChannelInitializer<Channel>() {
+        @Override
+        protected void initChannel(Channel ch) throws Exception {
+            ChannelPipeline pipeline = ch.pipeline();
+            pipeline.addLast("codec", new Http2StreamFrameToHttpObjectCodec(false));
+            pipeline.addLast("aggregator", new HttpObjectAggregator(maxContentLength));
+            pipeline.addLast("client", new NettyHttpClientHandler());
+        }
+    };
+
+    public NettyHttp2ClientConnectionPool() {
+        this(DEFAULT_MAX_CONNECTIONS, DEFAULT_INITIAL_WINDOW_SIZE);
+    }
+
+    public NettyHttp2ClientConnectionPool(int maxConnections, int initialWindowSize) {
+        this(maxConnections, initialWindowSize, DEFAULT_MAX_CONTENT_LENGTH);
+    }
+
+    public NettyHttp2ClientConnectionPool(int maxConnections, int initialWindowSize, int maxContentLength) {
+        this.maxConnections = maxConnections > 0 ? maxConnections : DEFAULT_MAX_CONNECTIONS;
+        this.initialWindowSize = initialWindowSize > 0 ? initialWindowSize : DEFAULT_INITIAL_WINDOW_SIZE;
+        this.maxContentLength = maxContentLength > 0 ? maxContentLength : DEFAULT_MAX_CONTENT_LENGTH;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public int getInitialWindowSize() {
+        return initialWindowSize;
+    }
+
+    public int getMaxContentLength() {
+        return maxContentLength;
+    }
+
+    public long getHttp1HostTimeout() {
+        return http1HostTimeout;
+    }
+
+    /**
+     * Sets for how many milliseconds a host which refused HTTP/2 is talked to with
+     * HTTP/1.1 directly before HTTP/2 is tried again.
+     */
+    public void setHttp1HostTimeout(long timeout) {
+        this.http1HostTimeout = timeout;
+    }
+
+    /**
+     * Returns true if the host of this URI refused HTTP/2 recently,
+     * requests to it should use HTTP/1.1 directly.
+     */
+    public boolean isHttp1Only(URI uri) {
+        return isHttp1Only(getKey(uri));
+    }
+
+    private boolean isHttp1Only(String key) {
+        Long until = http1Hosts.get(key);
+        if (until == null) {
+            return false;
+        }
+        if (System.nanoTime() - until >= 0) {
+            http1Hosts.remove(key, until);
+            return false;
+        }
+        return true;
+    }
+
+    private void setHttp1Only(String key) {
+        http1Hosts.put(key, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(http1HostTimeout));
+    }
+
+    /**
+     * Opens a new stream to the host of the URI, reusing one of the pooled
+     * connections. The future completes with <code>null</code> if the host
+     * does not support HTTP/2.
+     */
+    public Future<Channel> acquireStream(EventLoopGroup group, URI uri, TLSClientParameters tlsParameters) {
+        return acquireStream(group, uri, tlsParameters, 0);
+    }
+
+    /**
+     * Opens a new stream as {@link #acquireStream(EventLoopGroup, URI, TLSClientParameters)}
+     * does. A new connection fails if it is not ready for HTTP/2 within the connect
+     * timeout in milliseconds, zero or less means the default of the transport.
+     */
+    public Future<Channel> acquireStream(EventLoopGroup group, URI uri, TLSClientParameters tlsParameters,
+                                         int connectTimeout) {
+        final String key = getKey(uri);
+        if (isHttp1Only(key)) {
+            return ImmediateEventExecutor.INSTANCE.newSucceededFuture(null);
+        }
+        HostConnections hostConnections = connections.get(key);
+        if (hostConnections == null) {
+            hostConnections = new HostConnections(maxConnections);
+            HostConnections old = connections.putIfAbsent(key, hostConnections);
+            if (old != null) {
+                hostConnections = old;
+            }
+        }
+        final int slot = hostConnections.nextSlot();
+        final AtomicReferenceArray<Http2Connection> slots = hostConnections.slots;
+        Http2Connection connection = slots.get(slot);
+        while (connection == null || connection.isClosed()) {
+            SslContext sslContext = null;
+            if ("https".equals(uri.getScheme())) {
+                try {
+                    sslContext = createSslContext(tlsParameters);
+                } catch (Exception ex) {
+                    // most likely the JDK does not support ALPN
+                    LOG.log(Level.FINE, "Could not setup ALPN for " + key + ", using HTTP/1.1", ex);
+                    setHttp1Only(key);
+                    return ImmediateEventExecutor.INSTANCE.newSucceededFuture(null);
+                }
+            }
+            Http2Connection newConnection = connect(group, uri, sslContext, connectTimeout);
+            if (slots.compareAndSet(slot, connection, newConnection)) {
+                connection = newConnection;
+            } else {
+                newConnection.channel.close();
+                connection = slots.get(slot);
+            }
+        }
+
+        final Http2Connection conn = connection;
+        final Promise<Channel> result = ImmediateEventExecutor.INSTANCE.newPromise();
+        conn.ready.addListener(new FutureListener<Boolean>() {
+            @Override
+            public void operationComplete(Future<Boolean> future) throws Exception {
+                if (!future.isSuccess()) {
+                    slots.compareAndSet(slot, conn, null);
+                    result.setFailure(future.cause());
+                } else if (!future.getNow()) {
+                    LOG.log(Level.FINE, "HTTP/2 is not supported by " + key + ", using HTTP/1.1");
+                    setHttp1Only(key);
+                    slots.compareAndSet(slot, conn, null);
+                    result.setSuccess(null);
+                } else {
+                    openStream(conn.channel, result);
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Closes all pooled connections.
+     */
+    public void close() {
+        for (HostConnections hostConnections : connections.values()) {
+            for (int i = 0; i < hostConnections.slots.length(); i++) {
+                Http2Connection connection = hostConnections.slots.getAndSet(i, null);
+                if (connection != null) {
+                    connection.channel.close();
+                }
+            }
+        }
+        connections.clear();
+    }
+
+    protected void openStream(Channel parent, final Promise<Channel> result) {
+        new Http2StreamChannelBootstrap(parent).handler(streamInitializer).open()
+            .addListener(new FutureListener<Http2StreamChannel>() {
+                @Override
+                public void operationComplete(Future<Http2StreamChannel> future) throws Exception {
+                    if (future.isSuccess()) {
+                        result.setSuccess(future.getNow());
+                    } else {
+                        result.setFailure(future.cause());
+                    }
+                }
+            });
+    }
+
+    protected Http2Connection connect(EventLoopGroup group, URI uri, final SslContext sslContext,
+                                      int connectTimeout) {
+        final String host = uri.getHost();
+        final int port = getPort(uri);
+        final Promise<Boolean> ready = ImmediateEventExecutor.INSTANCE.newPromise();
+        // an h2c server which answered in another protocol, as opposed to a failing connection
+        final AtomicBoolean answered = new AtomicBoolean();
+
+        Bootstrap bootstrap = new Bootstrap();
+        bootstrap.group(group);
+        bootstrap.channel(NioSocketChannel.class);
+        if (connectTimeout > 0) {
+            bootstrap.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeout);
+        }
+        bootstrap.handler(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) throws Exception {
+                if (sslContext == null) {
+                    ch.pipeline().addLast("answered", new AnswerDetector(answered));
+                    addHttp2Handlers(ch.pipeline(), ready);
+                    return;
+                }
+                ch.pipeline().addLast("ssl", sslContext.newHandler(ch.alloc(), host, port));
+                ch.pipeline().addLast("alpn",
+                    new ApplicationProtocolNegotiationHandler(ApplicationProtocolNames.HTTP_1_1) {
+                        @Override
+                        protected void configurePipeline(ChannelHandlerContext ctx, String protocol) {
+                            if (ApplicationProtocolNames.HTTP_2.equals(protocol)) {
+                                addHttp2Handlers(ctx.pipeline(), ready);
+                            } else {
+                                ready.trySuccess(Boolean.FALSE);
+                                ctx.close();
+                            }
+                        }
+                        @Override
+                        protected void handshakeFailure(ChannelHandlerContext ctx, Throwable cause) {
+                            ready.tryFailure(cause);
+                            ctx.close();
+                        }
+                    });
+            }
+        });
+
+        ChannelFuture connFuture = bootstrap.connect(new InetSocketAddress(host, port));
+        final Channel channel = connFuture.channel();
+        if (connectTimeout > 0) {
+            // the TLS handshake and the SETTINGS of the server count towards the connect timeout
+            channel.eventLoop().schedule(new Runnable() {
+                public void run() {
+                    if (ready.tryFailure(new ConnectTimeoutException("HTTP/2 connection to " + host + ":"
+                                                                     + port + " timed out"))) {
+                        channel.close();
+                    }
+                }
+            }, connectTimeout, TimeUnit.MILLISECONDS);
+        }
+        connFuture.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                if (!future.isSuccess()) {
+                    ready.tryFailure(future.cause());
+                }
+            }
+        });
+        channel.closeFuture().addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                if (sslContext == null && answered.get()) {
+                    // the server answered the h2c preface and closed, it only speaks HTTP/1.1
+                    ready.trySuccess(Boolean.FALSE);
+                } else {
+                    ready.tryFailure(new IOException("Connection closed before HTTP/2 was negotiated"));
+                }
+            }
+        });
+        return new Http2Connection(channel, ready);
+    }
+
+    protected void addHttp2Handlers(ChannelPipeline pipeline, Promise<Boolean> ready) {
+        Http2Settings settings = Http2Settings.defaultSettings()
+            .pushEnabled(false)
+            .initialWindowSize(initialWindowSize);
+        pipeline.addLast("http2", Http2FrameCodecBuilder.forClient().initialSettings(settings).build());
+        pipeline.addLast("multiplex", new Http2MultiplexHandler(PUSH_REJECTOR));
+        pipeline.addLast("ready", new Http2ReadyHandler(ready));
+    }
+
+    protected SslContext createSslContext(TLSClientParameters tlsParameters) throws Exception {
+        TLSClientParameters parameters = tlsParameters == null ? new TLSClientParameters() : tlsParameters;
+        SSLContext sslContext = SSLUtils.getSSLContext(parameters);
+        List<String> cipherSuites = parameters.getCipherSuites();
+        Iterable<String> ciphers = cipherSuites == null || cipherSuites.isEmpty()
+            ? Http2SecurityUtil.CIPHERS : cipherSuites;
+        ApplicationProtocolConfig apn = new ApplicationProtocolConfig(
+            ApplicationProtocolConfig.Protocol.ALPN,
+            ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE,
+            ApplicationProtocolConfig.SelectedListenerFailureBehavior.ACCEPT,
+            ApplicationProtocolNames.HTTP_2, ApplicationProtocolNames.HTTP_1_1);
+        return new JdkSslContext(sslContext, true, ciphers, SupportedCipherSuiteFilter.INSTANCE,
+                                 apn, ClientAuth.NONE, null, false);
+    }
+
+    private static String getKey(URI uri) {
+        return uri.getScheme() + "://" + uri.getHost() + ":" + getPort(uri);
+    }
+
+    private static int getPort(URI uri) {
+        if (uri.getPort() != -1) {
+            return uri.getPort();
+        }
+        return "http".equals(uri.getScheme()) ? 80 : 443;
+    }
+
+    static class Http2Connection {
+        final Channel channel;
+        final Future<Boolean> ready;
+
+        Http2Connection(Channel channel, Future<Boolean> ready) {
+            this.channel = channel;
+            this.ready = ready;
+        }
+
+        boolean isClosed() {
+            if (!ready.isDone()) {
+                return false;
+            }
+            return !ready.isSuccess() || !ready.getNow() || !channel.isActive();
+        }
+    }
+
+    static class HostConnections {
+        final AtomicReferenceArray<Http2Connection> slots;
+        final AtomicInteger counter = new AtomicInteger();
+
+        HostConnections(int size) {
+            slots = new AtomicReferenceArray<Http2Connection>(size);
+        }
+
+        int nextSlot() {
+            return (counter.getAndIncrement() & Integer.MAX_VALUE) % slots.length();
+        }
+    }
+
+    /**
+     * Sits behind the multiplex handler and sees the connection level frames, the
+     * connection is usable once the server sent its SETTINGS.
+     */
+    static class Http2ReadyHandler extends ChannelInboundHandlerAdapter {
+        private final Promise<Boolean> ready;
+
+        Http2ReadyHandler(Promise<Boolean> ready) {
+            this.ready = ready;
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            try {
+                if (msg instanceof Http2SettingsFrame) {
+                    ready.trySuccess(Boolean.TRUE);
+                }
+            } finally {
+                ReferenceCountUtil.release(msg);
+            }
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+            LOG.log(Level.FINE, "HTTP/2 connection failure", cause);
+            if (ctx.pipeline().get(SslHandler.class) == null && isProtocolError(cause)) {
+                // an HTTP/1.1 server answering the h2c preface, fall back
+                ready.trySuccess(Boolean.FALSE);
+            } else {
+                ready.tryFailure(cause);
+            }
+            ctx.close();
+        }
+
+        private static boolean isProtocolError(Throwable cause) {
+            for (Throwable t = cause; t != null; t = t.getCause()) {
+                if (t instanceof Http2Exception) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Notes that the server sent something on an h2c connection.
+     */
+    static class AnswerDetector extends ChannelInboundHandlerAdapter {
+        private final AtomicBoolean answered;
+
+        AnswerDetector(AtomicBoolean answered) {
+            this.answered = answered;
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            answered.set(true);
+            ctx.pipeline().remove(this);
+            ctx.fireChannelRead(msg);
+        }
+    }
+}
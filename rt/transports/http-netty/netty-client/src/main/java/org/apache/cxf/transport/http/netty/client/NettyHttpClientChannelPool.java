@@ -0,0 +1,357 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.transport.http.netty.client;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.cxf.configuration.jsse.TLSClientParameters;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.pool.ChannelHealthChecker;
+import io.netty.channel.pool.ChannelPool;
+import io.netty.channel.pool.ChannelPoolHandler;
+import io.netty.channel.pool.FixedChannelPool;
+import io.netty.channel.pool.FixedChannelPool.AcquireTimeoutAction;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.Future;
+
+/**
+ * Pools the keep-alive HTTP/1.1 connections of the Netty conduit per remote
+ * host, so that a request/response exchange does not need a new TCP and TLS
+ * handshake.
+ * <p>
+ * A channel is acquired for one exchange and released once the full response
+ * was received. Pooled channels are health checked before they are handed out
+ * again and closed after they sat unused in the pool for the idle timeout. The pool
+ * of a host which was not used for the idle timeout is closed and forgotten, as
+ * hosts reached with per request TLS parameters would otherwise pile up.
+ * <p>
+ * Waiting for a channel when all channels of a host are in use fails after the
+ * acquire timeout.
+ * <p>
+ * The limits given to the constructor are the defaults, a conduit may pass its own
+ * when it acquires a channel. The pool of a host keeps the limits of the request
+ * which created it.
+ */
+public class NettyHttpClientChannelPool {
+    public static final String MAX_CHANNELS_PER_HOST =
+        "org.apache.cxf.transport.http.netty.maxChannelsPerHost";
+    public static final String IDLE_TIMEOUT =
+        "org.apache.cxf.transport.http.netty.idleTimeout";
+    public static final String ACQUIRE_TIMEOUT =
+        "org.apache.cxf.transport.http.netty.acquireTimeout";
+
+    public static final int DEFAULT_MAX_CHANNELS_PER_HOST = 20;
+    public static final int DEFAULT_IDLE_TIMEOUT = 60000;
+    public static final int DEFAULT_ACQUIRE_TIMEOUT = 30000;
+
+    private static final AttributeKey<ChannelPool> POOL =
+        AttributeKey.valueOf(NettyHttpClientChannelPool.class.getName() + ".pool");
+    private static final AttributeKey<Boolean> IDLE =
+        AttributeKey.valueOf(NettyHttpClientChannelPool.class.getName() + ".idle");
+
+    private final ConcurrentMap<PoolKey, HostPool> pools = new ConcurrentHashMap<PoolKey, HostPool>();
+    private final int maxChannelsPerHost;
+    private final int idleTimeout;
+    private final int acquireTimeout;
+    private final AtomicLong lastEviction = new AtomicLong(System.currentTimeMillis());
+
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong acquiredCount = new AtomicLong();
+    private final AtomicLong releasedCount = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+
+    public NettyHttpClientChannelPool() {
+        this(DEFAULT_MAX_CHANNELS_PER_HOST, DEFAULT_IDLE_TIMEOUT);
+    }
+
+    public NettyHttpClientChannelPool(int maxChannelsPerHost, int idleTimeout) {
+        this(maxChannelsPerHost, idleTimeout, DEFAULT_ACQUIRE_TIMEOUT);
+    }
+
+    public NettyHttpClientChannelPool(int maxChannelsPerHost, int idleTimeout, int acquireTimeout) {
+        this.maxChannelsPerHost = maxChannelsPerHost > 0 ? maxChannelsPerHost : DEFAULT_MAX_CHANNELS_PER_HOST;
+        this.idleTimeout = idleTimeout;
+        this.acquireTimeout = acquireTimeout > 0 ? acquireTimeout : DEFAULT_ACQUIRE_TIMEOUT;
+    }
+
+    public int getMaxChannelsPerHost() {
+        return maxChannelsPerHost;
+    }
+
+    public int getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public int getAcquireTimeout() {
+        return acquireTimeout;
+    }
+
+    /**
+     * Acquires a connected channel to the host of the URI, either a pooled
+     * keep-alive one or a new connection if the host limit is not reached yet.
+     * The channel has to be handed back through {@link #release(Channel, boolean)}.
+     */
+    public Future<Channel> acquire(EventLoopGroup group, URI uri, TLSClientParameters tlsParameters) {
+        return acquire(group, uri, tlsParameters, maxChannelsPerHost, idleTimeout, acquireTimeout);
+    }
+
+    /**
+     * Acquires a channel as {@link #acquire(EventLoopGroup, URI, TLSClientParameters)} does,
+     * creating the pool of the host with the given limits if there is none yet. Values that
+     * are not positive fall back to the defaults of this pool.
+     */
+    public Future<Channel> acquire(EventLoopGroup group, URI uri, TLSClientParameters tlsParameters,
+                                   int maxChannels, int idle, int acquireWait) {
+        evictIdlePools();
+        PoolKey key = new PoolKey(uri, tlsParameters);
+        while (true) {
+            HostPool pool = pools.get(key);
+            if (pool == null) {
+                int hostIdleTimeout = idle > 0 ? idle : idleTimeout;
+                pool = new HostPool(createPool(group, key,
+                                               maxChannels > 0 ? maxChannels : maxChannelsPerHost,
+                                               hostIdleTimeout,
+                                               acquireWait > 0 ? acquireWait : acquireTimeout),
+                                    hostIdleTimeout);
+                HostPool old = pools.putIfAbsent(key, pool);
+                if (old != null) {
+                    pool.pool.closeAsync();
+                    pool = old;
+                }
+            }
+            synchronized (pool) {
+                // the pool may have been evicted in the meantime
+                if (!pool.closed) {
+                    pool.lastUsed = System.currentTimeMillis();
+                    return pool.pool.acquire();
+                }
+            }
+        }
+    }
+
+    /**
+     * Gives the channel back to its pool. Channels which cannot be reused, as the
+     * server or the exchange asked to close the connection, are closed first.
+     */
+    public Future<Void> release(Channel channel, boolean keepAlive) {
+        ChannelPool pool = channel.attr(POOL).get();
+        if (!keepAlive) {
+            channel.close();
+        }
+        if (pool == null) {
+            return channel.newSucceededFuture();
+        }
+        return pool.release(channel);
+    }
+
+    /**
+     * Closes all the pooled channels.
+     */
+    public void close() {
+        for (HostPool pool : pools.values()) {
+            synchronized (pool) {
+                pool.closed = true;
+                pool.pool.close();
+            }
+        }
+        pools.clear();
+    }
+
+    /**
+     * Returns the number of hosts with a pool.
+     */
+    public int getPoolCount() {
+        return pools.size();
+    }
+
+    /**
+     * Closes the pools which had no channel in use and were not asked for a channel for
+     * the idle timeout.
+     */
+    protected void evictIdlePools() {
+        long interval = idleTimeout > 0 ? idleTimeout : DEFAULT_IDLE_TIMEOUT;
+        long now = System.currentTimeMillis();
+        long last = lastEviction.get();
+        if (now - last < interval || !lastEviction.compareAndSet(last, now)) {
+            return;
+        }
+        for (Map.Entry<PoolKey, HostPool> entry : pools.entrySet()) {
+            HostPool pool = entry.getValue();
+            long timeout = pool.idleTimeout > 0 ? pool.idleTimeout : DEFAULT_IDLE_TIMEOUT;
+            synchronized (pool) {
+                if (now - pool.lastUsed >= timeout && pool.pool.acquiredChannelCount() == 0
+                    && pools.remove(entry.getKey(), pool)) {
+                    pool.closed = true;
+                    pool.pool.closeAsync();
+                }
+            }
+        }
+    }
+
+    public long getCreatedCount() {
+        return createdCount.get();
+    }
+
+    public long getAcquiredCount() {
+        return acquiredCount.get();
+    }
+
+    public long getReusedCount() {
+        return acquiredCount.get() - createdCount.get();
+    }
+
+    public long getReleasedCount() {
+        return releasedCount.get();
+    }
+
+    public long getIdleEvictionCount() {
+        return evictedCount.get();
+    }
+
+    /**
+     * Returns the number of channels currently used by an exchange.
+     */
+    public int getActiveCount() {
+        int count = 0;
+        for (HostPool pool : pools.values()) {
+            count += pool.pool.acquiredChannelCount();
+        }
+        return count;
+    }
+
+    protected FixedChannelPool createPool(EventLoopGroup group, final PoolKey key, int maxChannels,
+                                          final int hostIdleTimeout, int hostAcquireTimeout) {
+        Bootstrap bootstrap = new Bootstrap();
+        bootstrap.group(group);
+        bootstrap.channel(NioSocketChannel.class);
+        bootstrap.remoteAddress(new InetSocketAddress(key.host, key.port));
+
+        final FixedChannelPool[] self = new FixedChannelPool[1];
+        ChannelPoolHandler handler = new ChannelPoolHandler() {
+            @Override
+            public void channelCreated(Channel ch) throws Exception {
+                createdCount.incrementAndGet();
+                ch.attr(POOL).set(self[0]);
+                if (hostIdleTimeout > 0) {
+                    ch.pipeline().addLast("idle",
+                        new IdleStateHandler(0, 0, hostIdleTimeout, TimeUnit.MILLISECONDS));
+                    ch.pipeline().addLast("idleEviction", new IdleEvictionHandler());
+                }
+                TLSClientParameters tlsParameters = key.tlsParameters;
+                if ("https".equals(key.scheme) && tlsParameters == null) {
+                    tlsParameters = new TLSClientParameters();
+                }
+                new NettyHttpClientPipelineFactory(tlsParameters).initChannel(ch);
+            }
+
+            @Override
+            public void channelAcquired(Channel ch) throws Exception {
+                acquiredCount.incrementAndGet();
+                ch.attr(IDLE).set(Boolean.FALSE);
+            }
+
+            @Override
+            public void channelReleased(Channel ch) throws Exception {
+                releasedCount.incrementAndGet();
+                ch.attr(IDLE).set(Boolean.TRUE);
+            }
+        };
+        // a released channel is checked again on the next acquire, the last used one is handed out first
+        self[0] = new FixedChannelPool(bootstrap, handler, ChannelHealthChecker.ACTIVE, 
+                                       AcquireTimeoutAction.FAIL, hostAcquireTimeout,
+                                       maxChannels, Integer.MAX_VALUE, true, true);
+        return self[0];
+    }
+
+    /**
+     * Closes a channel that sat unused in the pool for the idle timeout. Channels which
+     * are waiting for a (slow) response are left alone.
+     */
+    class IdleEvictionHandler extends ChannelDuplexHandler {
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+            if (evt instanceof IdleStateEvent) {
+                if (Boolean.TRUE.equals(ctx.channel().attr(IDLE).get())) {
+                    evictedCount.incrementAndGet();
+                    ctx.close();
+                }
+            } else {
+                super.userEventTriggered(ctx, evt);
+            }
+        }
+    }
+
+    static final class HostPool {
+        final FixedChannelPool pool;
+        final int idleTimeout;
+        volatile long lastUsed = System.currentTimeMillis();
+        boolean closed;
+
+        HostPool(FixedChannelPool pool, int idleTimeout) {
+            this.pool = pool;
+            this.idleTimeout = idleTimeout;
+        }
+    }
+
+    static final class PoolKey {
+        final String scheme;
+        final String host;
+        final int port;
+        final TLSClientParameters tlsParameters;
+
+        PoolKey(URI uri, TLSClientParameters tlsParameters) {
+            this.scheme = uri.getScheme();
+            this.host = uri.getHost();
+            this.port = uri.getPort() != -1 ? uri.getPort() : "http".equals(scheme) ? 80 : 443;
+            this.tlsParameters = "https".equals(scheme) ? tlsParameters : null;
+        }
+
+        @Override
+        public int hashCode() {
+            return (scheme.hashCode() * 31 + host.hashCode()) * 31 + port
+                + System.identityHashCode(tlsParameters);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof PoolKey)) {
+                return false;
+            }
+            PoolKey other = (PoolKey)o;
+            // different TLS settings must not share connections
+            return port == other.port && scheme.equals(other.scheme) && host.equals(other.host)
+                && tlsParameters == other.tlsParameters;
+        }
+    }
+}
@@ -25,7 +25,6 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PushbackInputStream;
 import java.net.HttpURLConnection;
-import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
 import java.net.SocketTimeoutException;
 import java.net.URI;
@@ -68,7 +67,11 @@ import io.netty.channel.EventLoopGroup;
 import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.http.HttpContent;
 import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http2.Http2StreamChannel;
 import io.netty.handler.ssl.SslHandler;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
 
 
 public class NettyHttpConduit extends URLConnectionHTTPConduit implements BusLifeCycleListener {
@@ -204,6 +207,12 @@ public class NettyHttpConduit extends URLConnectionHTTPConduit implements BusLif
         volatile Channel channel;
         volatile SSLSession session;
         boolean isAsync;
+        boolean connected;
+        boolean released;
+        boolean abandoned;
+        boolean requestWritten;
+        boolean responseRead;
+        boolean keepAlive;
         ByteBuf outBuffer;
         OutputStream outputStream;
 
@@ -232,7 +241,8 @@ public class NettyHttpConduit extends URLConnectionHTTPConduit implements BusLif
                     }
                 }
                 if (httpResponse == null) {
-
+                    // the connection is in an unknown state, don't reuse it
+                    releaseChannel(false);
                     if (exception != null) {
                         if (exception instanceof IOException) {
                             throw (IOException)exception;
@@ -265,7 +275,8 @@ public class NettyHttpConduit extends URLConnectionHTTPConduit implements BusLif
                     }
                 }
                 if (channel == null) {
-
+                    // a channel acquired later on is handed back right away
+                    abandoned = true;
                     if (exception != null) {
                         if (exception instanceof IOException) {
                             throw (IOException)exception;
@@ -301,10 +312,12 @@ public class NettyHttpConduit extends URLConnectionHTTPConduit implements BusLif
                         public void operationComplete(ChannelFuture future) throws Exception {
                             if (!future.isSuccess()) {
                                 setException(future.cause());
+                            } else {
+                                requestWritten();
                             }
                         }
                     };
-                    ChannelFuture channelFuture = getChannel().write(entity);
+                    ChannelFuture channelFuture = getChannel().writeAndFlush(entity);
                     channelFuture.addListener(listener);
                     outputStream.close();
                 }
@@ -328,36 +341,54 @@ public class NettyHttpConduit extends URLConnectionHTTPConduit implements BusLif
             }
             return clientParameters;
         }
+        
+        protected TLSClientParameters findConfiguredTLSClientParameters() {
+            TLSClientParameters clientParameters = outMessage.get(TLSClientParameters.class);
+            if (clientParameters == null) {
+                clientParameters = getTlsClientParameters();
+            }
+            return clientParameters;
+        }
 
-        protected void connect(boolean output) {
-            if (url.getScheme().equals("https")) {
-                TLSClientParameters clientParameters = findTLSClientParameters();
-                bootstrap.handler(new NettyHttpClientPipelineFactory(clientParameters));
-            } else {
-                bootstrap.handler(new NettyHttpClientPipelineFactory(null));
+        protected boolean isHttp2() {
+            String version = csPolicy.getVersion();
+            if ("2".equals(version) || "2.0".equals(version)) {
+                return true;
             }
-            ChannelFuture connFuture = 
-                bootstrap.connect(new InetSocketAddress(url.getHost(), url.getPort() != -1 ? url.getPort()
-                                                            : "http".equals(url.getScheme()) ? 80 : 443));
+            // without prior knowledge we only use HTTP/2 if it is negotiated through ALPN
+            return "auto".equalsIgnoreCase(version) && "https".equals(url.getScheme());
+        }
 
-            // Setup the call back on the NettyHttpClientRequest
-            ChannelFutureListener listener = new ChannelFutureListener() {
-                
-                @Override
-                public void operationComplete(ChannelFuture future) throws Exception {
-                    if (future.isSuccess()) {
-                        setChannel(future.channel());
-                        SslHandler sslHandler = channel.pipeline().get(SslHandler.class);
-                        if (sslHandler != null) {
-                            session = sslHandler.engine().getSession();
+        protected void connect(boolean output) {
+            if (connected) {
+                // the trust decision already connected us
+                return;
+            }
+            connected = true;
+            final NettyHttp2ClientConnectionPool pool = factory.getHttp2ConnectionPool();
+            if (isHttp2() && !pool.isHttp1Only(url)) {
+                TLSClientParameters clientParameters = null;
+                if (url.getScheme().equals("https")) {
+                    clientParameters = findTLSClientParameters();
+                }
+                Future<Channel> streamFuture = pool.acquireStream(bootstrap.config().group(), url,
+                                                                  clientParameters, entity.getConnectionTimeout());
+                streamFuture.addListener(new FutureListener<Channel>() {
+                    @Override
+                    public void operationComplete(Future<Channel> future) throws Exception {
+                        if (!future.isSuccess()) {
+                            setException(future.cause());
+                        } else if (future.getNow() == null) {
+                            // the server does not speak HTTP/2
+                            connectHttp1();
+                        } else {
+                            channelConnected(future.getNow());
                         }
-                    } else {
-                        setException((Exception) future.cause());
                     }
-                }
-            };
-
-            connFuture.addListener(listener);
+                });
+            } else {
+                connectHttp1();
+            }
 
             if (!output) {
                 entity.getRequest().headers().remove("Transfer-Encoding");
@@ -370,18 +401,97 @@ public class NettyHttpConduit extends URLConnectionHTTPConduit implements BusLif
                 @Override
                 public void responseReceived(HttpResponse response) {
                     setHttpResponse(response);
+                    // the aggregator hands over the full response, it was read off the connection
+                    responseRead(HttpUtil.isKeepAlive(response));
                 }
             };
             entity.setCxfResponseCallback(callBack);
 
         }
 
+        protected void connectHttp1() {
+            NettyHttpClientChannelPool pool = factory.getChannelPool();
+            int maxChannels = csPolicy.getMaxConnectionsPerHost() > 0
+                ? csPolicy.getMaxConnectionsPerHost()
+                : getInt(NettyHttpClientChannelPool.MAX_CHANNELS_PER_HOST, pool.getMaxChannelsPerHost());
+            int idleTimeout = getInt(NettyHttpClientChannelPool.IDLE_TIMEOUT, pool.getIdleTimeout());
+            int acquireTimeout = getInt(NettyHttpClientChannelPool.ACQUIRE_TIMEOUT, pool.getAcquireTimeout());
+            Future<Channel> channelFuture = pool.acquire(bootstrap.config().group(), url,
+                findConfiguredTLSClientParameters(), maxChannels, idleTimeout, acquireTimeout);
+            channelFuture.addListener(new FutureListener<Channel>() {
+                @Override
+                public void operationComplete(Future<Channel> future) throws Exception {
+                    if (future.isSuccess()) {
+                        channelConnected(future.getNow());
+                    } else {
+                        setException(future.cause());
+                    }
+                }
+            });
+        }
+
+        private int getInt(String key, int defaultValue) {
+            Object o = outMessage.getContextualProperty(key);
+            if (o instanceof Number) {
+                return ((Number)o).intValue();
+            } else if (o instanceof String) {
+                try {
+                    return Integer.parseInt(((String)o).trim());
+                } catch (NumberFormatException ex) {
+                    // use the default value
+                }
+            }
+            return defaultValue;
+        }
+
+        protected synchronized void requestWritten() {
+            requestWritten = true;
+            if (responseRead) {
+                releaseChannel(keepAlive);
+            }
+        }
+
+        protected synchronized void responseRead(boolean reuse) {
+            responseRead = true;
+            keepAlive = reuse;
+            // a server may answer before it read the whole request, the connection is
+            // only free once our request was written as well
+            if (requestWritten) {
+                releaseChannel(keepAlive);
+            }
+        }
+
+        protected synchronized void releaseChannel(boolean reuse) {
+            if (channel == null || released) {
+                return;
+            }
+            released = true;
+            if (channel instanceof Http2StreamChannel) {
+                // free the stream on the shared connection
+                channel.close();
+            } else {
+                factory.getChannelPool().release(channel, reuse);
+            }
+        }
+
+        protected void channelConnected(Channel ch) {
+            setChannel(ch);
+            // HTTP/2 streams share the TLS session of their parent connection
+            Channel connection = ch.parent() != null ? ch.parent() : ch;
+            SslHandler sslHandler = connection.pipeline().get(SslHandler.class);
+            if (sslHandler != null) {
+                session = sslHandler.engine().getSession();
+            }
+        }
+
         @Override
         protected HttpsURLConnectionInfo getHttpsURLConnectionInfo() throws IOException {
             if ("http".equals(outMessage.get("http.scheme"))) {
                 return null;
             }
             connect(true);
+            // wait for the connection, we need its TLS session
+            getChannel();
            
             HostnameVerifier verifier = org.apache.cxf.transport.https.SSLUtils
                 .getHostnameVerifier(findTLSClientParameters());
@@ -476,13 +586,18 @@ public class NettyHttpConduit extends URLConnectionHTTPConduit implements BusLif
         }
 
         @Override
-        protected void handleResponseAsync() throws IOException {
-            isAsync = true;
+        protected synchronized void handleResponseAsync() throws IOException {
+            if (httpResponse != null || exception != null) {
+                // the response already arrived before we switched to async mode
+                handleResponseOnWorkqueue(false, true);
+            } else {
+                isAsync = true;
+            }
         }
 
         @Override
         protected void closeInputStream() throws IOException {
-            //We just clear the buffer
+            //We just clear the buffer, the channel goes back once the exchange completed
             getHttpResponseContent().content().clear();
         }
 
@@ -538,10 +653,12 @@ public class NettyHttpConduit extends URLConnectionHTTPConduit implements BusLif
             httpResponse = null;
             isAsync = false;
             exception = null;
-            if (channel != null) {
-                channel.close();
-                channel = null;
-            }
+            releaseChannel(false);
+            channel = null;
+            connected = false;
+            released = false;
+            requestWritten = false;
+            responseRead = false;
 
             try {
                 Address address;
@@ -601,6 +718,8 @@ public class NettyHttpConduit extends URLConnectionHTTPConduit implements BusLif
 
         protected synchronized void setException(Throwable ex) {
             exception = ex;
+            // the connection is in an unknown state, don't reuse it
+            releaseChannel(false);
             if (isAsync) {
                 //got a response, need to start the response processing now
                 try {
@@ -615,6 +734,10 @@ public class NettyHttpConduit extends URLConnectionHTTPConduit implements BusLif
 
         protected synchronized void setChannel(Channel ch) {
             channel = ch;
+            if (abandoned) {
+                // nobody waits for the channel any more, it was not used yet
+                releaseChannel(true);
+            }
             notifyAll();
         }
     }
@@ -66,15 +66,53 @@ public class NettyHttpConduitFactory implements HTTPConduitFactory {
     };
     
     UseAsyncPolicy policy;
+    NettyHttp2ClientConnectionPool http2ConnectionPool;
+    NettyHttpClientChannelPool channelPool;
     public NettyHttpConduitFactory() {
         io.netty.util.Version.identify();
         Object st = SystemPropertyAction.getPropertyOrNull(USE_POLICY);
         policy = UseAsyncPolicy.getPolicy(st);
+        int maxConnections = getIntProperty(NettyHttp2ClientConnectionPool.MAX_CONNECTIONS,
+            NettyHttp2ClientConnectionPool.DEFAULT_MAX_CONNECTIONS);
+        int windowSize = getIntProperty(NettyHttp2ClientConnectionPool.INITIAL_WINDOW_SIZE,
+            NettyHttp2ClientConnectionPool.DEFAULT_INITIAL_WINDOW_SIZE);
+        int maxContentLength = getIntProperty(NettyHttp2ClientConnectionPool.MAX_CONTENT_LENGTH,
+            NettyHttp2ClientConnectionPool.DEFAULT_MAX_CONTENT_LENGTH);
+        http2ConnectionPool = new NettyHttp2ClientConnectionPool(maxConnections, windowSize, maxContentLength);
+        http2ConnectionPool.setHttp1HostTimeout(getIntProperty(NettyHttp2ClientConnectionPool.HTTP1_HOST_TIMEOUT,
+            NettyHttp2ClientConnectionPool.DEFAULT_HTTP1_HOST_TIMEOUT));
+        int maxChannels = getIntProperty(NettyHttpClientChannelPool.MAX_CHANNELS_PER_HOST,
+            NettyHttpClientChannelPool.DEFAULT_MAX_CHANNELS_PER_HOST);
+        int idleTimeout = getIntProperty(NettyHttpClientChannelPool.IDLE_TIMEOUT,
+            NettyHttpClientChannelPool.DEFAULT_IDLE_TIMEOUT);
+        int acquireTimeout = getIntProperty(NettyHttpClientChannelPool.ACQUIRE_TIMEOUT,
+            NettyHttpClientChannelPool.DEFAULT_ACQUIRE_TIMEOUT);
+        channelPool = new NettyHttpClientChannelPool(maxChannels, idleTimeout, acquireTimeout);
     }
     
     public UseAsyncPolicy getUseAsyncPolicy() {
         return policy;
     }
+    
+    public NettyHttp2ClientConnectionPool getHttp2ConnectionPool() {
+        return http2ConnectionPool;
+    }
+    
+    public NettyHttpClientChannelPool getChannelPool() {
+        return channelPool;
+    }
+    
+    private static int getIntProperty(String name, int defaultValue) {
+        String value = SystemPropertyAction.getPropertyOrNull(name);
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException ex) {
+                // use the default value
+            }
+        }
+        return defaultValue;
+    }
 
     @Override
     public HTTPConduit createConduit(HTTPTransportFactory f, 
@@ -120,6 +158,8 @@ public class NettyHttpConduitFactory implements HTTPConduitFactory {
                 @Override
                 public void postShutdown() {
                     // shutdown the EventLoopGroup
+                    http2ConnectionPool.close();
+                    channelPool.close();
                     group.shutdownGracefully().syncUninterruptibly();
                 }
                 
@@ -0,0 +1,228 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.transport.http.netty.client;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ConnectTimeoutException;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
+import io.netty.util.concurrent.Future;
+
+public class NettyHttp2ClientConnectionPoolTest extends Assert {
+    private EventLoopGroup group;
+    private Channel server;
+
+    @Before
+    public void setUp() {
+        group = new NioEventLoopGroup(2);
+    }
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.close().syncUninterruptibly();
+        }
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    @Test
+    public void testStreamsShareConnection() throws Exception {
+        URI uri = startServer(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) throws Exception {
+                ch.pipeline().addLast(Http2FrameCodecBuilder.forServer().build());
+                ch.pipeline().addLast(new Http2MultiplexHandler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel stream) throws Exception {
+                        stream.pipeline().addLast(new Http2StreamFrameToHttpObjectCodec(true));
+                        stream.pipeline().addLast(new HttpObjectAggregator(65536));
+                        stream.pipeline().addLast(new EchoHandler());
+                    }
+                }));
+            }
+        });
+        NettyHttp2ClientConnectionPool pool = new NettyHttp2ClientConnectionPool(1, 65535, 4096);
+
+        Channel[] streams = new Channel[3];
+        for (int i = 0; i < streams.length; i++) {
+            Future<Channel> future = pool.acquireStream(group, uri, null);
+            assertTrue(future.await(5, TimeUnit.SECONDS));
+            assertTrue(future.isSuccess());
+            streams[i] = future.getNow();
+            assertNotNull(streams[i]);
+        }
+        assertSame(streams[0].parent(), streams[1].parent());
+        assertSame(streams[0].parent(), streams[2].parent());
+        assertEquals(4096, streams[0].pipeline().get(HttpObjectAggregator.class).maxContentLength());
+
+        final BlockingQueue<HttpResponse> responses = new LinkedBlockingQueue<HttpResponse>();
+        for (int i = 0; i < streams.length; i++) {
+            NettyHttpClientRequest request = new NettyHttpClientRequest(uri, "POST");
+            request.createRequest(Unpooled.copiedBuffer("hello" + i, StandardCharsets.UTF_8));
+            request.setCxfResponseCallback(new CxfResponseCallBack() {
+                public void responseReceived(HttpResponse response) {
+                    responses.add(response);
+                }
+            });
+            streams[i].writeAndFlush(request);
+        }
+        for (int i = 0; i < streams.length; i++) {
+            HttpResponse response = responses.poll(5, TimeUnit.SECONDS);
+            assertNotNull("Did not get a response", response);
+            assertEquals(200, response.status().code());
+            assertTrue(((FullHttpResponse)response).content().toString(StandardCharsets.UTF_8)
+                       .startsWith("hello"));
+        }
+        assertFalse(pool.isHttp1Only(uri));
+        pool.close();
+    }
+
+    @Test
+    public void testFallbackToHttp1() throws Exception {
+        URI uri = startServer(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) throws Exception {
+                ch.pipeline().addLast(new HttpServerCodec());
+                ch.pipeline().addLast(new HttpObjectAggregator(65536));
+                ch.pipeline().addLast(new EchoHandler());
+            }
+        });
+        NettyHttp2ClientConnectionPool pool = new NettyHttp2ClientConnectionPool();
+
+        Future<Channel> future = pool.acquireStream(group, uri, null);
+        assertTrue(future.await(5, TimeUnit.SECONDS));
+        assertTrue(future.isSuccess());
+        assertNull(future.getNow());
+        assertTrue(pool.isHttp1Only(uri));
+
+        // the host is remembered, no new connection attempt is made
+        future = pool.acquireStream(group, uri, null);
+        assertTrue(future.isDone());
+        assertNull(future.getNow());
+        pool.close();
+    }
+
+    @Test
+    public void testHttp1HostExpires() throws Exception {
+        URI uri = startServer(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) throws Exception {
+                ch.pipeline().addLast(new HttpServerCodec());
+                ch.pipeline().addLast(new HttpObjectAggregator(65536));
+                ch.pipeline().addLast(new EchoHandler());
+            }
+        });
+        NettyHttp2ClientConnectionPool pool = new NettyHttp2ClientConnectionPool();
+        pool.setHttp1HostTimeout(100);
+
+        Future<Channel> future = pool.acquireStream(group, uri, null);
+        assertTrue(future.await(5, TimeUnit.SECONDS));
+        assertNull(future.getNow());
+        assertTrue(pool.isHttp1Only(uri));
+        Thread.sleep(200);
+        // HTTP/2 is tried again, the server may have been upgraded
+        assertFalse(pool.isHttp1Only(uri));
+        pool.close();
+    }
+
+    @Test
+    public void testConnectionFailureIsNotRemembered() throws Exception {
+        URI uri = startServer(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) throws Exception {
+                // e.g. a server going down
+                ch.close();
+            }
+        });
+        NettyHttp2ClientConnectionPool pool = new NettyHttp2ClientConnectionPool();
+
+        Future<Channel> future = pool.acquireStream(group, uri, null);
+        assertTrue(future.await(5, TimeUnit.SECONDS));
+        assertFalse(future.isSuccess());
+        assertFalse(pool.isHttp1Only(uri));
+        pool.close();
+    }
+
+    @Test
+    public void testConnectTimeout() throws Exception {
+        URI uri = startServer(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) throws Exception {
+                // accepts the connection but never sends its SETTINGS
+            }
+        });
+        NettyHttp2ClientConnectionPool pool = new NettyHttp2ClientConnectionPool();
+
+        Future<Channel> future = pool.acquireStream(group, uri, null, 200);
+        assertTrue(future.await(5, TimeUnit.SECONDS));
+        assertFalse(future.isSuccess());
+        assertTrue(future.cause() instanceof ConnectTimeoutException);
+        assertFalse(pool.isHttp1Only(uri));
+        pool.close();
+    }
+
+    private URI startServer(ChannelHandler handler) throws Exception {
+        ServerBootstrap bootstrap = new ServerBootstrap();
+        bootstrap.group(group).channel(NioServerSocketChannel.class).childHandler(handler);
+        server = bootstrap.bind(new InetSocketAddress("localhost", 0)).sync().channel();
+        int port = ((InetSocketAddress)server.localAddress()).getPort();
+        return new URI("http://localhost:" + port + "/echo");
+    }
+
+    static class EchoHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) throws Exception {
+            FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                                                                    request.content().retain());
+            response.headers().set("Content-Length", response.content().readableBytes());
+            ctx.writeAndFlush(response);
+        }
+    }
+}
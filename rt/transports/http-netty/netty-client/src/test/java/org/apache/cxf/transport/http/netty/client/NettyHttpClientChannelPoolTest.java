@@ -0,0 +1,223 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.transport.http.netty.client;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.concurrent.Future;
+
+public class NettyHttpClientChannelPoolTest extends Assert {
+    private EventLoopGroup group;
+    private Channel server;
+    private URI uri;
+
+    @Before
+    public void setUp() throws Exception {
+        group = new NioEventLoopGroup(2);
+        ServerBootstrap bootstrap = new ServerBootstrap();
+        bootstrap.group(group).channel(NioServerSocketChannel.class).childHandler(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) throws Exception {
+                ch.pipeline().addLast(new HttpServerCodec());
+                ch.pipeline().addLast(new HttpObjectAggregator(65536));
+                ch.pipeline().addLast(new EchoHandler());
+            }
+        });
+        server = bootstrap.bind(new InetSocketAddress("localhost", 0)).sync().channel();
+        uri = new URI("http://localhost:" + ((InetSocketAddress)server.localAddress()).getPort() + "/echo");
+    }
+
+    @After
+    public void tearDown() {
+        server.close().syncUninterruptibly();
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    @Test
+    public void testKeepAliveChannelIsReused() throws Exception {
+        NettyHttpClientChannelPool pool = new NettyHttpClientChannelPool(2, 60000);
+
+        Channel first = acquire(pool);
+        assertEquals("hello", send(first, "hello"));
+        assertTrue(pool.release(first, true).await(5, TimeUnit.SECONDS));
+
+        Channel second = acquire(pool);
+        assertSame(first, second);
+        assertEquals("again", send(second, "again"));
+        assertEquals(1, pool.getActiveCount());
+        assertTrue(pool.release(second, true).await(5, TimeUnit.SECONDS));
+
+        assertEquals(1, pool.getCreatedCount());
+        assertEquals(2, pool.getAcquiredCount());
+        assertEquals(1, pool.getReusedCount());
+        assertEquals(0, pool.getActiveCount());
+        pool.close();
+    }
+
+    @Test
+    public void testClosedChannelIsReplaced() throws Exception {
+        NettyHttpClientChannelPool pool = new NettyHttpClientChannelPool(1, 60000);
+
+        Channel first = acquire(pool);
+        assertEquals("hello", send(first, "hello"));
+        // e.g. the server answered with Connection: close
+        pool.release(first, false);
+
+        Channel second = acquire(pool);
+        assertNotSame(first, second);
+        assertEquals("again", send(second, "again"));
+        pool.release(second, true);
+        assertEquals(2, pool.getCreatedCount());
+        pool.close();
+    }
+
+    @Test
+    public void testIdleChannelIsEvicted() throws Exception {
+        NettyHttpClientChannelPool pool = new NettyHttpClientChannelPool(2, 100);
+
+        Channel channel = acquire(pool);
+        assertEquals("hello", send(channel, "hello"));
+        pool.release(channel, true);
+
+        assertTrue(channel.closeFuture().await(5, TimeUnit.SECONDS));
+        assertEquals(1, pool.getIdleEvictionCount());
+
+        Channel next = acquire(pool);
+        assertNotSame(channel, next);
+        pool.release(next, true);
+        pool.close();
+    }
+
+    @Test
+    public void testAcquireTimesOut() throws Exception {
+        NettyHttpClientChannelPool pool = new NettyHttpClientChannelPool(1, 60000, 200);
+
+        Channel channel = acquire(pool);
+        // the only channel of the host is in use, e.g. by an exchange waiting for a hung server
+        Future<Channel> future = pool.acquire(group, uri, null);
+        assertTrue(future.await(5, TimeUnit.SECONDS));
+        assertFalse(future.isSuccess());
+        assertTrue(future.cause() instanceof TimeoutException);
+
+        pool.release(channel, true);
+        Channel next = acquire(pool);
+        assertSame(channel, next);
+        pool.release(next, true);
+        pool.close();
+    }
+
+    @Test
+    public void testConduitLimitsOverrideTheDefaults() throws Exception {
+        NettyHttpClientChannelPool pool = new NettyHttpClientChannelPool(20, 60000, 30000);
+
+        Future<Channel> first = pool.acquire(group, uri, null, 1, 60000, 200);
+        assertTrue(first.await(5, TimeUnit.SECONDS));
+        assertTrue(first.isSuccess());
+        // the pool of the host was created with a single channel and a short acquire timeout
+        Future<Channel> second = pool.acquire(group, uri, null);
+        assertTrue(second.await(5, TimeUnit.SECONDS));
+        assertFalse(second.isSuccess());
+        assertTrue(second.cause() instanceof TimeoutException);
+
+        pool.release(first.getNow(), true);
+        pool.close();
+    }
+
+    @Test
+    public void testIdlePoolIsEvicted() throws Exception {
+        NettyHttpClientChannelPool pool = new NettyHttpClientChannelPool(2, 100);
+
+        Channel channel = acquire(pool);
+        pool.release(channel, true);
+        assertEquals(1, pool.getPoolCount());
+
+        Thread.sleep(300);
+        // another host key, the first pool was not used for the idle timeout
+        URI other = new URI("http://127.0.0.1:" + uri.getPort() + "/echo");
+        Future<Channel> future = pool.acquire(group, other, null);
+        assertTrue(future.await(5, TimeUnit.SECONDS));
+        assertTrue(future.isSuccess());
+        assertEquals(1, pool.getPoolCount());
+        assertTrue(channel.closeFuture().await(5, TimeUnit.SECONDS));
+        pool.release(future.getNow(), true);
+        pool.close();
+    }
+
+    private Channel acquire(NettyHttpClientChannelPool pool) throws Exception {
+        Future<Channel> future = pool.acquire(group, uri, null);
+        assertTrue(future.await(5, TimeUnit.SECONDS));
+        assertTrue(future.isSuccess());
+        return future.getNow();
+    }
+
+    private String send(Channel channel, String body) throws Exception {
+        final BlockingQueue<HttpResponse> responses = new LinkedBlockingQueue<HttpResponse>();
+        NettyHttpClientRequest request = new NettyHttpClientRequest(uri, "POST");
+        request.createRequest(Unpooled.copiedBuffer(body, StandardCharsets.UTF_8));
+        request.getRequest().headers().set("Content-Length", body.length());
+        request.setCxfResponseCallback(new CxfResponseCallBack() {
+            public void responseReceived(HttpResponse response) {
+                responses.add(response);
+            }
+        });
+        channel.writeAndFlush(request);
+        HttpResponse response = responses.poll(5, TimeUnit.SECONDS);
+        assertNotNull("Did not get a response", response);
+        return ((FullHttpResponse)response).content().toString(StandardCharsets.UTF_8);
+    }
+
+    static class EchoHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) throws Exception {
+            FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                                                                    request.content().retain());
+            response.headers().set("Content-Length", response.content().readableBytes());
+            ctx.writeAndFlush(response);
+        }
+    }
+}
@@ -25,8 +25,12 @@ import javax.xml.ws.Endpoint;
 import javax.xml.ws.Response;
 import org.apache.cxf.Bus;
 import org.apache.cxf.BusFactory;
+import org.apache.cxf.frontend.ClientProxy;
 import org.apache.cxf.jaxws.JaxWsProxyFactoryBean;
 import org.apache.cxf.testutil.common.AbstractBusClientServerTestBase;
+import org.apache.cxf.transport.http.HTTPConduit;
+import org.apache.cxf.transport.http.netty.client.NettyHttpClientChannelPool;
+import org.apache.cxf.transport.http.netty.client.NettyHttpConduit;
 import org.apache.hello_world_soap_http.Greeter;
 import org.apache.hello_world_soap_http.SOAPService;
 import org.apache.hello_world_soap_http.types.GreetMeLaterResponse;
@@ -103,6 +107,41 @@ public class NettyClientTest extends AbstractBusClientServerTestBase {
         assertEquals("Get a wrong response", "Hello test", response);
     }
 
+    @Test
+    public void testInvocationWithHttp2Fallback() throws Exception {
+        String address =  "netty://http://localhost:" + PORT + "/SoapContext/SoapPort";
+        JaxWsProxyFactoryBean factory = new JaxWsProxyFactoryBean();
+        factory.setServiceClass(Greeter.class);
+        factory.setAddress(address);
+        Greeter greeter = factory.create(Greeter.class);
+        HTTPConduit conduit = (HTTPConduit)ClientProxy.getClient(greeter).getConduit();
+        // the jetty server only speaks HTTP/1.1, so the h2c attempt has to fall back
+        conduit.getClient().setVersion("2");
+        ClientProxy.getClient(greeter).getRequestContext().put(NettyHttpConduit.USE_ASYNC, Boolean.TRUE);
+        assertEquals("Get a wrong response", "Hello test", greeter.greetMe("test"));
+        assertEquals("Get a wrong response", "Hello again", greeter.greetMe("again"));
+    }
+
+    @Test
+    public void testKeepAliveConnectionReuse() throws Exception {
+        String address =  "netty://http://localhost:" + PORT + "/SoapContext/SoapPort";
+        JaxWsProxyFactoryBean factory = new JaxWsProxyFactoryBean();
+        factory.setServiceClass(Greeter.class);
+        factory.setAddress(address);
+        Greeter greeter = factory.create(Greeter.class);
+        ClientProxy.getClient(greeter).getRequestContext().put(NettyHttpConduit.USE_ASYNC, Boolean.TRUE);
+        NettyHttpClientChannelPool pool = ((NettyHttpConduit)ClientProxy.getClient(greeter).getConduit())
+            .getNettyHttpConduitFactory().getChannelPool();
+
+        assertEquals("Get a wrong response", "Hello first", greeter.greetMe("first"));
+        long created = pool.getCreatedCount();
+        for (int i = 0; i < 5; i++) {
+            assertEquals("Get a wrong response", "Hello test" + i, greeter.greetMe("test" + i));
+        }
+        // the keep-alive connection of the first call serves the next ones
+        assertEquals(created, pool.getCreatedCount());
+    }
+
     @Test
     public void testCallAsync() throws Exception {
         updateAddressPort(g, PORT);
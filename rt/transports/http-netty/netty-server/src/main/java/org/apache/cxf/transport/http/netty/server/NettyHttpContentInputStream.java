@@ -0,0 +1,173 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.transport.http.netty.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.LastHttpContent;
+
+/**
+ * Streams the body of a request to the thread processing it, as the Netty
+ * <code>HttpContent</code> chunks arrive on the event loop, instead of
+ * aggregating the whole request in memory first.
+ * <p>
+ * Reading from the connection is paused once more than
+ * <code>maxBufferedBytes</code> were received but not consumed yet, and is
+ * resumed when the reader has drained half of them.
+ */
+public class NettyHttpContentInputStream extends InputStream {
+    private final Channel channel;
+    private final int maxBufferedBytes;
+    private final Deque<ByteBuf> buffers = new ArrayDeque<ByteBuf>();
+    private int bufferedBytes;
+    private boolean complete;
+    private boolean closed;
+    private boolean suspended;
+    private Throwable failure;
+
+    public NettyHttpContentInputStream(Channel channel, int maxBufferedBytes) {
+        this.channel = channel;
+        this.maxBufferedBytes = maxBufferedBytes;
+    }
+
+    /**
+     * Hands a chunk of the request body over to the reader, called on the event loop.
+     * The stream takes over the ownership of the content.
+     */
+    public synchronized void offer(HttpContent content) {
+        ByteBuf buf = content.content();
+        if (closed || failure != null || !buf.isReadable()) {
+            buf.release();
+        } else {
+            buffers.add(buf);
+            bufferedBytes += buf.readableBytes();
+        }
+        if (content instanceof LastHttpContent) {
+            complete = true;
+        } else if (bufferedBytes > maxBufferedBytes && !suspended) {
+            suspended = true;
+            channel.config().setAutoRead(false);
+        }
+        notifyAll();
+    }
+
+    /**
+     * Aborts the reading, e.g. as the connection was closed before the request was complete.
+     */
+    public synchronized void fail(Throwable cause) {
+        if (!complete) {
+            failure = cause;
+        }
+        releaseBuffers();
+        notifyAll();
+    }
+
+    public synchronized boolean isComplete() {
+        return complete;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int n = read(b, 0, 1);
+        return n == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public synchronized int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        ByteBuf buf = awaitContent();
+        if (buf == null) {
+            return -1;
+        }
+        int n = Math.min(len, buf.readableBytes());
+        buf.readBytes(b, off, n);
+        if (!buf.isReadable()) {
+            buffers.poll().release();
+        }
+        bufferedBytes -= n;
+        // once the request is complete the channel stays paused until the response was sent
+        if (suspended && !complete && bufferedBytes <= maxBufferedBytes / 2) {
+            resume();
+        }
+        return n;
+    }
+
+    @Override
+    public synchronized int available() throws IOException {
+        return bufferedBytes;
+    }
+
+    /**
+     * Discards the unread content, the rest of the request body is dropped as it arrives.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            releaseBuffers();
+            if (suspended && !complete) {
+                resume();
+            }
+            notifyAll();
+        }
+    }
+
+    private ByteBuf awaitContent() throws IOException {
+        while (buffers.isEmpty()) {
+            if (failure != null) {
+                throw new IOException("The request content could not be read", failure);
+            }
+            if (complete || closed) {
+                return null;
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+        return buffers.peek();
+    }
+
+    private void resume() {
+        suspended = false;
+        channel.config().setAutoRead(true);
+    }
+
+    private void releaseBuffers() {
+        ByteBuf buf = buffers.poll();
+        while (buf != null) {
+            buf.release();
+            buf = buffers.poll();
+        }
+        bufferedBytes = 0;
+    }
+}
@@ -26,6 +26,7 @@ import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.PostConstruct;
 
@@ -35,6 +36,8 @@ import org.apache.cxf.configuration.jsse.TLSServerParameters;
 import org.apache.cxf.interceptor.Fault;
 import org.apache.cxf.transport.HttpUriMapper;
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
@@ -87,11 +90,22 @@ public class NettyHttpServerEngine implements ServerEngine {
     
     private int maxChunkContentSize = 1048576; 
     
+    private int maxRequestBodySize = NettyHttpServletPipelineFactory.DEFAULT_MAX_REQUEST_BODY_SIZE;
+    
     private boolean sessionSupport;
     
-    // TODO need to setup configuration about them
-    private EventLoopGroup bossGroup = new NioEventLoopGroup();
-    private EventLoopGroup workerGroup = new NioEventLoopGroup();
+    private boolean nativeTransport;
+
+    private boolean reusePort;
+
+    private boolean directBuffers = true;
+
+    private boolean nativeTransportActive;
+
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
+
+    private List<Channel> reusePortChannels = new CopyOnWriteArrayList<Channel>();
     
     public NettyHttpServerEngine() {
         
@@ -147,16 +161,39 @@ public class NettyHttpServerEngine implements ServerEngine {
     protected Channel startServer() {
           
         final ServerBootstrap bootstrap = new ServerBootstrap();
+        boolean useNative = (nativeTransport || reusePort) && isNativeTransportAvailable();
+        int acceptors = Math.max(threadingParameters.getAcceptorThreads(), 1);
+        if (!(useNative && reusePort) && acceptors > 1) {
+            // a single listening socket is only ever served by one boss thread
+            LOG.log(Level.INFO, "ACCEPTOR_THREADS_IGNORED_MSG", new Object[] {port, acceptors});
+            acceptors = 1;
+        }
+        nativeTransportActive = useNative;
+        if (useNative) {
+            bossGroup = NettyNativeTransport.newEventLoopGroup(acceptors);
+            workerGroup = NettyNativeTransport.newEventLoopGroup(threadingParameters.getWorkerThreads());
+            NettyNativeTransport.configure(bootstrap, reusePort);
+        } else {
+            if (nativeTransport || reusePort) {
+                LOG.log(Level.WARNING, "NATIVE_TRANSPORT_NOT_AVAILABLE_MSG", port);
+            }
+            bossGroup = new NioEventLoopGroup(acceptors);
+            workerGroup = new NioEventLoopGroup(threadingParameters.getWorkerThreads());
+            bootstrap.channel(NioServerSocketChannel.class);
+        }
+        ByteBufAllocator allocator = directBuffers 
+            ? PooledByteBufAllocator.DEFAULT : new PooledByteBufAllocator(false);
         bootstrap.group(bossGroup, workerGroup)
-            .channel(NioServerSocketChannel.class)
-            .option(ChannelOption.SO_REUSEADDR, true);
+            .option(ChannelOption.SO_REUSEADDR, true)
+            .option(ChannelOption.ALLOCATOR, allocator)
+            .childOption(ChannelOption.ALLOCATOR, allocator);
 
         // Set up the event pipeline factory.
         servletPipeline = 
             new NettyHttpServletPipelineFactory(
                  tlsServerParameters, sessionSupport, 
                  threadingParameters.getThreadPoolSize(),
-                 maxChunkContentSize,
+                 maxChunkContentSize, maxRequestBodySize,
                  handlerMap, this);
         // Start the servletPipeline's timer
         servletPipeline.start();
@@ -169,7 +206,14 @@ public class NettyHttpServerEngine implements ServerEngine {
         }
         // Bind and start to accept incoming connections.
         try {
-            return bootstrap.bind(address).sync().channel();
+            Channel channel = bootstrap.bind(address).sync().channel();
+            if (useNative && reusePort) {
+                // one more listening socket per acceptor, the kernel balances the connections
+                for (int i = 1; i < acceptors; i++) {
+                    reusePortChannels.add(bootstrap.bind(address).sync().channel());
+                }
+            }
+            return channel;
         } catch (InterruptedException ex) {
             // do nothing here
             return null;
@@ -247,9 +291,16 @@ public class NettyHttpServerEngine implements ServerEngine {
         if (serverChannel != null) {
             serverChannel.close();
         }
+        for (Channel channel : reusePortChannels) {
+            channel.close();
+        }
+        reusePortChannels.clear();
         
-        bossGroup.shutdownGracefully();
-        workerGroup.shutdownGracefully();
+        if (bossGroup != null) {
+            bossGroup.shutdownGracefully();
+            workerGroup.shutdownGracefully();
+        }
+        nativeTransportActive = false;
        
     }
 
@@ -285,6 +336,66 @@ public class NettyHttpServerEngine implements ServerEngine {
         this.maxChunkContentSize = maxChunkContentSize;
     }
     
+    public int getMaxRequestBodySize() {
+        return maxRequestBodySize;
+    }
+
+    /**
+     * Sets the largest request body accepted, larger ones are refused with a
+     * 413 response. A negative value accepts bodies of any size.
+     */
+    public void setMaxRequestBodySize(int maxRequestBodySize) {
+        this.maxRequestBodySize = maxRequestBodySize;
+    }
+    
+    public boolean isNativeTransport() {
+        return nativeTransport;
+    }
+
+    /**
+     * Uses the Linux native epoll transport instead of the NIO selector,
+     * if it is available on the platform.
+     */
+    public void setNativeTransport(boolean nativeTransport) {
+        this.nativeTransport = nativeTransport;
+    }
+
+    public boolean isReusePort() {
+        return reusePort;
+    }
+
+    /**
+     * Binds a listening socket with SO_REUSEPORT for each acceptor thread.
+     * Requires the native transport.
+     */
+    public void setReusePort(boolean reusePort) {
+        this.reusePort = reusePort;
+    }
+
+    public boolean isDirectBuffers() {
+        return directBuffers;
+    }
+
+    public void setDirectBuffers(boolean directBuffers) {
+        this.directBuffers = directBuffers;
+    }
+
+    /**
+     * Returns true if the native transport is in use.
+     */
+    public boolean isNativeTransportActive() {
+        return nativeTransportActive;
+    }
+
+    private static boolean isNativeTransportAvailable() {
+        try {
+            return NettyNativeTransport.isAvailable();
+        } catch (LinkageError e) {
+            // the optional netty-transport-native-epoll is not there
+            return false;
+        }
+    }
+
     public int getPort() {
         return port;
     }
@@ -19,8 +19,13 @@
 
 package org.apache.cxf.transport.http.netty.server;
 
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -29,6 +34,8 @@ import org.apache.cxf.common.logging.LogUtils;
 import org.apache.cxf.interceptor.Fault;
 import org.apache.cxf.transport.http.netty.server.interceptor.NettyInterceptor;
 import org.apache.cxf.transport.http.netty.server.servlet.NettyHttpServletRequest;
+import org.apache.cxf.transport.http.netty.server.servlet.NettyServletInputStream;
+import org.apache.cxf.transport.http.netty.server.servlet.NettyServletOutputStream;
 import org.apache.cxf.transport.http.netty.server.servlet.NettyServletResponse;
 
 import io.netty.buffer.ByteBuf;
@@ -43,14 +50,17 @@ import io.netty.handler.codec.TooLongFrameException;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
 import io.netty.handler.codec.http.DefaultHttpResponse;
 import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
 import io.netty.handler.codec.http.HttpHeaders;
 import io.netty.handler.codec.http.HttpHeaders.Names;
 import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpResponse;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
 import io.netty.handler.timeout.IdleState;
 import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
 
 public class NettyHttpServletHandler extends ChannelInboundHandlerAdapter {
     private static final Logger LOG =
@@ -62,6 +72,21 @@ public class NettyHttpServletHandler extends ChannelInboundHandlerAdapter {
 
     private List<NettyInterceptor> interceptors;
 
+    // the exchange in progress on the channel, only accessed on the event loop
+    private NettyHttpContentInputStream requestContent;
+
+    private boolean responseComplete;
+
+    // set by whichever side starts the response: the exchange or the refusal of a too large request
+    private AtomicBoolean responseStarted;
+
+    private long requestBodySize;
+
+    // the request was refused, everything is dropped until the connection is closed
+    private boolean discardingRequest;
+
+    private final Queue<Object> pendingMessages = new ArrayDeque<Object>();
+
     public NettyHttpServletHandler(NettyHttpServletPipelineFactory pipelineFactory) {
         this.allChannels = pipelineFactory.getAllChannels();
         this.pipelineFactory = pipelineFactory;
@@ -99,62 +124,203 @@ public class NettyHttpServletHandler extends ChannelInboundHandlerAdapter {
     
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
-        HttpRequest request = (HttpRequest) msg;
-        if (HttpHeaders.is100ContinueExpected(request)) {
-            ctx.write(new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.CONTINUE));
+        if (discardingRequest) {
+            ReferenceCountUtil.release(msg);
+            return;
         }
-
-        // find the nettyHttpContextHandler by lookup the request url
-        NettyHttpContextHandler nettyHttpContextHandler = pipelineFactory.getNettyHttpHandler(request.getUri());
-        if (nettyHttpContextHandler != null) {
-            handleHttpServletRequest(ctx, request, nettyHttpContextHandler);
-        } else {
-            throw new RuntimeException(
-                    new Fault(new Message("NO_NETTY_SERVLET_HANDLER_FOUND", LOG , request.getUri())));
+        if (requestContent != null && requestContent.isComplete()) {
+            // a pipelined request, it is processed once the current response was sent
+            pendingMessages.add(msg);
+            return;
+        }
+        if (msg instanceof HttpRequest && !startExchange(ctx, (HttpRequest) msg)) {
+            ReferenceCountUtil.release(msg);
+            return;
+        }
+        if (msg instanceof HttpContent && requestContent != null) {
+            requestBodySize += ((HttpContent) msg).content().readableBytes();
+            int maxRequestBodySize = pipelineFactory.getMaxRequestBodySize();
+            if (maxRequestBodySize >= 0 && requestBodySize > maxRequestBodySize) {
+                ReferenceCountUtil.release(msg);
+                refuseRequest(ctx);
+                return;
+            }
+            requestContent.offer((HttpContent) msg);
+            if (msg instanceof LastHttpContent) {
+                if (responseComplete) {
+                    completeExchange(ctx);
+                } else {
+                    // keep the next request on the connection until the response was written
+                    ctx.channel().config().setAutoRead(false);
+                }
+            }
+        } else if (!(msg instanceof HttpRequest)) {
+            ReferenceCountUtil.release(msg);
         }
     }
 
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        if (requestContent != null) {
+            requestContent.fail(new ClosedChannelException());
+        }
+        Object msg = pendingMessages.poll();
+        while (msg != null) {
+            ReferenceCountUtil.release(msg);
+            msg = pendingMessages.poll();
+        }
+        super.channelInactive(ctx);
+    }
     
     @Override
     public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
         ctx.flush();
     }
-   
-    protected void handleHttpServletRequest(ChannelHandlerContext ctx,
-                                            HttpRequest request, NettyHttpContextHandler nettyHttpContextHandler)
-        throws Exception {
 
-        interceptOnRequestReceived(ctx, request);
-        
-        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+    /**
+     * Starts processing the request, returns false if it was refused right away.
+     */
+    private boolean startExchange(final ChannelHandlerContext ctx, final HttpRequest request) {
+        int maxRequestBodySize = pipelineFactory.getMaxRequestBodySize();
+        if (maxRequestBodySize >= 0 && HttpHeaders.getContentLength(request, -1) > maxRequestBodySize) {
+            // refused before the body is sent or read
+            requestContent = null;
+            responseStarted = null;
+            refuseRequest(ctx);
+            return false;
+        }
+        if (HttpHeaders.is100ContinueExpected(request)) {
+            ctx.writeAndFlush(new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.CONTINUE));
+        }
 
-        NettyServletResponse nettyServletResponse = buildHttpServletResponse(response);
-        NettyHttpServletRequest nettyServletRequest = 
-            buildHttpServletRequest(request, nettyHttpContextHandler.getContextPath(), ctx);
+        // find the nettyHttpContextHandler by lookup the request url
+        final NettyHttpContextHandler nettyHttpContextHandler =
+            pipelineFactory.getNettyHttpHandler(request.getUri());
+        if (nettyHttpContextHandler == null) {
+            throw new RuntimeException(
+                    new Fault(new Message("NO_NETTY_SERVLET_HANDLER_FOUND", LOG , request.getUri())));
+        }
+        final NettyHttpContentInputStream content =
+            new NettyHttpContentInputStream(ctx.channel(), pipelineFactory.getMaxChunkContentSize());
+        final AtomicBoolean started = new AtomicBoolean();
+        requestContent = content;
+        responseStarted = started;
+        responseComplete = false;
+        requestBodySize = 0;
+        // the request is processed while its content is still arriving on the event loop
+        pipelineFactory.getApplicationExecutor().execute(new Runnable() {
+            public void run() {
+                try {
+                    handleHttpServletRequest(ctx, request, content, started, nettyHttpContextHandler);
+                } catch (Throwable t) {
+                    interceptOnRequestFailed(ctx, t);
+                    if (started.compareAndSet(false, true)) {
+                        ctx.pipeline().fireExceptionCaught(t);
+                    } else {
+                        // the request was refused and answered already
+                        ctx.close();
+                    }
+                }
+            }
+        });
+        return true;
+    }
 
-        nettyHttpContextHandler.handle(nettyServletRequest.getRequestURI(), nettyServletRequest, nettyServletResponse);
-        interceptOnRequestSuccessed(ctx, response);
+    /**
+     * Answers a request whose body is too large with a 413 and closes the connection,
+     * unless the response to it was started already.
+     */
+    private void refuseRequest(ChannelHandlerContext ctx) {
+        discardingRequest = true;
+        String reason = "The request body is larger than "
+            + pipelineFactory.getMaxRequestBodySize() + " bytes";
+        LOG.log(Level.FINE, reason);
+        if (requestContent != null) {
+            requestContent.fail(new IOException(reason));
+        }
+        if (responseStarted == null || responseStarted.compareAndSet(false, true)) {
+            sendError(ctx, HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE);
+        } else {
+            ctx.close();
+        }
+    }
 
-        nettyServletResponse.getWriter().flush();
+    private void completeExchange(ChannelHandlerContext ctx) throws Exception {
+        requestContent = null;
+        while (!pendingMessages.isEmpty() && (requestContent == null || !requestContent.isComplete())) {
+            channelRead(ctx, pendingMessages.poll());
+        }
+        if (requestContent == null || !requestContent.isComplete()) {
+            ctx.channel().config().setAutoRead(true);
+        }
+    }
 
-        boolean keepAlive = HttpHeaders.isKeepAlive(request);
+    private void responseCompleted(ChannelHandlerContext ctx, boolean keepAlive) throws Exception {
+        if (!keepAlive) {
+            ctx.close();
+        } else if (requestContent.isComplete()) {
+            completeExchange(ctx);
+        } else {
+            // the rest of the request content is dropped as it arrives
+            responseComplete = true;
+        }
+    }
+   
+    protected void handleHttpServletRequest(final ChannelHandlerContext ctx, HttpRequest request,
+                                            NettyHttpContentInputStream content,
+                                            final AtomicBoolean started,
+                                            NettyHttpContextHandler nettyHttpContextHandler)
+        throws Exception {
 
+        interceptOnRequestReceived(ctx, request);
+        
+        final HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        final boolean keepAlive = HttpHeaders.isKeepAlive(request);
         if (keepAlive) {
-            // Add 'Content-Length' header only for a keep-alive connection.
-            response.headers().set(Names.CONTENT_LENGTH, response.content().readableBytes());
             // Add keep alive header as per:
             // -
             // http://www.w3.org/Protocols/HTTP/1.1/draft-ietf-http-v11-spec-01.html#Connection
             response.headers().set(Names.CONNECTION, HttpHeaders.Values.KEEP_ALIVE);
         }
+        NettyServletOutputStream outputStream = new NettyServletOutputStream(ctx, response, keepAlive) {
+            @Override
+            protected void beforeCommit() {
+                if (!started.compareAndSet(false, true)) {
+                    throw new IllegalStateException("The request was refused");
+                }
+                // the last chance to amend the headers
+                interceptOnRequestSuccessed(ctx, response);
+            }
+        };
 
-        // write response...
-        ChannelFuture future = ctx.write(response);
-
-        if (!keepAlive) {
-            future.addListener(ChannelFutureListener.CLOSE);
+        NettyServletResponse nettyServletResponse = buildHttpServletResponse(response, outputStream);
+        NettyHttpServletRequest nettyServletRequest = 
+            buildHttpServletRequest(request, nettyHttpContextHandler.getContextPath(), ctx,
+                                    new NettyServletInputStream(content));
+
+        try {
+            nettyHttpContextHandler.handle(nettyServletRequest.getRequestURI(), 
+                                           nettyServletRequest, nettyServletResponse);
+            nettyServletResponse.getWriter().flush();
+        } catch (Exception ex) {
+            outputStream.discard();
+            if (outputStream.isCommitted()) {
+                // too late to send an error response
+                interceptOnRequestFailed(ctx, ex);
+                ctx.close();
+                return;
+            }
+            throw ex;
+        } finally {
+            content.close();
         }
 
+        // write the rest of the response...
+        outputStream.finish().addListener(new ChannelFutureListener() {
+            public void operationComplete(ChannelFuture future) throws Exception {
+                responseCompleted(ctx, keepAlive && future.isSuccess());
+            }
+        });
     }
 
 
@@ -191,8 +357,9 @@ public class NettyHttpServletHandler extends ChannelInboundHandlerAdapter {
                                                                 status,
                                                                 content);
         response.headers().set(Names.CONTENT_TYPE, "text/plain; charset=UTF-8");
+        HttpHeaders.setContentLength(response, content.readableBytes());
         
-        ctx.write(response).addListener(ChannelFutureListener.CLOSE);
+        ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
     }
 
     private void interceptOnRequestReceived(ChannelHandlerContext ctx, HttpRequest request) {
@@ -226,14 +393,14 @@ public class NettyHttpServletHandler extends ChannelInboundHandlerAdapter {
     }
 
     protected NettyServletResponse buildHttpServletResponse(
-            HttpResponse response) {
-        // need to access the 
-        return new NettyServletResponse(response);
+            HttpResponse response, NettyServletOutputStream outputStream) {
+        return new NettyServletResponse(response, outputStream);
     }
 
     protected NettyHttpServletRequest buildHttpServletRequest(
-            HttpRequest request, String contextPath, ChannelHandlerContext ctx) {
-        return new NettyHttpServletRequest(request, contextPath, ctx);
+            HttpRequest request, String contextPath, ChannelHandlerContext ctx,
+            NettyServletInputStream inputStream) {
+        return new NettyHttpServletRequest(request, contextPath, ctx, inputStream);
     }
     
 }
@@ -39,7 +39,6 @@ import io.netty.channel.ChannelPipeline;
 import io.netty.channel.group.ChannelGroup;
 import io.netty.channel.group.DefaultChannelGroup;
 import io.netty.handler.codec.http.HttpContentCompressor;
-import io.netty.handler.codec.http.HttpObjectAggregator;
 import io.netty.handler.codec.http.HttpRequestDecoder;
 import io.netty.handler.codec.http.HttpResponseEncoder;
 import io.netty.handler.ssl.SslHandler;
@@ -49,6 +48,8 @@ import io.netty.util.concurrent.EventExecutorGroup;
 import io.netty.util.concurrent.ImmediateEventExecutor;
 
 public class NettyHttpServletPipelineFactory extends ChannelInitializer<Channel> {
+    public static final int DEFAULT_MAX_REQUEST_BODY_SIZE = 64 * 1024 * 1024;
+
     private static final Logger LOG =
         LogUtils.getL7dLogger(NettyHttpServletPipelineFactory.class);
     
@@ -65,6 +66,8 @@ public class NettyHttpServletPipelineFactory extends ChannelInitializer<Channel>
     
     private final int maxChunkContentSize;
     
+    private final int maxRequestBodySize;
+    
     private final EventExecutorGroup applicationExecutor;
 
     private final NettyHttpServerEngine nettyHttpServerEngine;
@@ -73,11 +76,21 @@ public class NettyHttpServletPipelineFactory extends ChannelInitializer<Channel>
                                            boolean supportSession, int threadPoolSize, int maxChunkContentSize,
                                            Map<String, NettyHttpContextHandler> handlerMap,
                                            NettyHttpServerEngine engine) {
+        this(tlsServerParameters, supportSession, threadPoolSize, maxChunkContentSize,
+             DEFAULT_MAX_REQUEST_BODY_SIZE, handlerMap, engine);
+    }
+
+    public NettyHttpServletPipelineFactory(TLSServerParameters tlsServerParameters, 
+                                           boolean supportSession, int threadPoolSize, int maxChunkContentSize,
+                                           int maxRequestBodySize,
+                                           Map<String, NettyHttpContextHandler> handlerMap,
+                                           NettyHttpServerEngine engine) {
         this.supportSession = supportSession;
         this.watchdog = new HttpSessionWatchdog();
         this.handlerMap = handlerMap;
         this.tlsServerParameters = tlsServerParameters;
         this.maxChunkContentSize = maxChunkContentSize;
+        this.maxRequestBodySize = maxRequestBodySize;
         this.nettyHttpServerEngine = engine;
         //TODO need to configure the thread size of EventExecutorGroup
         applicationExecutor = new DefaultEventExecutorGroup(threadPoolSize);
@@ -92,6 +105,25 @@ public class NettyHttpServletPipelineFactory extends ChannelInitializer<Channel>
         return allChannels;
     }
 
+    /**
+     * Returns the maximum size of the request content which is buffered before
+     * reading from the connection is paused.
+     */
+    public int getMaxChunkContentSize() {
+        return maxChunkContentSize;
+    }
+
+    /**
+     * Returns the largest request body accepted, negative if there is no limit.
+     */
+    public int getMaxRequestBodySize() {
+        return maxRequestBodySize;
+    }
+
+    public EventExecutorGroup getApplicationExecutor() {
+        return applicationExecutor;
+    }
+
     public NettyHttpContextHandler getNettyHttpHandler(String url) {
         for (Map.Entry<String, NettyHttpContextHandler> entry : handlerMap.entrySet()) {
             // Here just check the context path first
@@ -141,8 +173,8 @@ public class NettyHttpServletPipelineFactory extends ChannelInitializer<Channel>
             pipeline.addLast("ssl", sslHandler);
         }
 
+        // the request content is not aggregated, it is streamed to the handler as it arrives
         pipeline.addLast("decoder", new HttpRequestDecoder());
-        pipeline.addLast("aggregator", new HttpObjectAggregator(maxChunkContentSize));
         pipeline.addLast("encoder", new HttpResponseEncoder());
 
         // Remove the following line if you don't want automatic content
@@ -198,7 +230,8 @@ public class NettyHttpServletPipelineFactory extends ChannelInitializer<Channel>
     protected void initChannel(Channel ch) throws Exception {
         ChannelPipeline pipeline = getDefaulHttpChannelPipeline(ch);
         
-        pipeline.addLast(applicationExecutor, "handler", this.getServletHandler());
+        // the handler hands the requests over to the application executor itself
+        pipeline.addLast("handler", this.getServletHandler());
     }
 
 }
@@ -26,6 +26,8 @@ public class ThreadingParameters {
 
     private int threadPoolSize = 200;
     private boolean threadPoolSizeSet;
+    private int acceptorThreads = 1;
+    private int workerThreads;
     
     
     public void setThreadPoolSize(int number) {
@@ -40,5 +42,29 @@ public class ThreadingParameters {
     public boolean isSeThreadPoolSize() {
         return threadPoolSizeSet;
     }
+
+    /**
+     * Sets the number of event loops accepting the connections. More than one
+     * is only used together with the SO_REUSEPORT option of the native transport.
+     */
+    public void setAcceptorThreads(int number) {
+        acceptorThreads = number;
+    }
+
+    public int getAcceptorThreads() {
+        return acceptorThreads;
+    }
+
+    /**
+     * Sets the number of event loops doing the I/O of the connections,
+     * 0 uses the Netty default of twice the number of cores.
+     */
+    public void setWorkerThreads(int number) {
+        workerThreads = number;
+    }
+
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
     
 }
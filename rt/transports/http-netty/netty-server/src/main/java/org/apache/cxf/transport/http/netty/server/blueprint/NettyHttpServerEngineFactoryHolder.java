@@ -78,10 +78,8 @@ public class NettyHttpServerEngineFactoryHolder {
 
             if (config.getIdentifiedThreadingParameters() != null) {
                 for (ThreadingParametersIdentifiedType threads : config.getIdentifiedThreadingParameters()) {
-                    ThreadingParameters rThreads = new ThreadingParameters();
                     String id = threads.getId();
-                    rThreads.setThreadPoolSize(threads.getThreadingParameters().getThreadPoolSize());
-                    threadingParametersMap.put(id, rThreads);
+                    threadingParametersMap.put(id, toThreadingParameters(threads.getThreadingParameters()));
                 }
 
                 factory.setThreadingParametersMap(threadingParametersMap);
@@ -120,17 +118,26 @@ public class NettyHttpServerEngineFactoryHolder {
                 if (engine.getMaxChunkContentSize() != null) {
                     eng.setMaxChunkContentSize(engine.getMaxChunkContentSize());
                 }
+                if (engine.getMaxRequestBodySize() != null) {
+                    eng.setMaxRequestBodySize(engine.getMaxRequestBodySize());
+                }
                 if (engine.getPort() != null) {
                     eng.setPort(engine.getPort());
                 }
                 if (engine.isSessionSupport() != null) {
                     eng.setSessionSupport(engine.isSessionSupport());
                 }
+                if (engine.isNativeTransport() != null) {
+                    eng.setNativeTransport(engine.isNativeTransport());
+                }
+                if (engine.isReusePort() != null) {
+                    eng.setReusePort(engine.isReusePort());
+                }
+                if (engine.isDirectBuffers() != null) {
+                    eng.setDirectBuffers(engine.isDirectBuffers());
+                }
                 if (engine.getThreadingParameters() != null) {
-                    ThreadingParametersType threads = engine.getThreadingParameters();
-                    ThreadingParameters rThreads = new ThreadingParameters();
-                    rThreads.setThreadPoolSize(threads.getThreadPoolSize());
-                    eng.setThreadingParameters(rThreads);
+                    eng.setThreadingParameters(toThreadingParameters(engine.getThreadingParameters()));
                 }
 
                 //eng.setServer(engine.getTlsServerParameters());
@@ -172,6 +179,18 @@ public class NettyHttpServerEngineFactoryHolder {
         this.parsedElement = parsedElement;
     }
 
+    private static ThreadingParameters toThreadingParameters(ThreadingParametersType threads) {
+        ThreadingParameters rThreads = new ThreadingParameters();
+        rThreads.setThreadPoolSize(threads.getThreadPoolSize());
+        if (threads.getAcceptorThreads() != null) {
+            rThreads.setAcceptorThreads(threads.getAcceptorThreads());
+        }
+        if (threads.getWorkerThreads() != null) {
+            rThreads.setWorkerThreads(threads.getWorkerThreads());
+        }
+        return rThreads;
+    }
+
     protected Object getJaxbObject(Element parent, Class<?> c) {
 
         try {
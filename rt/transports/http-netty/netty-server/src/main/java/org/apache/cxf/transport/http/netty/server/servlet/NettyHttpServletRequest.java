@@ -80,11 +80,16 @@ public class NettyHttpServletRequest implements HttpServletRequest {
     private ChannelHandlerContext channelHandlerContext;
 
     public NettyHttpServletRequest(HttpRequest request, String contextPath, ChannelHandlerContext ctx) {
+        this(request, contextPath, ctx, new NettyServletInputStream((HttpContent)request));
+    }
+
+    public NettyHttpServletRequest(HttpRequest request, String contextPath, ChannelHandlerContext ctx,
+                                   NettyServletInputStream inputStream) {
         this.originalRequest = request;
         this.contextPath = contextPath;
         this.uriParser = new URIParser(contextPath);
         uriParser.parse(request.getUri());
-        this.inputStream = new NettyServletInputStream((HttpContent)request);
+        this.inputStream = inputStream;
         this.reader = new BufferedReader(new InputStreamReader(inputStream));
         this.queryStringDecoder = new QueryStringDecoder(request.getUri());
         // setup the SSL security attributes
@@ -325,31 +330,31 @@ public class NettyHttpServletRequest implements HttpServletRequest {
 
     @Override
     public String getRemoteAddr() {
-        InetSocketAddress addr = (InetSocketAddress) ChannelThreadLocal.get().remoteAddress();
+        InetSocketAddress addr = (InetSocketAddress) channelHandlerContext.channel().remoteAddress();
         return addr.getAddress().getHostAddress();
     }
 
     @Override
     public String getRemoteHost() {
-        InetSocketAddress addr = (InetSocketAddress) ChannelThreadLocal.get().remoteAddress();
+        InetSocketAddress addr = (InetSocketAddress) channelHandlerContext.channel().remoteAddress();
         return addr.getHostName();
     }
 
     @Override
     public int getRemotePort() {
-        InetSocketAddress addr = (InetSocketAddress) ChannelThreadLocal.get().remoteAddress();
+        InetSocketAddress addr = (InetSocketAddress) channelHandlerContext.channel().remoteAddress();
         return addr.getPort();
     }
 
     @Override
     public String getServerName() {
-        InetSocketAddress addr = (InetSocketAddress) ChannelThreadLocal.get().localAddress();
+        InetSocketAddress addr = (InetSocketAddress) channelHandlerContext.channel().localAddress();
         return addr.getHostName();
     }
 
     @Override
     public int getServerPort() {
-        InetSocketAddress addr = (InetSocketAddress) ChannelThreadLocal.get().localAddress();
+        InetSocketAddress addr = (InetSocketAddress) channelHandlerContext.channel().localAddress();
         return addr.getPort();
     }
 
@@ -369,7 +374,7 @@ public class NettyHttpServletRequest implements HttpServletRequest {
 
     @Override
     public boolean isSecure() {
-        return ChannelThreadLocal.get().pipeline().get(SslHandler.class) != null;
+        return channelHandlerContext.channel().pipeline().get(SslHandler.class) != null;
     }
 
     @Override
@@ -379,7 +384,7 @@ public class NettyHttpServletRequest implements HttpServletRequest {
 
     @Override
     public String getLocalAddr() {
-        InetSocketAddress addr = (InetSocketAddress) ChannelThreadLocal.get().localAddress();
+        InetSocketAddress addr = (InetSocketAddress) channelHandlerContext.channel().localAddress();
         return addr.getAddress().getHostAddress();
     }
 
@@ -20,6 +20,7 @@
 package org.apache.cxf.transport.http.netty.server.servlet;
 
 import java.io.IOException;
+import java.io.InputStream;
 
 import javax.servlet.ServletInputStream;
 
@@ -30,7 +31,7 @@ import io.netty.handler.codec.http.HttpContent;
 
 public class NettyServletInputStream extends ServletInputStream {
 
-    private final ByteBufInputStream in;
+    private final InputStream in;
     private final ByteBuf byteBuf;
 
     public NettyServletInputStream(HttpContent httpContent) {
@@ -38,6 +39,14 @@ public class NettyServletInputStream extends ServletInputStream {
         this.in = new ByteBufInputStream(byteBuf);
     }
 
+    /**
+     * Reads the request content from a stream which is fed as the content arrives.
+     */
+    public NettyServletInputStream(InputStream in) {
+        this.byteBuf = null;
+        this.in = in;
+    }
+
     @Override
     public int read() throws IOException {
         return this.in.read();
@@ -53,9 +62,18 @@ public class NettyServletInputStream extends ServletInputStream {
         return this.in.read(buf, offset, len);
     }
     
+    @Override
+    public int available() throws IOException {
+        return this.in.available();
+    }
+
     public void close() throws IOException {
-        // we need to release the ByteBufInputStream
-        byteBuf.release();
+        if (byteBuf != null) {
+            // we need to release the ByteBufInputStream
+            byteBuf.release();
+        } else {
+            this.in.close();
+        }
     }
     
 }
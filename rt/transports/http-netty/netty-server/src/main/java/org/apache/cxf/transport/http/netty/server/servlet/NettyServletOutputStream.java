@@ -20,54 +20,204 @@
 package org.apache.cxf.transport.http.netty.server.servlet;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
 
 import javax.servlet.ServletOutputStream;
 
-import io.netty.buffer.ByteBufOutputStream;
+import org.apache.cxf.helpers.IOUtils;
+import org.apache.cxf.io.CopyingOutputStream;
+import org.apache.cxf.io.FileChannelSource;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
 import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpResponse;
+
+/**
+ * Collects the response content in a buffer taken from the channel allocator.
+ * <p>
+ * Responses which fit into one chunk are written in one go with a
+ * Content-Length. Larger ones are written as they are produced: the headers
+ * are sent with the first chunk and the body is streamed chunked (or closed
+ * delimited if the connection is not kept alive). The writer waits while the
+ * channel is not writable, so a slow client does not make the whole response
+ * pile up in memory.
+ */
+public class NettyServletOutputStream extends ServletOutputStream implements CopyingOutputStream {
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    private static final int CHANNEL_READ_SIZE = 64 * 1024;
+
+    private final ChannelHandlerContext ctx;
+
+    private final HttpResponse response;
+
+    private final boolean keepAlive;
 
-public class NettyServletOutputStream extends ServletOutputStream {
-    
-    private ByteBufOutputStream out;
+    private final int chunkSize;
+
+    private ByteBuf buffer;
+
+    private ChannelFuture lastWrite;
+
+    private boolean committed;
 
     private boolean flushed;
 
     public NettyServletOutputStream(HttpContent httpContent) {
-        this.out = new ByteBufOutputStream(httpContent.content());
+        this.ctx = null;
+        this.response = null;
+        this.keepAlive = false;
+        this.chunkSize = Integer.MAX_VALUE;
+        this.buffer = httpContent.content();
+    }
+
+    public NettyServletOutputStream(ChannelHandlerContext ctx, HttpResponse response, boolean keepAlive) {
+        this(ctx, response, keepAlive, DEFAULT_CHUNK_SIZE);
+    }
+
+    public NettyServletOutputStream(ChannelHandlerContext ctx, HttpResponse response, boolean keepAlive,
+                                    int chunkSize) {
+        this.ctx = ctx;
+        this.response = response;
+        this.keepAlive = keepAlive;
+        this.chunkSize = chunkSize;
+        this.buffer = ctx.alloc().buffer();
     }
 
     @Override
     public void write(int b) throws IOException {
-        this.out.write(b);
+        ensureOpen();
+        buffer.writeByte(b);
+        writeChunkIfFull();
     }
 
     @Override
     public void write(byte[] b) throws IOException {
-        this.out.write(b);
+        write(b, 0, b.length);
     }
 
     @Override
     public void write(byte[] b, int offset, int len) throws IOException {
-        this.out.write(b, offset, len);
+        ensureOpen();
+        while (len > 0) {
+            int n = Math.min(len, Math.max(chunkSize - buffer.readableBytes(), 1));
+            buffer.writeBytes(b, offset, n);
+            offset += n;
+            len -= n;
+            writeChunkIfFull();
+        }
+    }
+
+    @Override
+    public int copyFrom(InputStream in) throws IOException {
+        if (in instanceof FileChannelSource) {
+            ensureOpen();
+            // read the file straight into the response buffer
+            FileChannel channel = ((FileChannelSource)in).getChannel();
+            int total = 0;
+            int n = buffer.writeBytes(channel, CHANNEL_READ_SIZE);
+            while (n != -1) {
+                total += n;
+                writeChunkIfFull();
+                n = buffer.writeBytes(channel, CHANNEL_READ_SIZE);
+            }
+            return total;
+        }
+        return IOUtils.copy(in, this, IOUtils.DEFAULT_BUFFER_SIZE);
     }
 
     @Override
     public void flush() throws IOException {
-        out.flush();
         this.flushed = true;
     }
 
     public void resetBuffer() {
-        this.out.buffer().clear();
+        if (buffer != null) {
+            buffer.clear();
+        }
     }
 
     public boolean isFlushed() {
         return flushed;
     }
 
+    public boolean isCommitted() {
+        return committed;
+    }
+
     public int getBufferSize() {
-        return this.out.buffer().capacity();
+        return ctx == null ? buffer.capacity() : chunkSize;
+    }
+
+    /**
+     * Writes the buffered content and ends the response.
+     * @return the future of the last write
+     */
+    public ChannelFuture finish() {
+        if (ctx != null && buffer != null) {
+            if (!committed) {
+                HttpHeaders.setContentLength(response, buffer.readableBytes());
+                commit();
+            }
+            lastWrite = ctx.writeAndFlush(new DefaultLastHttpContent(buffer));
+            buffer = null;
+        }
+        return lastWrite;
+    }
+
+    /**
+     * Drops the buffered content, e.g. as the request failed.
+     */
+    public void discard() {
+        if (ctx != null && buffer != null) {
+            buffer.release();
+            buffer = null;
+        }
+    }
+
+    /**
+     * Called right before the response headers are written.
+     */
+    protected void beforeCommit() {
+        // nothing by default
+    }
+
+    private void commit() {
+        beforeCommit();
+        committed = true;
+        ctx.write(response);
+    }
+
+    private void writeChunkIfFull() throws IOException {
+        if (ctx == null || buffer.readableBytes() < chunkSize) {
+            return;
+        }
+        if (!committed) {
+            if (keepAlive && !HttpHeaders.isContentLengthSet(response)) {
+                HttpHeaders.setTransferEncodingChunked(response);
+            }
+            commit();
+        }
+        lastWrite = ctx.writeAndFlush(new DefaultHttpContent(buffer));
+        buffer = ctx.alloc().buffer();
+        if (!ctx.channel().isWritable()) {
+            // let the client catch up before producing more content
+            lastWrite.awaitUninterruptibly();
+        }
+        if (lastWrite.isDone() && !lastWrite.isSuccess()) {
+            throw new IOException("Could not write the response", lastWrite.cause());
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (buffer == null) {
+            throw new IOException("The response is already complete");
+        }
     }
-    
-    
 }
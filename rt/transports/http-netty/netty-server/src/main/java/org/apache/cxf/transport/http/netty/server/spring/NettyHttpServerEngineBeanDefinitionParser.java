@@ -90,6 +90,11 @@ public class NettyHttpServerEngineBeanDefinitionParser extends AbstractBeanDefin
             bean.addPropertyValue("maxChunkContentSize", maxChunkContentSizeStr);
         }
         
+        String maxRequestBodySizeStr = element.getAttribute("maxRequestBodySize");
+        if (maxRequestBodySizeStr != null && !"".equals(maxRequestBodySizeStr.trim())) {
+            bean.addPropertyValue("maxRequestBodySize", maxRequestBodySizeStr);
+        }
+        
         
         ValueHolder busValue = ctx.getContainingBeanDefinition()
             .getConstructorArgumentValues().getArgumentValue(0, Bus.class);
@@ -122,7 +127,9 @@ public class NettyHttpServerEngineBeanDefinitionParser extends AbstractBeanDefin
                                                     NettyHttpServerEngineBeanDefinitionParser.class,
                                                     "createThreadingParametersRef"
                                                     );
-                } else if ("sessionSupport".equals(name) || "reuseAddress".equals(name)) {
+                } else if ("sessionSupport".equals(name) || "reuseAddress".equals(name)
+                    || "nativeTransport".equals(name) || "reusePort".equals(name)
+                    || "directBuffers".equals(name)) {
                     String text = elem.getTextContent();                        
                     bean.addPropertyValue(name, text);
                 }                         
@@ -309,6 +316,12 @@ public class NettyHttpServerEngineBeanDefinitionParser extends AbstractBeanDefin
         if (paramtype.getThreadPoolSize() != null) {
             params.setThreadPoolSize(paramtype.getThreadPoolSize());
         }
+        if (paramtype.getAcceptorThreads() != null) {
+            params.setAcceptorThreads(paramtype.getAcceptorThreads());
+        }
+        if (paramtype.getWorkerThreads() != null) {
+            params.setWorkerThreads(paramtype.getWorkerThreads());
+        }
 
         return params;
     }
@@ -64,6 +64,12 @@ public final class NettySpringTypesFactory {
     private static ThreadingParameters toThreadingParameters(ThreadingParametersType paramtype) {
         ThreadingParameters params = new ThreadingParameters();
         params.setThreadPoolSize(paramtype.getThreadPoolSize());
+        if (paramtype.getAcceptorThreads() != null) {
+            params.setAcceptorThreads(paramtype.getAcceptorThreads());
+        }
+        if (paramtype.getWorkerThreads() != null) {
+            params.setWorkerThreads(paramtype.getWorkerThreads());
+        }
         return params;
     }
         
@@ -21,10 +21,17 @@ package org.apache.cxf.transport.http.netty.server;
 
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
 import org.apache.cxf.Bus;
 import org.apache.cxf.configuration.Configurer;
 import org.apache.cxf.helpers.IOUtils;
@@ -39,8 +46,14 @@ import org.junit.Test;
 public class NettyHttpServerEngineTest extends Assert {
     private static final int PORT1 
         = Integer.valueOf(TestUtil.getPortNumber(NettyHttpServerEngineTest.class, 1));
+    private static final int PORT2 
+        = Integer.valueOf(TestUtil.getPortNumber(NettyHttpServerEngineTest.class, 2));
+    private static final int PORT4 
+        = Integer.valueOf(TestUtil.getPortNumber(NettyHttpServerEngineTest.class, 4));
     private static final int PORT3 
         = Integer.valueOf(TestUtil.getPortNumber(NettyHttpServerEngineTest.class, 3));
+    private static final int PORT5 
+        = Integer.valueOf(TestUtil.getPortNumber(NettyHttpServerEngineTest.class, 5));
     
 
     private Bus bus;
@@ -140,6 +153,124 @@ public class NettyHttpServerEngineTest extends Assert {
         NettyHttpServerEngineFactory.destroyForPort(PORT3);
     }
 
+    @Test
+    public void testStreamingLargeContent() throws Exception {
+        String urlStr = "http://localhost:" + PORT2 + "/hello/stream";
+        NettyHttpServerEngine engine =
+            factory.createNettyHttpServerEngine(PORT2, "http");
+        // larger than the buffered request content, which used to be the maximum request size
+        final int size = engine.getMaxChunkContentSize() * 4;
+        engine.addServant(new URL(urlStr), new NettyHttpTestHandler("stream", true) {
+            @Override
+            public void handle(String target, HttpServletRequest request, HttpServletResponse resp)
+                throws IOException, ServletException {
+                InputStream in = request.getInputStream();
+                OutputStream out = resp.getOutputStream();
+                byte[] buffer = new byte[8192];
+                for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+                    out.write(buffer, 0, n);
+                }
+            }
+        });
+
+        HttpURLConnection connection = (HttpURLConnection)new URL(urlStr).openConnection();
+        connection.setDoOutput(true);
+        connection.setRequestMethod("POST");
+        connection.setChunkedStreamingMode(8192);
+        OutputStream out = connection.getOutputStream();
+        byte[] chunk = new byte[1024];
+        for (int i = 0; i < chunk.length; i++) {
+            chunk[i] = (byte)i;
+        }
+        for (int i = 0; i < size / chunk.length; i++) {
+            out.write(chunk);
+        }
+        out.close();
+
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("chunked", connection.getHeaderField("Transfer-Encoding"));
+        InputStream in = connection.getInputStream();
+        byte[] buffer = new byte[chunk.length];
+        int total = 0;
+        for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+            for (int i = 0; i < n; i++) {
+                assertEquals((byte)(total + i), buffer[i]);
+            }
+            total += n;
+        }
+        in.close();
+        assertEquals(size, total);
+
+        // the connection stays usable for the next request
+        assertEquals("hello", getResponse(urlStr, "hello"));
+
+        NettyHttpServerEngineFactory.destroyForPort(PORT2);
+    }
+
+    @Test
+    public void testRequestBodyTooLarge() throws Exception {
+        String urlStr = "http://localhost:" + PORT5 + "/hello/limited";
+        NettyHttpServerEngine engine =
+            factory.createNettyHttpServerEngine(PORT5, "http");
+        engine.setMaxRequestBodySize(1024);
+        engine.addServant(new URL(urlStr), new NettyHttpTestHandler("limited", true));
+
+        // refused from the Content-Length
+        HttpURLConnection connection = (HttpURLConnection)new URL(urlStr).openConnection();
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(2048);
+        connection.getOutputStream().write(new byte[2048]);
+        connection.getOutputStream().close();
+        assertEquals(413, connection.getResponseCode());
+
+        // refused while the chunked body arrives
+        connection = (HttpURLConnection)new URL(urlStr).openConnection();
+        connection.setDoOutput(true);
+        connection.setChunkedStreamingMode(512);
+        connection.getOutputStream().write(new byte[4096]);
+        connection.getOutputStream().close();
+        assertEquals(413, connection.getResponseCode());
+
+        // bodies up to the limit are still accepted
+        assertEquals("limited", getResponse(urlStr, "limited"));
+
+        NettyHttpServerEngineFactory.destroyForPort(PORT5);
+    }
+
+    private String getResponse(String target, String body) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection)new URL(target).openConnection();
+        connection.setDoOutput(true);
+        connection.getOutputStream().write(body.getBytes());
+        connection.getOutputStream().close();
+        assertEquals(String.valueOf(body.length()), connection.getHeaderField("Content-Length"));
+        InputStream in = connection.getInputStream();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        IOUtils.copy(in, buffer);
+        return buffer.toString();
+    }
+
+    @Test
+    public void testNativeTransportWithReusePort() throws Exception {
+        String urlStr = "http://localhost:" + PORT4 + "/hello/native";
+        NettyHttpServerEngine engine =
+            factory.createNettyHttpServerEngine(PORT4, "http");
+        ThreadingParameters threading = new ThreadingParameters();
+        threading.setAcceptorThreads(2);
+        threading.setWorkerThreads(2);
+        engine.setThreadingParameters(threading);
+        engine.setNativeTransport(true);
+        engine.setReusePort(true);
+        engine.addServant(new URL(urlStr), new NettyHttpTestHandler("native", true));
+
+        // falls back to NIO where epoll is not available
+        assertEquals(NettyNativeTransport.isAvailable(), engine.isNativeTransportActive());
+        for (int i = 0; i < 4; i++) {
+            assertEquals("native", getResponse(urlStr));
+        }
+
+        NettyHttpServerEngineFactory.destroyForPort(PORT4);
+    }
+
     private String getResponse(String target) throws Exception {
         URL url = new URL(target);
 
@@ -135,6 +135,11 @@ public class ApplicationContextTest extends Assert {
         assertEquals(40000, engine.getReadIdleTime());
         assertEquals(10000, engine.getMaxChunkContentSize());
         assertTrue("The engine should support session manager", engine.isSessionSupport());
+        assertEquals(2, engine.getThreadingParameters().getAcceptorThreads());
+        assertEquals(4, engine.getThreadingParameters().getWorkerThreads());
+        assertTrue(engine.isNativeTransport());
+        assertTrue(engine.isReusePort());
+        assertFalse(engine.isDirectBuffers());
         
         NettyHttpDestination jd3 = 
             (NettyHttpDestination)factory.getDestination(
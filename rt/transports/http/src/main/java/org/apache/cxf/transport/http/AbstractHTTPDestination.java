@@ -22,6 +22,8 @@ package org.apache.cxf.transport.http;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.net.HttpURLConnection;
 import java.net.ServerSocket;
 import java.net.URL;
@@ -32,8 +34,11 @@ import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.ReadListener;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletContext;
+import javax.servlet.ServletInputStream;
 import javax.servlet.ServletRequest;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -44,6 +49,7 @@ import org.apache.cxf.attachment.AttachmentDataSource;
 import org.apache.cxf.common.logging.LogUtils;
 import org.apache.cxf.common.util.Base64Exception;
 import org.apache.cxf.common.util.Base64Utility;
+import org.apache.cxf.common.util.PropertyUtils;
 import org.apache.cxf.common.util.StringUtils;
 import org.apache.cxf.configuration.Configurable;
 import org.apache.cxf.configuration.security.AuthorizationPolicy;
@@ -54,6 +60,7 @@ import org.apache.cxf.helpers.IOUtils;
 import org.apache.cxf.interceptor.Fault;
 import org.apache.cxf.interceptor.Interceptor;
 import org.apache.cxf.io.AbstractWrappedOutputStream;
+import org.apache.cxf.io.CachedOutputStream;
 import org.apache.cxf.io.CopyingOutputStream;
 import org.apache.cxf.io.DelegatingInputStream;
 import org.apache.cxf.message.Attachment;
@@ -99,6 +106,19 @@ public abstract class AbstractHTTPDestination
     public static final String CXF_ASYNC_CONTEXT = "cxf.async.context";
 
     public static final String SERVICE_REDIRECTION = "http.service.redirection";
+
+    /**
+     * Bus or endpoint property which enables reading the request body and writing the
+     * response body with the non-blocking I/O of Servlet 3.1, so that no container thread
+     * waits for a slow client.
+     */
+    public static final String NON_BLOCKING_IO = "http.nonblocking.io";
+    /**
+     * Bus or endpoint property with the time in milliseconds a client may take to send the
+     * request body or to receive the response body when non-blocking I/O is enabled.
+     */
+    public static final String NON_BLOCKING_IO_TIMEOUT = "http.nonblocking.io.timeout";
+    public static final long DEFAULT_NON_BLOCKING_IO_TIMEOUT = 60000L;
     private static final String HTTP_BASE_PATH = "http.base.path";
 
     private static final String SSL_CIPHER_SUITE_ATTRIBUTE = "javax.servlet.request.cipher_suite";
@@ -117,6 +137,9 @@ public abstract class AbstractHTTPDestination
     protected boolean multiplexWithAddress;
     protected CertConstraints certConstraints;
     protected boolean isServlet3;
+    protected boolean isServlet31;
+    protected boolean nonBlockingIO;
+    protected long nonBlockingIOTimeout = DEFAULT_NON_BLOCKING_IO_TIMEOUT;
     protected ContinuationProviderFactory cproviderFactory;
     protected boolean enableWebSocket;
 
@@ -147,6 +170,12 @@ public abstract class AbstractHTTPDestination
         } catch (Throwable t) {
             //servlet 2.5 or earlier, no async support
         }
+        try {
+            ServletInputStream.class.getMethod("setReadListener", ReadListener.class);
+            isServlet31 = true;
+        } catch (Throwable t) {
+            //servlet 3.0 or earlier, no non-blocking I/O
+        }
         
         initConfig();
     }
@@ -229,6 +258,10 @@ public abstract class AbstractHTTPDestination
                        final HttpServletResponse resp) throws IOException {
         Message inMessage = retrieveFromContinuation(req);
         if (inMessage == null) {
+            if (startNonBlockingRead(req, resp)) {
+                LOG.fine("Reading the request body with non-blocking I/O");
+                return;
+            }
             LOG.fine("Create a new message for processing");
             inMessage = new MessageImpl();
             ExchangeImpl exchange = new ExchangeImpl();
@@ -247,6 +280,11 @@ public abstract class AbstractHTTPDestination
 
         copyKnownRequestAttributes(req, inMessage);
         
+        NonBlockingResponseWriter writer = null;
+        if (isNonBlockingIO(req)) {
+            writer = new NonBlockingResponseWriter(req, nonBlockingIOTimeout);
+            inMessage.getExchange().put(NonBlockingResponseWriter.KEY, writer);
+        }
         try {    
             incomingObserver.onMessage(inMessage);
             invokeComplete(context, req, resp, inMessage);
@@ -265,11 +303,50 @@ public abstract class AbstractHTTPDestination
         } catch (RuntimeException ex) {
             throw ex;
         } finally {
+            if (writer != null) {
+                writer.release(resp);
+            }
             if (LOG.isLoggable(Level.FINE)) {
                 LOG.fine("Finished servicing http request on thread: " + Thread.currentThread());
             }
         }
     }
+
+    /**
+     * Starts reading the request body with a ReadListener if non-blocking I/O is enabled.
+     * The request is dispatched again once the complete body was read.
+     * @return true if the request was suspended until the body is read
+     */
+    protected boolean startNonBlockingRead(HttpServletRequest req, HttpServletResponse resp) 
+        throws IOException {
+        if (!isNonBlockingIO(req) || req.getAttribute(NonBlockingRequestReader.REQUEST_BODY) != null
+            || req.getContentLength() <= 0 && req.getHeader("Transfer-Encoding") == null) {
+            return false;
+        }
+        ServletInputStream in = req.getInputStream();
+        try {
+            // the container may ship the Servlet 3.1 API without implementing it 
+            Method m = in.getClass().getMethod("setReadListener", ReadListener.class);
+            if (Modifier.isAbstract(m.getModifiers())) {
+                return false;
+            }
+        } catch (NoSuchMethodException ex) {
+            return false;
+        }
+        AsyncContext asyncContext = req.startAsync(req, resp);
+        asyncContext.setTimeout(nonBlockingIOTimeout);
+        NonBlockingRequestReader.start(asyncContext, in);
+        return true;
+    }
+
+    protected boolean isNonBlockingIO(HttpServletRequest req) {
+        try {
+            return nonBlockingIO && isServlet31 && req.isAsyncSupported();
+        } catch (Throwable ex) {
+            // the request may not implement the Servlet3 API
+            return false;
+        }
+    }
     
     protected void invokeComplete(final ServletContext context, 
                                   final HttpServletRequest req, 
@@ -279,6 +356,11 @@ public abstract class AbstractHTTPDestination
         if (p != null) {
             p.complete();
         }
+        NonBlockingResponseWriter writer = m.getExchange() == null 
+            ? null : (NonBlockingResponseWriter)m.getExchange().get(NonBlockingResponseWriter.KEY);
+        if (writer != null) {
+            writer.start(resp);
+        }
     }
 
     private void copyKnownRequestAttributes(HttpServletRequest request, Message message) {
@@ -295,7 +377,8 @@ public abstract class AbstractHTTPDestination
                           resp);
         
         final Exchange exchange = inMessage.getExchange();
-        DelegatingInputStream in = new DelegatingInputStream(req.getInputStream()) {
+        InputStream body = nonBlockingIO ? NonBlockingRequestReader.retrieveBody(req) : null;
+        DelegatingInputStream in = new DelegatingInputStream(body != null ? body : req.getInputStream()) {
             public void cacheInput() {
                 if (!cached && (exchange.isOneWay() || isWSAddressingReplyToSpecified(exchange))) {
                     //For one-ways and WS-Addressing invocations with ReplyTo address,
@@ -522,6 +605,17 @@ public abstract class AbstractHTTPDestination
     private void initConfig() {
         
         cproviderFactory = bus.getExtension(ContinuationProviderFactory.class);
+        nonBlockingIO = PropertyUtils.isTrue(bus.getProperty(NON_BLOCKING_IO))
+            || PropertyUtils.isTrue(endpointInfo.getProperty(NON_BLOCKING_IO));
+        Object timeout = endpointInfo.getProperty(NON_BLOCKING_IO_TIMEOUT);
+        if (timeout == null) {
+            timeout = bus.getProperty(NON_BLOCKING_IO_TIMEOUT);
+        }
+        if (timeout != null) {
+            long value = Long.parseLong(timeout.toString());
+            // a stalled client must not keep the request forever
+            nonBlockingIOTimeout = value > 0 ? value : DEFAULT_NON_BLOCKING_IO_TIMEOUT;
+        }
     }
 
     private synchronized HTTPServerPolicy calcServerPolicyInternal(Message m) {
@@ -754,6 +848,8 @@ public abstract class AbstractHTTPDestination
 
         protected HttpServletResponse response;
         private Message outMessage;
+        private NonBlockingResponseWriter writer;
+        private OutputStream blockingStream;
         
         WrappedOutputStream(Message m, HttpServletResponse resp) {
             super();
@@ -779,9 +875,16 @@ public abstract class AbstractHTTPDestination
          * reset output stream ... etc.)
          */
         protected void onFirstWrite() throws IOException {
-            OutputStream responseStream = flushHeaders(outMessage);
-            if (null != responseStream) {
-                wrappedStream = responseStream;
+            OutputStream out = flushHeaders(outMessage);
+            if (null != out) {
+                wrappedStream = out;
+                Exchange ex = outMessage.getExchange();
+                writer = ex == null ? null : (NonBlockingResponseWriter)ex.get(NonBlockingResponseWriter.KEY);
+                if (writer != null && writer.isCaching()) {
+                    // the body is written with a WriteListener once the invocation is done
+                    blockingStream = out;
+                    wrappedStream = new CachedOutputStream();
+                }
             }
         }
 
@@ -795,7 +898,14 @@ public abstract class AbstractHTTPDestination
                     wrappedStream = responseStream;
                 }
             }
-            if (wrappedStream != null) {
+            if (blockingStream != null) {
+                CachedOutputStream cached = (CachedOutputStream)wrappedStream;
+                cached.flush();
+                if (cached.size() <= Integer.MAX_VALUE && !response.containsHeader("Transfer-Encoding")) {
+                    response.setContentLength((int)cached.size());
+                }
+                writer.setBody(cached, blockingStream);
+            } else if (wrappedStream != null) {
                 wrappedStream.close();
                 response.flushBuffer();
             }
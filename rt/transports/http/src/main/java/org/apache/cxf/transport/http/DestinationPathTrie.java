@@ -0,0 +1,142 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.transport.http;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Indexes destination paths by their '/' separated segments so that the destination
+ * with the longest path matching a request address is found in a single walk over 
+ * the address.  Lookups do not lock, updates are serialized.
+ */
+final class DestinationPathTrie {
+    private static final char SLASH = '/';
+    
+    private final Node root = new Node(null, null);
+    
+    /**
+     * Adds a destination for the path.  A trailing slash of the path is ignored.
+     */
+    synchronized void put(String path, AbstractHTTPDestination destination) {
+        Node node = root;
+        String key = trim(path);
+        if (!isRoot(key)) {
+            int start = 0;
+            while (start <= key.length()) {
+                int end = segmentEnd(key, start);
+                String segment = key.substring(start, end);
+                Node child = node.children.get(segment);
+                if (child == null) {
+                    child = new Node(node, segment);
+                    node.children.put(segment, child);
+                }
+                node = child;
+                start = end + 1;
+            }
+        }
+        node.entries.put(path, destination);
+        node.update();
+    }
+    
+    synchronized void remove(String path) {
+        Node node = find(trim(path));
+        if (node == null || node.entries.remove(path) == null) {
+            return;
+        }
+        node.update();
+        // prune the branches left without destinations
+        while (node.parent != null && node.entries.isEmpty() && node.children.isEmpty()) {
+            node.parent.children.remove(node.segment);
+            node = node.parent;
+        }
+    }
+    
+    /**
+     * Returns the destination with the longest path that equals the address or
+     * is followed by a '/' in it.  A destination on "/" matches every address.
+     */
+    AbstractHTTPDestination getLongestMatch(String address) {
+        AbstractHTTPDestination match = root.destination;
+        Node node = root;
+        int start = 0;
+        while (start <= address.length()) {
+            int end = segmentEnd(address, start);
+            node = node.children.get(address.substring(start, end));
+            if (node == null) {
+                break;
+            }
+            AbstractHTTPDestination d = node.destination;
+            if (d != null) {
+                match = d;
+            }
+            start = end + 1;
+        }
+        return match;
+    }
+    
+    private Node find(String key) {
+        if (isRoot(key)) {
+            return root;
+        }
+        Node node = root;
+        int start = 0;
+        while (node != null && start <= key.length()) {
+            int end = segmentEnd(key, start);
+            node = node.children.get(key.substring(start, end));
+            start = end + 1;
+        }
+        return node;
+    }
+    
+    private static int segmentEnd(String s, int start) {
+        int end = s.indexOf(SLASH, start);
+        return end == -1 ? s.length() : end;
+    }
+    
+    private static boolean isRoot(String key) {
+        return key.length() == 1 && key.charAt(0) == SLASH;
+    }
+    
+    private static String trim(String path) {
+        return path.length() > 1 && path.charAt(path.length() - 1) == SLASH 
+            ? path.substring(0, path.length() - 1) : path;
+    }
+    
+    private static final class Node {
+        final Node parent;
+        final String segment;
+        final Map<String, Node> children = new ConcurrentHashMap<String, Node>(4, 0.75f, 1);
+        // original paths ending at this node, only accessed with the trie lock held
+        final Map<String, AbstractHTTPDestination> entries 
+            = new LinkedHashMap<String, AbstractHTTPDestination>(2);
+        volatile AbstractHTTPDestination destination;
+        
+        Node(Node parent, String segment) {
+            this.parent = parent;
+            this.segment = segment;
+        }
+        
+        void update() {
+            destination = entries.isEmpty() ? null : entries.values().iterator().next();
+        }
+    }
+}
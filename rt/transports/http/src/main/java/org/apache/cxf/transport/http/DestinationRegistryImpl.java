@@ -33,11 +33,12 @@ import java.util.concurrent.ConcurrentMap;
 import org.apache.cxf.transport.AbstractDestination;
 
 public class DestinationRegistryImpl implements DestinationRegistry {
-    private static final String SLASH = "/";
     private ConcurrentMap<String, AbstractHTTPDestination> destinations 
         = new ConcurrentHashMap<String, AbstractHTTPDestination>();
     private Map<String, AbstractHTTPDestination> decodedDestinations = 
         new ConcurrentHashMap<String, AbstractHTTPDestination>();
+    private final DestinationPathTrie destinationTrie = new DestinationPathTrie();
+    private final DestinationPathTrie decodedDestinationTrie = new DestinationPathTrie();
 
     public DestinationRegistryImpl() {
     }
@@ -48,10 +49,12 @@ public class DestinationRegistryImpl implements DestinationRegistry {
         if (dest != null && dest != destination) {
             throw new RuntimeException("Already a destination on " + path);
         }
+        destinationTrie.put(path, destination);
         try {
             String path2 = URLDecoder.decode(path, "ISO-8859-1");
             if (!path.equals(path2)) {
-                decodedDestinations.put(URLDecoder.decode(path, "ISO-8859-1"), destination);
+                decodedDestinations.put(path2, destination);
+                decodedDestinationTrie.put(path2, destination);
             }
         } catch (UnsupportedEncodingException e) {
             throw new RuntimeException("Unsupported Encoding", e);
@@ -60,10 +63,12 @@ public class DestinationRegistryImpl implements DestinationRegistry {
 
     public synchronized void removeDestination(String path) {
         destinations.remove(path);
+        destinationTrie.remove(path);
         try {
             String path2 = URLDecoder.decode(path, "ISO-8859-1");
             if (!path.equals(path2)) {
-                decodedDestinations.remove(URLDecoder.decode(path, "ISO-8859-1"));
+                decodedDestinations.remove(path2);
+                decodedDestinationTrie.remove(path2);
             }
         } catch (UnsupportedEncodingException e) {
             throw new RuntimeException("Unsupported Encoding", e);
@@ -85,32 +90,15 @@ public class DestinationRegistryImpl implements DestinationRegistry {
     }
     
     public AbstractHTTPDestination checkRestfulRequest(String address) {
-        AbstractHTTPDestination ret = getRestfulDestination(getDestinationsPaths(), address);
+        AbstractHTTPDestination ret = destinationTrie.getLongestMatch(address);
         if (ret == null) {
-            ret = getRestfulDestination(decodedDestinations.keySet(), address);
+            ret = decodedDestinationTrie.getLongestMatch(address);
         }
         if (ret != null && ret.getMessageObserver() == null) {
             return null;
         }
         return ret; 
     }
-    private AbstractHTTPDestination getRestfulDestination(Set<String> destPaths, String address) {
-        int len = -1;
-        AbstractHTTPDestination ret = null;
-        for (String path : destPaths) {
-            String thePath = path.length() > 1 && path.endsWith(SLASH) 
-                ? path.substring(0, path.length() - 1) : path;
-            if ((address.equals(thePath) 
-                || SLASH.equals(thePath)
-                || (address.length() > thePath.length() 
-                    && address.startsWith(thePath) && address.charAt(thePath.length()) == '/'))
-                && thePath.length() > len) {
-                ret = getDestinationForPath(path);
-                len = path.length();
-            }
-        }
-        return ret;
-    }
 
     public Collection<AbstractHTTPDestination> getDestinations() {
         return Collections.unmodifiableCollection(destinations.values());
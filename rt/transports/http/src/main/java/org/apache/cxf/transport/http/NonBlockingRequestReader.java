@@ -0,0 +1,144 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.transport.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.cxf.common.logging.LogUtils;
+import org.apache.cxf.helpers.IOUtils;
+import org.apache.cxf.io.CachedOutputStream;
+
+/**
+ * Reads the request body with the Servlet 3.1 non-blocking API while the request is
+ * suspended, so no container thread waits for a slow client. Once the body is complete
+ * the request is dispatched again and processed with the cached body. A client which
+ * does not send the body within the timeout of the async context gets a 408 response.
+ */
+final class NonBlockingRequestReader implements ReadListener, AsyncListener {
+    static final String REQUEST_BODY = "cxf.nonblocking.request.body";
+
+    private static final Logger LOG = LogUtils.getL7dLogger(NonBlockingRequestReader.class);
+
+    private final AsyncContext context;
+    private final ServletInputStream in;
+    private final CachedOutputStream body = new CachedOutputStream();
+    private final byte[] buffer = new byte[IOUtils.DEFAULT_BUFFER_SIZE];
+    private final AtomicBoolean finished = new AtomicBoolean();
+
+    NonBlockingRequestReader(AsyncContext context, ServletInputStream in) {
+        this.context = context;
+        this.in = in;
+    }
+
+    /**
+     * Registers a reader for the request body. The ReadListener type is only referenced
+     * from this class so that the destinations still load with the Servlet 3.0 API.
+     */
+    static void start(AsyncContext context, ServletInputStream in) {
+        NonBlockingRequestReader reader = new NonBlockingRequestReader(context, in);
+        context.addListener(reader);
+        in.setReadListener(reader);
+    }
+
+    /**
+     * Returns the body read for the request and forgets it, or null if the body was not
+     * read by a NonBlockingRequestReader.
+     */
+    static InputStream retrieveBody(ServletRequest req) throws IOException {
+        Object body = req.getAttribute(REQUEST_BODY);
+        if (body instanceof InputStream) {
+            req.removeAttribute(REQUEST_BODY);
+            return (InputStream)body;
+        }
+        return null;
+    }
+
+    public void onDataAvailable() throws IOException {
+        while (!finished.get() && in.isReady()) {
+            int n = in.read(buffer);
+            if (n == -1) {
+                return;
+            }
+            body.write(buffer, 0, n);
+        }
+    }
+
+    public void onAllDataRead() throws IOException {
+        if (!finished.compareAndSet(false, true)) {
+            return;
+        }
+        // the temp file or off-heap buffers of the body are released once the
+        // returned stream is closed
+        InputStream stream = body.getInputStream();
+        body.close();
+        context.getRequest().setAttribute(REQUEST_BODY, stream);
+        context.dispatch();
+    }
+
+    public void onError(Throwable t) {
+        LOG.log(Level.FINE, "Reading the request body failed", t);
+        fail(HttpServletResponse.SC_BAD_REQUEST);
+    }
+
+    public void onTimeout(AsyncEvent event) throws IOException {
+        LOG.fine("Reading the request body timed out");
+        fail(HttpServletResponse.SC_REQUEST_TIMEOUT);
+    }
+
+    public void onError(AsyncEvent event) throws IOException {
+        onError(event.getThrowable());
+    }
+
+    public void onComplete(AsyncEvent event) throws IOException {
+        // nothing to do
+    }
+
+    public void onStartAsync(AsyncEvent event) throws IOException {
+        // nothing to do
+    }
+
+    private void fail(int status) {
+        if (!finished.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            body.close();
+            HttpServletResponse response = (HttpServletResponse)context.getResponse();
+            if (!response.isCommitted()) {
+                response.sendError(status);
+            }
+        } catch (IOException ex) {
+            // the client is gone
+        }
+        context.complete();
+    }
+}
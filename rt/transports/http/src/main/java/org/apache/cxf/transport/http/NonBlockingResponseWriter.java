@@ -0,0 +1,180 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.transport.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.cxf.common.logging.LogUtils;
+import org.apache.cxf.helpers.IOUtils;
+import org.apache.cxf.io.CachedOutputStream;
+
+/**
+ * Writes a response body, which was cached while the request was processed, with the
+ * Servlet 3.1 non-blocking API, so no container thread waits for a slow client.
+ * <p>
+ * A writer is bound to the thread invoking the destination. Only responses completed on
+ * that thread are cached, everything else is written to the servlet stream directly.
+ * The response is completed if the client does not take the body within the timeout.
+ */
+final class NonBlockingResponseWriter implements WriteListener, AsyncListener {
+    /**
+     * The exchange key of the writer. It is a constant rather than the class, so that looking
+     * it up does not load this class, which needs the Servlet 3.1 API.
+     */
+    static final String KEY = "org.apache.cxf.transport.http.NonBlockingResponseWriter";
+
+    private static final Logger LOG = LogUtils.getL7dLogger(NonBlockingResponseWriter.class);
+
+    private final HttpServletRequest request;
+    private final long timeout;
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private final byte[] buffer = new byte[IOUtils.DEFAULT_BUFFER_SIZE];
+    private volatile Thread owner;
+    private CachedOutputStream body;
+    private OutputStream blockingStream;
+    private AsyncContext context;
+    private ServletOutputStream out;
+    private InputStream in;
+
+    NonBlockingResponseWriter(HttpServletRequest request, long timeout) {
+        this.request = request;
+        this.timeout = timeout;
+        this.owner = Thread.currentThread();
+    }
+
+    /**
+     * Returns true if the response body written now can be cached and written later.
+     */
+    boolean isCaching() {
+        return owner == Thread.currentThread() && body == null && !request.isAsyncStarted();
+    }
+
+    /**
+     * Keeps the complete response body until {@link #start(HttpServletResponse)} or
+     * {@link #release(HttpServletResponse)}.
+     * @param cached the response body
+     * @param stream the stream to write the body to if it cannot be written asynchronously
+     */
+    void setBody(CachedOutputStream cached, OutputStream stream) {
+        this.body = cached;
+        this.blockingStream = stream;
+    }
+
+    /**
+     * Suspends the request and writes the cached response body whenever the client can take it.
+     */
+    void start(HttpServletResponse response) throws IOException {
+        owner = null;
+        if (body == null) {
+            return;
+        }
+        try {
+            context = request.startAsync(request, response);
+        } catch (IllegalStateException ex) {
+            // the request was suspended in the meantime
+            release(response);
+            return;
+        }
+        context.setTimeout(timeout);
+        context.addListener(this);
+        in = body.getInputStream();
+        // the temp file or off-heap buffers are released once the input is closed
+        body.close();
+        body = null;
+        out = response.getOutputStream();
+        out.setWriteListener(this);
+    }
+
+    /**
+     * Writes the cached response body, if it was not started yet, with the blocking API.
+     */
+    void release(HttpServletResponse response) throws IOException {
+        owner = null;
+        if (body != null) {
+            InputStream cached = body.getInputStream();
+            body.close();
+            body = null;
+            try {
+                IOUtils.copyAndCloseInput(cached, blockingStream);
+            } finally {
+                blockingStream.close();
+            }
+            response.flushBuffer();
+        }
+    }
+
+    public void onWritePossible() throws IOException {
+        while (!finished.get() && out.isReady()) {
+            int n = in.read(buffer);
+            if (n == -1) {
+                finish();
+                return;
+            }
+            out.write(buffer, 0, n);
+        }
+    }
+
+    public void onError(Throwable t) {
+        LOG.log(Level.FINE, "Writing the response body failed", t);
+        finish();
+    }
+
+    public void onTimeout(AsyncEvent event) throws IOException {
+        LOG.fine("Writing the response body timed out");
+        finish();
+    }
+
+    public void onError(AsyncEvent event) throws IOException {
+        onError(event.getThrowable());
+    }
+
+    public void onComplete(AsyncEvent event) throws IOException {
+        // nothing to do
+    }
+
+    public void onStartAsync(AsyncEvent event) throws IOException {
+        // nothing to do
+    }
+
+    private void finish() {
+        if (!finished.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            in.close();
+        } catch (IOException ex) {
+            // ignore
+        }
+        context.complete();
+    }
+}
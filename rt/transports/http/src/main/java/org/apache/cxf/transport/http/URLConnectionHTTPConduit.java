@@ -71,13 +71,13 @@ public class URLConnectionHTTPConduit extends HTTPConduit {
     
     public URLConnectionHTTPConduit(Bus b, EndpointInfo ei) throws IOException {
         super(b, ei);
-        connectionFactory = new HttpsURLConnectionFactory();
+        connectionFactory = new HttpsURLConnectionFactory(b);
         CXFAuthenticator.addAuthenticator();
     }
 
     public URLConnectionHTTPConduit(Bus b, EndpointInfo ei, EndpointReferenceType t) throws IOException {
         super(b, ei, t);
-        connectionFactory = new HttpsURLConnectionFactory();
+        connectionFactory = new HttpsURLConnectionFactory(b);
         CXFAuthenticator.addAuthenticator();
     }
     
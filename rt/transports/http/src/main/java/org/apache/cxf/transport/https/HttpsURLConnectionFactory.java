@@ -37,6 +37,7 @@ import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.X509KeyManager;
 
+import org.apache.cxf.Bus;
 import org.apache.cxf.common.logging.LogUtils;
 import org.apache.cxf.common.util.ReflectionInvokationHandler;
 import org.apache.cxf.common.util.ReflectionUtil;
@@ -68,6 +69,11 @@ public class HttpsURLConnectionFactory {
     SSLSocketFactory socketFactory;
     int lastTlsHash;
     
+    /**
+     * The bus whose SSLContextRegistry shares the SSLContexts between conduits
+     */
+    private Bus bus;
+    
     /**
      * This constructor initialized the factory with the configured TLS
      * Client Parameters for the HTTPConduit for which this factory is used.
@@ -75,6 +81,14 @@ public class HttpsURLConnectionFactory {
     public HttpsURLConnectionFactory() {
     }
     
+    /**
+     * Creates a factory which shares its SSLContexts through the SSLContextRegistry of the bus
+     * with the other conduits using equal TLS Client Parameters.
+     */
+    public HttpsURLConnectionFactory(Bus bus) {
+        this.bus = bus;
+    }
+    
     /**
      * Create a HttpURLConnection, proxified if necessary.
      * 
@@ -149,39 +163,54 @@ public class HttpsURLConnectionFactory {
             socketFactory = tlsClientParameters.getSSLSocketFactory();
             
         } else if (socketFactory == null) {
-            // ssl socket factory not yet instantiated, create a new one with tlsClientParameters's Trust
-            // Managers, Key Managers, etc
+            // ssl socket factory not yet instantiated, reuse the one of another conduit with
+            // equal tlsClientParameters to benefit of TLS session resumption
+            SSLContextRegistry registry = SSLContextRegistry.getRegistry(bus);
+            TLSClientParameters key = null;
+            if (registry != null) {
+                key = SSLContextRegistry.createKey(tlsClientParameters);
+                socketFactory = registry.getSocketFactory(key);
+            }
+            if (socketFactory == null) {
+                // create a new one with tlsClientParameters's Trust Managers, Key Managers, etc
+                String provider = tlsClientParameters.getJsseProvider();
 
-            String provider = tlsClientParameters.getJsseProvider();
+                String protocol = tlsClientParameters.getSecureSocketProtocol() != null ? tlsClientParameters
+                    .getSecureSocketProtocol() : "TLS";
 
-            String protocol = tlsClientParameters.getSecureSocketProtocol() != null ? tlsClientParameters
-                .getSecureSocketProtocol() : "TLS";
+                SSLContext ctx = provider == null ? SSLContext.getInstance(protocol) : SSLContext
+                    .getInstance(protocol, provider);
+                if (registry != null) {
+                    registry.configure(ctx, tlsClientParameters);
+                } else {
+                    ctx.getClientSessionContext().setSessionTimeout(tlsClientParameters.getSslCacheTimeout());
+                }
+                KeyManager[] keyManagers = tlsClientParameters.getKeyManagers();
+                if (keyManagers == null) {
+                    keyManagers = SSLUtils.getDefaultKeyStoreManagers(LOG);
+                }
+                if (tlsClientParameters.getCertAlias() != null) {
+                    getKeyManagersWithCertAlias(tlsClientParameters, keyManagers);
+                }
+                ctx.init(keyManagers, tlsClientParameters.getTrustManagers(),
+                         tlsClientParameters.getSecureRandom());
 
-            SSLContext ctx = provider == null ? SSLContext.getInstance(protocol) : SSLContext
-                .getInstance(protocol, provider);
-            ctx.getClientSessionContext().setSessionTimeout(tlsClientParameters.getSslCacheTimeout());
-            KeyManager[] keyManagers = tlsClientParameters.getKeyManagers();
-            if (keyManagers == null) {
-                keyManagers = SSLUtils.getDefaultKeyStoreManagers(LOG);
-            }
-            if (tlsClientParameters.getCertAlias() != null) {
-                getKeyManagersWithCertAlias(tlsClientParameters, keyManagers);
+                String[] cipherSuites = 
+                    SSLUtils.getCiphersuitesToInclude(tlsClientParameters.getCipherSuites(), 
+                                                      tlsClientParameters.getCipherSuitesFilter(), 
+                                                      ctx.getSocketFactory().getDefaultCipherSuites(),
+                                                      SSLUtils.getSupportedCipherSuites(ctx), 
+                                                      LOG);
+                // The SSLSocketFactoryWrapper enables certain cipher suites
+                // from the policy.
+                socketFactory = new SSLSocketFactoryWrapper(ctx.getSocketFactory(), cipherSuites,
+                                                            protocol);
+                if (registry != null) {
+                    socketFactory = registry.register(key, socketFactory);
+                }
+                //recalc the hashcode since somet of the above MAY have changed the tlsClientParameters 
+                lastTlsHash = tlsClientParameters.hashCode();
             }
-            ctx.init(keyManagers, tlsClientParameters.getTrustManagers(),
-                     tlsClientParameters.getSecureRandom());
-
-            String[] cipherSuites = 
-                SSLUtils.getCiphersuitesToInclude(tlsClientParameters.getCipherSuites(), 
-                                                  tlsClientParameters.getCipherSuitesFilter(), 
-                                                  ctx.getSocketFactory().getDefaultCipherSuites(),
-                                                  SSLUtils.getSupportedCipherSuites(ctx), 
-                                                  LOG);
-            // The SSLSocketFactoryWrapper enables certain cipher suites
-            // from the policy.
-            socketFactory = new SSLSocketFactoryWrapper(ctx.getSocketFactory(), cipherSuites,
-                                                        protocol);
-            //recalc the hashcode since somet of the above MAY have changed the tlsClientParameters 
-            lastTlsHash = tlsClientParameters.hashCode();
         } else {
            // ssl socket factory already initialized, reuse it to benefit of keep alive
         }
@@ -0,0 +1,198 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.transport.https;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocketFactory;
+
+import org.apache.cxf.Bus;
+import org.apache.cxf.configuration.jsse.TLSClientParameters;
+import org.apache.cxf.configuration.security.FiltersType;
+
+/**
+ * Bus wide registry of the SSLSocketFactories created for the HTTPS conduits. Conduits with
+ * equal TLSClientParameters share one SSLContext, so that a connection to a host another
+ * conduit already talked to can resume the TLS session instead of doing a full handshake.
+ * <p>
+ * The size of the client session cache and the session timeout of the shared contexts can be
+ * configured with the {@link #SESSION_CACHE_SIZE} and {@link #SESSION_TIMEOUT} bus properties,
+ * the number of registered contexts is limited by {@link #MAX_CONTEXTS}.
+ */
+public class SSLContextRegistry {
+    public static final String ENABLED = "org.apache.cxf.transport.https.sharedSSLContext";
+    public static final String SESSION_CACHE_SIZE = "org.apache.cxf.transport.https.sslSessionCacheSize";
+    public static final String SESSION_TIMEOUT = "org.apache.cxf.transport.https.sslSessionTimeout";
+    public static final String MAX_CONTEXTS = "org.apache.cxf.transport.https.maxSharedSSLContexts";
+
+    public static final int DEFAULT_MAX_CONTEXTS = 64;
+
+    private final int sessionCacheSize;
+    private final int sessionTimeout;
+    private final Map<TLSClientParameters, SSLSocketFactory> factories;
+
+    public SSLContextRegistry() {
+        this(0, 0, DEFAULT_MAX_CONTEXTS);
+    }
+
+    /**
+     * @param sessionCacheSize the size of the client session cache, 0 to keep the JSSE default
+     * @param sessionTimeout the session timeout in seconds, 0 to use the one of the TLSClientParameters
+     * @param maxContexts the maximum number of shared contexts, the least recently used one is dropped
+     */
+    public SSLContextRegistry(int sessionCacheSize, int sessionTimeout, final int maxContexts) {
+        this.sessionCacheSize = sessionCacheSize;
+        this.sessionTimeout = sessionTimeout;
+        this.factories = new LinkedHashMap<TLSClientParameters, SSLSocketFactory>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<TLSClientParameters, SSLSocketFactory> eldest) {
+                return size() > maxContexts;
+            }
+        };
+    }
+
+    /**
+     * Returns the registry of the bus, which is created with the settings of the bus properties
+     * on first use, or null if sharing the SSLContexts is disabled for the bus.
+     */
+    public static SSLContextRegistry getRegistry(Bus bus) {
+        if (bus == null || "false".equalsIgnoreCase(getProperty(bus, ENABLED))) {
+            return null;
+        }
+        synchronized (bus) {
+            SSLContextRegistry registry = bus.getExtension(SSLContextRegistry.class);
+            if (registry == null) {
+                registry = new SSLContextRegistry(getInt(bus, SESSION_CACHE_SIZE, 0),
+                                                  getInt(bus, SESSION_TIMEOUT, 0),
+                                                  getInt(bus, MAX_CONTEXTS, DEFAULT_MAX_CONTEXTS));
+                bus.setExtension(registry, SSLContextRegistry.class);
+            }
+            return registry;
+        }
+    }
+
+    public int getSessionCacheSize() {
+        return sessionCacheSize;
+    }
+
+    public int getSessionTimeout() {
+        return sessionTimeout;
+    }
+
+    /**
+     * Returns the SSLSocketFactory registered for TLSClientParameters equal to the given ones.
+     */
+    public synchronized SSLSocketFactory getSocketFactory(TLSClientParameters params) {
+        return factories.get(params);
+    }
+
+    /**
+     * Registers the SSLSocketFactory created for the parameters. If another thread registered a
+     * factory for equal parameters in the meantime, that one is returned and should be used.
+     * @param key a snapshot of the parameters as returned by {@link #createKey(TLSClientParameters)}
+     */
+    public synchronized SSLSocketFactory register(TLSClientParameters key, SSLSocketFactory factory) {
+        SSLSocketFactory old = factories.get(key);
+        if (old != null) {
+            return old;
+        }
+        factories.put(key, factory);
+        return factory;
+    }
+
+    public synchronized int size() {
+        return factories.size();
+    }
+
+    public synchronized void clear() {
+        factories.clear();
+    }
+
+    /**
+     * Applies the session cache settings to a new SSLContext.
+     */
+    public void configure(SSLContext ctx, TLSClientParameters params) {
+        SSLSessionContext sessionContext = ctx.getClientSessionContext();
+        if (sessionCacheSize > 0) {
+            sessionContext.setSessionCacheSize(sessionCacheSize);
+        }
+        sessionContext.setSessionTimeout(sessionTimeout > 0 ? sessionTimeout : params.getSslCacheTimeout());
+    }
+
+    /**
+     * Copies the settings of the parameters which make up their equality. The parameters of a
+     * conduit are mutable, a copy keeps the registry consistent if they are changed later.
+     */
+    public static TLSClientParameters createKey(TLSClientParameters params) {
+        TLSClientParameters key = new TLSClientParameters();
+        key.setDisableCNCheck(params.isDisableCNCheck());
+        key.setSSLSocketFactory(params.getSSLSocketFactory());
+        key.setUseHttpsURLConnectionDefaultSslSocketFactory(
+            params.isUseHttpsURLConnectionDefaultSslSocketFactory());
+        key.setUseHttpsURLConnectionDefaultHostnameVerifier(
+            params.isUseHttpsURLConnectionDefaultHostnameVerifier());
+        key.setSslCacheTimeout(params.getSslCacheTimeout());
+        key.setSecureRandom(params.getSecureRandom());
+        key.setCertAlias(params.getCertAlias());
+        key.setSecureSocketProtocol(params.getSecureSocketProtocol());
+        key.setJsseProvider(params.getJsseProvider());
+        if (params.getCipherSuites() != null) {
+            key.setCipherSuites(new ArrayList<String>(params.getCipherSuites()));
+        }
+        if (params.getKeyManagers() != null) {
+            key.setKeyManagers(params.getKeyManagers().clone());
+        }
+        if (params.getTrustManagers() != null) {
+            key.setTrustManagers(params.getTrustManagers().clone());
+        }
+        FiltersType filters = params.getCipherSuitesFilter();
+        if (filters != null) {
+            FiltersType copy = new FiltersType();
+            copy.getInclude().addAll(filters.getInclude());
+            copy.getExclude().addAll(filters.getExclude());
+            key.setCipherSuitesFilter(copy);
+        }
+        key.setCertConstraints(params.getCertConstraints());
+        return key;
+    }
+
+    private static String getProperty(Bus bus, String name) {
+        Object value = bus.getProperty(name);
+        return value == null ? null : value.toString();
+    }
+
+    private static int getInt(Bus bus, String name, int defaultValue) {
+        String value = getProperty(bus, name);
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException ex) {
+                // use the default
+            }
+        }
+        return defaultValue;
+    }
+}
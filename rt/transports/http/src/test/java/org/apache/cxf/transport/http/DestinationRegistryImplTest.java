@@ -121,6 +121,37 @@ public class DestinationRegistryImplTest extends Assert {
         
     }
 
+    @Test
+    public void testCheckRestfulRequestAfterRemove() throws Exception {
+        AbstractHTTPDestination root = createDestination("/");
+        AbstractHTTPDestination soap = createDestination("/soap");
+        AbstractHTTPDestination soapTest = createDestination("/soap/test/");
+        control.replay();
+        registry.addDestination(root);
+        registry.addDestination(soap);
+        registry.addDestination(soapTest);
+        
+        assertSame(soapTest, registry.checkRestfulRequest("/soap/test/1"));
+        assertSame(soap, registry.checkRestfulRequest("/soap/tests"));
+        assertSame(root, registry.checkRestfulRequest("/other"));
+        
+        registry.removeDestination("/soap/test/");
+        assertSame(soap, registry.checkRestfulRequest("/soap/test/1"));
+        registry.removeDestination("/");
+        assertNull(registry.checkRestfulRequest("/other"));
+        assertSame(soap, registry.checkRestfulRequest("/soap"));
+    }
+    
+    private AbstractHTTPDestination createDestination(String path) {
+        AbstractHTTPDestination destination = control.createMock(AbstractHTTPDestination.class);
+        EndpointInfo endpoint = new EndpointInfo();
+        endpoint.setAddress(path);
+        endpoint.setName(QNAME);
+        EasyMock.expect(destination.getEndpointInfo()).andReturn(endpoint).anyTimes();
+        EasyMock.expect(destination.getMessageObserver()).andReturn(observer).anyTimes();
+        return destination;
+    }
+
     private void setUpDestinations() {
         for (int i = 0; i < REGISTERED_PATHS.length; i++) {
             AbstractHTTPDestination destination = control.createMock(AbstractHTTPDestination.class);
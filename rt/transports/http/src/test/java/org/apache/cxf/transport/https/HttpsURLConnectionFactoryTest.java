@@ -21,6 +21,8 @@ package org.apache.cxf.transport.https;
 import java.lang.reflect.Field;
 import javax.net.ssl.HttpsURLConnection;
 
+import org.apache.cxf.Bus;
+import org.apache.cxf.bus.extension.ExtensionManagerBus;
 import org.apache.cxf.common.util.ReflectionUtil;
 import org.apache.cxf.configuration.jsse.SSLUtils;
 import org.apache.cxf.configuration.jsse.TLSClientParameters;
@@ -118,6 +120,46 @@ public class HttpsURLConnectionFactoryTest {
         }
     }
 
+    @Test
+    public void sharedSSLContext() throws Exception {
+        clearDefaults();
+        System.clearProperty("javax.net.ssl.keyStore");
+        System.clearProperty("javax.net.ssl.keyStorePassword");
+
+        Bus bus = new ExtensionManagerBus();
+        bus.setProperty(SSLContextRegistry.SESSION_CACHE_SIZE, "100");
+        HttpsURLConnectionFactory factory1 = new HttpsURLConnectionFactory(bus);
+        HttpsURLConnectionFactory factory2 = new HttpsURLConnectionFactory(bus);
+        HttpsURLConnectionFactory factory3 = new HttpsURLConnectionFactory(bus);
+
+        TLSClientParameters tlsClientParams1 = new TLSClientParameters();
+        tlsClientParams1.setUseHttpsURLConnectionDefaultSslSocketFactory(false);
+        TLSClientParameters tlsClientParams2 = new TLSClientParameters();
+        tlsClientParams2.setUseHttpsURLConnectionDefaultSslSocketFactory(false);
+        TLSClientParameters tlsClientParams3 = new TLSClientParameters();
+        tlsClientParams3.setUseHttpsURLConnectionDefaultSslSocketFactory(false);
+        tlsClientParams3.setSecureSocketProtocol("TLSv1.2");
+
+        factory1.decorateWithTLS(tlsClientParams1, EasyMock.createMock(HttpsURLConnection.class));
+        factory2.decorateWithTLS(tlsClientParams2, EasyMock.createMock(HttpsURLConnection.class));
+        factory3.decorateWithTLS(tlsClientParams3, EasyMock.createMock(HttpsURLConnection.class));
+
+        Assert.assertNotNull(factory1.socketFactory);
+        Assert.assertSame(factory1.socketFactory, factory2.socketFactory);
+        Assert.assertNotSame(factory1.socketFactory, factory3.socketFactory);
+
+        SSLContextRegistry registry = bus.getExtension(SSLContextRegistry.class);
+        Assert.assertEquals(2, registry.size());
+        Assert.assertEquals(100, registry.getSessionCacheSize());
+
+        // a changed configuration must not affect the registered context
+        tlsClientParams1.setSecureSocketProtocol("TLSv1.2");
+        factory1.decorateWithTLS(tlsClientParams1, EasyMock.createMock(HttpsURLConnection.class));
+        Assert.assertSame(factory3.socketFactory, factory1.socketFactory);
+        Assert.assertEquals(2, registry.size());
+        bus.shutdown(true);
+    }
+
     private void clearDefaults() throws IllegalAccessException {
         Field defaultManagers = ReflectionUtil.getDeclaredField(SSLUtils.class, "defaultManagers");
         ReflectionUtil.setAccessible(defaultManagers);
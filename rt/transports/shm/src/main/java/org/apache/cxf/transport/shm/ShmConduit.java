@@ -0,0 +1,96 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.transport.shm;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.logging.Logger;
+
+import org.apache.cxf.Bus;
+import org.apache.cxf.common.logging.LogUtils;
+import org.apache.cxf.helpers.LoadingByteArrayOutputStream;
+import org.apache.cxf.io.CachedOutputStream;
+import org.apache.cxf.message.Exchange;
+import org.apache.cxf.message.Message;
+import org.apache.cxf.transport.AbstractConduit;
+import org.apache.cxf.ws.addressing.EndpointReferenceType;
+
+/**
+ * Sends the requests to the ring of the target address. The response arrives through the reply
+ * ring of the {@link ShmTransportFactory} and is handed to the message observer of this conduit.
+ */
+public class ShmConduit extends AbstractConduit {
+    private static final Logger LOG = LogUtils.getL7dLogger(ShmConduit.class);
+
+    private final ShmTransportFactory factory;
+    private final Bus bus;
+
+    public ShmConduit(ShmTransportFactory factory, EndpointReferenceType target, Bus bus) {
+        super(target);
+        this.factory = factory;
+        this.bus = bus;
+    }
+
+    public void prepare(final Message message) throws IOException {
+        message.setContent(OutputStream.class, new CachedOutputStream() {
+            private boolean sent;
+
+            @Override
+            protected void doClose() throws IOException {
+                if (!sent) {
+                    sent = true;
+                    send(message, this);
+                }
+            }
+        });
+    }
+
+    void send(Message message, CachedOutputStream body) throws IOException {
+        String address = (String)message.get(Message.ENDPOINT_ADDRESS);
+        if (address == null) {
+            address = getTarget().getAddress().getValue();
+        }
+        Exchange exchange = message.getExchange();
+        boolean oneWay = exchange == null || exchange.isOneWay();
+        long id = factory.nextId();
+        String replyTo = null;
+        if (!oneWay) {
+            replyTo = factory.getReplyTo(bus);
+            factory.expectResponse(id, this, bus, exchange);
+        }
+        LoadingByteArrayOutputStream bytes = ShmMessageCodec.encode(message, replyTo, body);
+        try {
+            factory.send(bus, ShmTransportFactory.getRingName(address), id, bytes.getRawBytes(), bytes.size());
+        } catch (IOException ex) {
+            factory.cancelResponse(id);
+            throw ex;
+        }
+    }
+
+    @Override
+    public void close() {
+        factory.cancelResponses(this);
+        super.close();
+    }
+
+    protected Logger getLogger() {
+        return LOG;
+    }
+}
@@ -0,0 +1,191 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.transport.shm;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.cxf.Bus;
+import org.apache.cxf.common.logging.LogUtils;
+import org.apache.cxf.helpers.LoadingByteArrayOutputStream;
+import org.apache.cxf.io.CachedOutputStream;
+import org.apache.cxf.message.Exchange;
+import org.apache.cxf.message.ExchangeImpl;
+import org.apache.cxf.message.Message;
+import org.apache.cxf.message.MessageImpl;
+import org.apache.cxf.message.MessageUtils;
+import org.apache.cxf.service.model.EndpointInfo;
+import org.apache.cxf.transport.AbstractDestination;
+import org.apache.cxf.transport.Conduit;
+import org.apache.cxf.transport.MessageObserver;
+import org.apache.cxf.ws.addressing.EndpointReferenceType;
+
+/**
+ * Receives the requests appended to the ring of its address and sends the responses back to the
+ * reply ring named in the request.
+ */
+public class ShmDestination extends AbstractDestination {
+    static final String REPLY_TO = ShmDestination.class.getName() + ".replyTo";
+    static final String CORRELATION_ID = ShmDestination.class.getName() + ".correlationId";
+
+    private static final Logger LOG = LogUtils.getL7dLogger(ShmDestination.class);
+
+    private final ShmTransportFactory factory;
+    private final String ringName;
+    private ShmRingBuffer ring;
+    private ShmReceiver receiver;
+    private Executor executor;
+
+    public ShmDestination(ShmTransportFactory factory,
+                          EndpointReferenceType epr,
+                          EndpointInfo ei,
+                          Bus bus) {
+        super(bus, epr, ei);
+        this.factory = factory;
+        this.ringName = ShmTransportFactory.getRingName(epr.getAddress().getValue());
+    }
+
+    public String getRingName() {
+        return ringName;
+    }
+
+    public Bus getBus() {
+        return bus;
+    }
+
+    @Override
+    protected synchronized void activate() {
+        executor = factory.getExecutor(bus);
+        try {
+            ring = ShmRingBuffer.create(factory.getRingFile(bus, ringName), factory.getRingSize(bus));
+        } catch (IOException ex) {
+            throw new IllegalStateException("Could not create the shared memory ring of "
+                                            + getAddress().getAddress().getValue(), ex);
+        }
+        receiver = new ShmReceiver(ring, new ShmReceiver.Listener() {
+            public void onMessage(long id, byte[] bytes, int length) {
+                requestReceived(id, bytes, length);
+            }
+            public void expire(long now) {
+            }
+        }, factory.getMaxIdleWait(bus), factory.getPartialTimeout(bus));
+        receiver.start("shm-destination-" + ringName);
+    }
+
+    @Override
+    protected synchronized void deactivate() {
+        if (receiver != null) {
+            receiver.stop();
+            ring.destroy();
+            receiver = null;
+            ring = null;
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        factory.remove(this);
+        super.shutdown();
+    }
+
+    void requestReceived(long id, byte[] bytes, int length) {
+        final MessageImpl m = new MessageImpl();
+        String replyTo;
+        try {
+            replyTo = ShmMessageCodec.decode(bytes, length, m);
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, "Could not read the request " + id + " of " + ringName, ex);
+            return;
+        }
+        if (replyTo != null) {
+            m.put(REPLY_TO, replyTo);
+        }
+        m.put(CORRELATION_ID, id);
+        m.setDestination(this);
+        Exchange exchange = new ExchangeImpl();
+        exchange.put(Bus.class, bus);
+        exchange.setDestination(this);
+        exchange.setInMessage(m);
+
+        Runnable r = new Runnable() {
+            public void run() {
+                MessageObserver observer = getMessageObserver();
+                if (observer != null) {
+                    observer.onMessage(m);
+                }
+            }
+        };
+        if (executor != null) {
+            executor.execute(r);
+        } else {
+            r.run();
+        }
+    }
+
+    protected Logger getLogger() {
+        return LOG;
+    }
+
+    @Override
+    protected Conduit getInbuiltBackChannel(Message inMessage) {
+        String replyTo = (String)inMessage.get(REPLY_TO);
+        if (replyTo == null) {
+            return null;
+        }
+        return new BackChannelConduit(replyTo, (Long)inMessage.get(CORRELATION_ID));
+    }
+
+    class BackChannelConduit extends AbstractBackChannelConduit {
+        private final String replyTo;
+        private final long id;
+
+        BackChannelConduit(String replyTo, long id) {
+            this.replyTo = replyTo;
+            this.id = id;
+        }
+
+        public void prepare(final Message message) throws IOException {
+            message.setContent(OutputStream.class, new CachedOutputStream() {
+                private boolean sent;
+
+                @Override
+                protected void doClose() throws IOException {
+                    if (!sent) {
+                        sent = true;
+                        send(message, this);
+                    }
+                }
+            });
+        }
+
+        void send(Message message, CachedOutputStream body) throws IOException {
+            if (message.get(Message.RESPONSE_CODE) == null) {
+                int code = ((message.getExchange().isOneWay() && !MessageUtils.isPartialResponse(message))
+                    || MessageUtils.isEmptyPartialResponse(message)) ? 202 : 200;
+                message.put(Message.RESPONSE_CODE, code);
+            }
+            LoadingByteArrayOutputStream bytes = ShmMessageCodec.encode(message, null, body);
+            factory.send(bus, replyTo, id, bytes.getRawBytes(), bytes.size());
+        }
+    }
+}
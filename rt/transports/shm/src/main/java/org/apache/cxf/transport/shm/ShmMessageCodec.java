@@ -0,0 +1,145 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.transport.shm;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.cxf.helpers.CastUtils;
+import org.apache.cxf.helpers.LoadingByteArrayOutputStream;
+import org.apache.cxf.io.CachedOutputStream;
+import org.apache.cxf.message.Message;
+
+/**
+ * Writes the transport relevant properties, the protocol headers and the body of a message into
+ * the bytes passed through a {@link ShmRingBuffer}, and reads them back into a message.
+ */
+final class ShmMessageCodec {
+    static final List<String> PROPERTIES = Arrays.asList(Message.CONTENT_TYPE,
+                                                         Message.ENCODING,
+                                                         Message.ACCEPT_CONTENT_TYPE,
+                                                         Message.REQUEST_URI,
+                                                         Message.HTTP_REQUEST_METHOD);
+    private static final int VERSION = 1;
+
+    private ShmMessageCodec() {
+    }
+
+    static LoadingByteArrayOutputStream encode(Message message,
+                                               String replyTo,
+                                               CachedOutputStream body) throws IOException {
+        LoadingByteArrayOutputStream bout = new LoadingByteArrayOutputStream(256 + (int)body.size());
+        DataOutputStream out = new DataOutputStream(bout);
+        out.writeInt(VERSION);
+        out.writeUTF(replyTo == null ? "" : replyTo);
+        Integer code = (Integer)message.get(Message.RESPONSE_CODE);
+        out.writeInt(code == null ? -1 : code);
+
+        List<String> keys = new ArrayList<String>(PROPERTIES.size());
+        for (String key : PROPERTIES) {
+            if (message.get(key) instanceof String) {
+                keys.add(key);
+            }
+        }
+        out.writeInt(keys.size());
+        for (String key : keys) {
+            out.writeUTF(key);
+            out.writeUTF((String)message.get(key));
+        }
+
+        Map<String, List<String>> headers = CastUtils.cast((Map<?, ?>)message.get(Message.PROTOCOL_HEADERS));
+        if (headers == null) {
+            out.writeInt(0);
+        } else {
+            out.writeInt(headers.size());
+            for (Map.Entry<String, List<String>> e : headers.entrySet()) {
+                out.writeUTF(e.getKey());
+                List<String> values = e.getValue() == null ? new ArrayList<String>() : e.getValue();
+                out.writeInt(values.size());
+                for (String value : values) {
+                    out.writeUTF(value == null ? "" : value);
+                }
+            }
+        }
+
+        out.writeInt((int)body.size());
+        out.flush();
+        body.writeCacheTo(bout);
+        return bout;
+    }
+
+    /**
+     * Fills the message from the bytes, the body becomes its InputStream.
+     * @return the name of the ring to send the response to, null for one way messages
+     */
+    static String decode(byte[] bytes, int length, Message message) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, length));
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported shared memory message version " + version);
+        }
+        String replyTo = in.readUTF();
+        int code = in.readInt();
+        if (code != -1) {
+            message.put(Message.RESPONSE_CODE, code);
+        }
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String key = in.readUTF();
+            if (!PROPERTIES.contains(key)) {
+                throw new IOException("Unexpected shared memory message property " + key);
+            }
+            message.put(key, in.readUTF());
+        }
+
+        Map<String, List<String>> headers = new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
+        count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String key = in.readUTF();
+            int n = in.readInt();
+            // every value takes at least its two length bytes
+            if (n < 0 || n > in.available() / 2) {
+                throw new IOException("Corrupt shared memory message");
+            }
+            List<String> values = new ArrayList<String>(n);
+            for (int j = 0; j < n; j++) {
+                values.add(in.readUTF());
+            }
+            headers.put(key, values);
+        }
+        message.put(Message.PROTOCOL_HEADERS, headers);
+
+        int size = in.readInt();
+        int offset = length - in.available();
+        if (offset + size > length) {
+            throw new IOException("Truncated shared memory message");
+        }
+        message.setContent(InputStream.class, new ByteArrayInputStream(bytes, offset, size));
+        return replyTo.length() == 0 ? null : replyTo;
+    }
+}
@@ -0,0 +1,171 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.transport.shm;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.cxf.common.logging.LogUtils;
+import org.apache.cxf.helpers.LoadingByteArrayOutputStream;
+
+/**
+ * Polls a {@link ShmRingBuffer} on a dedicated thread and hands the reassembled messages to a
+ * listener. The thread spins briefly after a message, as more usually follow, and then backs
+ * off to parking for up to the maximum idle wait.
+ * <p>
+ * About once a second the thread drops the messages whose remaining parts did not arrive within
+ * the partial timeout, as their sender died or gave up, and lets the listener expire its state.
+ */
+class ShmReceiver implements Runnable {
+    private static final Logger LOG = LogUtils.getL7dLogger(ShmReceiver.class);
+    private static final int SPINS = 100;
+    private static final long SWEEP_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    interface Listener {
+        void onMessage(long id, byte[] bytes, int length);
+
+        /**
+         * Called periodically from the receiving thread with the current {@link System#nanoTime()}.
+         */
+        void expire(long now);
+    }
+
+    private final ShmRingBuffer ring;
+    private final Listener listener;
+    private final long maxIdleWait;
+    private final long partialTimeout;
+    private final Map<Long, Partial> partial = new HashMap<Long, Partial>();
+    private volatile boolean running = true;
+    private Thread thread;
+
+    ShmReceiver(ShmRingBuffer ring, Listener listener, long maxIdleWaitMicros, long partialTimeoutMillis) {
+        this.ring = ring;
+        this.listener = listener;
+        this.maxIdleWait = TimeUnit.MICROSECONDS.toNanos(Math.max(1, maxIdleWaitMicros));
+        this.partialTimeout = TimeUnit.MILLISECONDS.toNanos(partialTimeoutMillis);
+    }
+
+    void start(String name) {
+        thread = new Thread(this, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void stop() {
+        running = false;
+        if (thread != null && thread != Thread.currentThread()) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(1000);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public void run() {
+        int idle = 0;
+        long nextSweep = System.nanoTime() + SWEEP_INTERVAL;
+        while (running) {
+            long now = System.nanoTime();
+            if (now - nextSweep >= 0) {
+                sweep(now);
+                nextSweep = now + SWEEP_INTERVAL;
+            }
+            ShmRingBuffer.Fragment fragment;
+            try {
+                fragment = ring.poll();
+            } catch (IOException ex) {
+                if (running) {
+                    LOG.log(Level.WARNING, "Could not read from " + ring.getFile(), ex);
+                    LockSupport.parkNanos(maxIdleWait);
+                }
+                continue;
+            }
+            if (fragment == null) {
+                idle++;
+                if (idle > SPINS) {
+                    LockSupport.parkNanos(Math.min(maxIdleWait, 1000L << Math.min(idle - SPINS, 20)));
+                } else {
+                    Thread.yield();
+                }
+                continue;
+            }
+            idle = 0;
+            received(fragment);
+        }
+    }
+
+    void received(ShmRingBuffer.Fragment fragment) {
+        Partial message = partial.get(fragment.id);
+        if (fragment.last && message == null) {
+            deliver(fragment.id, fragment.data, fragment.data.length);
+            return;
+        }
+        if (message == null) {
+            message = new Partial(fragment.data.length * 4);
+            partial.put(fragment.id, message);
+        }
+        message.bytes.write(fragment.data, 0, fragment.data.length);
+        message.updated = System.nanoTime();
+        if (fragment.last) {
+            partial.remove(fragment.id);
+            deliver(fragment.id, message.bytes.getRawBytes(), message.bytes.size());
+        }
+    }
+
+    void sweep(long now) {
+        for (Iterator<Map.Entry<Long, Partial>> it = partial.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<Long, Partial> e = it.next();
+            if (now - e.getValue().updated > partialTimeout) {
+                it.remove();
+                LOG.warning("Dropping the incomplete message " + e.getKey() + " from " + ring.getFile());
+            }
+        }
+        try {
+            listener.expire(now);
+        } catch (RuntimeException ex) {
+            LOG.log(Level.WARNING, "Could not expire the state of " + ring.getFile(), ex);
+        }
+    }
+
+    private void deliver(long id, byte[] bytes, int length) {
+        try {
+            listener.onMessage(id, bytes, length);
+        } catch (RuntimeException ex) {
+            LOG.log(Level.WARNING, "Could not dispatch the message " + id + " from " + ring.getFile(), ex);
+        }
+    }
+
+    private static final class Partial {
+        final LoadingByteArrayOutputStream bytes;
+        long updated;
+
+        Partial(int size) {
+            bytes = new LoadingByteArrayOutputStream(size);
+        }
+    }
+}
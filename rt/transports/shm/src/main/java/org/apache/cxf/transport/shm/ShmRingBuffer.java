@@ -0,0 +1,458 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.transport.shm;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A ring buffer in a memory mapped file which any number of processes on the host may append
+ * records to and one process, the owner which created the file, consumes.
+ * <p>
+ * The file starts with a header holding the capacity and the monotonic write and read positions,
+ * followed by the data area. A record is a length, the id of the message it belongs to, flags and
+ * the payload. Messages larger than a quarter of the capacity are split into several records,
+ * the last one is flagged. The header is updated under a lock on the header region of the file,
+ * which orders the accesses of the processes, and under a JVM lock as file locks are held per
+ * process. The rings are therefore shared per file within a JVM, see {@link #open(File)}.
+ * <p>
+ * When the owner goes away it marks the ring as closed, writers then fail and may open the ring
+ * the new owner created. The owner holds a lock on a byte past the end of the file for as long as
+ * it lives, so a ring is only ever replaced once its owner is gone.
+ * <p>
+ * The file may be written by any process of the user, so the positions and lengths read from it
+ * are checked and a ring holding bad values is treated as corrupt.
+ */
+public final class ShmRingBuffer implements Closeable {
+    public static final int MIN_CAPACITY = 4096;
+
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_HEADER_SIZE = 4 + 8 + 1;
+    static final byte LAST_FRAGMENT = 1;
+
+    private static final int MAGIC = 0x43584652;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int STATE_OFFSET = 4;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int WRITE_OFFSET = 16;
+    private static final int READ_OFFSET = 24;
+    private static final int STATE_OPEN = 0;
+    private static final int STATE_CLOSED = 1;
+    private static final long OWNER_LOCK_POSITION = Long.MAX_VALUE - 1;
+
+    private static final Map<File, ShmRingBuffer> OPEN_RINGS = new HashMap<File, ShmRingBuffer>();
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final MappedByteBuffer buffer;
+    private final ByteBuffer data;
+    private final int capacity;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final byte[] recordHeader = new byte[RECORD_HEADER_SIZE];
+    private FileChannel channel;
+    private FileLock ownerLock;
+    private boolean owner;
+    private int references;
+
+    private ShmRingBuffer(File file, RandomAccessFile raf, int capacity) throws IOException {
+        this.file = file;
+        this.raf = raf;
+        this.channel = raf.getChannel();
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long)capacity);
+        this.capacity = capacity;
+        buffer.position(HEADER_SIZE);
+        this.data = buffer.slice();
+        buffer.position(0);
+    }
+
+    /**
+     * Creates the ring for the owner, replacing a ring left behind in the file by a previous owner.
+     * The previous ring is marked closed first so that the processes still writing to it notice.
+     * @throws IOException if the owner of the ring in the file is still alive
+     */
+    public static synchronized ShmRingBuffer create(File file, int capacity) throws IOException {
+        if (capacity < MIN_CAPACITY) {
+            throw new IllegalArgumentException("The capacity of a ring must be at least " + MIN_CAPACITY);
+        }
+        File key = file.getAbsoluteFile();
+        ShmRingBuffer old = OPEN_RINGS.get(key);
+        if (old != null && old.owner) {
+            throw new IOException("The shared memory ring " + key + " is owned by this process already");
+        }
+        if (key.exists()) {
+            checkAbandoned(key);
+        }
+        OPEN_RINGS.remove(key);
+        if (old != null) {
+            old.markClosed();
+        } else if (key.exists()) {
+            try {
+                old = map(key);
+                old.markClosed();
+                old.unmap();
+            } catch (IOException ex) {
+                //not a ring, just replace it
+            }
+        }
+        if (key.exists() && !key.delete()) {
+            throw new IOException("Could not replace " + key);
+        }
+        File parent = key.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+            throw new IOException("Could not create the directory " + parent);
+        }
+        RandomAccessFile raf = new RandomAccessFile(key, "rw");
+        try {
+            raf.setLength(HEADER_SIZE + (long)capacity);
+            ShmRingBuffer ring = new ShmRingBuffer(key, raf, capacity);
+            ring.ownerLock = tryOwnerLock(ring.channel);
+            if (ring.ownerLock == null) {
+                throw new IOException("The shared memory ring " + key + " was created by another process");
+            }
+            ring.owner = true;
+            ring.buffer.putInt(CAPACITY_OFFSET, capacity);
+            ring.buffer.putLong(WRITE_OFFSET, 0);
+            ring.buffer.putLong(READ_OFFSET, 0);
+            ring.buffer.putInt(STATE_OFFSET, STATE_OPEN);
+            ring.buffer.putInt(MAGIC_OFFSET, MAGIC);
+            ring.references = 1;
+            OPEN_RINGS.put(key, ring);
+            return ring;
+        } catch (IOException ex) {
+            raf.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Fails if a live process holds the owner lock of the ring in the file.
+     */
+    private static void checkAbandoned(File key) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(key, "rw");
+        try {
+            if (tryOwnerLock(raf.getChannel()) == null) {
+                throw new IOException("The shared memory ring " + key + " is owned by a running process");
+            }
+        } finally {
+            // releases the lock again
+            raf.close();
+        }
+    }
+
+    private static FileLock tryOwnerLock(FileChannel fc) throws IOException {
+        try {
+            return fc.tryLock(OWNER_LOCK_POSITION, 1, false);
+        } catch (OverlappingFileLockException ex) {
+            // held by another channel of this JVM
+            return null;
+        }
+    }
+
+    /**
+     * Opens the ring an owner created in the file to write to it.
+     */
+    public static synchronized ShmRingBuffer open(File file) throws IOException {
+        File key = file.getAbsoluteFile();
+        ShmRingBuffer ring = OPEN_RINGS.get(key);
+        if (ring == null || ring.isClosed()) {
+            if (!key.exists()) {
+                throw new IOException("No shared memory ring at " + key);
+            }
+            ring = map(key);
+            OPEN_RINGS.put(key, ring);
+        }
+        ring.references++;
+        return ring;
+    }
+
+    private static ShmRingBuffer map(File key) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(key, "rw");
+        try {
+            if (raf.length() < HEADER_SIZE + MIN_CAPACITY) {
+                throw new IOException(key + " is not a shared memory ring");
+            }
+            MappedByteBuffer header = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            int capacity = header.getInt(CAPACITY_OFFSET);
+            if (header.getInt(MAGIC_OFFSET) != MAGIC || raf.length() < HEADER_SIZE + (long)capacity) {
+                throw new IOException(key + " is not a shared memory ring");
+            }
+            return new ShmRingBuffer(key, raf, capacity);
+        } catch (IOException ex) {
+            raf.close();
+            throw ex;
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the largest payload of a single record, larger messages are split.
+     */
+    public int getMaxFragmentSize() {
+        return capacity / 4 - RECORD_HEADER_SIZE;
+    }
+
+    public boolean isClosed() {
+        return buffer.getInt(STATE_OFFSET) != STATE_OPEN;
+    }
+
+    /**
+     * Appends the message as one or more records, waiting up to the timeout for the owner to make
+     * room.
+     */
+    public void write(long id, byte[] bytes, int off, int len, long timeout) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        int maxFragment = getMaxFragmentSize();
+        int pos = off;
+        int end = off + len;
+        do {
+            int n = Math.min(maxFragment, end - pos);
+            byte flags = pos + n == end ? LAST_FRAGMENT : 0;
+            long wait = 1000;
+            while (!tryWrite(id, flags, bytes, pos, n)) {
+                if (System.nanoTime() - deadline > 0) {
+                    throw new IOException("Timed out waiting for space in the shared memory ring " + file);
+                }
+                LockSupport.parkNanos(wait);
+                wait = Math.min(wait * 2, TimeUnit.MILLISECONDS.toNanos(1));
+            }
+            pos += n;
+        } while (pos < end);
+    }
+
+    private boolean tryWrite(long id, byte flags, byte[] bytes, int off, int len) throws IOException {
+        FileLock fileLock = lock();
+        try {
+            if (isClosed()) {
+                throw new IOException("The shared memory ring " + file + " was closed");
+            }
+            long write = buffer.getLong(WRITE_OFFSET);
+            long read = buffer.getLong(READ_OFFSET);
+            if (capacity - (write - read) < RECORD_HEADER_SIZE + len) {
+                return false;
+            }
+            ByteBuffer header = ByteBuffer.wrap(recordHeader);
+            header.putInt(len).putLong(id).put(flags);
+            put(write, recordHeader, 0, RECORD_HEADER_SIZE);
+            put(write + RECORD_HEADER_SIZE, bytes, off, len);
+            buffer.putLong(WRITE_OFFSET, write + RECORD_HEADER_SIZE + len);
+            return true;
+        } finally {
+            unlock(fileLock);
+        }
+    }
+
+    /**
+     * Takes the next record out of the ring, only the owner may call it.
+     * @return the record or null if the ring is empty
+     */
+    public Fragment poll() throws IOException {
+        // only the owner moves the read position, an empty ring is seen without taking the locks
+        if (buffer.getLong(WRITE_OFFSET) == buffer.getLong(READ_OFFSET)) {
+            return null;
+        }
+        FileLock fileLock = lock();
+        try {
+            long write = buffer.getLong(WRITE_OFFSET);
+            long read = buffer.getLong(READ_OFFSET);
+            if (write == read) {
+                return null;
+            }
+            long available = write - read;
+            if (available < RECORD_HEADER_SIZE || available > capacity) {
+                throw corrupt(write, "positions " + read + " and " + write);
+            }
+            get(read, recordHeader, 0, RECORD_HEADER_SIZE);
+            ByteBuffer header = ByteBuffer.wrap(recordHeader);
+            int len = header.getInt();
+            if (len < 0 || len > getMaxFragmentSize() || RECORD_HEADER_SIZE + len > available) {
+                throw corrupt(write, "record length " + len);
+            }
+            Fragment fragment = new Fragment(header.getLong(), header.get() == LAST_FRAGMENT, new byte[len]);
+            get(read + RECORD_HEADER_SIZE, fragment.data, 0, len);
+            buffer.putLong(READ_OFFSET, read + RECORD_HEADER_SIZE + len);
+            return fragment;
+        } finally {
+            unlock(fileLock);
+        }
+    }
+
+    /**
+     * Drops everything written so far, the records can not be told apart anymore.
+     */
+    private IOException corrupt(long write, String what) {
+        buffer.putLong(READ_OFFSET, write);
+        return new IOException("Dropped the corrupt contents of the shared memory ring " + file
+                               + ", it had the " + what);
+    }
+
+    private void put(long position, byte[] bytes, int off, int len) {
+        int index = (int)(position % capacity);
+        int first = Math.min(len, capacity - index);
+        data.position(index);
+        data.put(bytes, off, first);
+        if (first < len) {
+            data.position(0);
+            data.put(bytes, off + first, len - first);
+        }
+    }
+
+    private void get(long position, byte[] bytes, int off, int len) {
+        int index = (int)(position % capacity);
+        int first = Math.min(len, capacity - index);
+        data.position(index);
+        data.get(bytes, off, first);
+        if (first < len) {
+            data.position(0);
+            data.get(bytes, off + first, len - first);
+        }
+    }
+
+    private FileLock lock() throws IOException {
+        lock.lock();
+        try {
+            return channel().lock(0, HEADER_SIZE, false);
+        } catch (IOException ex) {
+            lock.unlock();
+            throw ex;
+        } catch (RuntimeException ex) {
+            lock.unlock();
+            throw ex;
+        }
+    }
+
+    private void unlock(FileLock fileLock) {
+        try {
+            fileLock.release();
+        } catch (IOException ex) {
+            //the lock goes away with the channel
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private FileChannel channel() throws IOException {
+        if (!channel.isOpen()) {
+            // an interrupt while waiting for the lock closes the channel, the mapping stays valid
+            channel = new RandomAccessFile(file, "rw").getChannel();
+            if (ownerLock != null) {
+                // closing the channel dropped the locks of the process
+                ownerLock = tryOwnerLock(channel);
+            }
+            if (Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+                throw new ClosedChannelException();
+            }
+        }
+        return channel;
+    }
+
+    private void markClosed() {
+        buffer.putInt(STATE_OFFSET, STATE_CLOSED);
+        buffer.force();
+    }
+
+    private void unmap() {
+        try {
+            channel.close();
+            raf.close();
+        } catch (IOException ex) {
+            //ignore
+        }
+    }
+
+    /**
+     * Gives up the ring, the last user in the JVM closes the file.
+     */
+    public void close() {
+        synchronized (ShmRingBuffer.class) {
+            if (--references > 0) {
+                return;
+            }
+            if (OPEN_RINGS.get(file) == this) {
+                OPEN_RINGS.remove(file);
+            }
+        }
+        unmap();
+    }
+
+    /**
+     * Closes the ring for the writers and deletes the file, only the owner may call it.
+     */
+    public void destroy() {
+        markClosed();
+        synchronized (ShmRingBuffer.class) {
+            if (OPEN_RINGS.get(file) == this) {
+                OPEN_RINGS.remove(file);
+                if (!file.delete()) {
+                    file.deleteOnExit();
+                }
+            }
+            references = 0;
+        }
+        unmap();
+    }
+
+    /**
+     * A record of the ring, a message or a part of it.
+     */
+    public static final class Fragment {
+        final long id;
+        final boolean last;
+        final byte[] data;
+
+        Fragment(long id, boolean last, byte[] data) {
+            this.id = id;
+            this.last = last;
+            this.data = data;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public boolean isLast() {
+            return last;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+    }
+}
@@ -0,0 +1,523 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.transport.shm;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.cxf.Bus;
+import org.apache.cxf.buslifecycle.BusLifeCycleListener;
+import org.apache.cxf.buslifecycle.BusLifeCycleManager;
+import org.apache.cxf.common.injection.NoJSR250Annotations;
+import org.apache.cxf.common.logging.LogUtils;
+import org.apache.cxf.endpoint.ClientImpl;
+import org.apache.cxf.message.Exchange;
+import org.apache.cxf.message.Message;
+import org.apache.cxf.message.MessageImpl;
+import org.apache.cxf.phase.PhaseInterceptorChain;
+import org.apache.cxf.service.model.EndpointInfo;
+import org.apache.cxf.transport.AbstractTransportFactory;
+import org.apache.cxf.transport.Conduit;
+import org.apache.cxf.transport.ConduitInitiator;
+import org.apache.cxf.transport.Destination;
+import org.apache.cxf.transport.DestinationFactory;
+import org.apache.cxf.transport.MessageObserver;
+import org.apache.cxf.workqueue.SynchronousExecutor;
+import org.apache.cxf.workqueue.WorkQueueManager;
+import org.apache.cxf.ws.addressing.AttributedURIType;
+import org.apache.cxf.ws.addressing.EndpointReferenceType;
+import org.apache.cxf.wsdl.http.AddressType;
+
+/**
+ * Transport between the JVMs of one host through rings in memory mapped files, see
+ * {@link ShmRingBuffer}.
+ * <p>
+ * A destination at <code>shm://name</code> owns the ring <code>name.ring</code> in the shared
+ * directory and consumes the requests the conduits of any process append to it. Each factory which
+ * sends requests expecting a response owns a reply ring as well, a request carries the name of
+ * that ring and an id which the response is correlated with.
+ */
+@NoJSR250Annotations
+public class ShmTransportFactory extends AbstractTransportFactory
+    implements DestinationFactory, ConduitInitiator {
+
+    public static final String TRANSPORT_ID = "http://cxf.apache.org/transports/shm";
+    public static final List<String> DEFAULT_NAMESPACES
+        = Arrays.asList(TRANSPORT_ID);
+
+    /**
+     * The directory of the ring files, it must be the same for all the processes. The default is a
+     * directory only the current user can access in <code>java.io.tmpdir</code>.
+     */
+    public static final String DIRECTORY = "org.apache.cxf.transport.shm.directory";
+    /** The size in bytes of the data area of the rings this process creates. */
+    public static final String RING_SIZE = "org.apache.cxf.transport.shm.ringSize";
+    /** How long in milliseconds a sender waits for room in a full ring. */
+    public static final String WRITE_TIMEOUT = "org.apache.cxf.transport.shm.writeTimeout";
+    /** The longest time in microseconds an idle receiver parks between two polls of its ring. */
+    public static final String MAX_IDLE_WAIT = "org.apache.cxf.transport.shm.maxIdleWait";
+    /**
+     * How long in milliseconds a request waits for its response before the exchange is completed
+     * with a fault.
+     */
+    public static final String RECEIVE_TIMEOUT = "org.apache.cxf.transport.shm.receiveTimeout";
+
+    public static final int DEFAULT_RING_SIZE = 4 * 1024 * 1024;
+    public static final long DEFAULT_WRITE_TIMEOUT = 30000;
+    public static final long DEFAULT_MAX_IDLE_WAIT = 1000;
+    public static final long DEFAULT_RECEIVE_TIMEOUT = 60000;
+
+    static final String RING_SUFFIX = ".ring";
+
+    private static final Logger LOG = LogUtils.getL7dLogger(ShmTransportFactory.class);
+    private static final Set<String> URI_PREFIXES = new HashSet<String>();
+    private static final String NULL_ADDRESS = "shm://";
+    private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rwx------");
+    private static File defaultDirectory;
+
+    static {
+        URI_PREFIXES.add("shm://");
+    }
+
+    private final ConcurrentMap<String, Destination> destinations
+        = new ConcurrentHashMap<String, Destination>();
+    private final ConcurrentMap<String, ShmRingBuffer> rings
+        = new ConcurrentHashMap<String, ShmRingBuffer>();
+    private final ConcurrentMap<Long, PendingResponse> pending
+        = new ConcurrentHashMap<Long, PendingResponse>();
+    // ids start at a random base so that the requests of different processes do not clash
+    private final AtomicLong ids = new AtomicLong((long)new Random().nextInt() << 32);
+
+    private Set<String> uriPrefixes = new HashSet<String>(URI_PREFIXES);
+    private volatile Executor executor;
+    private Bus replyBus;
+    private String replyTo;
+    private ShmRingBuffer replyRing;
+    private ShmReceiver replyReceiver;
+
+    public ShmTransportFactory() {
+        super(DEFAULT_NAMESPACES);
+    }
+
+    public Destination getDestination(EndpointInfo ei, Bus bus) throws IOException {
+        return getDestination(ei, createReference(ei), bus);
+    }
+
+    protected Destination getDestination(EndpointInfo ei,
+                                         EndpointReferenceType reference,
+                                         Bus bus)
+        throws IOException {
+        String addr = reference.getAddress().getValue();
+        if (addr == null) {
+            AddressType tp = ei.getExtensor(AddressType.class);
+            if (tp != null) {
+                addr = tp.getLocation();
+            }
+        }
+        if (addr == null) {
+            addr = NULL_ADDRESS;
+        }
+        Destination d = destinations.get(addr);
+        if (d == null) {
+            LOG.fine("Creating destination for address " + addr);
+            d = new ShmDestination(this, reference, ei, bus);
+            Destination tmpD = destinations.putIfAbsent(addr, d);
+            if (tmpD != null) {
+                d = tmpD;
+            }
+        }
+        return d;
+    }
+
+    void remove(ShmDestination destination) {
+        for (Map.Entry<String, Destination> e : destinations.entrySet())  {
+            if (e.getValue() == destination) {
+                destinations.remove(e.getKey());
+            }
+        }
+    }
+
+    public Conduit getConduit(EndpointInfo ei, Bus bus) throws IOException {
+        return getConduit(ei, null, bus);
+    }
+
+    public Conduit getConduit(EndpointInfo ei, EndpointReferenceType target, Bus bus) throws IOException {
+        if (target == null) {
+            target = createReference(ei);
+        }
+        return new ShmConduit(this, target, bus);
+    }
+
+    EndpointReferenceType createReference(EndpointInfo ei) {
+        EndpointReferenceType epr = new EndpointReferenceType();
+        AttributedURIType address = new AttributedURIType();
+        address.setValue(ei.getAddress());
+        epr.setAddress(address);
+        return epr;
+    }
+
+    public Set<String> getUriPrefixes() {
+        return uriPrefixes;
+    }
+
+    public void setUriPrefixes(Set<String> s) {
+        uriPrefixes = s;
+    }
+
+    public Executor getExecutor(Bus bus) {
+        if (executor == null && bus != null) {
+            WorkQueueManager manager = bus.getExtension(WorkQueueManager.class);
+            if (manager != null) {
+                Executor ex = manager.getNamedWorkQueue("shm-transport");
+                if (ex == null) {
+                    ex = manager.getAutomaticWorkQueue();
+                }
+                return ex;
+            }
+        }
+        return executor;
+    }
+
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Maps an address to the name of its ring, e.g. <code>shm://orders/OrderService</code> to
+     * <code>orders_OrderService</code>.
+     */
+    public static String getRingName(String address) {
+        String name = address == null ? "" : address;
+        if (name.startsWith("shm://")) {
+            name = name.substring(6);
+        } else if (name.startsWith("shm:")) {
+            name = name.substring(4);
+        }
+        StringBuilder b = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            b.append(Character.isLetterOrDigit(c) || c == '.' || c == '-' ? c : '_');
+        }
+        return b.length() == 0 ? "default" : b.toString();
+    }
+
+    File getRingFile(Bus bus, String name) throws IOException {
+        Object dir = bus == null ? null : bus.getProperty(DIRECTORY);
+        File directory = dir == null ? getDefaultDirectory() : new File(dir.toString());
+        return new File(directory, name + RING_SUFFIX);
+    }
+
+    /**
+     * The default directory is in the shared temporary directory, so it is created readable by
+     * its owner only and refused if somebody else created it or opened it up.
+     */
+    private static synchronized File getDefaultDirectory() throws IOException {
+        if (defaultDirectory != null) {
+            return defaultDirectory;
+        }
+        Path dir = Paths.get(System.getProperty("java.io.tmpdir"),
+                             "cxf-shm-" + System.getProperty("user.name"));
+        boolean posix = Files.getFileAttributeView(dir.getParent(), PosixFileAttributeView.class) != null;
+        if (!Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS)) {
+            try {
+                if (posix) {
+                    Files.createDirectory(dir, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+                } else {
+                    Files.createDirectory(dir);
+                    File f = dir.toFile();
+                    if (!(f.setReadable(false, false) && f.setReadable(true, true)
+                        && f.setWritable(false, false) && f.setWritable(true, true)
+                        && f.setExecutable(false, false) && f.setExecutable(true, true))) {
+                        throw new IOException("Could not restrict the permissions of " + dir);
+                    }
+                }
+            } catch (FileAlreadyExistsException ex) {
+                // created concurrently, it is checked below
+            }
+        }
+        if (posix) {
+            PosixFileAttributes attrs = Files.readAttributes(dir, PosixFileAttributes.class,
+                                                             LinkOption.NOFOLLOW_LINKS);
+            if (!attrs.isDirectory()
+                || !attrs.owner().getName().equals(System.getProperty("user.name"))
+                || !OWNER_ONLY.containsAll(attrs.permissions())) {
+                throw new IOException("The shared memory directory " + dir
+                                      + " is not private to this user, set " + DIRECTORY);
+            }
+        }
+        defaultDirectory = dir.toFile();
+        return defaultDirectory;
+    }
+
+    int getRingSize(Bus bus) {
+        return (int)getLong(bus, RING_SIZE, DEFAULT_RING_SIZE);
+    }
+
+    long getMaxIdleWait(Bus bus) {
+        return getLong(bus, MAX_IDLE_WAIT, DEFAULT_MAX_IDLE_WAIT);
+    }
+
+    /**
+     * The parts of a message follow each other within the write timeout of the sender unless it
+     * died, a reassembly waiting longer than twice that is dropped.
+     */
+    long getPartialTimeout(Bus bus) {
+        return 2 * getLong(bus, WRITE_TIMEOUT, DEFAULT_WRITE_TIMEOUT);
+    }
+
+    private static long getLong(Bus bus, String key, long defaultValue) {
+        Object o = bus == null ? null : bus.getProperty(key);
+        if (o instanceof Number) {
+            return ((Number)o).longValue();
+        } else if (o instanceof String) {
+            return Long.parseLong((String)o);
+        }
+        return defaultValue;
+    }
+
+    long nextId() {
+        return ids.incrementAndGet();
+    }
+
+    /**
+     * Appends a message to the ring of the given name. If the owner of the ring went away and a
+     * new one replaced it, the message is sent to the new ring.
+     */
+    void send(Bus bus, String name, long id, byte[] bytes, int length) throws IOException {
+        ShmRingBuffer ring = getRing(bus, name);
+        if (ring.isClosed()) {
+            evict(name, ring);
+            ring = getRing(bus, name);
+        }
+        ring.write(id, bytes, 0, length, getLong(bus, WRITE_TIMEOUT, DEFAULT_WRITE_TIMEOUT));
+    }
+
+    private ShmRingBuffer getRing(Bus bus, String name) throws IOException {
+        ShmRingBuffer ring = rings.get(name);
+        if (ring == null) {
+            ring = ShmRingBuffer.open(getRingFile(bus, name));
+            ShmRingBuffer old = rings.putIfAbsent(name, ring);
+            if (old != null) {
+                ring.close();
+                ring = old;
+            }
+        }
+        return ring;
+    }
+
+    private void evict(String name, ShmRingBuffer ring) {
+        if (rings.remove(name, ring)) {
+            ring.close();
+        }
+    }
+
+    /**
+     * Returns the name of the ring the responses to this process are sent to, creating it and
+     * the thread which receives from it on first use.
+     */
+    synchronized String getReplyTo(Bus bus) throws IOException {
+        if (replyTo == null) {
+            String name = "reply-" + UUID.randomUUID();
+            replyRing = ShmRingBuffer.create(getRingFile(bus, name), getRingSize(bus));
+            replyReceiver = new ShmReceiver(replyRing, new ShmReceiver.Listener() {
+                public void onMessage(long id, byte[] bytes, int length) {
+                    responseReceived(id, bytes, length);
+                }
+                public void expire(long now) {
+                    expireResponses(now);
+                }
+            }, getMaxIdleWait(bus), getPartialTimeout(bus));
+            replyReceiver.start("shm-reply-receiver");
+            replyBus = bus;
+            replyTo = name;
+            addListener(bus);
+        }
+        return replyTo;
+    }
+
+    void expectResponse(long id, ShmConduit conduit, Bus bus, Exchange exchange) {
+        long timeout = TimeUnit.MILLISECONDS.toNanos(getLong(bus, RECEIVE_TIMEOUT, DEFAULT_RECEIVE_TIMEOUT));
+        pending.put(id, new PendingResponse(conduit, exchange, System.nanoTime() + timeout));
+    }
+
+    void cancelResponse(long id) {
+        pending.remove(id);
+    }
+
+    void cancelResponses(ShmConduit conduit) {
+        for (Map.Entry<Long, PendingResponse> e : pending.entrySet()) {
+            if (e.getValue().conduit == conduit) {
+                pending.remove(e.getKey());
+            }
+        }
+    }
+
+    void responseReceived(long id, byte[] bytes, int length) {
+        final PendingResponse response = pending.remove(id);
+        if (response == null) {
+            LOG.fine("Dropping the response " + id + " nobody waits for");
+            return;
+        }
+        final MessageImpl m = new MessageImpl();
+        try {
+            ShmMessageCodec.decode(bytes, length, m);
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, "Could not read the response " + id, ex);
+            return;
+        }
+        Runnable receiver = new Runnable() {
+            public void run() {
+                response.exchange.setInMessage(m);
+                response.conduit.getMessageObserver().onMessage(m);
+            }
+        };
+        execute(response.exchange, receiver);
+    }
+
+    /**
+     * Completes the exchanges whose response did not arrive in time with a fault.
+     */
+    void expireResponses(long now) {
+        for (Map.Entry<Long, PendingResponse> e : pending.entrySet()) {
+            PendingResponse response = e.getValue();
+            if (now - response.deadline > 0 && pending.remove(e.getKey(), response)) {
+                timedOut(e.getKey(), response);
+            }
+        }
+    }
+
+    private void timedOut(final long id, final PendingResponse response) {
+        Runnable fault = new Runnable() {
+            public void run() {
+                Exchange exchange = response.exchange;
+                Message outMessage = exchange.getOutMessage();
+                if (outMessage == null) {
+                    return;
+                }
+                Exception ex = new SocketTimeoutException("Timed out waiting for the response " + id);
+                if (outMessage.getInterceptorChain() instanceof PhaseInterceptorChain) {
+                    ((PhaseInterceptorChain)outMessage.getInterceptorChain()).abort();
+                    outMessage.setContent(Exception.class, ex);
+                    ((PhaseInterceptorChain)outMessage.getInterceptorChain()).unwind(outMessage);
+                    MessageObserver mo = outMessage.getInterceptorChain().getFaultObserver();
+                    if (mo == null) {
+                        mo = exchange.get(MessageObserver.class);
+                    }
+                    if (mo != null) {
+                        mo.onMessage(outMessage);
+                    }
+                }
+                // a synchronous client waits on the exchange for the response
+                Message inMessage = new MessageImpl();
+                inMessage.setExchange(exchange);
+                inMessage.setContent(Exception.class, ex);
+                synchronized (exchange) {
+                    exchange.setInMessage(inMessage);
+                    exchange.put(ClientImpl.FINISHED, Boolean.TRUE);
+                    exchange.notifyAll();
+                }
+            }
+        };
+        execute(response.exchange, fault);
+    }
+
+    private void execute(Exchange exchange, Runnable runnable) {
+        Executor ex = exchange.get(Executor.class);
+        if (ex == null || SynchronousExecutor.isA(ex)) {
+            ex = getExecutor(exchange.getBus() != null ? exchange.getBus() : replyBus);
+        }
+        if (ex != null) {
+            ex.execute(runnable);
+        } else {
+            new Thread(runnable).start();
+        }
+    }
+
+    private void addListener(Bus bus) {
+        BusLifeCycleManager manager = bus.getExtension(BusLifeCycleManager.class);
+        if (manager != null) {
+            manager.registerLifeCycleListener(new BusLifeCycleListener() {
+                public void initComplete() {
+                }
+                public void preShutdown() {
+                }
+                public void postShutdown() {
+                    shutdown();
+                }
+            });
+        }
+    }
+
+    /**
+     * Stops receiving responses and gives up the rings of this factory.
+     */
+    public synchronized void shutdown() {
+        if (replyReceiver != null) {
+            replyReceiver.stop();
+            replyRing.destroy();
+            replyReceiver = null;
+            replyRing = null;
+            replyTo = null;
+        }
+        for (String name : rings.keySet()) {
+            ShmRingBuffer ring = rings.remove(name);
+            if (ring != null) {
+                ring.close();
+            }
+        }
+        pending.clear();
+    }
+
+    static final class PendingResponse {
+        final ShmConduit conduit;
+        final Exchange exchange;
+        final long deadline;
+
+        PendingResponse(ShmConduit conduit, Exchange exchange, long deadline) {
+            this.conduit = conduit;
+            this.exchange = exchange;
+            this.deadline = deadline;
+        }
+    }
+}
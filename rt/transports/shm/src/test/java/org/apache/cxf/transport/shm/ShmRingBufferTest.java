@@ -0,0 +1,190 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.transport.shm;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ShmRingBufferTest extends Assert {
+    private final File file = new File("target/shm-test/ring-test.ring");
+    private ShmRingBuffer owner;
+
+    @After
+    public void tearDown() {
+        if (owner != null) {
+            owner.destroy();
+        }
+    }
+
+    @Test
+    public void testWrapAround() throws Exception {
+        owner = ShmRingBuffer.create(file, ShmRingBuffer.MIN_CAPACITY);
+        ShmRingBuffer writer = ShmRingBuffer.open(file);
+        assertSame(owner, writer);
+        byte[] message = new byte[700];
+        // more than the capacity in total, the records wrap around the end of the ring
+        for (int x = 0; x < 20; x++) {
+            Arrays.fill(message, (byte)x);
+            writer.write(x, message, 0, message.length, 1000);
+            ShmRingBuffer.Fragment fragment = owner.poll();
+            assertEquals(x, fragment.getId());
+            assertTrue(fragment.isLast());
+            assertArrayEquals(message, fragment.getData());
+            assertNull(owner.poll());
+        }
+        writer.close();
+    }
+
+    @Test
+    public void testLargeMessageIsSplit() throws Exception {
+        owner = ShmRingBuffer.create(file, ShmRingBuffer.MIN_CAPACITY);
+        final byte[] message = new byte[10000];
+        for (int x = 0; x < message.length; x++) {
+            message[x] = (byte)x;
+        }
+        final byte[] received = new byte[message.length];
+        final int[] count = new int[2];
+        ShmReceiver receiver = new ShmReceiver(owner, new ShmReceiver.Listener() {
+            public void onMessage(long id, byte[] bytes, int length) {
+                System.arraycopy(bytes, 0, received, 0, length);
+                count[0]++;
+                count[1] = length;
+            }
+            public void expire(long now) {
+            }
+        }, 1000, 10000);
+        receiver.start("test-receiver");
+        // larger than the ring, the writer waits for the receiver to take the first records out
+        ShmRingBuffer writer = ShmRingBuffer.open(file);
+        writer.write(42, message, 0, message.length, 5000);
+        for (int x = 0; x < 500 && count[0] == 0; x++) {
+            Thread.sleep(10);
+        }
+        receiver.stop();
+        assertEquals(1, count[0]);
+        assertEquals(message.length, count[1]);
+        assertArrayEquals(message, received);
+        writer.close();
+    }
+
+    @Test
+    public void testClosedRing() throws Exception {
+        owner = ShmRingBuffer.create(file, ShmRingBuffer.MIN_CAPACITY);
+        ShmRingBuffer writer = ShmRingBuffer.open(file);
+        owner.destroy();
+        ShmRingBuffer replacement = ShmRingBuffer.create(file, ShmRingBuffer.MIN_CAPACITY);
+        assertTrue(writer.isClosed());
+        try {
+            writer.write(1, new byte[10], 0, 10, 100);
+            fail("The ring was replaced");
+        } catch (IOException ex) {
+            //expected
+        }
+        writer.close();
+        owner = replacement;
+        writer = ShmRingBuffer.open(file);
+        assertSame(replacement, writer);
+        writer.write(1, new byte[10], 0, 10, 100);
+        assertEquals(1, owner.poll().getId());
+        writer.close();
+    }
+
+    @Test
+    public void testFullRingTimesOut() throws Exception {
+        owner = ShmRingBuffer.create(file, ShmRingBuffer.MIN_CAPACITY);
+        byte[] message = new byte[owner.getMaxFragmentSize()];
+        for (int x = 0; x < 4; x++) {
+            owner.write(x, message, 0, message.length, 100);
+        }
+        try {
+            owner.write(5, message, 0, message.length, 100);
+            fail("The ring is full");
+        } catch (IOException ex) {
+            //expected
+        }
+        assertEquals(0, owner.poll().getId());
+        owner.write(5, message, 0, message.length, 100);
+    }
+
+    @Test
+    public void testLiveRingIsNotReplaced() throws Exception {
+        owner = ShmRingBuffer.create(file, ShmRingBuffer.MIN_CAPACITY);
+        try {
+            ShmRingBuffer.create(file, ShmRingBuffer.MIN_CAPACITY);
+            fail("The owner of the ring is alive");
+        } catch (IOException ex) {
+            //expected
+        }
+        assertFalse(owner.isClosed());
+        owner.write(1, new byte[10], 0, 10, 100);
+        assertEquals(1, owner.poll().getId());
+    }
+
+    @Test
+    public void testCorruptLength() throws Exception {
+        owner = ShmRingBuffer.create(file, ShmRingBuffer.MIN_CAPACITY);
+        owner.write(1, new byte[10], 0, 10, 100);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(ShmRingBuffer.HEADER_SIZE);
+            raf.writeInt(Integer.MAX_VALUE);
+        } finally {
+            raf.close();
+        }
+        try {
+            owner.poll();
+            fail("The record length is larger than the ring");
+        } catch (IOException ex) {
+            //expected
+        }
+        // the corrupt contents are dropped and the ring is usable again
+        assertNull(owner.poll());
+        owner.write(2, new byte[10], 0, 10, 100);
+        ShmRingBuffer.Fragment fragment = owner.poll();
+        assertEquals(2, fragment.getId());
+        assertEquals(10, fragment.getData().length);
+    }
+
+    @Test
+    public void testStalePartialIsDropped() throws Exception {
+        owner = ShmRingBuffer.create(file, ShmRingBuffer.MIN_CAPACITY);
+        final int[] length = new int[1];
+        ShmReceiver receiver = new ShmReceiver(owner, new ShmReceiver.Listener() {
+            public void onMessage(long id, byte[] bytes, int len) {
+                length[0] = len;
+            }
+            public void expire(long now) {
+            }
+        }, 1000, 100);
+        receiver.received(new ShmRingBuffer.Fragment(1, false, new byte[100]));
+        receiver.sweep(System.nanoTime());
+        receiver.received(new ShmRingBuffer.Fragment(1, false, new byte[100]));
+        receiver.sweep(System.nanoTime() + 1000000000L);
+        // the first parts were dropped, the last one arrives on its own
+        receiver.received(new ShmRingBuffer.Fragment(1, true, new byte[10]));
+        assertEquals(10, length[0]);
+    }
+}
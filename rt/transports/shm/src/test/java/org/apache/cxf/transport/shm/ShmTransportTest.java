@@ -0,0 +1,198 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.cxf.transport.shm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.cxf.Bus;
+import org.apache.cxf.endpoint.Server;
+import org.apache.cxf.jaxws.JaxWsProxyFactoryBean;
+import org.apache.cxf.jaxws.JaxWsServerFactoryBean;
+import org.apache.cxf.message.Message;
+import org.apache.cxf.message.MessageImpl;
+import org.apache.cxf.testutil.common.AbstractBusClientServerTestBase;
+import org.apache.hello_world.Greeter;
+import org.apache.hello_world.GreeterImpl;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class ShmTransportTest extends AbstractBusClientServerTestBase {
+    static final String ADDRESS = "shm://greeter/SoapPort";
+    private static Server server;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        Bus bus = createStaticBus();
+        bus.setProperty(ShmTransportFactory.DIRECTORY, "target/shm");
+        // a small ring so that the large messages are split and the ring wraps around
+        bus.setProperty(ShmTransportFactory.RING_SIZE, 64 * 1024);
+        JaxWsServerFactoryBean factory = new JaxWsServerFactoryBean();
+        factory.setBus(bus);
+        factory.setAddress(ADDRESS);
+        factory.setServiceBean(new GreeterImpl());
+        server = factory.create();
+    }
+
+    @AfterClass
+    public static void shutdown() throws Exception {
+        server.stop();
+        server.destroy();
+    }
+
+    @Test
+    public void testInvocation() throws Exception {
+        assertTrue(new File("target/shm/greeter_SoapPort.ring").exists());
+        Greeter g = createGreeter();
+        for (int x = 0; x < 5; x++) {
+            assertEquals("Hello World", g.greetMe("World"));
+        }
+        assertEquals("Hi!", g.sayHi());
+        ((java.io.Closeable)g).close();
+    }
+
+    @Test
+    public void testLargeRequest() throws Exception {
+        Greeter g = createGreeter();
+        StringBuilder b = new StringBuilder(100000);
+        for (int x = 0; x < 50000; x++) {
+            b.append("Hello ");
+        }
+        assertEquals("Hello " + b.toString(), g.greetMe(b.toString()));
+        ((java.io.Closeable)g).close();
+    }
+
+    @Test
+    public void testConcurrentInvocations() throws Exception {
+        final Greeter g = createGreeter();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<String>> responses = new ArrayList<Future<String>>();
+        for (int x = 0; x < 50; x++) {
+            final String name = "World " + x;
+            responses.add(executor.submit(new Callable<String>() {
+                public String call() {
+                    return g.greetMe(name);
+                }
+            }));
+        }
+        for (int x = 0; x < 50; x++) {
+            assertEquals("Hello World " + x, responses.get(x).get(30, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        ((java.io.Closeable)g).close();
+    }
+
+    @Test
+    public void testNoDestination() throws Exception {
+        JaxWsProxyFactoryBean fact = new JaxWsProxyFactoryBean();
+        fact.setBus(getStaticBus());
+        fact.setAddress("shm://nobody");
+        Greeter g = fact.create(Greeter.class);
+        try {
+            g.greetMe("World");
+            fail("No destination listens on the address");
+        } catch (Exception ex) {
+            //expected
+        }
+        ((java.io.Closeable)g).close();
+    }
+
+    @Test
+    public void testResponseTimesOut() throws Exception {
+        // a ring nobody consumes from
+        Bus bus = getStaticBus();
+        ShmTransportFactory factory = new ShmTransportFactory();
+        ShmRingBuffer ring = ShmRingBuffer.create(factory.getRingFile(bus, "silent"), 64 * 1024);
+        bus.setProperty(ShmTransportFactory.RECEIVE_TIMEOUT, 500);
+        try {
+            JaxWsProxyFactoryBean fact = new JaxWsProxyFactoryBean();
+            fact.setBus(bus);
+            fact.setAddress("shm://silent");
+            Greeter g = fact.create(Greeter.class);
+            long start = System.currentTimeMillis();
+            try {
+                g.greetMe("World");
+                fail("Nobody responds");
+            } catch (Exception ex) {
+                assertTrue(System.currentTimeMillis() - start < 30000);
+                assertTrue(ex.getMessage(), ex.getMessage().contains("Timed out waiting for the response"));
+            }
+            ((java.io.Closeable)g).close();
+        } finally {
+            bus.setProperty(ShmTransportFactory.RECEIVE_TIMEOUT, null);
+            ring.destroy();
+        }
+    }
+
+    @Test
+    public void testUnexpectedPropertyIsRejected() throws Exception {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bout);
+        out.writeInt(1);
+        out.writeUTF("");
+        out.writeInt(-1);
+        out.writeInt(1);
+        out.writeUTF(Message.REQUESTOR_ROLE);
+        out.writeUTF("true");
+        out.writeInt(0);
+        out.writeInt(0);
+        out.flush();
+        byte[] bytes = bout.toByteArray();
+        Message message = new MessageImpl();
+        try {
+            ShmMessageCodec.decode(bytes, bytes.length, message);
+            fail("Only the transport properties may be sent");
+        } catch (IOException ex) {
+            //expected
+        }
+        assertFalse(message.containsKey(Message.REQUESTOR_ROLE));
+    }
+
+    @Test
+    public void testDefaultDirectoryIsPrivate() throws Exception {
+        File dir = new ShmTransportFactory().getRingFile(null, "test").getParentFile();
+        assertTrue(dir.isDirectory());
+        if (Files.getFileAttributeView(dir.toPath(), PosixFileAttributeView.class) != null) {
+            assertEquals(PosixFilePermissions.fromString("rwx------"),
+                         Files.getPosixFilePermissions(dir.toPath()));
+        }
+    }
+
+    private static Greeter createGreeter() {
+        JaxWsProxyFactoryBean fact = new JaxWsProxyFactoryBean();
+        fact.setBus(getStaticBus());
+        fact.setAddress(ADDRESS);
+        return fact.create(Greeter.class);
+    }
+}